@@ -0,0 +1,882 @@
+package jangl.collision;
+
+import jangl.shapes.Shape;
+import jangl.util.AABB;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A broad phase for collision detection built on a dynamic bounding volume tree. Unlike CollisionWorld, the tree
+ * does not depend on a cell size, so it handles worlds where shape sizes vary a lot (e.g. a huge floor next to many
+ * tiny bullets) and worlds that are mostly empty.
+ * <br>
+ * Every leaf stores a "fat" AABB: the shape's bounds expanded by a margin. A shape is only removed and reinserted
+ * when it moves outside its fat AABB, so small movements cost nothing but a bounds check. As leaves are inserted and
+ * removed, the tree is kept balanced and its boxes tight with rotations.
+ * <br>
+ * Layers and masks work the same way they do in CollisionWorld. Call update() once per frame after moving shapes.
+ */
+public class AABBTree {
+    private static final int NULL_NODE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final float margin;
+    private final Map<Shape, Integer> leaves;
+    private final AABB scratchBounds;
+    private final PairBuffer candidates;
+
+    // Node data, indexed by node ID
+    private float[] fatBounds;
+    private int[] parents;
+    private int[] children1;
+    private int[] children2;
+    private int[] heights;
+
+    // Leaf data, indexed by node ID. Only used when the node is a leaf.
+    private Shape[] shapes;
+    private float[] tightBounds;
+    private int[] layers;
+    private int[] masks;
+    private int[] versions;
+
+    private int root;
+    private int nodeCount;
+    private int nodeCapacity;
+    private int freeList;
+
+    /**
+     * Reused by the queries so they do not allocate.
+     */
+    private int[] stack;
+
+    /**
+     * @param margin How far, in WorldCoords, to expand each shape's bounds. Larger margins mean fewer reinsertions
+     *               for moving shapes but more candidate pairs.
+     * @throws IllegalArgumentException If the margin is negative.
+     */
+    public AABBTree(float margin) throws IllegalArgumentException {
+        if (!(margin >= 0)) {
+            throw new IllegalArgumentException("The margin must not be negative, not " + margin);
+        }
+
+        this.margin = margin;
+        this.leaves = new IdentityHashMap<>();
+        this.scratchBounds = new AABB();
+        this.candidates = new PairBuffer();
+
+        this.root = NULL_NODE;
+        this.nodeCount = 0;
+        this.nodeCapacity = 0;
+        this.freeList = NULL_NODE;
+        this.stack = new int[INITIAL_CAPACITY];
+
+        this.growNodes(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a shape on the default layer that collides with every layer.
+     *
+     * @param shape The shape to add.
+     * @throws IllegalArgumentException If the shape was already added.
+     */
+    public void add(Shape shape) throws IllegalArgumentException {
+        this.add(shape, CollisionWorld.DEFAULT_LAYER, CollisionWorld.DEFAULT_MASK);
+    }
+
+    /**
+     * @param shape The shape to add.
+     * @param layer The layer bits of the shape.
+     * @param mask  The bits of the layers the shape collides with.
+     * @throws IllegalArgumentException If the shape was already added.
+     */
+    public void add(Shape shape, int layer, int mask) throws IllegalArgumentException {
+        if (this.leaves.containsKey(shape)) {
+            throw new IllegalArgumentException("The shape has already been added to the tree");
+        }
+
+        int leaf = this.allocateNode();
+        this.leaves.put(shape, leaf);
+
+        this.shapes[leaf] = shape;
+        this.layers[leaf] = layer;
+        this.masks[leaf] = mask;
+        this.versions[leaf] = shape.getTransform().getVersion();
+        this.heights[leaf] = 0;
+
+        this.writeTightBounds(leaf);
+        this.fattenBounds(leaf);
+        this.insertLeaf(leaf);
+    }
+
+    /**
+     * @param shape The shape to remove.
+     * @return False if the shape was not in the tree.
+     */
+    public boolean remove(Shape shape) {
+        Integer leaf = this.leaves.remove(shape);
+
+        if (leaf == null) {
+            return false;
+        }
+
+        this.removeLeaf(leaf);
+        this.freeNode(leaf);
+
+        return true;
+    }
+
+    public boolean contains(Shape shape) {
+        return this.leaves.containsKey(shape);
+    }
+
+    /**
+     * @return The number of shapes in the tree.
+     */
+    public int size() {
+        return this.leaves.size();
+    }
+
+    public float getMargin() {
+        return this.margin;
+    }
+
+    /**
+     * @return The height of the tree. A balanced tree with n shapes has a height close to log2(n).
+     */
+    public int getHeight() {
+        return this.root == NULL_NODE ? 0 : this.heights[this.root];
+    }
+
+    public void setLayer(Shape shape, int layer) throws IllegalArgumentException {
+        this.layers[this.getLeaf(shape)] = layer;
+    }
+
+    public int getLayer(Shape shape) throws IllegalArgumentException {
+        return this.layers[this.getLeaf(shape)];
+    }
+
+    public void setMask(Shape shape, int mask) throws IllegalArgumentException {
+        this.masks[this.getLeaf(shape)] = mask;
+    }
+
+    public int getMask(Shape shape) throws IllegalArgumentException {
+        return this.masks[this.getLeaf(shape)];
+    }
+
+    /**
+     * Refreshes the bounds of every shape whose Transform changed since the last update. A shape is only reinserted
+     * into the tree if it moved outside its fat AABB.
+     *
+     * @return The number of shapes that were reinserted.
+     */
+    public int update() {
+        int reinserted = 0;
+
+        for (int node = 0; node < this.nodeCount; node++) {
+            Shape shape = this.shapes[node];
+
+            if (shape == null) {
+                continue;
+            }
+
+            int version = shape.getTransform().getVersion();
+
+            if (version == this.versions[node]) {
+                continue;
+            }
+
+            this.versions[node] = version;
+            this.writeTightBounds(node);
+
+            if (this.fatContainsTight(node)) {
+                continue;
+            }
+
+            this.removeLeaf(node);
+            this.fattenBounds(node);
+            this.insertLeaf(node);
+            reinserted++;
+        }
+
+        return reinserted;
+    }
+
+    /**
+     * Finds every pair of shapes whose bounds overlap and whose layers and masks are compatible. Each pair is only
+     * reported once. These pairs may not be colliding: use Shape.collides() on them for the exact test.
+     *
+     * @param out The buffer to add the pairs to. It is not cleared first.
+     */
+    public void findCandidatePairs(PairBuffer out) {
+        if (this.root == NULL_NODE) {
+            return;
+        }
+
+        // Traverse the tree against itself. Each stack entry is a pair of nodes, where a pair of the same node means
+        // testing the node's subtree against itself. Each pair of leaves is reached exactly once.
+        this.stack[0] = this.root;
+        this.stack[1] = this.root;
+        int stackSize = 2;
+
+        while (stackSize > 0) {
+            int node2 = this.stack[--stackSize];
+            int node1 = this.stack[--stackSize];
+
+            if (node1 == node2) {
+                if (!this.isLeaf(node1)) {
+                    int child1 = this.children1[node1];
+                    int child2 = this.children2[node1];
+
+                    stackSize = this.pushPair(child1, child1, stackSize);
+                    stackSize = this.pushPair(child2, child2, stackSize);
+                    stackSize = this.pushPair(child1, child2, stackSize);
+                }
+
+                continue;
+            }
+
+            int offset2 = node2 * 4;
+
+            if (!this.fatOverlaps(node1, this.fatBounds[offset2], this.fatBounds[offset2 + 1],
+                    this.fatBounds[offset2 + 2], this.fatBounds[offset2 + 3])) {
+                continue;
+            }
+
+            boolean leaf1 = this.isLeaf(node1);
+            boolean leaf2 = this.isLeaf(node2);
+
+            if (leaf1 && leaf2) {
+                this.addCandidate(node1, node2, out);
+            } else if (leaf2 || !leaf1 && this.heights[node1] >= this.heights[node2]) {
+                // Descend into the taller subtree
+                stackSize = this.pushPair(this.children1[node1], node2, stackSize);
+                stackSize = this.pushPair(this.children2[node1], node2, stackSize);
+            } else {
+                stackSize = this.pushPair(node1, this.children1[node2], stackSize);
+                stackSize = this.pushPair(node1, this.children2[node2], stackSize);
+            }
+        }
+    }
+
+    private void addCandidate(int leaf1, int leaf2, PairBuffer out) {
+        int offset = leaf2 * 4;
+
+        if (!this.tightOverlaps(leaf1, this.tightBounds[offset], this.tightBounds[offset + 1],
+                this.tightBounds[offset + 2], this.tightBounds[offset + 3])) {
+            return;
+        }
+
+        if ((this.layers[leaf1] & this.masks[leaf2]) == 0 || (this.layers[leaf2] & this.masks[leaf1]) == 0) {
+            return;
+        }
+
+        out.add(this.shapes[leaf1], this.shapes[leaf2]);
+    }
+
+    /**
+     * Finds every pair of shapes that collide according to Shape.collides().
+     *
+     * @param out The buffer to add the colliding pairs to. It is not cleared first.
+     */
+    public void findCollisions(PairBuffer out) {
+        this.candidates.clear();
+        this.findCandidatePairs(this.candidates);
+
+        for (int i = 0; i < this.candidates.size(); i++) {
+            Shape shape1 = this.candidates.getFirst(i);
+            Shape shape2 = this.candidates.getSecond(i);
+
+            if (Shape.collides(shape1, shape2)) {
+                out.add(shape1, shape2);
+            }
+        }
+
+        this.candidates.clear();
+    }
+
+    /**
+     * Finds every shape whose bounds overlap the region.
+     *
+     * @param region The region to query, in WorldCoords.
+     * @param out    The list to add the shapes to. It is not cleared first.
+     */
+    public void queryRegion(AABB region, List<Shape> out) {
+        this.queryRegion(region, CollisionWorld.DEFAULT_MASK, out);
+    }
+
+    /**
+     * Finds every shape whose bounds overlap the region and whose layer overlaps the mask.
+     *
+     * @param region The region to query, in WorldCoords.
+     * @param mask   The layer bits to include.
+     * @param out    The list to add the shapes to. It is not cleared first.
+     */
+    public void queryRegion(AABB region, int mask, List<Shape> out) {
+        int stackSize = this.pushRoot();
+
+        while (stackSize > 0) {
+            int node = this.stack[--stackSize];
+
+            if (!this.fatOverlaps(node, region.minX, region.minY, region.maxX, region.maxY)) {
+                continue;
+            }
+
+            if (!this.isLeaf(node)) {
+                stackSize = this.pushChildren(node, stackSize);
+            } else if ((this.layers[node] & mask) != 0
+                    && this.tightOverlaps(node, region.minX, region.minY, region.maxX, region.maxY)) {
+                out.add(this.shapes[node]);
+            }
+        }
+    }
+
+    /**
+     * Finds every shape whose bounds contain the point. Use Shape.collides(Shape, WorldCoords) on the results for
+     * the exact test.
+     *
+     * @param x   The x coordinate of the point, in WorldCoords.
+     * @param y   The y coordinate of the point, in WorldCoords.
+     * @param out The list to add the shapes to. It is not cleared first.
+     */
+    public void queryPoint(float x, float y, List<Shape> out) {
+        int stackSize = this.pushRoot();
+
+        while (stackSize > 0) {
+            int node = this.stack[--stackSize];
+
+            if (!this.fatOverlaps(node, x, y, x, y)) {
+                continue;
+            }
+
+            if (!this.isLeaf(node)) {
+                stackSize = this.pushChildren(node, stackSize);
+            } else if (this.tightOverlaps(node, x, y, x, y)) {
+                out.add(this.shapes[node]);
+            }
+        }
+    }
+
+    /**
+     * Finds every shape whose bounds are crossed by the line segment from (x1, y1) to (x2, y2).
+     *
+     * @param x1  The x coordinate of the start of the ray, in WorldCoords.
+     * @param y1  The y coordinate of the start of the ray, in WorldCoords.
+     * @param x2  The x coordinate of the end of the ray, in WorldCoords.
+     * @param y2  The y coordinate of the end of the ray, in WorldCoords.
+     * @param out The list to add the shapes to. It is not cleared first.
+     */
+    public void raycast(float x1, float y1, float x2, float y2, List<Shape> out) {
+        float invDirX = 1 / (x2 - x1);
+        float invDirY = 1 / (y2 - y1);
+
+        int stackSize = this.pushRoot();
+
+        while (stackSize > 0) {
+            int node = this.stack[--stackSize];
+
+            if (!segmentOverlaps(this.fatBounds, node * 4, x1, y1, invDirX, invDirY)) {
+                continue;
+            }
+
+            if (!this.isLeaf(node)) {
+                stackSize = this.pushChildren(node, stackSize);
+            } else if (segmentOverlaps(this.tightBounds, node * 4, x1, y1, invDirX, invDirY)) {
+                out.add(this.shapes[node]);
+            }
+        }
+    }
+
+    /**
+     * A slab test between a line segment and a box.
+     *
+     * @param bounds  The array holding the box.
+     * @param offset  The index of the box's minX in the array.
+     * @param startX  The x coordinate of the start of the segment.
+     * @param startY  The y coordinate of the start of the segment.
+     * @param invDirX 1 / the x length of the segment.
+     * @param invDirY 1 / the y length of the segment.
+     * @return If the segment touches the box.
+     */
+    private static boolean segmentOverlaps(float[] bounds, int offset, float startX, float startY,
+                                           float invDirX, float invDirY) {
+        float tMin = 0;
+        float tMax = 1;
+
+        // An infinite inverse means the segment is parallel to that axis, so it only overlaps if it's inside the slab
+        if (Float.isInfinite(invDirX)) {
+            if (startX < bounds[offset] || startX > bounds[offset + 2]) {
+                return false;
+            }
+        } else {
+            float t1 = (bounds[offset] - startX) * invDirX;
+            float t2 = (bounds[offset + 2] - startX) * invDirX;
+
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+
+        if (Float.isInfinite(invDirY)) {
+            if (startY < bounds[offset + 1] || startY > bounds[offset + 3]) {
+                return false;
+            }
+        } else {
+            float t1 = (bounds[offset + 1] - startY) * invDirY;
+            float t2 = (bounds[offset + 3] - startY) * invDirY;
+
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+
+        return tMin <= tMax;
+    }
+
+    private int getLeaf(Shape shape) throws IllegalArgumentException {
+        Integer leaf = this.leaves.get(shape);
+
+        if (leaf == null) {
+            throw new IllegalArgumentException("The shape is not in the tree");
+        }
+
+        return leaf;
+    }
+
+    private boolean isLeaf(int node) {
+        return this.children1[node] == NULL_NODE;
+    }
+
+    private int pushRoot() {
+        if (this.root == NULL_NODE) {
+            return 0;
+        }
+
+        this.stack[0] = this.root;
+        return 1;
+    }
+
+    private int pushChildren(int node, int stackSize) {
+        if (stackSize + 2 > this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+        }
+
+        this.stack[stackSize] = this.children1[node];
+        this.stack[stackSize + 1] = this.children2[node];
+
+        return stackSize + 2;
+    }
+
+    private int pushPair(int node1, int node2, int stackSize) {
+        if (stackSize + 2 > this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+        }
+
+        this.stack[stackSize] = node1;
+        this.stack[stackSize + 1] = node2;
+
+        return stackSize + 2;
+    }
+
+    private boolean fatOverlaps(int node, float minX, float minY, float maxX, float maxY) {
+        int offset = node * 4;
+
+        return AABB.intersects(
+                this.fatBounds[offset], this.fatBounds[offset + 1], this.fatBounds[offset + 2], this.fatBounds[offset + 3],
+                minX, minY, maxX, maxY
+        );
+    }
+
+    private boolean tightOverlaps(int node, float minX, float minY, float maxX, float maxY) {
+        int offset = node * 4;
+
+        return AABB.intersects(
+                this.tightBounds[offset], this.tightBounds[offset + 1], this.tightBounds[offset + 2], this.tightBounds[offset + 3],
+                minX, minY, maxX, maxY
+        );
+    }
+
+    private boolean fatContainsTight(int leaf) {
+        int offset = leaf * 4;
+
+        return this.fatBounds[offset] <= this.tightBounds[offset]
+                && this.fatBounds[offset + 1] <= this.tightBounds[offset + 1]
+                && this.fatBounds[offset + 2] >= this.tightBounds[offset + 2]
+                && this.fatBounds[offset + 3] >= this.tightBounds[offset + 3];
+    }
+
+    private void writeTightBounds(int leaf) {
+        this.shapes[leaf].getWorldBounds(this.scratchBounds);
+
+        int offset = leaf * 4;
+        this.tightBounds[offset] = this.scratchBounds.minX;
+        this.tightBounds[offset + 1] = this.scratchBounds.minY;
+        this.tightBounds[offset + 2] = this.scratchBounds.maxX;
+        this.tightBounds[offset + 3] = this.scratchBounds.maxY;
+    }
+
+    private void fattenBounds(int leaf) {
+        int offset = leaf * 4;
+        this.fatBounds[offset] = this.tightBounds[offset] - this.margin;
+        this.fatBounds[offset + 1] = this.tightBounds[offset + 1] - this.margin;
+        this.fatBounds[offset + 2] = this.tightBounds[offset + 2] + this.margin;
+        this.fatBounds[offset + 3] = this.tightBounds[offset + 3] + this.margin;
+    }
+
+    /**
+     * Sets the bounds of a node to the union of its children's bounds.
+     */
+    private void unionChildren(int node) {
+        int offset = node * 4;
+        int offset1 = this.children1[node] * 4;
+        int offset2 = this.children2[node] * 4;
+
+        this.fatBounds[offset] = Math.min(this.fatBounds[offset1], this.fatBounds[offset2]);
+        this.fatBounds[offset + 1] = Math.min(this.fatBounds[offset1 + 1], this.fatBounds[offset2 + 1]);
+        this.fatBounds[offset + 2] = Math.max(this.fatBounds[offset1 + 2], this.fatBounds[offset2 + 2]);
+        this.fatBounds[offset + 3] = Math.max(this.fatBounds[offset1 + 3], this.fatBounds[offset2 + 3]);
+    }
+
+    private float perimeter(int node) {
+        int offset = node * 4;
+        return 2 * (this.fatBounds[offset + 2] - this.fatBounds[offset] + this.fatBounds[offset + 3] - this.fatBounds[offset + 1]);
+    }
+
+    /**
+     * @return The perimeter of the union of two nodes' bounds.
+     */
+    private float unionPerimeter(int node1, int node2) {
+        int offset1 = node1 * 4;
+        int offset2 = node2 * 4;
+
+        float width = Math.max(this.fatBounds[offset1 + 2], this.fatBounds[offset2 + 2])
+                - Math.min(this.fatBounds[offset1], this.fatBounds[offset2]);
+        float height = Math.max(this.fatBounds[offset1 + 3], this.fatBounds[offset2 + 3])
+                - Math.min(this.fatBounds[offset1 + 1], this.fatBounds[offset2 + 1]);
+
+        return 2 * (width + height);
+    }
+
+    private void insertLeaf(int leaf) {
+        if (this.root == NULL_NODE) {
+            this.root = leaf;
+            this.parents[leaf] = NULL_NODE;
+            return;
+        }
+
+        // Find the best sibling by descending the tree, choosing the child that increases the perimeter the least
+        int sibling = this.root;
+
+        while (!this.isLeaf(sibling)) {
+            int child1 = this.children1[sibling];
+            int child2 = this.children2[sibling];
+
+            float perimeter = this.perimeter(sibling);
+            float combinedPerimeter = this.unionPerimeter(sibling, leaf);
+
+            // The cost of making a new parent for this node and the new leaf
+            float cost = 2 * combinedPerimeter;
+
+            // The minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2 * (combinedPerimeter - perimeter);
+
+            float cost1 = this.descendCost(child1, leaf) + inheritanceCost;
+            float cost2 = this.descendCost(child2, leaf) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+
+            sibling = cost1 < cost2 ? child1 : child2;
+        }
+
+        // Create a new parent for the sibling and the leaf
+        int oldParent = this.parents[sibling];
+        int newParent = this.allocateNode();
+        this.parents[newParent] = oldParent;
+        this.children1[newParent] = sibling;
+        this.children2[newParent] = leaf;
+        this.heights[newParent] = this.heights[sibling] + 1;
+        this.unionChildren(newParent);
+
+        if (oldParent == NULL_NODE) {
+            this.root = newParent;
+        } else if (this.children1[oldParent] == sibling) {
+            this.children1[oldParent] = newParent;
+        } else {
+            this.children2[oldParent] = newParent;
+        }
+
+        this.parents[sibling] = newParent;
+        this.parents[leaf] = newParent;
+
+        this.refit(this.parents[leaf]);
+    }
+
+    private float descendCost(int child, int leaf) {
+        if (this.isLeaf(child)) {
+            return this.unionPerimeter(child, leaf);
+        }
+
+        return this.unionPerimeter(child, leaf) - this.perimeter(child);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == this.root) {
+            this.root = NULL_NODE;
+            return;
+        }
+
+        int parent = this.parents[leaf];
+        int grandParent = this.parents[parent];
+        int sibling = this.children1[parent] == leaf ? this.children2[parent] : this.children1[parent];
+
+        if (grandParent == NULL_NODE) {
+            this.root = sibling;
+            this.parents[sibling] = NULL_NODE;
+            this.freeNode(parent);
+            return;
+        }
+
+        // Connect the sibling to the grandparent and remove the parent
+        if (this.children1[grandParent] == parent) {
+            this.children1[grandParent] = sibling;
+        } else {
+            this.children2[grandParent] = sibling;
+        }
+
+        this.parents[sibling] = grandParent;
+        this.freeNode(parent);
+
+        this.refit(grandParent);
+    }
+
+    /**
+     * Walks from the node to the root, rebalancing and recalculating the bounds and height of every ancestor.
+     */
+    private void refit(int node) {
+        while (node != NULL_NODE) {
+            node = this.balance(node);
+            this.tighten(node);
+
+            int child1 = this.children1[node];
+            int child2 = this.children2[node];
+
+            this.heights[node] = 1 + Math.max(this.heights[child1], this.heights[child2]);
+            this.unionChildren(node);
+
+            node = this.parents[node];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if node A is imbalanced.
+     *
+     * @return The new root of the subtree.
+     */
+    private int balance(int a) {
+        if (this.isLeaf(a) || this.heights[a] < 2) {
+            return a;
+        }
+
+        int b = this.children1[a];
+        int c = this.children2[a];
+
+        int heightDifference = this.heights[c] - this.heights[b];
+
+        if (heightDifference > 1) {
+            return this.rotate(a, c, b);
+        }
+
+        if (heightDifference < -1) {
+            return this.rotate(a, b, c);
+        }
+
+        return a;
+    }
+
+    /**
+     * Rotates the taller child up to replace node A.
+     *
+     * @param a       The imbalanced node.
+     * @param taller  The taller child of A, which becomes the root of the subtree.
+     * @param shorter The shorter child of A.
+     * @return The new root of the subtree.
+     */
+    private int rotate(int a, int taller, int shorter) {
+        int f = this.children1[taller];
+        int g = this.children2[taller];
+
+        // Swap A and the taller child
+        this.children1[taller] = a;
+        this.parents[taller] = this.parents[a];
+        this.parents[a] = taller;
+
+        int parent = this.parents[taller];
+
+        if (parent == NULL_NODE) {
+            this.root = taller;
+        } else if (this.children1[parent] == a) {
+            this.children1[parent] = taller;
+        } else {
+            this.children2[parent] = taller;
+        }
+
+        // Keep the taller grandchild under the new root and move the shorter one under A
+        int keep = this.heights[f] > this.heights[g] ? f : g;
+        int move = keep == f ? g : f;
+
+        this.children2[taller] = keep;
+        this.children1[a] = shorter;
+        this.children2[a] = move;
+        this.parents[move] = a;
+
+        this.unionChildren(a);
+        this.unionChildren(taller);
+
+        this.heights[a] = 1 + Math.max(this.heights[shorter], this.heights[move]);
+        this.heights[taller] = 1 + Math.max(this.heights[a], this.heights[keep]);
+
+        return taller;
+    }
+
+    /**
+     * Swaps a child of node A with one of its grandchildren if that shrinks the perimeter of A's children. Without
+     * this, the tree slowly loses quality as moving shapes are reinserted.
+     */
+    private void tighten(int a) {
+        if (this.isLeaf(a) || this.heights[a] < 2) {
+            return;
+        }
+
+        int b = this.children1[a];
+        int c = this.children2[a];
+
+        int bestChild = NULL_NODE;
+        int bestGrandchild = NULL_NODE;
+        float bestImprovement = 0;
+
+        if (!this.isLeaf(c)) {
+            float perimeter = this.perimeter(c);
+            int f = this.children1[c];
+            int g = this.children2[c];
+
+            // Swapping B and F leaves C with B and G, swapping B and G leaves C with B and F
+            float improvementBF = perimeter - this.unionPerimeter(b, g);
+            float improvementBG = perimeter - this.unionPerimeter(b, f);
+
+            if (improvementBF > bestImprovement) {
+                bestImprovement = improvementBF;
+                bestChild = b;
+                bestGrandchild = f;
+            }
+
+            if (improvementBG > bestImprovement) {
+                bestImprovement = improvementBG;
+                bestChild = b;
+                bestGrandchild = g;
+            }
+        }
+
+        if (!this.isLeaf(b)) {
+            float perimeter = this.perimeter(b);
+            int d = this.children1[b];
+            int e = this.children2[b];
+
+            float improvementCD = perimeter - this.unionPerimeter(c, e);
+            float improvementCE = perimeter - this.unionPerimeter(c, d);
+
+            if (improvementCD > bestImprovement) {
+                bestImprovement = improvementCD;
+                bestChild = c;
+                bestGrandchild = d;
+            }
+
+            if (improvementCE > bestImprovement) {
+                bestChild = c;
+                bestGrandchild = e;
+            }
+        }
+
+        if (bestChild != NULL_NODE) {
+            this.swap(a, bestChild, bestGrandchild);
+        }
+    }
+
+    /**
+     * Swaps a child of node A with a child of A's other child.
+     */
+    private void swap(int a, int child, int grandchild) {
+        int sibling = this.parents[grandchild];
+
+        if (this.children1[a] == child) {
+            this.children1[a] = grandchild;
+        } else {
+            this.children2[a] = grandchild;
+        }
+
+        if (this.children1[sibling] == grandchild) {
+            this.children1[sibling] = child;
+        } else {
+            this.children2[sibling] = child;
+        }
+
+        this.parents[grandchild] = a;
+        this.parents[child] = sibling;
+
+        this.heights[sibling] = 1 + Math.max(this.heights[this.children1[sibling]], this.heights[this.children2[sibling]]);
+        this.unionChildren(sibling);
+    }
+
+    private int allocateNode() {
+        if (this.freeList == NULL_NODE) {
+            if (this.nodeCount == this.nodeCapacity) {
+                this.growNodes(this.nodeCapacity * 2);
+            }
+
+            int node = this.nodeCount++;
+            this.resetNode(node);
+            return node;
+        }
+
+        int node = this.freeList;
+        this.freeList = this.parents[node];
+        this.resetNode(node);
+
+        return node;
+    }
+
+    private void resetNode(int node) {
+        this.parents[node] = NULL_NODE;
+        this.children1[node] = NULL_NODE;
+        this.children2[node] = NULL_NODE;
+        this.heights[node] = 0;
+        this.shapes[node] = null;
+    }
+
+    private void freeNode(int node) {
+        this.shapes[node] = null;
+        this.children1[node] = NULL_NODE;
+        this.children2[node] = NULL_NODE;
+        this.heights[node] = -1;
+
+        // Freed nodes are linked through the parent array
+        this.parents[node] = this.freeList;
+        this.freeList = node;
+    }
+
+    private void growNodes(int capacity) {
+        this.fatBounds = Arrays.copyOf(this.fatBounds == null ? new float[0] : this.fatBounds, capacity * 4);
+        this.tightBounds = Arrays.copyOf(this.tightBounds == null ? new float[0] : this.tightBounds, capacity * 4);
+        this.parents = Arrays.copyOf(this.parents == null ? new int[0] : this.parents, capacity);
+        this.children1 = Arrays.copyOf(this.children1 == null ? new int[0] : this.children1, capacity);
+        this.children2 = Arrays.copyOf(this.children2 == null ? new int[0] : this.children2, capacity);
+        this.heights = Arrays.copyOf(this.heights == null ? new int[0] : this.heights, capacity);
+        this.shapes = Arrays.copyOf(this.shapes == null ? new Shape[0] : this.shapes, capacity);
+        this.layers = Arrays.copyOf(this.layers == null ? new int[0] : this.layers, capacity);
+        this.masks = Arrays.copyOf(this.masks == null ? new int[0] : this.masks, capacity);
+        this.versions = Arrays.copyOf(this.versions == null ? new int[0] : this.versions, capacity);
+
+        this.nodeCapacity = capacity;
+    }
+}
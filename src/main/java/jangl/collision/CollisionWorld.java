@@ -0,0 +1,618 @@
+package jangl.collision;
+
+import jangl.shapes.Shape;
+import jangl.util.AABB;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A broad phase for collision detection. Shapes are stored in a uniform spatial hash grid keyed on the cells their
+ * world bounds overlap, so only shapes that share a cell are considered as a pair. Run the candidate pairs through
+ * Shape.collides() (or use findCollisions()) for the exact test.
+ * <br>
+ * Every shape has a layer and a mask. The layer is the set of bits the shape belongs to, and the mask is the set of
+ * bits the shape can collide with. Two shapes are only a pair if each one's layer overlaps the other's mask. By
+ * default, shapes are on layer 1 and collide with every layer.
+ * <br>
+ * Call update() once per frame after moving shapes. Only shapes whose Transform changed since the last update are
+ * re-bucketed.
+ */
+public class CollisionWorld {
+    public static final int DEFAULT_LAYER = 1;
+    public static final int DEFAULT_MASK = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_CELL_CAPACITY = 4;
+    private static final int EMPTY = -1;
+
+    private final float cellSize;
+    private final float invCellSize;
+    private final Map<Shape, Integer> proxyIDs;
+    private final AABB scratchBounds;
+    private final int[] scratchCellRange;
+    private final PairBuffer candidates;
+
+    // Proxy data, indexed by proxy ID
+    private Shape[] shapes;
+    private int[] layers;
+    private int[] masks;
+    private int[] versions;
+    private float[] bounds;
+    private int[] cellRanges;
+    private int[] queryStamps;
+    private int[] freeIDs;
+    private int freeCount;
+    private int proxyCount;
+    private int queryStamp;
+
+    // The hash table that maps a cell key to a cell index. Open addressing with linear probing.
+    private long[] tableKeys;
+    private int[] tableValues;
+
+    // Cell data, indexed by cell index
+    private long[] cellKeys;
+    private int[][] cellItems;
+    private int[] cellSizes;
+    private int cellCount;
+    private int occupiedCells;
+
+    /**
+     * @param cellSize The width and height of each grid cell in WorldCoords. For the best performance, this should
+     *                 be around the size of a typical shape in the world.
+     * @throws IllegalArgumentException If cellSize is not greater than 0.
+     */
+    public CollisionWorld(float cellSize) throws IllegalArgumentException {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("The cell size must be greater than 0, not " + cellSize);
+        }
+
+        this.cellSize = cellSize;
+        this.invCellSize = 1 / cellSize;
+        this.proxyIDs = new IdentityHashMap<>();
+        this.scratchBounds = new AABB();
+        this.scratchCellRange = new int[4];
+        this.candidates = new PairBuffer();
+
+        this.shapes = new Shape[INITIAL_CAPACITY];
+        this.layers = new int[INITIAL_CAPACITY];
+        this.masks = new int[INITIAL_CAPACITY];
+        this.versions = new int[INITIAL_CAPACITY];
+        this.bounds = new float[INITIAL_CAPACITY * 4];
+        this.cellRanges = new int[INITIAL_CAPACITY * 4];
+        this.queryStamps = new int[INITIAL_CAPACITY];
+        this.freeIDs = new int[INITIAL_CAPACITY];
+
+        this.tableKeys = new long[INITIAL_CAPACITY];
+        this.tableValues = new int[INITIAL_CAPACITY];
+        Arrays.fill(this.tableValues, EMPTY);
+
+        this.cellKeys = new long[INITIAL_CAPACITY];
+        this.cellItems = new int[INITIAL_CAPACITY][];
+        this.cellSizes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a shape on the default layer that collides with every layer.
+     *
+     * @param shape The shape to add.
+     * @throws IllegalArgumentException If the shape was already added.
+     */
+    public void add(Shape shape) throws IllegalArgumentException {
+        this.add(shape, DEFAULT_LAYER, DEFAULT_MASK);
+    }
+
+    /**
+     * @param shape The shape to add.
+     * @param layer The layer bits of the shape.
+     * @param mask  The bits of the layers the shape collides with.
+     * @throws IllegalArgumentException If the shape was already added.
+     */
+    public void add(Shape shape, int layer, int mask) throws IllegalArgumentException {
+        if (this.proxyIDs.containsKey(shape)) {
+            throw new IllegalArgumentException("The shape has already been added to the collision world");
+        }
+
+        int id = this.allocateProxy();
+        this.proxyIDs.put(shape, id);
+
+        this.shapes[id] = shape;
+        this.layers[id] = layer;
+        this.masks[id] = mask;
+        this.versions[id] = shape.getTransform().getVersion();
+        this.queryStamps[id] = 0;
+
+        this.writeBounds(id);
+        this.writeCellRange(id, this.cellRanges, id * 4);
+        this.insertIntoCells(id);
+    }
+
+    /**
+     * @param shape The shape to remove.
+     * @return False if the shape was not in the world.
+     */
+    public boolean remove(Shape shape) {
+        Integer id = this.proxyIDs.remove(shape);
+
+        if (id == null) {
+            return false;
+        }
+
+        this.removeFromCells(id);
+        this.shapes[id] = null;
+        this.freeIDs[this.freeCount++] = id;
+
+        return true;
+    }
+
+    public boolean contains(Shape shape) {
+        return this.proxyIDs.containsKey(shape);
+    }
+
+    /**
+     * @return The number of shapes in the world.
+     */
+    public int size() {
+        return this.proxyIDs.size();
+    }
+
+    public float getCellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * @param shape The shape to change the layer of.
+     * @param layer The new layer bits.
+     * @throws IllegalArgumentException If the shape is not in the world.
+     */
+    public void setLayer(Shape shape, int layer) throws IllegalArgumentException {
+        this.layers[this.getProxyID(shape)] = layer;
+    }
+
+    public int getLayer(Shape shape) throws IllegalArgumentException {
+        return this.layers[this.getProxyID(shape)];
+    }
+
+    /**
+     * @param shape The shape to change the mask of.
+     * @param mask  The new bits of the layers the shape collides with.
+     * @throws IllegalArgumentException If the shape is not in the world.
+     */
+    public void setMask(Shape shape, int mask) throws IllegalArgumentException {
+        this.masks[this.getProxyID(shape)] = mask;
+    }
+
+    public int getMask(Shape shape) throws IllegalArgumentException {
+        return this.masks[this.getProxyID(shape)];
+    }
+
+    /**
+     * Re-buckets every shape whose Transform changed since the last update. Shapes that moved but still cover the
+     * same cells only have their bounds updated.
+     */
+    public void update() {
+        int[] newRange = this.scratchCellRange;
+
+        for (int id = 0; id < this.proxyCount; id++) {
+            Shape shape = this.shapes[id];
+
+            if (shape == null) {
+                continue;
+            }
+
+            int version = shape.getTransform().getVersion();
+
+            if (version == this.versions[id]) {
+                continue;
+            }
+
+            this.versions[id] = version;
+            this.writeBounds(id);
+            this.writeCellRange(id, newRange, 0);
+
+            int offset = id * 4;
+
+            if (newRange[0] == this.cellRanges[offset] && newRange[1] == this.cellRanges[offset + 1]
+                    && newRange[2] == this.cellRanges[offset + 2] && newRange[3] == this.cellRanges[offset + 3]) {
+                continue;
+            }
+
+            this.removeFromCells(id);
+            System.arraycopy(newRange, 0, this.cellRanges, offset, 4);
+            this.insertIntoCells(id);
+        }
+
+        // Empty cells are kept so shapes moving back and forth don't churn the hash table. If the world has wandered
+        // far enough that most cells are empty, rebuild the table.
+        if (this.cellCount > INITIAL_CAPACITY && this.occupiedCells * 4 < this.cellCount) {
+            this.rebuildCells();
+        }
+    }
+
+    /**
+     * Finds every pair of shapes whose bounds overlap and whose layers and masks are compatible. Each pair is only
+     * reported once. These pairs may not be colliding: use Shape.collides() on them for the exact test.
+     *
+     * @param out The buffer to add the pairs to. It is not cleared first.
+     */
+    public void findCandidatePairs(PairBuffer out) {
+        for (int cell = 0; cell < this.cellCount; cell++) {
+            int size = this.cellSizes[cell];
+
+            if (size < 2) {
+                continue;
+            }
+
+            int[] items = this.cellItems[cell];
+            long key = this.cellKeys[cell];
+            int cellX = (int) (key >> 32);
+            int cellY = (int) key;
+
+            for (int i = 0; i < size; i++) {
+                int a = items[i];
+
+                for (int j = i + 1; j < size; j++) {
+                    int b = items[j];
+
+                    if ((this.layers[a] & this.masks[b]) == 0 || (this.layers[b] & this.masks[a]) == 0) {
+                        continue;
+                    }
+
+                    // Shapes that share more than one cell are only reported from the first cell they share
+                    int firstSharedX = Math.max(this.cellRanges[a * 4], this.cellRanges[b * 4]);
+                    int firstSharedY = Math.max(this.cellRanges[a * 4 + 1], this.cellRanges[b * 4 + 1]);
+
+                    if (cellX != firstSharedX || cellY != firstSharedY) {
+                        continue;
+                    }
+
+                    if (this.boundsOverlap(a, b)) {
+                        out.add(this.shapes[a], this.shapes[b]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds every pair of shapes that collide according to Shape.collides().
+     *
+     * @param out The buffer to add the colliding pairs to. It is not cleared first.
+     */
+    public void findCollisions(PairBuffer out) {
+        this.candidates.clear();
+        this.findCandidatePairs(this.candidates);
+
+        for (int i = 0; i < this.candidates.size(); i++) {
+            Shape shape1 = this.candidates.getFirst(i);
+            Shape shape2 = this.candidates.getSecond(i);
+
+            if (Shape.collides(shape1, shape2)) {
+                out.add(shape1, shape2);
+            }
+        }
+
+        this.candidates.clear();
+    }
+
+    /**
+     * Finds every shape whose bounds overlap the region.
+     *
+     * @param region The region to query, in WorldCoords.
+     * @param out    The list to add the shapes to. It is not cleared first.
+     */
+    public void queryRegion(AABB region, List<Shape> out) {
+        this.queryRegion(region, DEFAULT_MASK, out);
+    }
+
+    /**
+     * Finds every shape whose bounds overlap the region and whose layer overlaps the mask.
+     *
+     * @param region The region to query, in WorldCoords.
+     * @param mask   The layer bits to include.
+     * @param out    The list to add the shapes to. It is not cleared first.
+     */
+    public void queryRegion(AABB region, int mask, List<Shape> out) {
+        int stamp = this.nextQueryStamp();
+
+        int minCellX = this.toCell(region.minX);
+        int minCellY = this.toCell(region.minY);
+        int maxCellX = this.toCell(region.maxX);
+        int maxCellY = this.toCell(region.maxY);
+
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                int cell = this.findCell(cellKey(cellX, cellY));
+
+                if (cell == EMPTY) {
+                    continue;
+                }
+
+                int[] items = this.cellItems[cell];
+
+                for (int i = 0; i < this.cellSizes[cell]; i++) {
+                    int id = items[i];
+
+                    if (this.queryStamps[id] == stamp || (this.layers[id] & mask) == 0) {
+                        continue;
+                    }
+
+                    this.queryStamps[id] = stamp;
+
+                    int offset = id * 4;
+                    if (AABB.intersects(
+                            this.bounds[offset], this.bounds[offset + 1], this.bounds[offset + 2], this.bounds[offset + 3],
+                            region.minX, region.minY, region.maxX, region.maxY)) {
+                        out.add(this.shapes[id]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds every shape whose bounds contain the point. Use Shape.collides(Shape, WorldCoords) on the results for
+     * the exact test.
+     *
+     * @param x   The x coordinate of the point, in WorldCoords.
+     * @param y   The y coordinate of the point, in WorldCoords.
+     * @param out The list to add the shapes to. It is not cleared first.
+     */
+    public void queryPoint(float x, float y, List<Shape> out) {
+        int cell = this.findCell(cellKey(this.toCell(x), this.toCell(y)));
+
+        if (cell == EMPTY) {
+            return;
+        }
+
+        int[] items = this.cellItems[cell];
+
+        for (int i = 0; i < this.cellSizes[cell]; i++) {
+            int offset = items[i] * 4;
+
+            if (x >= this.bounds[offset] && y >= this.bounds[offset + 1]
+                    && x <= this.bounds[offset + 2] && y <= this.bounds[offset + 3]) {
+                out.add(this.shapes[items[i]]);
+            }
+        }
+    }
+
+    private int getProxyID(Shape shape) throws IllegalArgumentException {
+        Integer id = this.proxyIDs.get(shape);
+
+        if (id == null) {
+            throw new IllegalArgumentException("The shape is not in the collision world");
+        }
+
+        return id;
+    }
+
+    private int allocateProxy() {
+        if (this.freeCount > 0) {
+            return this.freeIDs[--this.freeCount];
+        }
+
+        if (this.proxyCount == this.shapes.length) {
+            int capacity = this.shapes.length * 2;
+
+            this.shapes = Arrays.copyOf(this.shapes, capacity);
+            this.layers = Arrays.copyOf(this.layers, capacity);
+            this.masks = Arrays.copyOf(this.masks, capacity);
+            this.versions = Arrays.copyOf(this.versions, capacity);
+            this.bounds = Arrays.copyOf(this.bounds, capacity * 4);
+            this.cellRanges = Arrays.copyOf(this.cellRanges, capacity * 4);
+            this.queryStamps = Arrays.copyOf(this.queryStamps, capacity);
+            this.freeIDs = Arrays.copyOf(this.freeIDs, capacity);
+        }
+
+        return this.proxyCount++;
+    }
+
+    private int nextQueryStamp() {
+        this.queryStamp++;
+
+        // Reset the stamps when the counter wraps around so an old stamp is never mistaken for the current query
+        if (this.queryStamp == 0) {
+            Arrays.fill(this.queryStamps, 0);
+            this.queryStamp = 1;
+        }
+
+        return this.queryStamp;
+    }
+
+    private void writeBounds(int id) {
+        this.shapes[id].getWorldBounds(this.scratchBounds);
+
+        int offset = id * 4;
+        this.bounds[offset] = this.scratchBounds.minX;
+        this.bounds[offset + 1] = this.scratchBounds.minY;
+        this.bounds[offset + 2] = this.scratchBounds.maxX;
+        this.bounds[offset + 3] = this.scratchBounds.maxY;
+    }
+
+    private void writeCellRange(int id, int[] out, int outOffset) {
+        int offset = id * 4;
+
+        out[outOffset] = this.toCell(this.bounds[offset]);
+        out[outOffset + 1] = this.toCell(this.bounds[offset + 1]);
+        out[outOffset + 2] = this.toCell(this.bounds[offset + 2]);
+        out[outOffset + 3] = this.toCell(this.bounds[offset + 3]);
+    }
+
+    private boolean boundsOverlap(int a, int b) {
+        int offsetA = a * 4;
+        int offsetB = b * 4;
+
+        return AABB.intersects(
+                this.bounds[offsetA], this.bounds[offsetA + 1], this.bounds[offsetA + 2], this.bounds[offsetA + 3],
+                this.bounds[offsetB], this.bounds[offsetB + 1], this.bounds[offsetB + 2], this.bounds[offsetB + 3]
+        );
+    }
+
+    private int toCell(float coordinate) {
+        return (int) Math.floor(coordinate * this.invCellSize);
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        // The finalizer of MurmurHash3, so neighboring cells don't end up in neighboring slots
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+
+    private void insertIntoCells(int id) {
+        int offset = id * 4;
+
+        for (int cellX = this.cellRanges[offset]; cellX <= this.cellRanges[offset + 2]; cellX++) {
+            for (int cellY = this.cellRanges[offset + 1]; cellY <= this.cellRanges[offset + 3]; cellY++) {
+                int cell = this.findOrCreateCell(cellKey(cellX, cellY));
+                int size = this.cellSizes[cell];
+
+                if (size == this.cellItems[cell].length) {
+                    this.cellItems[cell] = Arrays.copyOf(this.cellItems[cell], size * 2);
+                }
+
+                if (size == 0) {
+                    this.occupiedCells++;
+                }
+
+                this.cellItems[cell][size] = id;
+                this.cellSizes[cell] = size + 1;
+            }
+        }
+    }
+
+    private void removeFromCells(int id) {
+        int offset = id * 4;
+
+        for (int cellX = this.cellRanges[offset]; cellX <= this.cellRanges[offset + 2]; cellX++) {
+            for (int cellY = this.cellRanges[offset + 1]; cellY <= this.cellRanges[offset + 3]; cellY++) {
+                int cell = this.findCell(cellKey(cellX, cellY));
+
+                if (cell == EMPTY) {
+                    continue;
+                }
+
+                int[] items = this.cellItems[cell];
+                int size = this.cellSizes[cell];
+
+                for (int i = 0; i < size; i++) {
+                    if (items[i] == id) {
+                        // Swap with the last item since the order within a cell does not matter
+                        items[i] = items[size - 1];
+                        this.cellSizes[cell] = size - 1;
+
+                        if (size == 1) {
+                            this.occupiedCells--;
+                        }
+
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private int findCell(long key) {
+        int mask = this.tableKeys.length - 1;
+
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int cell = this.tableValues[slot];
+
+            if (cell == EMPTY || this.tableKeys[slot] == key) {
+                return cell;
+            }
+        }
+    }
+
+    private int findOrCreateCell(long key) {
+        int mask = this.tableKeys.length - 1;
+        int slot = hash(key) & mask;
+
+        for (; this.tableValues[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (this.tableKeys[slot] == key) {
+                return this.tableValues[slot];
+            }
+        }
+
+        if (this.cellCount == this.cellKeys.length) {
+            int capacity = this.cellKeys.length * 2;
+
+            this.cellKeys = Arrays.copyOf(this.cellKeys, capacity);
+            this.cellItems = Arrays.copyOf(this.cellItems, capacity);
+            this.cellSizes = Arrays.copyOf(this.cellSizes, capacity);
+        }
+
+        int cell = this.cellCount++;
+        this.cellKeys[cell] = key;
+        this.cellItems[cell] = new int[INITIAL_CELL_CAPACITY];
+        this.cellSizes[cell] = 0;
+
+        this.tableKeys[slot] = key;
+        this.tableValues[slot] = cell;
+
+        // Keep the load factor at or below 0.5
+        if (this.cellCount * 2 > this.tableKeys.length) {
+            this.resizeTable(this.tableKeys.length * 2);
+        }
+
+        return cell;
+    }
+
+    private void resizeTable(int capacity) {
+        this.tableKeys = new long[capacity];
+        this.tableValues = new int[capacity];
+        Arrays.fill(this.tableValues, EMPTY);
+
+        int mask = capacity - 1;
+
+        for (int cell = 0; cell < this.cellCount; cell++) {
+            int slot = hash(this.cellKeys[cell]) & mask;
+
+            while (this.tableValues[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+
+            this.tableKeys[slot] = this.cellKeys[cell];
+            this.tableValues[slot] = cell;
+        }
+    }
+
+    /**
+     * Drops every empty cell and rebuilds the hash table.
+     */
+    private void rebuildCells() {
+        int kept = 0;
+
+        for (int cell = 0; cell < this.cellCount; cell++) {
+            if (this.cellSizes[cell] == 0) {
+                continue;
+            }
+
+            this.cellKeys[kept] = this.cellKeys[cell];
+            this.cellItems[kept] = this.cellItems[cell];
+            this.cellSizes[kept] = this.cellSizes[cell];
+            kept++;
+        }
+
+        Arrays.fill(this.cellItems, kept, this.cellCount, null);
+        this.cellCount = kept;
+
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < kept * 2) {
+            capacity *= 2;
+        }
+
+        this.resizeTable(capacity);
+    }
+}
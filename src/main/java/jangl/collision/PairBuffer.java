@@ -0,0 +1,109 @@
+package jangl.collision;
+
+import jangl.shapes.Shape;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of shape pairs. Broad phases write their candidate pairs into a PairBuffer, and the buffer can be
+ * cleared and reused every frame so the backing arrays are only allocated when more room is needed.
+ */
+public class PairBuffer {
+    private Shape[] first;
+    private Shape[] second;
+    private int size;
+
+    public PairBuffer() {
+        this(64);
+    }
+
+    /**
+     * @param initialCapacity The number of pairs the buffer can hold before it needs to grow.
+     */
+    public PairBuffer(int initialCapacity) {
+        this.first = new Shape[Math.max(initialCapacity, 1)];
+        this.second = new Shape[Math.max(initialCapacity, 1)];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a pair to the end of the buffer.
+     *
+     * @param shape1 The first shape of the pair.
+     * @param shape2 The second shape of the pair.
+     */
+    public void add(Shape shape1, Shape shape2) {
+        if (this.size == this.first.length) {
+            int newCapacity = this.first.length * 2;
+            this.first = Arrays.copyOf(this.first, newCapacity);
+            this.second = Arrays.copyOf(this.second, newCapacity);
+        }
+
+        this.first[this.size] = shape1;
+        this.second[this.size] = shape2;
+        this.size++;
+    }
+
+    /**
+     * Adds all pairs from another buffer to the end of this buffer.
+     *
+     * @param other The buffer to copy the pairs from.
+     */
+    public void addAll(PairBuffer other) {
+        int newSize = this.size + other.size;
+
+        if (newSize > this.first.length) {
+            int newCapacity = Math.max(newSize, this.first.length * 2);
+            this.first = Arrays.copyOf(this.first, newCapacity);
+            this.second = Arrays.copyOf(this.second, newCapacity);
+        }
+
+        System.arraycopy(other.first, 0, this.first, this.size, other.size);
+        System.arraycopy(other.second, 0, this.second, this.size, other.size);
+        this.size = newSize;
+    }
+
+    /**
+     * @param index The index of the pair.
+     * @return The first shape of the pair.
+     * @throws IndexOutOfBoundsException If the index is not within [0, size())
+     */
+    public Shape getFirst(int index) throws IndexOutOfBoundsException {
+        return this.first[checkIndex(index)];
+    }
+
+    /**
+     * @param index The index of the pair.
+     * @return The second shape of the pair.
+     * @throws IndexOutOfBoundsException If the index is not within [0, size())
+     */
+    public Shape getSecond(int index) throws IndexOutOfBoundsException {
+        return this.second[checkIndex(index)];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all pairs while keeping the backing arrays, so the buffer can be reused without allocating.
+     */
+    public void clear() {
+        // Release the references so removed shapes can be garbage collected
+        Arrays.fill(this.first, 0, this.size, null);
+        Arrays.fill(this.second, 0, this.size, null);
+        this.size = 0;
+    }
+
+    private int checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + this.size);
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,231 @@
+package jangl.collision;
+
+import jangl.shapes.CollisionKernel;
+import jangl.shapes.SeparatingAxisCache;
+import jangl.shapes.Shape;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the exact collision test on candidate pairs from a broad phase across the threads of a ForkJoinPool.
+ * <br>
+ * Every pair belongs to a partition picked from the identities of its two shapes, so a pair lands in the same
+ * partition every frame. Each partition owns a CollisionKernel and is tested by one worker at a time, so workers never
+ * share mutable state, and the separating axis a kernel cached for a pair is found again by the same kernel on the
+ * next frame no matter which worker runs it. The results are then collected in order, so they are in the same order
+ * as a single threaded pass.
+ * <br>
+ * The cached world-space data of every shape is updated before the pass starts, and shapes are only read during the
+ * pass, so they must not be moved, rotated, or scaled until it finishes.
+ */
+public class ParallelCollider {
+    /**
+     * Fewer candidate pairs than this are not worth handing to the pool and are tested on the calling thread.
+     */
+    public static final int MIN_PARALLEL_PAIRS = 256;
+
+    /**
+     * The number of partitions per worker by default. More partitions than workers lets the pool balance partitions
+     * that happen to hold more or harder pairs than the others.
+     */
+    private static final int PARTITIONS_PER_WORKER = 4;
+
+    private final ForkJoinPool pool;
+    private final CollisionKernel[] kernels;
+
+    /*
+     * Reused between calls. The indices of the candidates in each partition are stored one partition after another
+     * in pairOrder, and the partition p holds pairOrder[partitionStarts[p]] to pairOrder[partitionStarts[p + 1]].
+     */
+    private int[] pairPartitions;
+    private int[] pairOrder;
+    private final int[] partitionStarts;
+    private boolean[] collided;
+
+    /**
+     * Uses the common ForkJoinPool.
+     */
+    public ParallelCollider() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool The pool to run the tests on.
+     */
+    public ParallelCollider(ForkJoinPool pool) {
+        this(pool, pool.getParallelism() * PARTITIONS_PER_WORKER);
+    }
+
+    /**
+     * @param pool           The pool to run the tests on.
+     * @param partitionCount The number of partitions to split the pairs into. Each partition is one task.
+     * @throws IllegalArgumentException If the partition count is less than 1.
+     */
+    public ParallelCollider(ForkJoinPool pool, int partitionCount) throws IllegalArgumentException {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("The partition count must be at least 1, not " + partitionCount);
+        }
+
+        this.pool = pool;
+        this.kernels = new CollisionKernel[partitionCount];
+
+        for (int i = 0; i < partitionCount; i++) {
+            this.kernels[i] = new CollisionKernel();
+        }
+
+        this.pairPartitions = new int[0];
+        this.pairOrder = new int[0];
+        this.partitionStarts = new int[partitionCount + 1];
+        this.collided = new boolean[0];
+    }
+
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    public int getPartitionCount() {
+        return this.kernels.length;
+    }
+
+    /**
+     * @param partition The index of the partition, from 0 to getPartitionCount() - 1.
+     * @return The cache of separating axes used by the partition, for reading its hit rate.
+     */
+    public SeparatingAxisCache getAxisCache(int partition) {
+        return this.kernels[partition].getAxisCache();
+    }
+
+    /**
+     * Tests every candidate pair with the same check as Shape.collides(Shape, Shape) and adds the colliding pairs to
+     * out, in the order they appear in the candidates.
+     *
+     * @param candidates The pairs to test, usually from CollisionWorld or AABBTree.findCandidatePairs().
+     * @param out        The buffer to add the colliding pairs to. It is not cleared first.
+     */
+    public void findCollisions(PairBuffer candidates, PairBuffer out) {
+        int pairCount = candidates.size();
+
+        // Not worth handing to the pool, but still uses the partitions' kernels so their cached axes stay warm
+        if (pairCount < MIN_PARALLEL_PAIRS) {
+            for (int i = 0; i < pairCount; i++) {
+                Shape shape1 = candidates.getFirst(i);
+                Shape shape2 = candidates.getSecond(i);
+
+                if (this.kernels[this.partitionOf(shape1, shape2)].collides(shape1, shape2)) {
+                    out.add(shape1, shape2);
+                }
+            }
+
+            return;
+        }
+
+        if (this.collided.length < pairCount) {
+            this.pairPartitions = new int[pairCount];
+            this.pairOrder = new int[pairCount];
+            this.collided = new boolean[pairCount];
+        }
+
+        // Bring the cached world-space data of every shape up to date before forking, so the workers only read it
+        for (int i = 0; i < pairCount; i++) {
+            CollisionKernel.prepare(candidates.getFirst(i));
+            CollisionKernel.prepare(candidates.getSecond(i));
+        }
+
+        this.sortByPartition(candidates);
+        this.pool.invoke(new CollisionTask(candidates, 0, this.kernels.length));
+
+        for (int i = 0; i < pairCount; i++) {
+            if (this.collided[i]) {
+                out.add(candidates.getFirst(i), candidates.getSecond(i));
+            }
+        }
+    }
+
+    /**
+     * Fills pairOrder and partitionStarts with a counting sort of the candidates by partition. The candidates keep
+     * their order within each partition.
+     */
+    private void sortByPartition(PairBuffer candidates) {
+        int pairCount = candidates.size();
+        int[] starts = this.partitionStarts;
+
+        Arrays.fill(starts, 0);
+
+        for (int i = 0; i < pairCount; i++) {
+            int partition = this.partitionOf(candidates.getFirst(i), candidates.getSecond(i));
+
+            this.pairPartitions[i] = partition;
+            starts[partition + 1]++;
+        }
+
+        for (int partition = 0; partition < this.kernels.length; partition++) {
+            starts[partition + 1] += starts[partition];
+        }
+
+        // Writing through the starts moves each one to the end of its partition, which is the next one's start
+        for (int i = 0; i < pairCount; i++) {
+            this.pairOrder[starts[this.pairPartitions[i]]++] = i;
+        }
+
+        System.arraycopy(starts, 0, starts, 1, this.kernels.length);
+        starts[0] = 0;
+    }
+
+    /**
+     * @return The partition of a pair, which is the same for the pair in either order.
+     */
+    private int partitionOf(Shape shape1, Shape shape2) {
+        int hash = (System.identityHashCode(shape1) ^ System.identityHashCode(shape2)) * 0x9e3779b9;
+        return (hash >>> 1) % this.kernels.length;
+    }
+
+    private void testPartition(PairBuffer candidates, int partition) {
+        CollisionKernel kernel = this.kernels[partition];
+
+        for (int i = this.partitionStarts[partition]; i < this.partitionStarts[partition + 1]; i++) {
+            int pair = this.pairOrder[i];
+
+            // Each pair is in one partition, so every worker writes to different elements
+            this.collided[pair] = kernel.collides(candidates.getFirst(pair), candidates.getSecond(pair));
+        }
+    }
+
+    /**
+     * Splits a range of partitions in half until there is one partition left, then tests it.
+     */
+    private class CollisionTask extends RecursiveAction {
+        private final PairBuffer candidates;
+        private final int firstPartition;
+        private final int lastPartition;
+
+        /**
+         * @param candidates     The pairs to test.
+         * @param firstPartition The first partition to test, inclusive.
+         * @param lastPartition  The last partition to test, exclusive.
+         */
+        private CollisionTask(PairBuffer candidates, int firstPartition, int lastPartition) {
+            this.candidates = candidates;
+            this.firstPartition = firstPartition;
+            this.lastPartition = lastPartition;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.lastPartition - this.firstPartition > 1) {
+                int middle = (this.firstPartition + this.lastPartition) >>> 1;
+
+                invokeAll(
+                        new CollisionTask(this.candidates, this.firstPartition, middle),
+                        new CollisionTask(this.candidates, middle, this.lastPartition)
+                );
+
+                return;
+            }
+
+            // The shapes were prepared before forking, so the kernel only reads them
+            ParallelCollider.this.testPartition(this.candidates, this.firstPartition);
+        }
+    }
+}
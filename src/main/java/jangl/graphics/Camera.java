@@ -3,8 +3,11 @@ package jangl.graphics;
 import jangl.coords.WorldCoords;
 import jangl.graphics.shaders.UBO;
 import jangl.io.Window;
+import jangl.util.AABB;
 import jangl.util.ArrayUtils;
-import org.joml.*;
+import org.joml.Matrix3x2f;
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
 
 import static org.lwjgl.opengl.GL41.*;
 
@@ -22,6 +25,13 @@ public class Camera {
     private static UBO ubo;
     private static WorldCoords zoomOffset;
 
+    /**
+     * The part of the world that is on the screen, with and without the camera applied. These are recalculated once
+     * per frame in update() and whenever the camera changes, so culling a shape is only a box test.
+     */
+    private static final AABB visibleBounds = new AABB();
+    private static final AABB screenBounds = new AABB();
+
     private static boolean initialized = false;
 
     private Camera() {
@@ -51,6 +61,8 @@ public class Camera {
         System.arraycopy(ArrayUtils.matrixToArray(projectionMatrix), 0, combinedMatrix, 16, 16);
         ubo = new UBO(combinedMatrix, BINDING_POINT);
 
+        updateVisibleBounds();
+
         initialized = true;
     }
 
@@ -66,21 +78,21 @@ public class Camera {
      * @return The adjusted world coordinates.
      */
     public static WorldCoords adjustForCamera(WorldCoords worldCoords) {
-        Vector4f worldCoordsVec = new Vector4f(worldCoords.x, worldCoords.y, 0, 1);
-        Matrix4f cameraMatrix = genCameraMatrix();
-        worldCoordsVec.mul(cameraMatrix.invert());
-
-        WorldCoords pos = new WorldCoords(worldCoordsVec.x, worldCoordsVec.y);
-//        WorldCoords zoomOffsetNonNull = getZoomOffsetNonNull();
-//        pos.sub(zoomOffsetNonNull.x * (1 - zoom) / zoom, zoomOffsetNonNull.y * (1 - zoom) / zoom);
+        Vector2f pos = genCameraMatrix2D(new Matrix3x2f())
+                .invert()
+                .transformPosition(new Vector2f(worldCoords.x, worldCoords.y));
 
-        return pos;
+        return new WorldCoords(pos.x, pos.y);
     }
 
     /**
-     * Updates the projection matrix if the screen size has changed, to not distort the image.
+     * Updates the projection matrix if the screen size has changed, to not distort the image, and recalculates the
+     * visible part of the world.
      */
     public static void update() {
+        // The default zoom offset depends on the screen size, so the bounds are recalculated every frame
+        updateVisibleBounds();
+
         if (WorldCoords.getTopRight().x == projMatrixRight) {
             return;
         }
@@ -90,6 +102,81 @@ public class Camera {
         projMatrixRight = WorldCoords.getTopRight().x;
     }
 
+    /**
+     * @param out The box to write the visible part of the world to.
+     * @return The smallest axis-aligned box around the part of the world on the screen, with the camera's position,
+     * zoom, and rotation applied. Written to out, to allow for method chaining.
+     */
+    public static AABB getVisibleBounds(AABB out) {
+        return out.set(visibleBounds);
+    }
+
+    /**
+     * The same as getVisibleBounds(), for shapes drawn without the camera.
+     *
+     * @param out The box to write the screen to.
+     * @return The screen in world coordinates, written to out, to allow for method chaining.
+     */
+    public static AABB getScreenBounds(AABB out) {
+        return out.set(screenBounds);
+    }
+
+    /**
+     * Checks if a box in the world may be on the screen when the camera is applied. Used to cull shapes without
+     * building the camera matrix for every shape.
+     *
+     * @return If the box overlaps the visible part of the world, inclusive of the edges.
+     */
+    public static boolean isVisible(float minX, float minY, float maxX, float maxY) {
+        return AABB.intersects(
+                visibleBounds.minX, visibleBounds.minY, visibleBounds.maxX, visibleBounds.maxY,
+                minX, minY, maxX, maxY
+        );
+    }
+
+    /**
+     * The same as isVisible(), for shapes drawn without the camera.
+     *
+     * @return If the box overlaps the screen, inclusive of the edges.
+     */
+    public static boolean isOnScreen(float minX, float minY, float maxX, float maxY) {
+        return AABB.intersects(
+                screenBounds.minX, screenBounds.minY, screenBounds.maxX, screenBounds.maxY,
+                minX, minY, maxX, maxY
+        );
+    }
+
+    /**
+     * Recalculates visibleBounds and screenBounds from the screen size and the camera.
+     */
+    private static void updateVisibleBounds() {
+        float right = (float) Window.getScreenWidth() / Window.getScreenHeight();
+        screenBounds.set(0, 0, right, 1);
+
+        Matrix3x2f inverse = genCameraMatrix2D(new Matrix3x2f()).invert();
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+
+        // The camera can rotate the view, so the box has to contain all 4 corners of the screen
+        for (int corner = 0; corner < 4; corner++) {
+            float screenX = (corner & 1) == 0 ? 0 : right;
+            float screenY = (corner & 2) == 0 ? 0 : 1;
+
+            float x = inverse.m00() * screenX + inverse.m10() * screenY + inverse.m20();
+            float y = inverse.m01() * screenX + inverse.m11() * screenY + inverse.m21();
+
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+
+        visibleBounds.set(minX, minY, maxX, maxY);
+    }
+
     /**
      * When zooming in when the offset is set to 0, 0, the zoom will be centered on the bottom left. By default, the
      * zoom offset is set to WorldCoords.getMiddle(), so the zoom will be centered in the middle of the screen.
@@ -135,16 +222,43 @@ public class Camera {
      * @return The camera matrix.
      */
     private static Matrix4f genCameraMatrix() {
+        Matrix3x2f cameraMatrix = genCameraMatrix2D(new Matrix3x2f());
+
+        // The UBO stores a mat4 so existing shaders that read cameraMatrix keep working
+        return new Matrix4f(
+                cameraMatrix.m00(), cameraMatrix.m01(), 0, 0,
+                cameraMatrix.m10(), cameraMatrix.m11(), 0, 0,
+                0, 0, 1, 0,
+                cameraMatrix.m20(), cameraMatrix.m21(), 0, 1
+        );
+    }
+
+    /**
+     * Generates the camera matrix as a 2D affine matrix, since the camera only ever translates, zooms, and rotates
+     * in the XY plane.
+     *
+     * @param dest The matrix to write to.
+     * @return dest, to allow for method chaining.
+     */
+    private static Matrix3x2f genCameraMatrix2D(Matrix3x2f dest) {
         // A local variable of zoom offset that avoids the value being null
         WorldCoords zoomOffsetNonNull = getZoomOffsetNonNull();
+        WorldCoords center = Camera.getCenter();
 
-        return new Matrix4f().identity()
-                .translate(new Vector3f(cameraPos.toVector2f(), 0).mul(-1).mul(zoom, zoom, 1))
+        return dest.translation(-cameraPos.x * zoom, -cameraPos.y * zoom)
                 // Translate to the center of the screen, zoom, then translate back, so the zoom is centered on the screen
-                .translate(new Vector3f(zoomOffsetNonNull.toVector2f(), 0))
-                .scale(zoom, zoom, 1)
-                .translate(new Vector3f(zoomOffsetNonNull.toVector2f(), 0).mul(-1))
-                .rotateAround(new Quaternionf().rotateZ(rotation), Camera.getCenter().x, Camera.getCenter().y, 0);
+                .translate(zoomOffsetNonNull.x, zoomOffsetNonNull.y)
+                .scale(zoom, zoom)
+                .translate(-zoomOffsetNonNull.x, -zoomOffsetNonNull.y)
+                .rotateAbout(rotation, center.x, center.y);
+    }
+
+    /**
+     * Uploads the new camera matrix and recalculates the visible part of the world after the camera changes.
+     */
+    private static void cameraChanged() {
+        resetCameraMatrixUBO(genCameraMatrix());
+        updateVisibleBounds();
     }
 
     /**
@@ -192,7 +306,7 @@ public class Camera {
     public static void setCameraPos(WorldCoords bottomLeft) {
         cameraPos = new WorldCoords(bottomLeft);
 
-        resetCameraMatrixUBO(genCameraMatrix());
+        cameraChanged();
     }
 
     /**
@@ -210,7 +324,7 @@ public class Camera {
         WorldCoords screenCenter = WorldCoords.getMiddle();
         setCameraPos(new WorldCoords(center.x - screenCenter.x, center.y - screenCenter.y));
 
-        resetCameraMatrixUBO(genCameraMatrix());
+        cameraChanged();
     }
 
     /**
@@ -236,7 +350,7 @@ public class Camera {
      */
     public static void setRotation(float radians) {
         rotation = radians;
-        resetCameraMatrixUBO(genCameraMatrix());
+        cameraChanged();
     }
 
     /**
@@ -245,7 +359,7 @@ public class Camera {
      */
     public static void rotate(float radians) {
         rotation += radians;
-        resetCameraMatrixUBO(genCameraMatrix());
+        cameraChanged();
     }
 
     /**
@@ -254,7 +368,7 @@ public class Camera {
      */
     public static void setZoom(float newZoom) {
         zoom = newZoom;
-        resetCameraMatrixUBO(genCameraMatrix());
+        cameraChanged();
     }
 
     /**
@@ -0,0 +1,8 @@
+package jangl.graphics;
+
+/**
+ * Anything that can be drawn with the bound shader program and bindables, such as a shape, batch, or text.
+ */
+public interface Drawable {
+    void draw();
+}
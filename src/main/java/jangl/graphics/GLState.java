@@ -0,0 +1,214 @@
+package jangl.graphics;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * Remembers the OpenGL state that Jangl changes while drawing: the current shader program, vertex array, 2D texture of
+ * each texture unit, framebuffer, and blending. Changing the state to what it already is doesn't call OpenGL, which
+ * avoids most of the driver overhead of drawing many objects that share a shader, texture, or model.
+ * <br>
+ * Unbinding an object doesn't reset the OpenGL binding to 0, since Jangl always binds what it needs before drawing.
+ * This way, binding the same object again doesn't call OpenGL either.
+ * <br>
+ * Every state change in Jangl goes through this class. If you change the same state with OpenGL directly, call
+ * invalidate() afterwards so the next change is always passed to OpenGL.
+ */
+public class GLState {
+    /**
+     * The value stored for state that is unknown, so the next change always calls OpenGL.
+     */
+    private static final int UNKNOWN = -1;
+    private static final int TEXTURE_UNITS = 32;
+
+    private static int program = UNKNOWN;
+    private static int vertexArray = UNKNOWN;
+    private static int activeTextureUnit = UNKNOWN;
+    private static final int[] textures = new int[TEXTURE_UNITS];
+    private static int framebuffer = UNKNOWN;
+    private static int blendEnabled = UNKNOWN;
+    private static int blendSourceFactor = UNKNOWN;
+    private static int blendDestinationFactor = UNKNOWN;
+
+    private static long issuedChanges;
+    private static long skippedChanges;
+
+    static {
+        Arrays.fill(textures, UNKNOWN);
+    }
+
+    private GLState() {
+
+    }
+
+    /**
+     * Forgets all the state, so the next change of each state calls OpenGL. Call this after changing the state with
+     * OpenGL directly.
+     */
+    public static void invalidate() {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        activeTextureUnit = UNKNOWN;
+        Arrays.fill(textures, UNKNOWN);
+        framebuffer = UNKNOWN;
+        blendEnabled = UNKNOWN;
+        blendSourceFactor = UNKNOWN;
+        blendDestinationFactor = UNKNOWN;
+    }
+
+    /**
+     * @param programID The ID of the shader program to use.
+     */
+    public static void useProgram(int programID) {
+        if (isCurrent(program == programID)) {
+            return;
+        }
+
+        glUseProgram(programID);
+        program = programID;
+    }
+
+    /**
+     * @param vao The ID of the vertex array to bind.
+     */
+    public static void bindVertexArray(int vao) {
+        if (isCurrent(vertexArray == vao)) {
+            return;
+        }
+
+        glBindVertexArray(vao);
+        vertexArray = vao;
+    }
+
+    /**
+     * Binds a 2D texture to a texture unit. The unit becomes the active texture unit, so texture parameters can be set
+     * right after this is called.
+     *
+     * @param unit      The texture unit, starting at 0 for GL_TEXTURE0.
+     * @param textureID The ID of the texture to bind.
+     */
+    public static void bindTexture(int unit, int textureID) {
+        if (unit != activeTextureUnit) {
+            glActiveTexture(GL_TEXTURE0 + unit);
+            activeTextureUnit = unit;
+            issuedChanges++;
+        }
+
+        if (isCurrent(textures[unit] == textureID)) {
+            return;
+        }
+
+        glBindTexture(GL_TEXTURE_2D, textureID);
+        textures[unit] = textureID;
+    }
+
+    /**
+     * @param framebufferID The ID of the framebuffer to bind to GL_FRAMEBUFFER, or 0 for the window.
+     */
+    public static void bindFramebuffer(int framebufferID) {
+        if (isCurrent(framebuffer == framebufferID)) {
+            return;
+        }
+
+        glBindFramebuffer(GL_FRAMEBUFFER, framebufferID);
+        framebuffer = framebufferID;
+    }
+
+    public static void setBlendEnabled(boolean enabled) {
+        int value = enabled ? 1 : 0;
+
+        if (isCurrent(blendEnabled == value)) {
+            return;
+        }
+
+        if (enabled) {
+            glEnable(GL_BLEND);
+        } else {
+            glDisable(GL_BLEND);
+        }
+
+        blendEnabled = value;
+    }
+
+    public static void setBlendFunc(int sourceFactor, int destinationFactor) {
+        if (isCurrent(blendSourceFactor == sourceFactor && blendDestinationFactor == destinationFactor)) {
+            return;
+        }
+
+        glBlendFunc(sourceFactor, destinationFactor);
+        blendSourceFactor = sourceFactor;
+        blendDestinationFactor = destinationFactor;
+    }
+
+    /*
+     * Deleting an object that is bound resets its binding to 0 in OpenGL. Its ID can then be reused by a new object,
+     * so the state has to be updated to match.
+     */
+
+    public static void deleteProgram(int programID) {
+        if (program == programID) {
+            useProgram(0);
+        }
+
+        glDeleteProgram(programID);
+    }
+
+    public static void deleteVertexArray(int vao) {
+        glDeleteVertexArrays(vao);
+
+        if (vertexArray == vao) {
+            vertexArray = 0;
+        }
+    }
+
+    public static void deleteTexture(int textureID) {
+        glDeleteTextures(textureID);
+
+        for (int unit = 0; unit < TEXTURE_UNITS; unit++) {
+            if (textures[unit] == textureID) {
+                textures[unit] = 0;
+            }
+        }
+    }
+
+    public static void deleteFramebuffer(int framebufferID) {
+        glDeleteFramebuffers(framebufferID);
+
+        if (framebuffer == framebufferID) {
+            framebuffer = 0;
+        }
+    }
+
+    /**
+     * @return The number of state changes that were passed to OpenGL.
+     */
+    public static long getIssuedChanges() {
+        return issuedChanges;
+    }
+
+    /**
+     * @return The number of state changes that were skipped because OpenGL already had that state.
+     */
+    public static long getSkippedChanges() {
+        return skippedChanges;
+    }
+
+    public static void resetCounters() {
+        issuedChanges = 0;
+        skippedChanges = 0;
+    }
+
+    /**
+     * Counts a state change as skipped or issued.
+     */
+    private static boolean isCurrent(boolean current) {
+        if (current) {
+            skippedChanges++;
+        } else {
+            issuedChanges++;
+        }
+
+        return current;
+    }
+}
@@ -0,0 +1,394 @@
+package jangl.graphics;
+
+import jangl.graphics.shaders.ShaderProgram;
+import jangl.graphics.textures.Texture;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Records draws during a frame, then draws them in an order that changes the shader program and texture as few times
+ * as possible. Drawing directly, in the order the code happens to run, often switches back and forth between the same
+ * few textures:
+ * <pre>
+ * queue.submit(player, playerTexture, 1, 0);
+ * queue.submit(tree, treeTexture, 1, 0);
+ * ...
+ * queue.flush();
+ * </pre>
+ * Each draw is packed into a 64-bit sort key, which is sorted with a radix sort:
+ * <pre>
+ * bits 56-63   layer
+ * bit  55      transparent
+ * opaque:      program (12 bits), texture (12 bits), depth (31 bits)
+ * transparent: depth (31 bits), program (12 bits), texture (12 bits)
+ * </pre>
+ * Layers are drawn from lowest to highest. Within a layer, opaque draws come first, grouped by shader program and
+ * texture, followed by transparent draws from the furthest to the nearest. A larger depth is further away. Jangl
+ * doesn't use a depth buffer, so opaque draws in the same layer that overlap may be drawn in any order. Put them in
+ * different layers or mark them as transparent if their order matters. Draws with the same key keep the order they
+ * were submitted in.
+ */
+public class RenderQueue {
+    private static final int LAYER_SHIFT = 56;
+    private static final int TRANSPARENT_SHIFT = 55;
+    private static final int MAX_LAYER = 0xFF;
+
+    private static final int STATE_BITS = 12;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    private static final long DEPTH_MASK = (1L << 31) - 1;
+
+    private static final int OPAQUE_PROGRAM_SHIFT = 43;
+    private static final int OPAQUE_TEXTURE_SHIFT = 31;
+    private static final int TRANSPARENT_DEPTH_SHIFT = 24;
+    private static final int TRANSPARENT_PROGRAM_SHIFT = 12;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private Drawable[] drawables;
+    private ShaderProgram[] programs;
+    private Bindable[] bindables;
+
+    /**
+     * The ID of the shader program and texture each draw uses, to count state changes. 0 means none.
+     */
+    private int[] programIDs;
+    private int[] bindableIDs;
+
+    private long[] keys;
+    private int[] order;
+    private long[] keyScratch;
+    private int[] orderScratch;
+    private final int[] counts;
+
+    private int size;
+
+    /**
+     * Small IDs for the shader programs and bindables used this frame, in the order they were first submitted.
+     */
+    private final Map<Object, Integer> stateIDs;
+
+    private int stateChangesBeforeSort;
+    private int stateChangesAfterSort;
+
+    public RenderQueue() {
+        this.drawables = new Drawable[INITIAL_CAPACITY];
+        this.programs = new ShaderProgram[INITIAL_CAPACITY];
+        this.bindables = new Bindable[INITIAL_CAPACITY];
+        this.programIDs = new int[INITIAL_CAPACITY];
+        this.bindableIDs = new int[INITIAL_CAPACITY];
+        this.keys = new long[INITIAL_CAPACITY];
+        this.order = new int[INITIAL_CAPACITY];
+        this.keyScratch = new long[INITIAL_CAPACITY];
+        this.orderScratch = new int[INITIAL_CAPACITY];
+        this.counts = new int[RADIX];
+        this.stateIDs = new IdentityHashMap<>();
+    }
+
+    /**
+     * Submits an opaque draw without a bindable, at a depth of 0.
+     *
+     * @param drawable The object to draw.
+     * @param layer    The layer, from 0 to 255. Higher layers are drawn on top of lower layers.
+     */
+    public void submit(Drawable drawable, int layer) {
+        this.submit(drawable, null, null, layer, 0, false);
+    }
+
+    /**
+     * Submits an opaque draw.
+     *
+     * @param drawable The object to draw.
+     * @param bindable The object to bind while drawing, usually a texture. Can be null.
+     * @param layer    The layer, from 0 to 255. Higher layers are drawn on top of lower layers.
+     * @param depth    The depth within the layer. Larger depths are further away.
+     */
+    public void submit(Drawable drawable, Bindable bindable, int layer, float depth) {
+        this.submit(drawable, null, bindable, layer, depth, false);
+    }
+
+    /**
+     * Submits a draw.
+     *
+     * @param drawable    The object to draw.
+     * @param program     The shader program to draw with. If null, the program that is bound right now is used, or
+     *                    the default program of the drawable if none is bound.
+     * @param bindable    The object to bind while drawing, usually a texture. Can be null.
+     * @param layer       The layer, from 0 to 255. Higher layers are drawn on top of lower layers.
+     * @param depth       The depth within the layer. Larger depths are further away.
+     * @param transparent True if the draw has to be drawn after everything behind it in the same layer.
+     * @throws IllegalArgumentException Throws if the layer is not between 0 and 255.
+     */
+    public void submit(Drawable drawable, ShaderProgram program, Bindable bindable, int layer, float depth,
+                       boolean transparent) throws IllegalArgumentException {
+        if (layer < 0 || layer > MAX_LAYER) {
+            throw new IllegalArgumentException("The layer must be between 0 and " + MAX_LAYER + ", got " + layer);
+        }
+
+        if (this.size == this.keys.length) {
+            this.grow();
+        }
+
+        if (program == null) {
+            program = ShaderProgram.getBoundProgram();
+        }
+
+        // A texture binds its own shader program unless it is told not to
+        ShaderProgram usedProgram = program;
+        if (bindable instanceof Texture texture && texture.isUsingDefaultShader()) {
+            usedProgram = texture.getShaderProgram();
+        }
+
+        int programID = this.getStateID(usedProgram);
+        int bindableID = this.getStateID(bindable);
+
+        int index = this.size++;
+        this.drawables[index] = drawable;
+        this.programs[index] = program;
+        this.bindables[index] = bindable;
+        this.programIDs[index] = programID;
+        this.bindableIDs[index] = bindableID;
+        this.keys[index] = createKey(layer, transparent, programID, bindableID, depth);
+    }
+
+    private static long createKey(int layer, boolean transparent, int programID, int bindableID, float depth) {
+        // IDs past the last one that fits in the key share it. Those draws are still drawn in submission order.
+        long program = Math.min(programID, STATE_MASK);
+        long bindable = Math.min(bindableID, STATE_MASK);
+
+        // Invert the depth so that the furthest draws come first
+        long depthKey = ~sortableDepth(depth) & DEPTH_MASK;
+
+        long key = (long) layer << LAYER_SHIFT;
+
+        if (transparent) {
+            key |= 1L << TRANSPARENT_SHIFT;
+            key |= depthKey << TRANSPARENT_DEPTH_SHIFT;
+            key |= program << TRANSPARENT_PROGRAM_SHIFT;
+            key |= bindable;
+        } else {
+            key |= program << OPAQUE_PROGRAM_SHIFT;
+            key |= bindable << OPAQUE_TEXTURE_SHIFT;
+            key |= depthKey;
+        }
+
+        return key;
+    }
+
+    /**
+     * Converts a float to 31 bits that sort in the same order as the float when compared as unsigned integers.
+     */
+    private static long sortableDepth(float depth) {
+        int bits = Float.floatToIntBits(depth);
+
+        // Negative floats sort backwards, so flip all of their bits. Positive floats only need the sign bit set.
+        bits ^= (bits >> 31) | Integer.MIN_VALUE;
+
+        return (bits & 0xFFFFFFFFL) >>> 1;
+    }
+
+    private int getStateID(Object state) {
+        if (state == null) {
+            return 0;
+        }
+
+        Integer id = this.stateIDs.get(state);
+
+        if (id == null) {
+            id = this.stateIDs.size() + 1;
+            this.stateIDs.put(state, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Sorts and draws every submitted draw, then clears the queue. The shader program that was bound before this was
+     * called is bound again afterwards.
+     */
+    public void flush() {
+        for (int i = 0; i < this.size; i++) {
+            this.order[i] = i;
+        }
+
+        this.stateChangesBeforeSort = this.countStateChanges(false);
+        this.sort();
+        this.stateChangesAfterSort = this.countStateChanges(true);
+
+        ShaderProgram outerProgram = ShaderProgram.getBoundProgram();
+        ShaderProgram currentProgram = null;
+        Bindable currentBindable = null;
+
+        for (int i = 0; i < this.size; i++) {
+            int index = this.order[i];
+            ShaderProgram program = this.programs[index];
+            Bindable bindable = this.bindables[index];
+
+            boolean programChanged = i == 0 || program != currentProgram;
+            boolean bindableChanged = i == 0 || bindable != currentBindable;
+
+            if (bindableChanged && currentBindable != null) {
+                currentBindable.unbind();
+            }
+
+            // Unbinding a texture can also unbind its shader program, so the program is bound again in that case
+            if (programChanged || bindableChanged) {
+                bindProgram(program);
+            }
+
+            if (bindableChanged && bindable != null) {
+                bindable.bind();
+            }
+
+            this.drawables[index].draw();
+
+            currentProgram = program;
+            currentBindable = bindable;
+        }
+
+        if (currentBindable != null) {
+            currentBindable.unbind();
+        }
+
+        bindProgram(outerProgram);
+
+        this.clear();
+    }
+
+    private static void bindProgram(ShaderProgram program) {
+        if (program != null) {
+            program.bind();
+        } else if (ShaderProgram.getBoundProgram() != null) {
+            ShaderProgram.getBoundProgram().unbind();
+        }
+    }
+
+    /**
+     * Removes every submitted draw without drawing it.
+     */
+    public void clear() {
+        // Don't keep the objects from being garbage collected
+        Arrays.fill(this.drawables, 0, this.size, null);
+        Arrays.fill(this.programs, 0, this.size, null);
+        Arrays.fill(this.bindables, 0, this.size, null);
+
+        this.stateIDs.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Sorts the order of the draws by their keys with an LSD radix sort, one byte at a time. A radix sort is stable,
+     * and its time only grows linearly with the number of draws.
+     */
+    private void sort() {
+        long[] keys = this.keys;
+        int[] order = this.order;
+        long[] keyScratch = this.keyScratch;
+        int[] orderScratch = this.orderScratch;
+
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(this.counts, 0);
+
+            for (int i = 0; i < this.size; i++) {
+                this.counts[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+
+            // Most bytes are the same for every draw, e.g. the layer. Sorting by them wouldn't move anything.
+            if (this.size == 0 || this.counts[(int) (keys[0] >>> shift) & (RADIX - 1)] == this.size) {
+                continue;
+            }
+
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int count = this.counts[digit];
+                this.counts[digit] = offset;
+                offset += count;
+            }
+
+            for (int i = 0; i < this.size; i++) {
+                int destination = this.counts[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+                keyScratch[destination] = keys[i];
+                orderScratch[destination] = order[i];
+            }
+
+            long[] swappedKeys = keys;
+            keys = keyScratch;
+            keyScratch = swappedKeys;
+
+            int[] swappedOrder = order;
+            order = orderScratch;
+            orderScratch = swappedOrder;
+        }
+
+        this.keys = keys;
+        this.order = order;
+        this.keyScratch = keyScratch;
+        this.orderScratch = orderScratch;
+    }
+
+    /**
+     * Counts how many times the shader program or bindable changes between consecutive draws, including binding the
+     * first ones.
+     */
+    private int countStateChanges(boolean sorted) {
+        int changes = 0;
+        int programID = 0;
+        int bindableID = 0;
+
+        for (int i = 0; i < this.size; i++) {
+            int index = sorted ? this.order[i] : i;
+
+            if (this.programIDs[index] != programID) {
+                programID = this.programIDs[index];
+                changes++;
+            }
+
+            if (this.bindableIDs[index] != bindableID) {
+                bindableID = this.bindableIDs[index];
+                changes++;
+            }
+        }
+
+        return changes;
+    }
+
+    private void grow() {
+        int capacity = this.keys.length * 2;
+
+        this.drawables = Arrays.copyOf(this.drawables, capacity);
+        this.programs = Arrays.copyOf(this.programs, capacity);
+        this.bindables = Arrays.copyOf(this.bindables, capacity);
+        this.programIDs = Arrays.copyOf(this.programIDs, capacity);
+        this.bindableIDs = Arrays.copyOf(this.bindableIDs, capacity);
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.order = new int[capacity];
+        this.keyScratch = new long[capacity];
+        this.orderScratch = new int[capacity];
+    }
+
+    /**
+     * @return The number of draws that were submitted since the last flush.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The number of shader program and bindable changes the last flush would have made if it drew in the
+     * order the draws were submitted.
+     */
+    public int getStateChangesBeforeSort() {
+        return this.stateChangesBeforeSort;
+    }
+
+    /**
+     * @return The number of shader program and bindable changes the last flush made after sorting.
+     */
+    public int getStateChangesAfterSort() {
+        return this.stateChangesAfterSort;
+    }
+}
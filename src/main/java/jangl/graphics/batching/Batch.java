@@ -1,28 +1,174 @@
 package jangl.graphics.batching;
 
 import jangl.graphics.Bindable;
+import jangl.graphics.Camera;
+import jangl.graphics.Drawable;
 import jangl.graphics.models.TexturedModel;
+import jangl.graphics.models.VertexFormat;
 import jangl.graphics.shaders.ShaderProgram;
 import jangl.graphics.shaders.VertexShader;
 import jangl.graphics.shaders.premade.DefaultVertShader;
 import jangl.shapes.Transform;
+import jangl.util.AABB;
+import org.joml.Matrix3x2fc;
+import org.lwjgl.system.MemoryUtil;
 
-public class Batch implements AutoCloseable {
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Draws the objects of a BatchBuilder in one draw call.
+ * <br>
+ * The batch keeps the bounds of its vertices, and skips drawing when they are off-screen. Large batches are also
+ * split into chunks of consecutive triangles, each with its own bounds, and only the chunks that are on the screen are
+ * drawn, in one call to glMultiDrawElements(). The chunks follow the order the objects were added in, so they are
+ * only small in the world if objects that are close together were added close together, e.g. a tile map added row
+ * by row. BatchBuilder.optimize() keeps neighbouring triangles together too.
+ */
+public class Batch implements AutoCloseable, Drawable {
     private static final ShaderProgram defaultShader = new ShaderProgram(new DefaultVertShader());
+
+    /**
+     * The smallest number of triangles in a chunk. Batches with fewer triangles than this aren't split.
+     */
+    private static final int MIN_CHUNK_TRIANGLES = 256;
+
+    /**
+     * The largest number of chunks, so that checking the chunks of a huge batch stays cheap.
+     */
+    private static final int MAX_CHUNKS = 1024;
+
     private final TexturedModel model;
     private final Transform transform;
 
+    /**
+     * The bounds of the vertices before the transform is applied, and after as of worldBoundsVersion.
+     */
+    private final AABB localBounds;
+    private final AABB worldBounds;
+    private int worldBoundsVersion;
+
+    /**
+     * The first index, index count, and local bounds (min x, min y, max x, max y) of each chunk, or null if the batch
+     * is too small to be split.
+     */
+    private final int[] chunkFirstIndices;
+    private final int[] chunkIndexCounts;
+    private final float[] chunkBounds;
+
+    /**
+     * The ranges of indices to draw this frame, where neighbouring visible chunks are merged into one range.
+     */
+    private final int[] rangeFirstIndices;
+    private final int[] rangeIndexCounts;
+
+    private final AABB visibleBounds;
+    private final AABB chunkWorldBounds;
+
+    /**
+     * @param builder The objects to draw. An empty builder makes a batch that draws nothing, centered on (0, 0).
+     */
     public Batch(BatchBuilder builder) {
-        this.model = new TexturedModel(
-                builder.getVerticesLocal(),
-                builder.getIndices(),
-                builder.getTexCoords()
-        );
+        this(builder, VertexFormat.SEPARATE);
+    }
+
+    /**
+     * @param builder The objects to draw. An empty builder makes a batch that draws nothing, centered on (0, 0).
+     * @param format  How the vertices are stored on the GPU. The vertices are stored relative to the middle of the
+     *                batch, so VertexFormat.HALF keeps its precision for batches that span a few screens.
+     */
+    public Batch(BatchBuilder builder, VertexFormat format) {
+        // The builder's buffers are uploaded directly. Only the local vertices need a temporary buffer, and an empty
+        // builder's vertex buffer is already empty.
+        int vertexCount = builder.getVertexCount();
+        FloatBuffer localVertices = vertexCount == 0 ? builder.getVertexBuffer() : MemoryUtil.memAllocFloat(vertexCount * 2);
+        IntBuffer indices = builder.getIndexBuffer();
+
+        try {
+            builder.getVerticesLocal(localVertices).flip();
+
+            this.model = new TexturedModel(localVertices, indices, builder.getTexCoordBuffer(), format);
+            this.localBounds = calculateBounds(localVertices, indices, 0, indices.remaining(), new AABB());
+
+            int triangleCount = indices.remaining() / 3;
+
+            if (triangleCount >= MIN_CHUNK_TRIANGLES * 2) {
+                int chunkTriangles = Math.max(MIN_CHUNK_TRIANGLES, (triangleCount + MAX_CHUNKS - 1) / MAX_CHUNKS);
+                int chunkCount = (triangleCount + chunkTriangles - 1) / chunkTriangles;
+
+                this.chunkFirstIndices = new int[chunkCount];
+                this.chunkIndexCounts = new int[chunkCount];
+                this.chunkBounds = new float[chunkCount * 4];
+
+                AABB bounds = new AABB();
+
+                for (int chunk = 0; chunk < chunkCount; chunk++) {
+                    int firstIndex = chunk * chunkTriangles * 3;
+                    int indexCount = Math.min(chunkTriangles * 3, indices.remaining() - firstIndex);
+
+                    calculateBounds(localVertices, indices, firstIndex, indexCount, bounds);
+
+                    this.chunkFirstIndices[chunk] = firstIndex;
+                    this.chunkIndexCounts[chunk] = indexCount;
+                    this.chunkBounds[chunk * 4] = bounds.minX;
+                    this.chunkBounds[chunk * 4 + 1] = bounds.minY;
+                    this.chunkBounds[chunk * 4 + 2] = bounds.maxX;
+                    this.chunkBounds[chunk * 4 + 3] = bounds.maxY;
+                }
+
+                // Every other chunk visible is the most ranges there can be
+                this.rangeFirstIndices = new int[(chunkCount + 1) / 2];
+                this.rangeIndexCounts = new int[(chunkCount + 1) / 2];
+            } else {
+                this.chunkFirstIndices = null;
+                this.chunkIndexCounts = null;
+                this.chunkBounds = null;
+                this.rangeFirstIndices = null;
+                this.rangeIndexCounts = null;
+            }
+        } finally {
+            if (vertexCount > 0) {
+                MemoryUtil.memFree(localVertices);
+            }
+        }
 
         this.transform = new Transform();
         this.transform.shift(builder.getMiddle());
+
+        this.worldBounds = new AABB();
+        this.worldBoundsVersion = this.transform.getVersion() - 1;
+        this.visibleBounds = new AABB();
+        this.chunkWorldBounds = new AABB();
+    }
+
+    /**
+     * Calculates the bounds of the vertices used by a range of indices. An empty range has an empty box at (0, 0), not
+     * an infinite one, since transforming infinite bounds gives NaN.
+     */
+    private static AABB calculateBounds(FloatBuffer vertices, IntBuffer indices, int firstIndex, int indexCount, AABB out) {
+        if (indexCount == 0) {
+            return out.set(0, 0, 0, 0);
+        }
+
+        out.set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+
+        int start = indices.position();
+
+        for (int i = firstIndex; i < firstIndex + indexCount; i++) {
+            int vertex = indices.get(start + i);
+            float x = vertices.get(vertex * 2);
+            float y = vertices.get(vertex * 2 + 1);
+
+            out.minX = Math.min(out.minX, x);
+            out.minY = Math.min(out.minY, y);
+            out.maxX = Math.max(out.maxX, x);
+            out.maxY = Math.max(out.maxY, y);
+        }
+
+        return out;
     }
 
+    @Override
     public void draw() {
         ShaderProgram boundProgram = ShaderProgram.getBoundProgram();
 
@@ -36,28 +182,100 @@ public class Batch implements AutoCloseable {
 
         VertexShader vertexShader = boundProgram.getVertexShader();
 
-        vertexShader.setMatrixUniforms(
-                boundProgram.getProgramID(),
-                this.transform.getMatrix()
-        );
+        if (vertexShader.isObeyingCamera()) {
+            Camera.getVisibleBounds(this.visibleBounds);
+        } else {
+            Camera.getScreenBounds(this.visibleBounds);
+        }
+
+        AABB bounds = this.getWorldBounds();
 
-        this.model.render();
+        if (bounds.intersects(this.visibleBounds)) {
+            vertexShader.setMatrixUniforms(boundProgram, this.transform.getAffineMatrix());
+
+            if (this.chunkBounds == null || this.visibleBounds.contains(bounds)) {
+                this.model.render();
+            } else {
+                this.renderVisibleChunks();
+            }
+        }
 
         if (usingDefaultShader) {
             defaultShader.unbind();
         }
     }
 
+    private void renderVisibleChunks() {
+        Matrix3x2fc matrix = this.transform.getAffineMatrix();
+        int rangeCount = 0;
+        int lastVisibleChunk = -2;
+
+        for (int chunk = 0; chunk < this.chunkFirstIndices.length; chunk++) {
+            this.chunkWorldBounds.setTransformed(
+                    this.chunkBounds[chunk * 4], this.chunkBounds[chunk * 4 + 1],
+                    this.chunkBounds[chunk * 4 + 2], this.chunkBounds[chunk * 4 + 3],
+                    matrix
+            );
+
+            if (!this.chunkWorldBounds.intersects(this.visibleBounds)) {
+                continue;
+            }
+
+            // The chunks are consecutive in the index buffer, so a chunk right after a visible one extends its range
+            if (lastVisibleChunk == chunk - 1) {
+                this.rangeIndexCounts[rangeCount - 1] += this.chunkIndexCounts[chunk];
+            } else {
+                this.rangeFirstIndices[rangeCount] = this.chunkFirstIndices[chunk];
+                this.rangeIndexCounts[rangeCount] = this.chunkIndexCounts[chunk];
+                rangeCount++;
+            }
+
+            lastVisibleChunk = chunk;
+        }
+
+        if (rangeCount > 0) {
+            this.model.render(this.rangeFirstIndices, this.rangeIndexCounts, rangeCount);
+        }
+    }
+
     public void draw(Bindable bindable) {
         bindable.bind();
         this.draw();
         bindable.unbind();
     }
 
+    /**
+     * @return The smallest axis-aligned box around the batch with its transform applied. It is recalculated only when
+     * the transform changes, and the same object is returned each time, so copy it to keep it.
+     */
+    public AABB getWorldBounds() {
+        if (this.worldBoundsVersion != this.transform.getVersion()) {
+            this.worldBounds.setTransformed(
+                    this.localBounds.minX, this.localBounds.minY, this.localBounds.maxX, this.localBounds.maxY,
+                    this.transform.getAffineMatrix()
+            );
+
+            this.worldBoundsVersion = this.transform.getVersion();
+        }
+
+        return this.worldBounds;
+    }
+
+    /**
+     * @return The number of chunks the batch is split into for culling, or 1 if it is too small to be split.
+     */
+    public int getChunkCount() {
+        return this.chunkFirstIndices == null ? 1 : this.chunkFirstIndices.length;
+    }
+
     public Transform getTransform() {
         return this.transform;
     }
 
+    public TexturedModel getModel() {
+        return this.model;
+    }
+
     @Override
     public void close() {
         this.model.close();
@@ -0,0 +1,664 @@
+package jangl.graphics.batching;
+
+import jangl.coords.WorldCoords;
+import jangl.graphics.Bindable;
+import jangl.graphics.Drawable;
+import jangl.graphics.models.TexturedModel;
+import jangl.graphics.shaders.ShaderProgram;
+import jangl.graphics.shaders.VertexShader;
+import jangl.graphics.shaders.premade.DefaultVertShader;
+import jangl.shapes.Shape;
+import jangl.shapes.Transform;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * A Batch that objects can be added to, changed, and removed from after it is created. Each object gets a handle, and
+ * changing an object through its handle only uploads the part of the buffers that belongs to it:
+ * <pre>
+ * DynamicBatch batch = new DynamicBatch();
+ * int handle = batch.add(rect);
+ * ...
+ * batch.setVertices(handle, rect.calculateVerticesMatrix());
+ * batch.draw(texture);
+ * </pre>
+ * The buffers have room for more objects than they hold, and double in size when they run out. The space of removed
+ * objects is reused by objects that are added later. Once more than half of the indices in use belong to removed
+ * objects, the next draw compacts the batch, moving the remaining objects together and uploading them at once.
+ */
+public class DynamicBatch implements AutoCloseable, Drawable {
+    private static final ShaderProgram defaultShader = new ShaderProgram(new DefaultVertShader());
+
+    private static final int INITIAL_VERTEX_CAPACITY = 256;
+    private static final int INITIAL_INDEX_CAPACITY = 384;
+    private static final int INITIAL_HANDLE_CAPACITY = 64;
+
+    /**
+     * Compacting a small batch isn't worth an upload of the whole batch, so the batch is only compacted once at least
+     * this many indices are unused.
+     */
+    private static final int MIN_COMPACT_INDICES = 1024;
+
+    private final WorldCoords origin;
+    private final Transform transform;
+    private TexturedModel model;
+
+    /**
+     * Copies of the buffers on the GPU, used to grow and compact them. The indices are relative to the whole batch.
+     */
+    private FloatBuffer vertices;
+    private FloatBuffer texCoords;
+    private IntBuffer indices;
+
+    /**
+     * The end of the used part of each buffer. Everything after it is free.
+     */
+    private int vertexEnd;
+    private int indexEnd;
+
+    /**
+     * The range of the buffers each handle owns. A vertex count of -1 means the handle is not in use.
+     */
+    private int[] vertexStarts;
+    private int[] vertexCounts;
+    private int[] indexStarts;
+    private int[] indexCounts;
+    private int handleEnd;
+    private int[] freeHandles;
+    private int freeHandleCount;
+    private int size;
+
+    private final FreeList freeVertices;
+    private final FreeList freeIndices;
+    private int freeIndexCount;
+
+    /**
+     * Creates a batch whose transform is at (0, 0).
+     */
+    public DynamicBatch() {
+        this(new WorldCoords(0, 0));
+    }
+
+    /**
+     * @param origin The position of the batch's transform. The batch rotates and scales around it.
+     */
+    public DynamicBatch(WorldCoords origin) {
+        this.origin = new WorldCoords(origin.x, origin.y);
+        this.transform = new Transform();
+        this.transform.shift(this.origin);
+
+        this.vertices = BufferUtils.createFloatBuffer(INITIAL_VERTEX_CAPACITY * 2);
+        this.texCoords = BufferUtils.createFloatBuffer(INITIAL_VERTEX_CAPACITY * 2);
+        this.indices = BufferUtils.createIntBuffer(INITIAL_INDEX_CAPACITY);
+
+        this.vertexStarts = new int[INITIAL_HANDLE_CAPACITY];
+        this.vertexCounts = new int[INITIAL_HANDLE_CAPACITY];
+        this.indexStarts = new int[INITIAL_HANDLE_CAPACITY];
+        this.indexCounts = new int[INITIAL_HANDLE_CAPACITY];
+        this.freeHandles = new int[INITIAL_HANDLE_CAPACITY];
+
+        this.freeVertices = new FreeList();
+        this.freeIndices = new FreeList();
+
+        this.model = this.createModel();
+    }
+
+    /**
+     * Adds a shape, with its transform applied.
+     *
+     * @param shape The shape to add.
+     * @return The handle of the shape in this batch.
+     */
+    public int add(Shape shape) {
+        return this.add(shape.calculateVerticesMatrix(), shape.getIndices(), shape.getTexCoords());
+    }
+
+    /**
+     * Adds an object. Like in a BatchBuilder, the indices start at 0 for the first vertex of the object.
+     *
+     * @param vertices  The vertices, in world coords.
+     * @param indices   The indices.
+     * @param texCoords The texture coords, one pair per vertex.
+     * @return The handle of the object in this batch.
+     */
+    public int add(float[] vertices, int[] indices, float[] texCoords) {
+        checkTexCoords(vertices, texCoords);
+
+        int handle;
+
+        if (this.freeHandleCount > 0) {
+            handle = this.freeHandles[--this.freeHandleCount];
+        } else {
+            if (this.handleEnd == this.vertexCounts.length) {
+                this.growHandles();
+            }
+
+            handle = this.handleEnd++;
+        }
+
+        this.allocate(handle, vertices.length / 2, indices.length);
+        this.write(handle, vertices, indices, texCoords);
+        this.size++;
+
+        return handle;
+    }
+
+    /**
+     * Replaces an object. If it has the same number of vertices and indices as before, it keeps its place in the
+     * buffers and only the data that changed is uploaded.
+     *
+     * @param handle    The handle of the object.
+     * @param vertices  The vertices, in world coords.
+     * @param indices   The indices.
+     * @param texCoords The texture coords, one pair per vertex.
+     */
+    public void set(int handle, float[] vertices, int[] indices, float[] texCoords) {
+        this.checkHandle(handle);
+        checkTexCoords(vertices, texCoords);
+
+        if (vertices.length / 2 != this.vertexCounts[handle] || indices.length != this.indexCounts[handle]) {
+            this.free(handle);
+            this.allocate(handle, vertices.length / 2, indices.length);
+            this.write(handle, vertices, indices, texCoords);
+            return;
+        }
+
+        this.setVertices(handle, vertices);
+        this.setTexCoords(handle, texCoords);
+
+        int vertexStart = this.vertexStarts[handle];
+        int indexStart = this.indexStarts[handle];
+        boolean changed = false;
+
+        for (int i = 0; i < indices.length; i++) {
+            int index = indices[i] + vertexStart;
+
+            if (this.indices.get(indexStart + i) != index) {
+                this.indices.put(indexStart + i, index);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            this.model.subIndices(this.indices.slice(indexStart, indices.length), indexStart * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Moves the vertices of an object. Nothing is uploaded if they didn't change.
+     *
+     * @param handle   The handle of the object.
+     * @param vertices The vertices, in world coords. There must be as many as the object already has.
+     * @throws IllegalArgumentException Throws if the number of vertices is different.
+     */
+    public void setVertices(int handle, float[] vertices) throws IllegalArgumentException {
+        this.checkHandle(handle);
+        this.checkVertexCount(handle, vertices.length);
+
+        int start = this.vertexStarts[handle] * 2;
+        boolean changed = false;
+
+        for (int i = 0; i < vertices.length; i += 2) {
+            float x = vertices[i] - this.origin.x;
+            float y = vertices[i + 1] - this.origin.y;
+
+            if (x != this.vertices.get(start + i) || y != this.vertices.get(start + i + 1)) {
+                this.vertices.put(start + i, x).put(start + i + 1, y);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            this.model.subVertices(this.vertices.slice(start, vertices.length), start * Float.BYTES);
+        }
+    }
+
+    /**
+     * Changes the texture coords of an object. Nothing is uploaded if they didn't change.
+     *
+     * @param handle    The handle of the object.
+     * @param texCoords The texture coords. There must be as many as the object already has.
+     * @throws IllegalArgumentException Throws if the number of texture coords is different.
+     */
+    public void setTexCoords(int handle, float[] texCoords) throws IllegalArgumentException {
+        this.checkHandle(handle);
+        this.checkVertexCount(handle, texCoords.length);
+
+        int start = this.vertexStarts[handle] * 2;
+        boolean changed = false;
+
+        for (int i = 0; i < texCoords.length; i++) {
+            if (texCoords[i] != this.texCoords.get(start + i)) {
+                this.texCoords.put(start + i, texCoords[i]);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            this.model.subTexCoords(this.texCoords.slice(start, texCoords.length), start * Float.BYTES);
+        }
+    }
+
+    /**
+     * Removes an object. Its handle can be given to an object that is added later.
+     *
+     * @param handle The handle of the object.
+     */
+    public void remove(int handle) {
+        this.checkHandle(handle);
+        this.free(handle);
+
+        this.vertexCounts[handle] = -1;
+        this.freeHandles[this.freeHandleCount++] = handle;
+        this.size--;
+    }
+
+    /**
+     * @return The number of objects in the batch.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Moves every object to the start of the buffers, so no space is used by removed objects, then uploads them.
+     * This is called by draw() once more than half of the indices are unused, so it only has to be called manually to
+     * compact at a different time.
+     */
+    public void compact() {
+        if (this.freeIndices.isEmpty() && this.freeVertices.isEmpty()) {
+            return;
+        }
+
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(this.vertices.capacity());
+        FloatBuffer texCoords = BufferUtils.createFloatBuffer(this.texCoords.capacity());
+        IntBuffer indices = BufferUtils.createIntBuffer(this.indices.capacity());
+
+        int vertexEnd = 0;
+        int indexEnd = 0;
+
+        for (int handle = 0; handle < this.handleEnd; handle++) {
+            int vertexCount = this.vertexCounts[handle];
+
+            if (vertexCount == -1) {
+                continue;
+            }
+
+            int oldVertexStart = this.vertexStarts[handle];
+            vertices.put(vertexEnd * 2, this.vertices, oldVertexStart * 2, vertexCount * 2);
+            texCoords.put(vertexEnd * 2, this.texCoords, oldVertexStart * 2, vertexCount * 2);
+
+            for (int i = 0; i < this.indexCounts[handle]; i++) {
+                int index = this.indices.get(this.indexStarts[handle] + i);
+                indices.put(indexEnd + i, index - oldVertexStart + vertexEnd);
+            }
+
+            this.vertexStarts[handle] = vertexEnd;
+            this.indexStarts[handle] = indexEnd;
+            vertexEnd += vertexCount;
+            indexEnd += this.indexCounts[handle];
+        }
+
+        this.vertices = vertices;
+        this.texCoords = texCoords;
+        this.indices = indices;
+        this.vertexEnd = vertexEnd;
+        this.indexEnd = indexEnd;
+
+        this.freeVertices.clear();
+        this.freeIndices.clear();
+        this.freeIndexCount = 0;
+
+        this.model.subVertices(this.vertices.slice(0, vertexEnd * 2), 0);
+        this.model.subTexCoords(this.texCoords.slice(0, vertexEnd * 2), 0);
+        this.model.subIndices(this.indices.slice(0, indexEnd), 0);
+    }
+
+    /**
+     * @return The number of vertices the buffers have room for before they have to grow.
+     */
+    public int getVertexCapacity() {
+        return this.vertices.capacity() / 2;
+    }
+
+    /**
+     * @return The number of indices the buffers have room for before they have to grow.
+     */
+    public int getIndexCapacity() {
+        return this.indices.capacity();
+    }
+
+    /**
+     * Finds room for an object, reusing the space of removed objects if possible, and assigns it to the handle.
+     */
+    private void allocate(int handle, int vertexCount, int indexCount) {
+        int vertexStart = this.freeVertices.allocate(vertexCount);
+        if (vertexStart == -1) {
+            vertexStart = this.vertexEnd;
+            this.vertexEnd += vertexCount;
+        }
+
+        int indexStart = this.freeIndices.allocate(indexCount);
+        if (indexStart == -1) {
+            indexStart = this.indexEnd;
+            this.indexEnd += indexCount;
+        } else {
+            this.freeIndexCount -= indexCount;
+        }
+
+        this.vertexStarts[handle] = vertexStart;
+        this.vertexCounts[handle] = vertexCount;
+        this.indexStarts[handle] = indexStart;
+        this.indexCounts[handle] = indexCount;
+
+        if (this.vertexEnd * 2 > this.vertices.capacity() || this.indexEnd > this.indices.capacity()) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Gives the space of a handle back to the free lists. The indices are overwritten with degenerate triangles so
+     * the object disappears until the space is reused.
+     */
+    private void free(int handle) {
+        int indexStart = this.indexStarts[handle];
+        int indexCount = this.indexCounts[handle];
+
+        for (int i = indexStart; i < indexStart + indexCount; i++) {
+            this.indices.put(i, 0);
+        }
+
+        this.vertexEnd = this.freeVertices.free(this.vertexStarts[handle], this.vertexCounts[handle], this.vertexEnd);
+
+        int oldIndexEnd = this.indexEnd;
+        this.indexEnd = this.freeIndices.free(indexStart, indexCount, this.indexEnd);
+
+        // Space at the end isn't drawn, so it doesn't have to be uploaded or counted as unused
+        this.freeIndexCount += indexCount - (oldIndexEnd - this.indexEnd);
+
+        if (indexStart < this.indexEnd) {
+            this.model.subIndices(this.indices.slice(indexStart, indexCount), indexStart * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Copies an object into the space that was just allocated for its handle and uploads it. Space past the end of
+     * the used part of the buffers isn't kept up to date on the GPU, so it is always uploaded.
+     */
+    private void write(int handle, float[] vertices, int[] indices, float[] texCoords) {
+        int vertexStart = this.vertexStarts[handle];
+        int indexStart = this.indexStarts[handle];
+
+        for (int i = 0; i < vertices.length; i += 2) {
+            this.vertices.put(vertexStart * 2 + i, vertices[i] - this.origin.x);
+            this.vertices.put(vertexStart * 2 + i + 1, vertices[i + 1] - this.origin.y);
+        }
+
+        this.texCoords.put(vertexStart * 2, texCoords);
+
+        for (int i = 0; i < indices.length; i++) {
+            this.indices.put(indexStart + i, indices[i] + vertexStart);
+        }
+
+        this.model.subVertices(this.vertices.slice(vertexStart * 2, vertices.length), vertexStart * 2 * Float.BYTES);
+        this.model.subTexCoords(this.texCoords.slice(vertexStart * 2, texCoords.length), vertexStart * 2 * Float.BYTES);
+        this.model.subIndices(this.indices.slice(indexStart, indices.length), indexStart * Integer.BYTES);
+    }
+
+    /**
+     * Doubles the capacity of the buffers that are full, then uploads everything into a new model.
+     */
+    private void grow() {
+        if (this.vertexEnd * 2 > this.vertices.capacity()) {
+            int capacity = Math.max(this.vertices.capacity() * 2, this.vertexEnd * 2);
+
+            this.vertices = copy(this.vertices, capacity);
+            this.texCoords = copy(this.texCoords, capacity);
+        }
+
+        if (this.indexEnd > this.indices.capacity()) {
+            int capacity = Math.max(this.indices.capacity() * 2, this.indexEnd);
+
+            IntBuffer indices = BufferUtils.createIntBuffer(capacity);
+            indices.put(0, this.indices, 0, this.indices.capacity());
+            this.indices = indices;
+        }
+
+        this.model.close();
+        this.model = this.createModel();
+    }
+
+    private static FloatBuffer copy(FloatBuffer buffer, int capacity) {
+        FloatBuffer copy = BufferUtils.createFloatBuffer(capacity);
+        copy.put(0, buffer, 0, buffer.capacity());
+
+        return copy;
+    }
+
+    private TexturedModel createModel() {
+        // The buffers are rewritten whenever an object changes, so hint that to the driver
+        return new TexturedModel(
+                this.vertices.duplicate().clear(), this.indices.duplicate().clear(), this.texCoords.duplicate().clear(),
+                GL_DYNAMIC_DRAW
+        );
+    }
+
+    private void growHandles() {
+        int capacity = this.vertexCounts.length * 2;
+
+        this.vertexStarts = Arrays.copyOf(this.vertexStarts, capacity);
+        this.vertexCounts = Arrays.copyOf(this.vertexCounts, capacity);
+        this.indexStarts = Arrays.copyOf(this.indexStarts, capacity);
+        this.indexCounts = Arrays.copyOf(this.indexCounts, capacity);
+        this.freeHandles = Arrays.copyOf(this.freeHandles, capacity);
+    }
+
+    private void checkHandle(int handle) throws IllegalArgumentException {
+        if (handle < 0 || handle >= this.handleEnd || this.vertexCounts[handle] == -1) {
+            throw new IllegalArgumentException("Handle " + handle + " is not in the batch");
+        }
+    }
+
+    private void checkVertexCount(int handle, int floats) throws IllegalArgumentException {
+        if (floats != this.vertexCounts[handle] * 2) {
+            throw new IllegalArgumentException(
+                    "Expected " + this.vertexCounts[handle] * 2 + " floats for handle " + handle + ", got " + floats
+            );
+        }
+    }
+
+    private static void checkTexCoords(float[] vertices, float[] texCoords) throws IllegalArgumentException {
+        if (vertices.length != texCoords.length) {
+            throw new IllegalArgumentException("Each vertex must have one pair of texture coords");
+        }
+    }
+
+    @Override
+    public void draw() {
+        if (this.freeIndexCount >= MIN_COMPACT_INDICES && this.freeIndexCount * 2 > this.indexEnd) {
+            this.compact();
+        }
+
+        ShaderProgram boundProgram = ShaderProgram.getBoundProgram();
+
+        boolean usingDefaultShader = false;
+
+        if (boundProgram == null) {
+            usingDefaultShader = true;
+            boundProgram = defaultShader;
+            defaultShader.bind();
+        }
+
+        VertexShader vertexShader = boundProgram.getVertexShader();
+
+        vertexShader.setMatrixUniforms(boundProgram, this.transform.getAffineMatrix());
+
+        this.model.render(this.indexEnd);
+
+        if (usingDefaultShader) {
+            defaultShader.unbind();
+        }
+    }
+
+    public void draw(Bindable bindable) {
+        bindable.bind();
+        this.draw();
+        bindable.unbind();
+    }
+
+    /**
+     * Moves the point the batch rotates and scales around without moving the objects in it. The transform is shifted
+     * by the same amount, so any shifts made to it are kept. Every vertex is stored relative to the origin, so the
+     * used part of the vertex buffer is uploaded again.
+     *
+     * @param origin The new origin, in world coords.
+     */
+    public void setOrigin(WorldCoords origin) {
+        float shiftX = origin.x - this.origin.x;
+        float shiftY = origin.y - this.origin.y;
+
+        if (shiftX == 0 && shiftY == 0) {
+            return;
+        }
+
+        for (int i = 0; i < this.vertexEnd * 2; i += 2) {
+            this.vertices.put(i, this.vertices.get(i) - shiftX);
+            this.vertices.put(i + 1, this.vertices.get(i + 1) - shiftY);
+        }
+
+        this.origin.x = origin.x;
+        this.origin.y = origin.y;
+        this.transform.shift(shiftX, shiftY);
+
+        if (this.vertexEnd > 0) {
+            this.model.subVertices(this.vertices.slice(0, this.vertexEnd * 2), 0);
+        }
+    }
+
+    /**
+     * @return The point the batch rotates and scales around. The transform starts at this position.
+     */
+    public WorldCoords getOrigin() {
+        return new WorldCoords(this.origin.x, this.origin.y);
+    }
+
+    public Transform getTransform() {
+        return this.transform;
+    }
+
+    @Override
+    public void close() {
+        this.model.close();
+    }
+
+    /**
+     * The ranges of a buffer that are free, sorted by their start. Neighboring ranges are merged.
+     */
+    static class FreeList {
+        private int[] starts = new int[16];
+        private int[] counts = new int[16];
+        private int size;
+
+        /**
+         * Takes space from the first range that is big enough.
+         *
+         * @return The start of the space, or -1 if no range is big enough.
+         */
+        int allocate(int count) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.counts[i] < count) {
+                    continue;
+                }
+
+                int start = this.starts[i];
+                this.starts[i] += count;
+                this.counts[i] -= count;
+
+                if (this.counts[i] == 0) {
+                    this.removeRange(i);
+                }
+
+                return start;
+            }
+
+            return -1;
+        }
+
+        /**
+         * Adds a range to the list. If it ends up touching the end of the used space, it is removed from the used
+         * space instead.
+         *
+         * @return The new end of the used space.
+         */
+        int free(int start, int count, int end) {
+            if (count == 0) {
+                return end;
+            }
+
+            int i = 0;
+            while (i < this.size && this.starts[i] < start) {
+                i++;
+            }
+
+            boolean mergesBefore = i > 0 && this.starts[i - 1] + this.counts[i - 1] == start;
+            boolean mergesAfter = i < this.size && start + count == this.starts[i];
+
+            if (mergesBefore) {
+                this.counts[i - 1] += count;
+
+                if (mergesAfter) {
+                    this.counts[i - 1] += this.counts[i];
+                    this.removeRange(i);
+                }
+
+                i--;
+            } else if (mergesAfter) {
+                this.starts[i] = start;
+                this.counts[i] += count;
+            } else {
+                this.insertRange(i, start, count);
+            }
+
+            // Only the last range can touch the end
+            int last = this.size - 1;
+            if (this.starts[last] + this.counts[last] == end) {
+                end = this.starts[last];
+                this.size--;
+            }
+
+            return end;
+        }
+
+        boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        void clear() {
+            this.size = 0;
+        }
+
+        private void insertRange(int i, int start, int count) {
+            if (this.size == this.starts.length) {
+                this.starts = Arrays.copyOf(this.starts, this.size * 2);
+                this.counts = Arrays.copyOf(this.counts, this.size * 2);
+            }
+
+            System.arraycopy(this.starts, i, this.starts, i + 1, this.size - i);
+            System.arraycopy(this.counts, i, this.counts, i + 1, this.size - i);
+            this.starts[i] = start;
+            this.counts[i] = count;
+            this.size++;
+        }
+
+        private void removeRange(int i) {
+            System.arraycopy(this.starts, i + 1, this.starts, i, this.size - i - 1);
+            System.arraycopy(this.counts, i + 1, this.counts, i, this.size - i - 1);
+            this.size--;
+        }
+    }
+}
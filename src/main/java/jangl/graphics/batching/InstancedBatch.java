@@ -0,0 +1,406 @@
+package jangl.graphics.batching;
+
+import jangl.color.Color;
+import jangl.color.ColorFactory;
+import jangl.graphics.Bindable;
+import jangl.graphics.Drawable;
+import jangl.graphics.models.InstancedModel;
+import jangl.graphics.shaders.ShaderProgram;
+import jangl.graphics.shaders.VertexShader;
+import jangl.graphics.shaders.premade.ColorShader;
+import jangl.graphics.shaders.premade.DefaultVertShader;
+import jangl.graphics.shaders.premade.TextureShaderFrag;
+import jangl.graphics.shaders.premade.TextureShaderVert;
+import jangl.graphics.textures.Texture;
+import jangl.shapes.Shape;
+import jangl.shapes.Transform;
+import org.joml.Matrix3x2f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws many copies of the same shape with one draw call. The mesh of the shape is uploaded once, and each copy only
+ * stores its transform, UV rect, and tint in an instance buffer. Use it in place of many shapes that only differ by
+ * their position, rotation, and scale:
+ * <pre>
+ * InstancedBatch batch = new InstancedBatch(rects.get(0));
+ * batch.addAll(rects);
+ * ...
+ * batch.draw(texture);
+ * </pre>
+ * The batch keeps a reference to the transform of each instance. Before each draw, only the instances whose transform
+ * changed since the last draw are uploaded again, so moving a few instances out of many is cheap.
+ * <br>
+ * The bound shader program is used if it is instanced. Otherwise, the batch draws with its own instanced copy of the
+ * default shaders, which is compiled the first time it is needed and freed by close().
+ */
+public class InstancedBatch implements AutoCloseable, Drawable {
+    /**
+     * The model matrix of the whole batch. Every instance is already in world coordinates.
+     */
+    private static final Matrix3x2f IDENTITY = new Matrix3x2f();
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Runs of changed instances that are at most this many instances apart are uploaded together, since uploading a
+     * few unchanged instances is cheaper than another call to glBufferSubData.
+     */
+    private static final int MAX_RUN_GAP = 16;
+
+    private final InstancedModel model;
+    private final List<Transform> transforms;
+
+    /**
+     * The index of each transform's instance, so an instance can be removed without searching for it.
+     */
+    private final Map<Transform, Integer> indices;
+
+    /**
+     * The transform versions each instance was last uploaded with.
+     */
+    private int[] versions;
+
+    /**
+     * Instances whose UV rect or tint changed, or that moved to a new index, since the last update.
+     */
+    private boolean[] dirty;
+
+    /**
+     * A copy of the instance buffer. Changed instances are written here, then uploaded in runs of nearby instances.
+     */
+    private FloatBuffer instances;
+
+    private final Matrix3x2f affineMatrix;
+
+    private ShaderProgram defaultShader;
+    private ShaderProgram textureShader;
+
+    /**
+     * @param mesh The shape whose vertices, indices, and texture coords every instance shares. Its transform is not
+     *             used, so it can be any shape of the right size, e.g. the first of the shapes to draw.
+     */
+    public InstancedBatch(Shape mesh) {
+        this.model = new InstancedModel(mesh.calculateVertices(), mesh.getIndices(), mesh.getTexCoords(), INITIAL_CAPACITY);
+        this.transforms = new ArrayList<>();
+        this.indices = new IdentityHashMap<>();
+        this.versions = new int[INITIAL_CAPACITY];
+        this.instances = BufferUtils.createFloatBuffer(INITIAL_CAPACITY * InstancedModel.FLOATS_PER_INSTANCE);
+        this.dirty = new boolean[INITIAL_CAPACITY];
+        this.affineMatrix = new Matrix3x2f();
+    }
+
+    /**
+     * Adds an instance that follows the transform of a shape.
+     *
+     * @param shape The shape to add.
+     * @return The index of the instance, used to set its UV rect and tint.
+     * @throws IllegalArgumentException If the shape's transform already has an instance.
+     */
+    public int add(Shape shape) throws IllegalArgumentException {
+        return this.add(shape.getTransform());
+    }
+
+    /**
+     * Adds an instance for each shape.
+     *
+     * @param shapes The shapes to add.
+     * @throws IllegalArgumentException If the transform of a shape already has an instance.
+     */
+    public void addAll(List<? extends Shape> shapes) throws IllegalArgumentException {
+        for (Shape shape : shapes) {
+            this.add(shape.getTransform());
+        }
+    }
+
+    /**
+     * Adds an instance that follows a transform. The instance uses the whole texture and is not tinted.
+     *
+     * @param transform The transform of the instance.
+     * @return The index of the instance, used to set its UV rect and tint.
+     * @throws IllegalArgumentException If the transform already has an instance.
+     */
+    public int add(Transform transform) throws IllegalArgumentException {
+        int index = this.transforms.size();
+
+        if (this.indices.putIfAbsent(transform, index) != null) {
+            throw new IllegalArgumentException("The transform already has an instance in this batch");
+        }
+
+        if (index == this.versions.length) {
+            this.grow();
+        }
+
+        this.transforms.add(transform);
+
+        int offset = index * InstancedModel.FLOATS_PER_INSTANCE;
+        this.instances.put(offset + 6, 0).put(offset + 7, 0).put(offset + 8, 1).put(offset + 9, 1);
+        this.instances.put(offset + 10, 1).put(offset + 11, 1).put(offset + 12, 1).put(offset + 13, 1);
+
+        this.writeTransform(index);
+
+        return index;
+    }
+
+    /**
+     * Removes an instance. The last instance takes the index of the removed instance.
+     *
+     * @param transform The transform of the instance to remove.
+     * @return True if the transform had an instance.
+     */
+    public boolean remove(Transform transform) {
+        Integer index = this.indices.remove(transform);
+
+        if (index == null) {
+            return false;
+        }
+
+        int last = this.transforms.size() - 1;
+        Transform lastTransform = this.transforms.remove(last);
+
+        if (index != last) {
+            this.transforms.set(index, lastTransform);
+            this.indices.put(lastTransform, index);
+            this.versions[index] = this.versions[last];
+
+            // Move the last instance into the hole, including its UV rect and tint
+            int floats = InstancedModel.FLOATS_PER_INSTANCE;
+            this.instances.put(
+                    index * floats,
+                    this.instances,
+                    last * floats,
+                    floats
+            );
+            this.dirty[index] = true;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param index The index of the instance.
+     * @param u1    The x texture coordinate the top left of the mesh's texture coords is mapped to.
+     * @param v1    The y texture coordinate the top left of the mesh's texture coords is mapped to.
+     * @param u2    The x texture coordinate the bottom right of the mesh's texture coords is mapped to.
+     * @param v2    The y texture coordinate the bottom right of the mesh's texture coords is mapped to.
+     */
+    public void setUVRect(int index, float u1, float v1, float u2, float v2) {
+        int offset = this.checkIndex(index) * InstancedModel.FLOATS_PER_INSTANCE;
+        this.instances.put(offset + 6, u1).put(offset + 7, v1).put(offset + 8, u2).put(offset + 9, v2);
+        this.dirty[index] = true;
+    }
+
+    /**
+     * @param index The index of the instance.
+     * @param tint  The color multiplied with the color of the texture.
+     */
+    public void setTint(int index, Color tint) {
+        int offset = this.checkIndex(index) * InstancedModel.FLOATS_PER_INSTANCE;
+
+        this.instances
+                .put(offset + 10, tint.getNormRed())
+                .put(offset + 11, tint.getNormGreen())
+                .put(offset + 12, tint.getNormBlue())
+                .put(offset + 13, tint.getNormAlpha());
+
+        this.dirty[index] = true;
+    }
+
+    /**
+     * @return The number of instances.
+     */
+    public int size() {
+        return this.transforms.size();
+    }
+
+    /**
+     * Uploads every instance whose transform, UV rect, or tint changed since the last update. This is called by
+     * draw(), so it only has to be called manually to upload at a different time.
+     */
+    public void update() {
+        // If the instance buffer is reallocated, every instance has to be uploaded
+        boolean reallocated = this.model.getInstanceCapacity() < this.versions.length;
+
+        if (reallocated) {
+            this.model.setInstanceCapacity(this.versions.length);
+        }
+
+        int runStart = -1;
+        int runEnd = -1;
+
+        for (int i = 0; i < this.transforms.size(); i++) {
+            if (this.transforms.get(i).getVersion() != this.versions[i]) {
+                this.writeTransform(i);
+            }
+
+            if (!this.dirty[i] && !reallocated) {
+                continue;
+            }
+
+            this.dirty[i] = false;
+
+            if (runStart == -1) {
+                runStart = i;
+            } else if (i - runEnd > MAX_RUN_GAP) {
+                this.upload(runStart, runEnd);
+                runStart = i;
+            }
+
+            runEnd = i + 1;
+        }
+
+        if (runStart != -1) {
+            this.upload(runStart, runEnd);
+        }
+    }
+
+    private void upload(int start, int end) {
+        int floats = InstancedModel.FLOATS_PER_INSTANCE;
+        this.model.subInstances(this.instances.slice(start * floats, (end - start) * floats), start);
+    }
+
+    @Override
+    public void draw() {
+        this.update();
+
+        ShaderProgram boundProgram = ShaderProgram.getBoundProgram();
+
+        if (boundProgram != null && boundProgram.isInstanced()) {
+            this.render(boundProgram);
+            return;
+        }
+
+        ShaderProgram defaultShader = this.getDefaultShader();
+
+        defaultShader.bind();
+        this.render(defaultShader);
+        defaultShader.unbind();
+
+        if (boundProgram != null) {
+            boundProgram.bind();
+        }
+    }
+
+    /**
+     * Binds the bindable, usually a texture, while drawing. If the bindable binds a shader program that isn't
+     * instanced, such as the default shader of a texture, the instanced texture shader is used in its place and obeys
+     * the camera the same way.
+     *
+     * @param bindable The object to bind.
+     */
+    public void draw(Bindable bindable) {
+        this.update();
+
+        bindable.bind();
+
+        ShaderProgram boundProgram = ShaderProgram.getBoundProgram();
+
+        if (boundProgram != null && boundProgram.isInstanced()) {
+            this.render(boundProgram);
+        } else {
+            ShaderProgram replacement = bindable instanceof Texture ? this.getTextureShader() : this.getDefaultShader();
+            VertexShader replacementVertexShader = replacement.getVertexShader();
+
+            boolean obeyCamera = boundProgram == null || boundProgram.getVertexShader().isObeyingCamera();
+            replacementVertexShader.setObeyCamera(obeyCamera);
+
+            replacement.bind();
+            this.render(replacement);
+            replacement.unbind();
+
+            if (boundProgram != null) {
+                boundProgram.bind();
+            }
+        }
+
+        bindable.unbind();
+    }
+
+    private void render(ShaderProgram program) {
+        program.getVertexShader().setMatrixUniforms(program, IDENTITY);
+        this.model.renderInstances(this.transforms.size());
+    }
+
+    private ShaderProgram getDefaultShader() {
+        if (this.defaultShader == null) {
+            this.defaultShader = new ShaderProgram(
+                    new DefaultVertShader(),
+                    new ColorShader(ColorFactory.fromNorm(1, 1, 1, 1)),
+                    new ArrayList<>(),
+                    true
+            );
+        }
+
+        return this.defaultShader;
+    }
+
+    private ShaderProgram getTextureShader() {
+        if (this.textureShader == null) {
+            this.textureShader = new ShaderProgram(
+                    new TextureShaderVert(),
+                    new TextureShaderFrag(),
+                    TextureShaderVert.getAttribLocations(),
+                    true
+            );
+        }
+
+        return this.textureShader;
+    }
+
+    public InstancedModel getModel() {
+        return this.model;
+    }
+
+    private void writeTransform(int index) {
+        Transform transform = this.transforms.get(index);
+        Matrix3x2f matrix = transform.getAffineMatrix(this.affineMatrix);
+
+        int offset = index * InstancedModel.FLOATS_PER_INSTANCE;
+
+        this.instances
+                .put(offset, matrix.m00).put(offset + 1, matrix.m01)
+                .put(offset + 2, matrix.m10).put(offset + 3, matrix.m11)
+                .put(offset + 4, matrix.m20).put(offset + 5, matrix.m21);
+
+        this.versions[index] = transform.getVersion();
+        this.dirty[index] = true;
+    }
+
+    private int checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= this.transforms.size()) {
+            throw new IndexOutOfBoundsException("Instance " + index + " is out of bounds for " + this.transforms.size() + " instances");
+        }
+
+        return index;
+    }
+
+    private void grow() {
+        int capacity = this.versions.length * 2;
+
+        this.versions = Arrays.copyOf(this.versions, capacity);
+        this.dirty = Arrays.copyOf(this.dirty, capacity);
+
+        FloatBuffer instances = BufferUtils.createFloatBuffer(capacity * InstancedModel.FLOATS_PER_INSTANCE);
+        instances.put(0, this.instances, 0, this.instances.capacity());
+        this.instances = instances;
+    }
+
+    @Override
+    public void close() {
+        this.model.close();
+
+        if (this.defaultShader != null) {
+            this.defaultShader.close();
+        }
+
+        if (this.textureShader != null) {
+            this.textureShader.close();
+        }
+    }
+}
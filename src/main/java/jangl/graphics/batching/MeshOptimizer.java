@@ -0,0 +1,347 @@
+package jangl.graphics.batching;
+
+import java.util.Arrays;
+
+/**
+ * The steps of BatchBuilder.optimize(), and the vertex cache metrics used to measure them.
+ * <br>
+ * After the vertex shader runs on a vertex, the GPU keeps its output in a small cache, so a vertex that is used by
+ * several triangles close together in the index buffer is only shaded once. Welding lets triangles share vertices, and
+ * ordering the triangles so that shared vertices are used close together lets the cache reuse them.
+ */
+class MeshOptimizer {
+    /**
+     * The size of the cache that triangles are ordered for. Real caches range from about 16 to 32 entries, and an order
+     * made for a larger cache still works well on a smaller one.
+     */
+    private static final int CACHE_SIZE = 32;
+
+    /**
+     * The weights of Tom Forsyth's linear-speed vertex cache optimisation.
+     */
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    private static final int MAX_VALENCE_SCORE = 64;
+
+    private static final float[] CACHE_POSITION_SCORES = new float[CACHE_SIZE];
+    private static final float[] VALENCE_SCORES = new float[MAX_VALENCE_SCORE];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            if (i < 3) {
+                // The vertices of the last triangle get a fixed score, so the next triangle doesn't only reuse them
+                CACHE_POSITION_SCORES[i] = LAST_TRIANGLE_SCORE;
+            } else {
+                float scaler = 1f / (CACHE_SIZE - 3);
+                CACHE_POSITION_SCORES[i] = (float) Math.pow(1 - (i - 3) * scaler, CACHE_DECAY_POWER);
+            }
+        }
+
+        for (int i = 1; i < MAX_VALENCE_SCORE; i++) {
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+        }
+    }
+
+    private MeshOptimizer() {
+
+    }
+
+    /**
+     * Merges vertices with the same position and texture coords. -0 and 0 are treated as the same value.
+     *
+     * @param vertices  The x, y pairs of the vertices. Overwritten with the welded vertices at the start of the array.
+     * @param texCoords The u, v pairs of the vertices. Overwritten the same way.
+     * @param indices   The indices, which are changed to point to the welded vertices.
+     * @return The number of welded vertices.
+     */
+    static int weld(float[] vertices, float[] texCoords, int[] indices) {
+        int vertexCount = vertices.length / 2;
+
+        int tableSize = Integer.highestOneBit(Math.max(vertexCount, 1) * 2) * 2;
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+
+        int[] remap = new int[vertexCount];
+        int weldedCount = 0;
+
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            // Adding 0 turns -0 into 0, so they have the same bits
+            float x = vertices[vertex * 2] + 0f;
+            float y = vertices[vertex * 2 + 1] + 0f;
+            float u = texCoords[vertex * 2] + 0f;
+            float v = texCoords[vertex * 2 + 1] + 0f;
+
+            int hash = Float.floatToIntBits(x);
+            hash = hash * 31 + Float.floatToIntBits(y);
+            hash = hash * 31 + Float.floatToIntBits(u);
+            hash = hash * 31 + Float.floatToIntBits(v);
+            hash ^= hash >>> 16;
+
+            int slot = hash & (tableSize - 1);
+
+            while (table[slot] != -1) {
+                int other = table[slot];
+
+                if (vertices[other * 2] == x && vertices[other * 2 + 1] == y
+                        && texCoords[other * 2] == u && texCoords[other * 2 + 1] == v) {
+                    break;
+                }
+
+                slot = (slot + 1) & (tableSize - 1);
+            }
+
+            if (table[slot] == -1) {
+                // The welded vertex is written at or before this one, so it never overwrites an unread vertex
+                vertices[weldedCount * 2] = x;
+                vertices[weldedCount * 2 + 1] = y;
+                texCoords[weldedCount * 2] = u;
+                texCoords[weldedCount * 2 + 1] = v;
+
+                table[slot] = weldedCount;
+                weldedCount++;
+            }
+
+            remap[vertex] = table[slot];
+        }
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = remap[indices[i]];
+        }
+
+        return weldedCount;
+    }
+
+    /**
+     * Reorders the triangles so that triangles which share vertices are close together in the index buffer, using Tom
+     * Forsyth's linear-speed vertex cache optimisation. Each step picks the triangle whose vertices have the highest
+     * score, where a vertex scores higher the more recently it was used and the fewer triangles still need it.
+     *
+     * @param indices     The indices of the triangles. Reordered in place.
+     * @param vertexCount The number of vertices the indices refer to.
+     */
+    static void optimizeTriangleOrder(int[] indices, int vertexCount) {
+        int triangleCount = indices.length / 3;
+
+        // The triangles that use each vertex, stored as one array with an offset per vertex
+        int[] valences = new int[vertexCount];
+        int[] offsets = new int[vertexCount + 1];
+
+        for (int index : indices) {
+            valences[index]++;
+        }
+
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            offsets[vertex + 1] = offsets[vertex] + valences[vertex];
+        }
+
+        int[] vertexTriangles = new int[indices.length];
+        int[] filled = new int[vertexCount];
+
+        for (int i = 0; i < indices.length; i++) {
+            int vertex = indices[i];
+            vertexTriangles[offsets[vertex] + filled[vertex]++] = i / 3;
+        }
+
+        float[] vertexScores = new float[vertexCount];
+
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            vertexScores[vertex] = vertexScore(-1, valences[vertex]);
+        }
+
+        boolean[] added = new boolean[triangleCount];
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+
+        int[] ordered = new int[indices.length];
+        int bestTriangle = -1;
+        int scanStart = 0;
+
+        for (int output = 0; output < triangleCount; output++) {
+            if (bestTriangle == -1) {
+                // Nothing in the cache has triangles left, so continue from the first triangle that isn't added.
+                // Searching every triangle for the best score would make batches of separate quads quadratic.
+                while (added[scanStart]) {
+                    scanStart++;
+                }
+
+                bestTriangle = scanStart;
+            }
+
+            added[bestTriangle] = true;
+
+            // Put the triangle's vertices at the front of the cache, followed by the rest of the old cache
+            int newCacheCount = 0;
+
+            for (int corner = 0; corner < 3; corner++) {
+                int vertex = indices[bestTriangle * 3 + corner];
+                ordered[output * 3 + corner] = vertex;
+                newCache[newCacheCount++] = vertex;
+
+                removeTriangle(vertexTriangles, offsets[vertex], valences[vertex], bestTriangle);
+                valences[vertex]--;
+            }
+
+            for (int i = 0; i < cacheCount; i++) {
+                int vertex = cache[i];
+
+                if (vertex != newCache[0] && vertex != newCache[1] && vertex != newCache[2]) {
+                    newCache[newCacheCount++] = vertex;
+                }
+            }
+
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = newCacheCount;
+
+            // Rescore every vertex in the cache, including the ones that just fell out of it
+            for (int i = 0; i < cacheCount; i++) {
+                int vertex = cache[i];
+                vertexScores[vertex] = vertexScore(i < CACHE_SIZE ? i : -1, valences[vertex]);
+            }
+
+            bestTriangle = -1;
+            float bestScore = -1;
+
+            for (int i = 0; i < cacheCount; i++) {
+                int vertex = cache[i];
+
+                for (int j = offsets[vertex]; j < offsets[vertex] + valences[vertex]; j++) {
+                    int triangle = vertexTriangles[j];
+
+                    float score = vertexScores[indices[triangle * 3]]
+                            + vertexScores[indices[triangle * 3 + 1]]
+                            + vertexScores[indices[triangle * 3 + 2]];
+
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestTriangle = triangle;
+                    }
+                }
+            }
+
+            cacheCount = Math.min(cacheCount, CACHE_SIZE);
+        }
+
+        System.arraycopy(ordered, 0, indices, 0, indices.length);
+    }
+
+    private static float vertexScore(int cachePosition, int valence) {
+        if (valence == 0) {
+            // No triangles need the vertex anymore
+            return -1;
+        }
+
+        float score = cachePosition < 0 ? 0 : CACHE_POSITION_SCORES[cachePosition];
+
+        return score + (valence < MAX_VALENCE_SCORE ? VALENCE_SCORES[valence] : 0);
+    }
+
+    /**
+     * Removes a triangle from the triangles of a vertex by swapping it with the last one.
+     */
+    private static void removeTriangle(int[] vertexTriangles, int offset, int valence, int triangle) {
+        for (int i = offset; i < offset + valence; i++) {
+            if (vertexTriangles[i] == triangle) {
+                vertexTriangles[i] = vertexTriangles[offset + valence - 1];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reorders the vertices in the order the indices first use them, so the GPU reads the vertex buffer mostly in
+     * order. Vertices that no index uses are removed.
+     *
+     * @param vertices    The x, y pairs of the vertices. Overwritten with the reordered vertices.
+     * @param texCoords   The u, v pairs of the vertices. Overwritten the same way.
+     * @param indices     The indices, which are changed to point to the reordered vertices.
+     * @param vertexCount The number of vertices at the start of the arrays.
+     * @return The number of vertices that are used.
+     */
+    static int reorderVertices(float[] vertices, float[] texCoords, int[] indices, int vertexCount) {
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+
+        float[] oldVertices = Arrays.copyOf(vertices, vertexCount * 2);
+        float[] oldTexCoords = Arrays.copyOf(texCoords, vertexCount * 2);
+        int usedCount = 0;
+
+        for (int i = 0; i < indices.length; i++) {
+            int vertex = indices[i];
+
+            if (remap[vertex] == -1) {
+                remap[vertex] = usedCount;
+
+                vertices[usedCount * 2] = oldVertices[vertex * 2];
+                vertices[usedCount * 2 + 1] = oldVertices[vertex * 2 + 1];
+                texCoords[usedCount * 2] = oldTexCoords[vertex * 2];
+                texCoords[usedCount * 2 + 1] = oldTexCoords[vertex * 2 + 1];
+
+                usedCount++;
+            }
+
+            indices[i] = remap[vertex];
+        }
+
+        return usedCount;
+    }
+
+    /**
+     * Simulates a first-in first-out vertex cache, like the ones GPUs use, and counts how many vertices are shaded.
+     *
+     * @param indices   The indices of the triangles.
+     * @param cacheSize The number of vertices the cache holds.
+     * @return The number of cache misses, which is the number of times a vertex is shaded.
+     */
+    static int countCacheMisses(int[] indices, int cacheSize) {
+        int vertexCount = 0;
+
+        for (int index : indices) {
+            vertexCount = Math.max(vertexCount, index + 1);
+        }
+
+        // The miss count when each vertex last entered the cache. It is still in the cache if fewer than cacheSize
+        // vertices entered after it
+        int[] entered = new int[vertexCount];
+        Arrays.fill(entered, Integer.MIN_VALUE);
+
+        int misses = 0;
+
+        for (int index : indices) {
+            if (entered[index] == Integer.MIN_VALUE || misses - entered[index] >= cacheSize) {
+                entered[index] = misses;
+                misses++;
+            }
+        }
+
+        return misses;
+    }
+
+    /**
+     * @return The number of distinct vertices the indices use.
+     */
+    static int countUsedVertices(int[] indices) {
+        int vertexCount = 0;
+
+        for (int index : indices) {
+            vertexCount = Math.max(vertexCount, index + 1);
+        }
+
+        boolean[] used = new boolean[vertexCount];
+        int usedCount = 0;
+
+        for (int index : indices) {
+            if (!used[index]) {
+                used[index] = true;
+                usedCount++;
+            }
+        }
+
+        return usedCount;
+    }
+}
@@ -0,0 +1,374 @@
+package jangl.graphics.batching;
+
+import jangl.graphics.Bindable;
+import jangl.graphics.GLState;
+import jangl.graphics.shaders.ShaderProgram;
+import jangl.graphics.shaders.VertexShader;
+import jangl.graphics.shaders.premade.DefaultVertShader;
+import jangl.resourcemanager.Resource;
+import jangl.resourcemanager.ResourceManager;
+import jangl.resourcemanager.ResourceQueuer;
+import jangl.resourcemanager.ResourceType;
+import jangl.shapes.Rect;
+import jangl.shapes.Transform;
+import org.joml.Matrix3x2f;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * Draws many textured quads that change every frame with as few draw calls as possible. Unlike Batch, which is
+ * uploaded once and drawn many times, a SpriteBatch is refilled every frame:
+ * <pre>
+ * spriteBatch.begin();
+ * for (Rect rect : rects) {
+ *     spriteBatch.draw(texture, rect);
+ * }
+ * spriteBatch.end();
+ * </pre>
+ * The quads are transformed on the CPU and collected in memory. They are only sent to OpenGL and drawn when the
+ * texture or the bound shader changes, when the batch is full, or when end() is called, so quads that share a texture
+ * should be drawn one after another.
+ * <br>
+ * The quads are streamed into a GL_STREAM_DRAW buffer that is several batches long. Each flush writes to the part of
+ * the buffer after the previous flush without waiting for the GPU, and when the buffer is used up it is orphaned so
+ * OpenGL can hand out fresh memory while the old memory is still being drawn from.
+ */
+public class SpriteBatch implements AutoCloseable {
+    private static final ShaderProgram defaultShader = new ShaderProgram(new DefaultVertShader());
+
+    /**
+     * The quads are already in world coordinates, so the model matrix does nothing.
+     */
+    private static final Matrix3x2f IDENTITY = new Matrix3x2f();
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The number of flushes of a full batch that fit in the vertex buffer before it is orphaned.
+     */
+    private static final int RING_SEGMENTS = 4;
+
+    /**
+     * Each vertex is an x, y position followed by a u, v texture coordinate.
+     */
+    private static final int FLOATS_PER_VERTEX = 4;
+    private static final int VERTEX_BYTES = FLOATS_PER_VERTEX * Float.BYTES;
+    private static final int FLOATS_PER_SPRITE = 4 * FLOATS_PER_VERTEX;
+    private static final int INDICES_PER_SPRITE = 6;
+
+    private final int capacity;
+    private final int vao;
+    private final int vbo;
+    private final int ebo;
+
+    /**
+     * The quads that are waiting to be flushed.
+     */
+    private final FloatBuffer vertices;
+    private final long ringSize;
+    private long ringOffset;
+
+    private int spriteCount;
+    private Bindable texture;
+    private ShaderProgram shaderProgram;
+    private boolean drawing;
+
+    private int drawCallCount;
+    private int totalSpriteCount;
+
+    private final AtomicBoolean closed;
+
+    public SpriteBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The maximum number of sprites drawn by one draw call. Drawing more sprites than this with the
+     *                 same texture flushes the batch early.
+     * @throws IllegalArgumentException Throws if the capacity is not positive.
+     */
+    public SpriteBatch(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of a SpriteBatch must be positive, not " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.vertices = BufferUtils.createFloatBuffer(capacity * FLOATS_PER_SPRITE);
+        this.ringSize = (long) RING_SEGMENTS * capacity * FLOATS_PER_SPRITE * Float.BYTES;
+
+        this.vao = glGenVertexArrays();
+        this.vbo = glGenBuffers();
+        this.ebo = glGenBuffers();
+
+        GLState.bindVertexArray(this.vao);
+
+        glBindBuffer(GL_ARRAY_BUFFER, this.vbo);
+        glBufferData(GL_ARRAY_BUFFER, this.ringSize, GL_STREAM_DRAW);
+
+        // Same attribute locations as TexturedModel, interleaved in one buffer
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, VERTEX_BYTES, 0);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(1, 2, GL_FLOAT, false, VERTEX_BYTES, 2 * Float.BYTES);
+        glEnableVertexAttribArray(1);
+
+        // Every quad uses the same indices, so they only have to be uploaded once. The base vertex of each draw call
+        // selects the quads.
+        IntBuffer indices = MemoryUtil.memAllocInt(capacity * INDICES_PER_SPRITE);
+
+        try {
+            for (int i = 0; i < capacity; i++) {
+                int first = i * 4;
+                indices.put(first).put(first + 1).put(first + 2);
+                indices.put(first + 2).put(first + 3).put(first);
+            }
+
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, this.ebo);
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices.flip(), GL_STATIC_DRAW);
+        } finally {
+            MemoryUtil.memFree(indices);
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        this.closed = new AtomicBoolean(false);
+        ResourceManager.add(
+                this,
+                new ResourceQueuer(this.closed, new Resource(new int[]{this.vbo, this.ebo}, ResourceType.BUFFER))
+        );
+        ResourceManager.add(this, new ResourceQueuer(this.closed, new Resource(this.vao, ResourceType.VAO)));
+    }
+
+    /**
+     * Starts a new frame of sprites and resets the draw call and sprite counters.
+     *
+     * @throws IllegalStateException Throws if begin() was already called without calling end().
+     */
+    public void begin() throws IllegalStateException {
+        if (this.drawing) {
+            throw new IllegalStateException("SpriteBatch.end() must be called before begin() is called again");
+        }
+
+        this.drawing = true;
+        this.drawCallCount = 0;
+        this.totalSpriteCount = 0;
+    }
+
+    /**
+     * Draws every sprite that hasn't been drawn yet.
+     *
+     * @throws IllegalStateException Throws if begin() wasn't called first.
+     */
+    public void end() throws IllegalStateException {
+        if (!this.drawing) {
+            throw new IllegalStateException("SpriteBatch.begin() must be called before end()");
+        }
+
+        this.flush();
+        this.drawing = false;
+    }
+
+    /**
+     * Adds a rect to the batch, covered by the whole texture. The texture repeat of the rect is respected, so it looks
+     * the same as Rect.draw(texture).
+     *
+     * @param texture The texture to draw on the rect.
+     * @param rect    The rect to draw.
+     */
+    public void draw(Bindable texture, Rect rect) {
+        // Since the y-axis is flipped, the same way as Shape.getTexCoords()
+        this.draw(texture, rect, 0, 1 - rect.getTexRepeatY(), rect.getTexRepeatX(), 1);
+    }
+
+    /**
+     * Adds a rect to the batch, covered by part of the texture.
+     *
+     * @param texture The texture to draw on the rect.
+     * @param rect    The rect to draw.
+     * @param u1      The x texture coordinate of the top left of the rect.
+     * @param v1      The y texture coordinate of the top left of the rect.
+     * @param u2      The x texture coordinate of the bottom right of the rect.
+     * @param v2      The y texture coordinate of the bottom right of the rect.
+     */
+    public void draw(Bindable texture, Rect rect, float u1, float v1, float u2, float v2) {
+        this.draw(texture, rect.getTransform(), rect.getWidth(), rect.getHeight(), u1, v1, u2, v2);
+    }
+
+    /**
+     * Adds a quad to the batch. The quad is centered on the transform, and its width and height are scaled by it.
+     *
+     * @param texture   The texture to draw on the quad.
+     * @param transform The position, rotation, and scale of the quad.
+     * @param width     The width of the quad before it is scaled, in WorldCoords.
+     * @param height    The height of the quad before it is scaled, in WorldCoords.
+     * @param u1        The x texture coordinate of the top left of the quad.
+     * @param v1        The y texture coordinate of the top left of the quad.
+     * @param u2        The x texture coordinate of the bottom right of the quad.
+     * @param v2        The y texture coordinate of the bottom right of the quad.
+     * @throws IllegalStateException Throws if begin() wasn't called first.
+     */
+    public void draw(Bindable texture, Transform transform, float width, float height,
+                     float u1, float v1, float u2, float v2) throws IllegalStateException {
+        if (!this.drawing) {
+            throw new IllegalStateException("SpriteBatch.begin() must be called before drawing");
+        }
+
+        ShaderProgram shaderProgram = ShaderProgram.getBoundProgram();
+
+        if (texture != this.texture || shaderProgram != this.shaderProgram || this.spriteCount == this.capacity) {
+            this.flush();
+            this.texture = texture;
+            this.shaderProgram = shaderProgram;
+        }
+
+        // The columns of the affine matrix are the rotated and scaled x and y axes
+        float halfWidth = width / 2;
+        float halfHeight = height / 2;
+        float cos = transform.getRotationCos();
+        float sin = transform.getRotationSin();
+
+        float xAxisX = cos * transform.getScaleX() * halfWidth;
+        float xAxisY = sin * transform.getScaleX() * halfWidth;
+        float yAxisX = -sin * transform.getScaleY() * halfHeight;
+        float yAxisY = cos * transform.getScaleY() * halfHeight;
+
+        float centerX = transform.getCenterX();
+        float centerY = transform.getCenterY();
+
+        // Top left, top right, bottom right, bottom left, the same order as Rect
+        this.vertices
+                .put(centerX - xAxisX + yAxisX).put(centerY - xAxisY + yAxisY).put(u1).put(v1)
+                .put(centerX + xAxisX + yAxisX).put(centerY + xAxisY + yAxisY).put(u2).put(v1)
+                .put(centerX + xAxisX - yAxisX).put(centerY + xAxisY - yAxisY).put(u2).put(v2)
+                .put(centerX - xAxisX - yAxisX).put(centerY - xAxisY - yAxisY).put(u1).put(v2);
+
+        this.spriteCount++;
+        this.totalSpriteCount++;
+    }
+
+    /**
+     * Draws the sprites that are waiting in the batch with one draw call. This is called automatically, but it can be
+     * called manually if something else has to be drawn on top of the sprites drawn so far.
+     */
+    public void flush() {
+        if (this.spriteCount == 0) {
+            return;
+        }
+
+        this.upload();
+
+        ShaderProgram previousProgram = ShaderProgram.getBoundProgram();
+
+        if (this.shaderProgram != null && previousProgram != this.shaderProgram) {
+            this.shaderProgram.bind();
+        }
+
+        this.texture.bind();
+
+        ShaderProgram boundProgram = ShaderProgram.getBoundProgram();
+        boolean usingDefaultShader = false;
+
+        if (boundProgram == null) {
+            usingDefaultShader = true;
+            boundProgram = defaultShader;
+            defaultShader.bind();
+        }
+
+        VertexShader vertexShader = boundProgram.getVertexShader();
+        vertexShader.setMatrixUniforms(boundProgram, IDENTITY);
+
+        GLState.bindVertexArray(this.vao);
+        glDrawElementsBaseVertex(
+                GL_TRIANGLES,
+                this.spriteCount * INDICES_PER_SPRITE,
+                GL_UNSIGNED_INT,
+                0,
+                (int) (this.ringOffset / VERTEX_BYTES)
+        );
+
+        this.drawCallCount++;
+
+        if (usingDefaultShader) {
+            defaultShader.unbind();
+        }
+
+        this.texture.unbind();
+
+        if (previousProgram != null && ShaderProgram.getBoundProgram() != previousProgram) {
+            previousProgram.bind();
+        }
+
+        this.ringOffset += (long) this.spriteCount * FLOATS_PER_SPRITE * Float.BYTES;
+        this.spriteCount = 0;
+    }
+
+    /**
+     * Copies the waiting sprites to the part of the vertex buffer after the last flush, orphaning the buffer first if
+     * they don't fit.
+     */
+    private void upload() {
+        long bytes = (long) this.spriteCount * FLOATS_PER_SPRITE * Float.BYTES;
+
+        glBindBuffer(GL_ARRAY_BUFFER, this.vbo);
+
+        if (this.ringOffset + bytes > this.ringSize) {
+            // Draw calls that are still reading the old memory keep it, and this buffer gets new memory
+            glBufferData(GL_ARRAY_BUFFER, this.ringSize, GL_STREAM_DRAW);
+            this.ringOffset = 0;
+        }
+
+        // Nothing has been drawn from this range since the buffer was orphaned, so there is nothing to wait for
+        long address = nglMapBufferRange(
+                GL_ARRAY_BUFFER,
+                this.ringOffset,
+                bytes,
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT | GL_MAP_UNSYNCHRONIZED_BIT
+        );
+
+        if (address == MemoryUtil.NULL) {
+            glBufferSubData(GL_ARRAY_BUFFER, this.ringOffset, this.vertices.flip());
+        } else {
+            MemoryUtil.memCopy(MemoryUtil.memAddress0(this.vertices), address, bytes);
+            glUnmapBuffer(GL_ARRAY_BUFFER);
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        this.vertices.clear();
+    }
+
+    /**
+     * @return The number of draw calls made since begin() was called.
+     */
+    public int getDrawCallCount() {
+        return this.drawCallCount;
+    }
+
+    /**
+     * @return The number of sprites drawn since begin() was called.
+     */
+    public int getSpriteCount() {
+        return this.totalSpriteCount;
+    }
+
+    /**
+     * @return The maximum number of sprites drawn by one draw call.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public void close() {
+        if (this.closed.getAndSet(true)) {
+            return;
+        }
+
+        GLState.deleteVertexArray(this.vao);
+        glDeleteBuffers(new int[]{this.vbo, this.ebo});
+    }
+}
@@ -0,0 +1,352 @@
+package jangl.graphics.batching;
+
+import jangl.coords.WorldCoords;
+import jangl.graphics.Bindable;
+import jangl.graphics.Camera;
+import jangl.graphics.Drawable;
+import jangl.graphics.shaders.ShaderProgram;
+import jangl.util.AABB;
+
+import java.util.Arrays;
+
+/**
+ * A grid of tiles that all come from one tile sheet, like a grid of TileSheetRects that share a texture. The map is
+ * split into square chunks of tiles, and each chunk is a Batch that is only rebuilt when one of its tiles changes:
+ * <pre>
+ * TileMap map = new TileMap(topLeft, 0.05f, 0.05f, 1000, 1000, 16, 16);
+ * map.setTile(3, 4, 1, 0);
+ * ...
+ * map.draw(tileSheet);
+ * </pre>
+ * Only the chunks that overlap the visible part of the world are drawn, and they are found from the camera's bounds
+ * without looking at the others, so the cost of drawing the map depends on the size of the screen rather than the
+ * size of the map. Chunks that change while they are off-screen are rebuilt once they come into view.
+ * <br>
+ * Tile (0, 0) is the top left tile of the map, and tile sheet position (0, 0) is the top left tile of the sheet, the
+ * same as TileSheetRect.setTilePos().
+ */
+public class TileMap implements AutoCloseable, Drawable {
+    /**
+     * The value of a tile that isn't drawn.
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * The default width and height of a chunk, in tiles. A 32x32 chunk is 4096 vertices, so a chunk is cheap to rebuild
+     * and a 1080p screen of small tiles is a few dozen draw calls.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    private static final int[] QUAD_INDICES = {0, 1, 2, 2, 3, 0};
+
+    private final float left;
+    private final float top;
+    private final float tileWidth;
+    private final float tileHeight;
+    private final int columns;
+    private final int rows;
+    private final int tilesWidth;
+    private final int tilesHeight;
+    private final int chunkSize;
+    private final int chunkColumns;
+    private final int chunkRows;
+
+    /**
+     * The tile sheet index of each tile, tileY * tilesWidth + tileX, or EMPTY. Stored row by row from the top.
+     */
+    private final int[] tiles;
+    private final Batch[] chunks;
+    private final boolean[] dirtyChunks;
+
+    private final AABB visibleBounds;
+    private final float[] quadVertices;
+    private final float[] quadTexCoords;
+    private int drawnChunkCount;
+
+    /**
+     * Creates an empty map with chunks of DEFAULT_CHUNK_SIZE tiles.
+     *
+     * @param topLeft     The top left corner of the map.
+     * @param tileWidth   The width of each tile, in units of world coordinates.
+     * @param tileHeight  The height of each tile, in units of world coordinates.
+     * @param columns     The number of tiles on the x-axis of the map.
+     * @param rows        The number of tiles on the y-axis of the map.
+     * @param tilesWidth  The number of tiles on the x-axis of the tile sheet.
+     * @param tilesHeight The number of tiles on the y-axis of the tile sheet.
+     * @throws IllegalArgumentException Throws if a size is less than or equal to 0.
+     */
+    public TileMap(WorldCoords topLeft, float tileWidth, float tileHeight, int columns, int rows, int tilesWidth,
+                   int tilesHeight) throws IllegalArgumentException {
+        this(topLeft, tileWidth, tileHeight, columns, rows, tilesWidth, tilesHeight, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an empty map.
+     *
+     * @param topLeft     The top left corner of the map.
+     * @param tileWidth   The width of each tile, in units of world coordinates.
+     * @param tileHeight  The height of each tile, in units of world coordinates.
+     * @param columns     The number of tiles on the x-axis of the map.
+     * @param rows        The number of tiles on the y-axis of the map.
+     * @param tilesWidth  The number of tiles on the x-axis of the tile sheet.
+     * @param tilesHeight The number of tiles on the y-axis of the tile sheet.
+     * @param chunkSize   The width and height of each chunk, in tiles. Larger chunks mean fewer draw calls, but more
+     *                    tiles to rebuild when one changes and more off-screen tiles drawn at the edges of the screen.
+     * @throws IllegalArgumentException Throws if a size is less than or equal to 0.
+     */
+    public TileMap(WorldCoords topLeft, float tileWidth, float tileHeight, int columns, int rows, int tilesWidth,
+                   int tilesHeight, int chunkSize) throws IllegalArgumentException {
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("The tile width and height must be greater than 0");
+        }
+
+        if (columns <= 0 || rows <= 0 || tilesWidth <= 0 || tilesHeight <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                    "The columns, rows, tilesWidth, tilesHeight, and chunkSize must be greater than 0"
+            );
+        }
+
+        this.left = topLeft.x;
+        this.top = topLeft.y;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.columns = columns;
+        this.rows = rows;
+        this.tilesWidth = tilesWidth;
+        this.tilesHeight = tilesHeight;
+        this.chunkSize = chunkSize;
+        this.chunkColumns = (columns + chunkSize - 1) / chunkSize;
+        this.chunkRows = (rows + chunkSize - 1) / chunkSize;
+
+        this.tiles = new int[columns * rows];
+        Arrays.fill(this.tiles, EMPTY);
+
+        this.chunks = new Batch[this.chunkColumns * this.chunkRows];
+        this.dirtyChunks = new boolean[this.chunks.length];
+
+        this.visibleBounds = new AABB();
+        this.quadVertices = new float[8];
+        this.quadTexCoords = new float[8];
+    }
+
+    /**
+     * Sets the tile of the tile sheet to display at a position in the map. Provide zero-indexed coordinates.
+     *
+     * @param x     The x coordinate of the tile in the map, from the left.
+     * @param y     The y coordinate of the tile in the map, from the top.
+     * @param tileX The x coordinate of the tile to display within the tile sheet.
+     * @param tileY The y coordinate of the tile to display within the tile sheet.
+     * @throws IllegalArgumentException Throws if a coordinate is out of bounds.
+     */
+    public void setTile(int x, int y, int tileX, int tileY) throws IllegalArgumentException {
+        if (tileX < 0 || tileX >= this.tilesWidth || tileY < 0 || tileY >= this.tilesHeight) {
+            throw new IllegalArgumentException(
+                    "The tile sheet coordinate is out of bounds. The x must be between the range [0, tilesWidth)" +
+                            " and the y must be between the range [0, tilesHeight)"
+            );
+        }
+
+        this.setTileIndex(x, y, tileY * this.tilesWidth + tileX);
+    }
+
+    /**
+     * Removes the tile at a position in the map, so nothing is drawn there.
+     *
+     * @param x The x coordinate of the tile in the map, from the left.
+     * @param y The y coordinate of the tile in the map, from the top.
+     * @throws IllegalArgumentException Throws if a coordinate is out of bounds.
+     */
+    public void clearTile(int x, int y) throws IllegalArgumentException {
+        this.setTileIndex(x, y, EMPTY);
+    }
+
+    /**
+     * @param x The x coordinate of the tile in the map, from the left.
+     * @param y The y coordinate of the tile in the map, from the top.
+     * @return The tile sheet index of the tile, tileY * tilesWidth + tileX, or EMPTY.
+     * @throws IllegalArgumentException Throws if a coordinate is out of bounds.
+     */
+    public int getTile(int x, int y) throws IllegalArgumentException {
+        return this.tiles[this.toTileIndex(x, y)];
+    }
+
+    private void setTileIndex(int x, int y, int tile) {
+        int index = this.toTileIndex(x, y);
+
+        if (this.tiles[index] == tile) {
+            return;
+        }
+
+        this.tiles[index] = tile;
+        this.dirtyChunks[(y / this.chunkSize) * this.chunkColumns + x / this.chunkSize] = true;
+    }
+
+    private int toTileIndex(int x, int y) {
+        if (x < 0 || x >= this.columns || y < 0 || y >= this.rows) {
+            throw new IllegalArgumentException(
+                    "The map coordinate is out of bounds. The x must be between the range [0, columns)" +
+                            " and the y must be between the range [0, rows)"
+            );
+        }
+
+        return y * this.columns + x;
+    }
+
+    /**
+     * Draws the visible chunks with the bound shader and texture, rebuilding the ones whose tiles changed.
+     */
+    @Override
+    public void draw() {
+        ShaderProgram boundProgram = ShaderProgram.getBoundProgram();
+
+        // Batch.draw() uses the camera with its default shader, so cull against the camera unless told otherwise
+        if (boundProgram == null || boundProgram.getVertexShader().isObeyingCamera()) {
+            Camera.getVisibleBounds(this.visibleBounds);
+        } else {
+            Camera.getScreenBounds(this.visibleBounds);
+        }
+
+        float chunkWidth = this.chunkSize * this.tileWidth;
+        float chunkHeight = this.chunkSize * this.tileHeight;
+
+        int firstColumn = Math.max((int) Math.floor((this.visibleBounds.minX - this.left) / chunkWidth), 0);
+        int lastColumn = Math.min((int) Math.floor((this.visibleBounds.maxX - this.left) / chunkWidth), this.chunkColumns - 1);
+        int firstRow = Math.max((int) Math.floor((this.top - this.visibleBounds.maxY) / chunkHeight), 0);
+        int lastRow = Math.min((int) Math.floor((this.top - this.visibleBounds.minY) / chunkHeight), this.chunkRows - 1);
+
+        this.drawnChunkCount = 0;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int chunk = row * this.chunkColumns + column;
+
+                if (this.dirtyChunks[chunk]) {
+                    this.rebuildChunk(chunk);
+                }
+
+                if (this.chunks[chunk] != null) {
+                    this.chunks[chunk].draw();
+                    this.drawnChunkCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the visible chunks with a texture, which should be the tile sheet.
+     *
+     * @param bindable The tile sheet.
+     */
+    public void draw(Bindable bindable) {
+        bindable.bind();
+        this.draw();
+        bindable.unbind();
+    }
+
+    private void rebuildChunk(int chunk) {
+        this.dirtyChunks[chunk] = false;
+
+        if (this.chunks[chunk] != null) {
+            this.chunks[chunk].close();
+            this.chunks[chunk] = null;
+        }
+
+        int firstX = (chunk % this.chunkColumns) * this.chunkSize;
+        int firstY = (chunk / this.chunkColumns) * this.chunkSize;
+        int lastX = Math.min(firstX + this.chunkSize, this.columns);
+        int lastY = Math.min(firstY + this.chunkSize, this.rows);
+
+        BatchBuilder builder = null;
+
+        for (int y = firstY; y < lastY; y++) {
+            for (int x = firstX; x < lastX; x++) {
+                int tile = this.tiles[y * this.columns + x];
+
+                if (tile == EMPTY) {
+                    continue;
+                }
+
+                if (builder == null) {
+                    builder = new BatchBuilder();
+                }
+
+                this.putQuad(x, y, tile);
+                builder.addObject(this.quadVertices, QUAD_INDICES, this.quadTexCoords);
+            }
+        }
+
+        // A chunk with no tiles has nothing to draw
+        if (builder != null) {
+            this.chunks[chunk] = builder.toBatch();
+        }
+    }
+
+    /**
+     * Writes the vertices and texture coords of a tile to quadVertices and quadTexCoords, in the same order as
+     * TileSheetRect.
+     */
+    private void putQuad(int x, int y, int tile) {
+        float leftX = this.left + x * this.tileWidth;
+        float rightX = leftX + this.tileWidth;
+        float topY = this.top - y * this.tileHeight;
+        float bottomY = topY - this.tileHeight;
+
+        this.quadVertices[0] = leftX;
+        this.quadVertices[1] = topY;
+        this.quadVertices[2] = rightX;
+        this.quadVertices[3] = topY;
+        this.quadVertices[4] = rightX;
+        this.quadVertices[5] = bottomY;
+        this.quadVertices[6] = leftX;
+        this.quadVertices[7] = bottomY;
+
+        float leftU = (float) (tile % this.tilesWidth) / this.tilesWidth;
+        float rightU = leftU + 1f / this.tilesWidth;
+        float topV = (float) (tile / this.tilesWidth) / this.tilesHeight;
+        float bottomV = topV + 1f / this.tilesHeight;
+
+        this.quadTexCoords[0] = leftU;
+        this.quadTexCoords[1] = topV;
+        this.quadTexCoords[2] = rightU;
+        this.quadTexCoords[3] = topV;
+        this.quadTexCoords[4] = rightU;
+        this.quadTexCoords[5] = bottomV;
+        this.quadTexCoords[6] = leftU;
+        this.quadTexCoords[7] = bottomV;
+    }
+
+    public int getColumns() {
+        return this.columns;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * @return The number of chunks in the map, including empty ones.
+     */
+    public int getChunkCount() {
+        return this.chunks.length;
+    }
+
+    /**
+     * @return The number of chunks drawn by the last call to draw(), which is also its number of draw calls.
+     */
+    public int getDrawnChunkCount() {
+        return this.drawnChunkCount;
+    }
+
+    @Override
+    public void close() {
+        for (Batch chunk : this.chunks) {
+            if (chunk != null) {
+                chunk.close();
+            }
+        }
+    }
+}
@@ -2,16 +2,32 @@ package jangl.graphics.font;
 
 import jangl.coords.PixelCoords;
 import jangl.coords.WorldCoords;
-import jangl.graphics.batching.Batch;
+import jangl.graphics.Camera;
+import jangl.graphics.Drawable;
 import jangl.graphics.batching.BatchBuilder;
+import jangl.graphics.batching.DynamicBatch;
 import jangl.graphics.shaders.ShaderProgram;
 import jangl.shapes.Transform;
+import jangl.util.AABB;
 
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
-public class Text implements AutoCloseable {
+public class Text implements AutoCloseable, Drawable {
     private static final float NEWLINE_SPACING = 1.2f;
-    private Batch batch;
+    private static final int[] CHAR_INDICES = new int[]{
+            0, 1, 2,
+            2, 3, 0
+    };
+
+    /**
+     * Each char is a quad in the batch. When the text changes, the quads are updated in place, so only the chars that
+     * changed are uploaded again.
+     */
+    private DynamicBatch batch;
+    private int[] charHandles;
+    private int charCount;
     private String text;
     private WorldCoords coords;
     private Font font;
@@ -20,6 +36,15 @@ public class Text implements AutoCloseable {
     private float yCutoff;
     private float wrapWidth;
 
+    /**
+     * The bounds of the chars relative to the batch's origin, and in the world as of worldBoundsVersion. Used to skip
+     * drawing text that is off-screen.
+     */
+    private final AABB localBounds;
+    private final AABB worldBounds;
+    private int worldBoundsVersion;
+    private final AABB visibleBounds;
+
     public Text(TextBuilder builder) throws IllegalArgumentException {
         if (builder.getYCutoff() != -1 && builder.getYCutoff() < builder.getHeight()) {
             throw new IllegalArgumentException("The yCutoff must be greater than the height!");
@@ -36,7 +61,12 @@ public class Text implements AutoCloseable {
         this.text = this.processText(builder.getText());
         this.justification = builder.getJustification();
 
-        this.batch = this.getBatch();
+        this.localBounds = new AABB();
+        this.worldBounds = new AABB();
+        this.visibleBounds = new AABB();
+
+        this.charHandles = new int[0];
+        this.updateBatch();
     }
 
     private String processText(String text) {
@@ -133,11 +163,6 @@ public class Text implements AutoCloseable {
     }
 
     private void addCharacter(BatchBuilder builder, PixelCoords cursor, CharInfo info, float scaleFactor) {
-        final int[] charIndices = new int[]{
-                0, 1, 2,
-                2, 3, 0
-        };
-
         WorldCoords scCursor = cursor.toWorldCoords();
 
         // x1 = left, x2 = right
@@ -156,7 +181,7 @@ public class Text implements AutoCloseable {
 
         float[] charTexCoords = this.font.getTexCoords((char) info.charID());
 
-        builder.addObject(charVertices, charIndices, charTexCoords);
+        builder.addObject(charVertices, CHAR_INDICES, charTexCoords);
     }
 
     private void generateLineRightJustify(BatchBuilder builder, PixelCoords cursor, String text, float scaleFactor) {
@@ -239,7 +264,7 @@ public class Text implements AutoCloseable {
     /**
      * @throws NullPointerException If this.justification is null
      */
-    private Batch getBatch() throws NullPointerException {
+    private BatchBuilder generateChars() throws NullPointerException {
         int heightPixels = this.font.tallestLetter.height();
         float heightWorldCoords = PixelCoords.distToWorldCoords(heightPixels);
 
@@ -259,15 +284,78 @@ public class Text implements AutoCloseable {
             cursor.y -= WorldCoords.distToPixelCoords(this.height) * NEWLINE_SPACING;
         }
 
-        return new Batch(builder);
+        return builder;
+    }
+
+    /**
+     * Generates the chars and updates the quad of each one in the batch. Quads that didn't change aren't uploaded.
+     *
+     * @throws NullPointerException If this.justification is null
+     */
+    private void updateBatch() throws NullPointerException {
+        BatchBuilder builder = this.generateChars();
+        int chars = builder.getVertexCount() / 4;
+
+        // The text rotates and scales around its middle, which moves when the text changes
+        WorldCoords middle = chars > 0 ? builder.getMiddle() : this.coords;
+
+        if (this.batch == null) {
+            this.batch = new DynamicBatch(middle);
+        } else {
+            this.batch.setOrigin(middle);
+        }
+
+        if (chars > this.charHandles.length) {
+            this.charHandles = Arrays.copyOf(this.charHandles, Math.max(chars, this.charHandles.length * 2));
+        }
+
+        FloatBuffer vertices = builder.getVertexBuffer();
+        FloatBuffer texCoords = builder.getTexCoordBuffer();
+        float[] charVertices = new float[8];
+        float[] charTexCoords = new float[8];
+
+        WorldCoords origin = this.batch.getOrigin();
+        this.localBounds.set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+
+        for (int i = 0; i < chars; i++) {
+            vertices.get(charVertices);
+            texCoords.get(charTexCoords);
+
+            for (int j = 0; j < charVertices.length; j += 2) {
+                this.localBounds.minX = Math.min(this.localBounds.minX, charVertices[j] - origin.x);
+                this.localBounds.minY = Math.min(this.localBounds.minY, charVertices[j + 1] - origin.y);
+                this.localBounds.maxX = Math.max(this.localBounds.maxX, charVertices[j] - origin.x);
+                this.localBounds.maxY = Math.max(this.localBounds.maxY, charVertices[j + 1] - origin.y);
+            }
+
+            if (i < this.charCount) {
+                this.batch.setVertices(this.charHandles[i], charVertices);
+                this.batch.setTexCoords(this.charHandles[i], charTexCoords);
+            } else {
+                this.charHandles[i] = this.batch.add(charVertices, CHAR_INDICES, charTexCoords);
+            }
+        }
+
+        for (int i = chars; i < this.charCount; i++) {
+            this.batch.remove(this.charHandles[i]);
+        }
+
+        this.charCount = chars;
+
+        // Empty text is an empty box at its origin. Infinite bounds would turn into NaN when they are transformed.
+        if (chars == 0) {
+            this.localBounds.set(0, 0, 0, 0);
+        }
+
+        // The local bounds changed, so the world bounds have to be recalculated even if the transform didn't change
+        this.worldBoundsVersion = this.batch.getTransform().getVersion() - 1;
     }
 
     /**
      * Regenerate the new model with any changes that may have been made since the last time it was generated
      */
     protected void regenerate() {
-        this.batch.close();  // close the old model before generating the new one
-        this.batch = this.getBatch();
+        this.updateBatch();
     }
 
     /**
@@ -279,6 +367,9 @@ public class Text implements AutoCloseable {
 
     public void setCoords(WorldCoords newCoords) {
         this.coords = new WorldCoords(newCoords.x, newCoords.y);
+
+        // The new coords are absolute, so undo any shifts made since the text was created
+        this.batch.getTransform().setPos(this.batch.getOrigin());
         this.regenerate();
     }
 
@@ -388,7 +479,40 @@ public class Text implements AutoCloseable {
         return this.batch.getTransform();
     }
 
+    /**
+     * @return The smallest axis-aligned box around the chars with the text's transform applied. The same object is
+     * returned each time, so copy it to keep it.
+     */
+    public AABB getWorldBounds() {
+        Transform transform = this.batch.getTransform();
+
+        if (this.worldBoundsVersion != transform.getVersion()) {
+            this.worldBounds.setTransformed(
+                    this.localBounds.minX, this.localBounds.minY, this.localBounds.maxX, this.localBounds.maxY,
+                    transform.getAffineMatrix()
+            );
+
+            this.worldBoundsVersion = transform.getVersion();
+        }
+
+        return this.worldBounds;
+    }
+
+    /**
+     * Draws the text, unless it is off-screen.
+     */
+    @Override
     public void draw() {
+        if (this.font.isObeyingCamera()) {
+            Camera.getVisibleBounds(this.visibleBounds);
+        } else {
+            Camera.getScreenBounds(this.visibleBounds);
+        }
+
+        if (!this.getWorldBounds().intersects(this.visibleBounds)) {
+            return;
+        }
+
         ShaderProgram shaderProgram = this.font.getShaderProgram();
 
         shaderProgram.bind();
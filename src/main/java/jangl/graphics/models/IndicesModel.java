@@ -1,24 +1,147 @@
 package jangl.graphics.models;
 
+import jangl.graphics.GLState;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
 import static org.lwjgl.opengl.GL41.*;
 
 /**
  * Allows you to pass the vertex and index information of a shape into OpenGL. Passing indices reduces video memory,
  * so it is recommended compared to the base Model class.
+ * <br>
+ * Models with at most 65536 vertices store their indices as 16-bit integers, which halves the size of the index
+ * buffer. The methods of this class still take 32-bit indices and convert them.
  */
 public class IndicesModel extends Model {
+    /**
+     * The largest number of vertices that 16-bit indices can refer to.
+     */
+    private static final int MAX_SHORT_INDEX_VERTICES = 1 << 16;
+
     protected int ebo;
 
+    /**
+     * GL_UNSIGNED_SHORT or GL_UNSIGNED_INT.
+     */
+    protected int indexType;
+
     public IndicesModel(float[] vertices, int[] indices) {
         super(vertices);
 
-        glBindVertexArray(this.vao);
-        this.drawCount = indices.length;
+        this.bindNewIndexBuffer(indices.length);
+
+        if (this.indexType == GL_UNSIGNED_INT) {
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        } else {
+            this.bufferIndices(IntBuffer.wrap(indices), GL_STATIC_DRAW);
+        }
+    }
+
+    /**
+     * Uploads the data between the position and limit of each buffer, without copying them into arrays first.
+     *
+     * @param vertices The vertices. The position of the buffer is not changed.
+     * @param indices  The indices. The position of the buffer is not changed.
+     */
+    public IndicesModel(FloatBuffer vertices, IntBuffer indices) {
+        this(vertices, indices, VertexFormat.SEPARATE);
+    }
+
+    /**
+     * @param vertices The vertices. The position of the buffer is not changed.
+     * @param indices  The indices. The position of the buffer is not changed.
+     * @param usage    The usage hint of the buffers, such as GL_STATIC_DRAW, or GL_DYNAMIC_DRAW if they are modified
+     *                 often with subVertices() and subIndices().
+     */
+    public IndicesModel(FloatBuffer vertices, IntBuffer indices, int usage) {
+        this(vertices, indices, VertexFormat.SEPARATE, usage);
+    }
+
+    /**
+     * @param vertices The vertices. The position of the buffer is not changed.
+     * @param indices  The indices. The position of the buffer is not changed.
+     * @param format   How the vertices are stored on the GPU.
+     */
+    public IndicesModel(FloatBuffer vertices, IntBuffer indices, VertexFormat format) {
+        this(vertices, indices, format, GL_STATIC_DRAW);
+    }
+
+    /**
+     * @param vertices The vertices. The position of the buffer is not changed.
+     * @param indices  The indices. The position of the buffer is not changed.
+     * @param format   How the vertices are stored on the GPU.
+     * @param usage    The usage hint of the buffers, such as GL_STATIC_DRAW, or GL_DYNAMIC_DRAW if they are modified
+     *                 often with subVertices() and subIndices().
+     */
+    public IndicesModel(FloatBuffer vertices, IntBuffer indices, VertexFormat format, int usage) {
+        this(vertices, indices, null, null, format, usage);
+    }
+
+    /**
+     * See Model(FloatBuffer, FloatBuffer, IntBuffer, VertexFormat, int).
+     */
+    protected IndicesModel(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords, IntBuffer colors, VertexFormat format, int usage) {
+        super(vertices, texCoords, colors, format, usage);
+
+        this.bindNewIndexBuffer(indices.remaining());
+        this.bufferIndices(indices, usage);
+    }
+
+    private void bindNewIndexBuffer(int indexCount) {
+        GLState.bindVertexArray(this.vao);
+        this.drawCount = indexCount;
+        this.indexType = this.vertexCount <= MAX_SHORT_INDEX_VERTICES ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
         this.ebo = glGenBuffers();
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, this.ebo);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+    }
+
+    /**
+     * Uploads indices to the bound element buffer, converting them to 16-bit integers if the model uses them.
+     */
+    private void bufferIndices(IntBuffer indices, int usage) {
+        if (this.indexType == GL_UNSIGNED_INT && indices.isDirect()) {
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, usage);
+            return;
+        }
+
+        if (this.indexType == GL_UNSIGNED_INT) {
+            IntBuffer copy = MemoryUtil.memAllocInt(indices.remaining());
+
+            try {
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, copy.put(0, indices, indices.position(), indices.remaining()), usage);
+            } finally {
+                MemoryUtil.memFree(copy);
+            }
+
+            return;
+        }
+
+        ShortBuffer shortIndices = toShortIndices(indices);
 
-        glBindVertexArray(0);
+        try {
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, shortIndices, usage);
+        } finally {
+            MemoryUtil.memFree(shortIndices);
+        }
+    }
+
+    /**
+     * @return The indices as 16-bit integers. The buffer must be freed with MemoryUtil.memFree().
+     */
+    private static ShortBuffer toShortIndices(IntBuffer indices) {
+        ShortBuffer shortIndices = MemoryUtil.memAllocShort(indices.remaining());
+
+        for (int i = 0; i < indices.remaining(); i++) {
+            shortIndices.put(i, (short) indices.get(indices.position() + i));
+        }
+
+        return shortIndices;
     }
 
     @Override
@@ -26,18 +149,127 @@ public class IndicesModel extends Model {
         return new int[]{ this.vbo, this.ebo};
     }
 
+    /**
+     * @return The number of bytes each index takes on the GPU.
+     */
+    public int getIndexSize() {
+        return this.indexType == GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES;
+    }
+
     @Override
     public void render() {
         drawCallCounter++;
 
         this.bind();
-        glDrawElements(GL_TRIANGLES, this.drawCount, GL_UNSIGNED_INT, 0);
-        this.unbind();
+        glDrawElements(GL_TRIANGLES, this.drawCount, this.indexType, 0);
     }
 
+    /**
+     * Draws only the first indexCount indices, for models whose buffers have room for more data than they use. Unlike
+     * InstancedModel.renderInstances(), the count is of indices, not instances.
+     *
+     * @param indexCount The number of indices to draw.
+     */
+    public void render(int indexCount) {
+        drawCallCounter++;
+
+        this.bind();
+        glDrawElements(GL_TRIANGLES, indexCount, this.indexType, 0);
+    }
+
+    /**
+     * Draws indexCount indices starting at firstIndex.
+     *
+     * @param firstIndex The index of the first index to draw.
+     * @param indexCount The number of indices to draw.
+     */
+    public void render(int firstIndex, int indexCount) {
+        drawCallCounter++;
+
+        this.bind();
+        glDrawElements(GL_TRIANGLES, indexCount, this.indexType, (long) firstIndex * this.getIndexSize());
+    }
+
+    /**
+     * Draws several ranges of indices in one draw call.
+     *
+     * @param firstIndices The index of the first index of each range.
+     * @param indexCounts  The number of indices in each range.
+     * @param rangeCount   The number of ranges to draw, from the start of the arrays.
+     */
+    public void render(int[] firstIndices, int[] indexCounts, int rangeCount) {
+        if (rangeCount == 1) {
+            this.render(firstIndices[0], indexCounts[0]);
+            return;
+        }
+
+        drawCallCounter++;
+
+        this.bind();
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer counts = stack.mallocInt(rangeCount);
+            PointerBuffer offsets = stack.mallocPointer(rangeCount);
+
+            for (int i = 0; i < rangeCount; i++) {
+                counts.put(i, indexCounts[i]);
+                offsets.put(i, (long) firstIndices[i] * this.getIndexSize());
+            }
+
+            glMultiDrawElements(GL_TRIANGLES, counts, this.indexType, offsets);
+        }
+    }
+
+    /**
+     * @param indices The indices.
+     * @param offset  The offset of the first index, in bytes of 32-bit indices (index * Integer.BYTES), no matter
+     *                the type of indices the model uses.
+     */
     public void subIndices(int[] indices, int offset) {
+        if (this.indexType == GL_UNSIGNED_SHORT) {
+            this.subIndices(IntBuffer.wrap(indices), offset);
+            return;
+        }
+
+        // The element buffer binding belongs to the bound VAO, so bind this model's VAO to avoid changing another's
+        this.bind();
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, this.ebo);
         glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, offset, indices);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * @param indices The indices between the position and limit of the buffer. The position is not changed.
+     * @param offset  The offset of the first index, in bytes of 32-bit indices (index * Integer.BYTES), no matter
+     *                the type of indices the model uses.
+     */
+    public void subIndices(IntBuffer indices, int offset) {
+        this.bind();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, this.ebo);
+
+        if (this.indexType == GL_UNSIGNED_INT && indices.isDirect()) {
+            glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, offset, indices);
+            return;
+        }
+
+        // LWJGL can only pass direct buffers to OpenGL
+        if (this.indexType == GL_UNSIGNED_INT) {
+            IntBuffer copy = MemoryUtil.memAllocInt(indices.remaining());
+
+            try {
+                glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, offset, copy.put(0, indices, indices.position(), indices.remaining()));
+            } finally {
+                MemoryUtil.memFree(copy);
+            }
+
+            return;
+        }
+
+        ShortBuffer shortIndices = toShortIndices(indices);
+
+        try {
+            glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, (long) offset / Integer.BYTES * Short.BYTES, shortIndices);
+        } finally {
+            MemoryUtil.memFree(shortIndices);
+        }
     }
 }
@@ -0,0 +1,110 @@
+package jangl.graphics.models;
+
+import jangl.graphics.GLState;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * A TexturedModel that is drawn many times with one draw call. Each instance has its own model matrix, UV rect, and
+ * tint, stored in an instance buffer. Draw it with an instanced ShaderProgram.
+ * <br>
+ * Each instance is FLOATS_PER_INSTANCE floats:
+ * <pre>
+ * m00, m01, m10, m11   the scale and rotation part of the model matrix (attribute 12)
+ * m20, m21             the translation part of the model matrix (attribute 13)
+ * u1, v1, u2, v2       the UV rect the texture coords of the model are mapped to (attribute 14)
+ * r, g, b, a           the tint, multiplied with the color of the texture (attribute 15)
+ * </pre>
+ */
+public class InstancedModel extends TexturedModel {
+    public static final int FLOATS_PER_INSTANCE = 14;
+    private static final int INSTANCE_BYTES = FLOATS_PER_INSTANCE * Float.BYTES;
+
+    protected final int ibo;
+    private int instanceCapacity;
+
+    /**
+     * @param vertices         The vertices of the mesh that every instance shares.
+     * @param indices          The indices of the mesh.
+     * @param texCoords        The texture coords of the mesh.
+     * @param instanceCapacity The number of instances the instance buffer has room for.
+     */
+    public InstancedModel(float[] vertices, int[] indices, float[] texCoords, int instanceCapacity) {
+        super(vertices, indices, texCoords);
+
+        GLState.bindVertexArray(this.vao);
+
+        this.ibo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, this.ibo);
+        this.allocateInstances(instanceCapacity);
+
+        // Each attribute advances once per instance instead of once per vertex
+        instanceAttribute(12, 4, 0);
+        instanceAttribute(13, 2, 4);
+        instanceAttribute(14, 4, 6);
+        instanceAttribute(15, 4, 10);
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    private static void instanceAttribute(int index, int size, int offset) {
+        glVertexAttribPointer(index, size, GL_FLOAT, false, INSTANCE_BYTES, (long) offset * Float.BYTES);
+        glVertexAttribDivisor(index, 1);
+        glEnableVertexAttribArray(index);
+    }
+
+    private void allocateInstances(int instanceCapacity) {
+        this.instanceCapacity = instanceCapacity;
+        glBufferData(GL_ARRAY_BUFFER, (long) instanceCapacity * INSTANCE_BYTES, GL_DYNAMIC_DRAW);
+    }
+
+    /**
+     * @return The number of instances the instance buffer has room for.
+     */
+    public int getInstanceCapacity() {
+        return this.instanceCapacity;
+    }
+
+    /**
+     * Resizes the instance buffer. The data of every instance is lost, so it has to be uploaded again.
+     *
+     * @param instanceCapacity The number of instances the instance buffer should have room for.
+     */
+    public void setInstanceCapacity(int instanceCapacity) {
+        glBindBuffer(GL_ARRAY_BUFFER, this.ibo);
+        this.allocateInstances(instanceCapacity);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Uploads the data of a range of instances.
+     *
+     * @param instances     The data between the position and limit of the buffer, FLOATS_PER_INSTANCE floats per
+     *                      instance. The position of the buffer is not changed.
+     * @param firstInstance The index of the first instance to replace.
+     */
+    public void subInstances(FloatBuffer instances, int firstInstance) {
+        glBindBuffer(GL_ARRAY_BUFFER, this.ibo);
+        glBufferSubData(GL_ARRAY_BUFFER, (long) firstInstance * INSTANCE_BYTES, instances);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    protected int[] getBuffers() {
+        return new int[]{ this.vbo, this.ebo, this.tbo, this.ibo};
+    }
+
+    /**
+     * Draws the first instanceCount instances with one draw call.
+     *
+     * @param instanceCount The number of instances to draw.
+     */
+    public void renderInstances(int instanceCount) {
+        drawCallCounter++;
+
+        this.bind();
+        glDrawElementsInstanced(GL_TRIANGLES, this.drawCount, this.indexType, 0, instanceCount);
+    }
+}
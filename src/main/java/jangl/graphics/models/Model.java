@@ -1,8 +1,15 @@
 package jangl.graphics.models;
 
 import jangl.graphics.Bindable;
+import jangl.graphics.GLState;
+import jangl.graphics.models.enums.AttribType;
 import jangl.resourcemanager.*;
+import org.lwjgl.system.MemoryUtil;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.lwjgl.opengl.GL41.*;
@@ -12,9 +19,11 @@ public class Model implements AutoCloseable, Bindable {
     protected static final int DIMENSIONS = 2;
     protected static int drawCallCounter = 0;
     protected int drawCount;
+    protected int vertexCount;
     protected int vao;
     protected int vbo;
     protected AtomicBoolean closed;
+    protected final VertexFormat format;
 
 
     /**
@@ -23,20 +32,212 @@ public class Model implements AutoCloseable, Bindable {
      * @param vertices The triangle vertices.
      */
     public Model(float[] vertices) {
-        this.drawCount = vertices.length / DIMENSIONS;
+        this.format = VertexFormat.SEPARATE;
+        this.vertexCount = vertices.length / DIMENSIONS;
+        this.drawCount = this.vertexCount;
 
+        this.bindNewVertexBuffer();
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        attribPointer(VertexFormat.POSITION_LOCATION, DIMENSIONS, AttribType.FLOAT, 0, 0);
+        this.finishVertexBuffer();
+    }
+
+    /**
+     * Create a new model with the vertices between the buffer's position and limit, uploaded without copying them
+     * into an array first.
+     *
+     * @param vertices The triangle vertices. The position of the buffer is not changed.
+     */
+    public Model(FloatBuffer vertices) {
+        this(vertices, VertexFormat.SEPARATE);
+    }
+
+    /**
+     * Create a new model with the vertices between the buffer's position and limit.
+     *
+     * @param vertices The triangle vertices. The position of the buffer is not changed.
+     * @param usage    The usage hint of the buffers, such as GL_STATIC_DRAW, or GL_DYNAMIC_DRAW if they are modified
+     *                 often with subVertices().
+     */
+    public Model(FloatBuffer vertices, int usage) {
+        this(vertices, VertexFormat.SEPARATE, usage);
+    }
+
+    /**
+     * Create a new model with the vertices between the buffer's position and limit, stored in the given format.
+     *
+     * @param vertices The triangle vertices. The position of the buffer is not changed.
+     * @param format   How the vertices are stored on the GPU.
+     */
+    public Model(FloatBuffer vertices, VertexFormat format) {
+        this(vertices, format, GL_STATIC_DRAW);
+    }
+
+    /**
+     * Create a new model with the vertices between the buffer's position and limit, stored in the given format.
+     *
+     * @param vertices The triangle vertices. The position of the buffer is not changed.
+     * @param format   How the vertices are stored on the GPU.
+     * @param usage    The usage hint of the buffers, such as GL_STATIC_DRAW, or GL_DYNAMIC_DRAW if they are modified
+     *                 often with subVertices().
+     */
+    public Model(FloatBuffer vertices, VertexFormat format, int usage) {
+        this(vertices, null, null, format, usage);
+    }
+
+    /**
+     * Creates the vertex buffer. If the format is interleaved, the texture coords and colors are stored in the vertex
+     * buffer too, since they share it with the positions. Otherwise, subclasses upload them to their own buffers.
+     *
+     * @param vertices  The triangle vertices. The position of the buffer is not changed.
+     * @param texCoords The texture coords, or null. The position of the buffer is not changed.
+     * @param colors    The packed colors, or null. The position of the buffer is not changed.
+     * @param format    How the vertices are stored on the GPU.
+     * @param usage     The usage hint of the buffers.
+     */
+    protected Model(FloatBuffer vertices, FloatBuffer texCoords, IntBuffer colors, VertexFormat format, int usage) {
+        this.format = format;
+        this.vertexCount = vertices.remaining() / DIMENSIONS;
+        this.drawCount = this.vertexCount;
+
+        this.bindNewVertexBuffer();
+
+        if (format.isInterleaved()) {
+            this.bufferInterleaved(vertices, texCoords, colors, usage);
+        } else {
+            bufferAttribute(vertices, format.getPositionType(), DIMENSIONS, usage);
+            attribPointer(VertexFormat.POSITION_LOCATION, DIMENSIONS, format.getPositionType(), 0, 0);
+        }
+
+        this.finishVertexBuffer();
+    }
+
+    private void bufferInterleaved(FloatBuffer vertices, FloatBuffer texCoords, IntBuffer colors, int usage) {
+        int stride = this.format.getStride();
+        ByteBuffer data = MemoryUtil.memCalloc(this.vertexCount * stride);
+
+        try {
+            VertexFormat.putAttribute(data, 0, stride, this.format.getPositionType(), vertices, DIMENSIONS);
+
+            if (texCoords != null) {
+                VertexFormat.putAttribute(data, this.format.getTexCoordOffset(), stride, this.format.getTexCoordType(), texCoords, 2);
+            }
+
+            if (colors != null && this.format.hasColors()) {
+                VertexFormat.putColors(data, this.format.getColorOffset(), stride, colors);
+            }
+
+            glBufferData(GL_ARRAY_BUFFER, data, usage);
+        } finally {
+            MemoryUtil.memFree(data);
+        }
+
+        attribPointer(VertexFormat.POSITION_LOCATION, DIMENSIONS, this.format.getPositionType(), stride, 0);
+
+        if (texCoords != null) {
+            attribPointer(VertexFormat.TEX_COORDS_LOCATION, 2, this.format.getTexCoordType(), stride, this.format.getTexCoordOffset());
+        }
+
+        if (colors != null && this.format.hasColors()) {
+            attribPointer(VertexFormat.COLOR_LOCATION, 4, AttribType.NORMALIZED_BYTE, stride, this.format.getColorOffset());
+        }
+    }
+
+    /**
+     * Uploads an attribute to the bound array buffer, tightly packed. Floats in a direct buffer are uploaded as they
+     * are, and anything else is converted first.
+     */
+    protected static void bufferAttribute(FloatBuffer data, AttribType type, int components, int usage) {
+        if (type == AttribType.FLOAT && data.isDirect()) {
+            glBufferData(GL_ARRAY_BUFFER, data, usage);
+            return;
+        }
+
+        ByteBuffer encoded = encodeAttribute(data, type, components);
+
+        try {
+            glBufferData(GL_ARRAY_BUFFER, encoded, usage);
+        } finally {
+            MemoryUtil.memFree(encoded);
+        }
+    }
+
+    /**
+     * @return A tightly packed copy of the attribute in the given type. It must be freed with MemoryUtil.memFree().
+     */
+    private static ByteBuffer encodeAttribute(FloatBuffer data, AttribType type, int components) {
+        int size = components * type.getSize();
+        ByteBuffer encoded = MemoryUtil.memAlloc(data.remaining() / components * size);
+        VertexFormat.putAttribute(encoded, 0, size, type, data, components);
+
+        return encoded;
+    }
+
+    /**
+     * Sets up and enables an attribute of the bound array buffer.
+     */
+    protected static void attribPointer(int location, int components, AttribType type, int stride, int offset) {
+        glVertexAttribPointer(location, components, type.toInteger(), type.isNormalized(), stride, offset);
+        glEnableVertexAttribArray(location);
+    }
+
+    /**
+     * Replaces an attribute of a range of vertices. Interleaved buffers are mapped so that only the attribute is
+     * written, which waits for the GPU to finish drawing with the buffer.
+     *
+     * @param buffer      The buffer that stores the attribute.
+     * @param data        The attribute of each vertex between the position and limit. The position is not changed.
+     * @param firstVertex The index of the first vertex to replace.
+     * @param type        The type of the attribute.
+     * @param components  The number of components of the attribute.
+     * @param offset      The offset of the attribute in an interleaved vertex, in bytes.
+     */
+    protected void subAttribute(int buffer, FloatBuffer data, int firstVertex, AttribType type, int components, int offset) {
+        int vertexCount = data.remaining() / components;
+
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+
+        if (this.format.isInterleaved()) {
+            int stride = this.format.getStride();
+            ByteBuffer mapped = glMapBufferRange(GL_ARRAY_BUFFER, (long) firstVertex * stride, (long) vertexCount * stride, GL_MAP_WRITE_BIT);
+
+            if (mapped == null) {
+                glBindBuffer(GL_ARRAY_BUFFER, 0);
+                throw new IllegalStateException("Could not map the vertex buffer of the model");
+            }
+
+            VertexFormat.putAttribute(mapped.order(ByteOrder.nativeOrder()), offset, stride, type, data, components);
+            glUnmapBuffer(GL_ARRAY_BUFFER);
+        } else if (type == AttribType.FLOAT && data.isDirect()) {
+            glBufferSubData(GL_ARRAY_BUFFER, (long) firstVertex * components * Float.BYTES, data);
+        } else {
+            ByteBuffer encoded = encodeAttribute(data, type, components);
+
+            try {
+                glBufferSubData(GL_ARRAY_BUFFER, (long) firstVertex * components * type.getSize(), encoded);
+            } finally {
+                MemoryUtil.memFree(encoded);
+            }
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Creates the VAO and VBO and binds them, ready for the vertices to be uploaded.
+     */
+    private void bindNewVertexBuffer() {
         this.vao = glGenVertexArrays();
         this.vbo = glGenBuffers();
 
-        glBindVertexArray(this.vao);
+        GLState.bindVertexArray(this.vao);
         glBindBuffer(GL_ARRAY_BUFFER, this.vbo);
-        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
-
-        // stride = 0 means a tightly-packed array
-        glVertexAttribPointer(0, DIMENSIONS, GL_FLOAT, false, 0, 0);
-        glEnableVertexAttribArray(0);
-        glBindVertexArray(0);
+    }
 
+    /**
+     * Registers the buffers to be freed after the vertices are uploaded.
+     */
+    private void finishVertexBuffer() {
         this.closed = new AtomicBoolean(false);
 
         ResourceManager.add(
@@ -69,27 +270,57 @@ public class Model implements AutoCloseable, Bindable {
     public void render() {
         drawCallCounter++;
 
+        // The VAO is left bound, so drawing the same model again doesn't have to bind it
         this.bind();
         glDrawArrays(GL_TRIANGLES, 0, this.drawCount);
-        this.unbind();
     }
 
     @Override
     public void bind() {
-        glBindVertexArray(this.vao);
+        GLState.bindVertexArray(this.vao);
     }
 
+    /**
+     * Does nothing, since the next model that is drawn binds its own VAO. See GLState.
+     */
     @Override
     public void unbind() {
-        glBindVertexArray(0);
+
     }
 
+    /**
+     * @param vertices The vertices.
+     * @param offset   The offset of the first vertex, in bytes of float vertices (index * 2 * Float.BYTES), no
+     *                 matter the format of the model.
+     */
     public void subVertices(float[] vertices, int offset) {
+        if (!this.format.hasFloatPositions()) {
+            this.subVertices(FloatBuffer.wrap(vertices), offset);
+            return;
+        }
+
         glBindBuffer(GL_ARRAY_BUFFER, this.vbo);
         glBufferSubData(GL_ARRAY_BUFFER, offset, vertices);
         glBindBuffer(GL_ARRAY_BUFFER, 0);
     }
 
+    /**
+     * @param vertices The vertices between the position and limit of the buffer. The position is not changed.
+     * @param offset   The offset of the first vertex, in bytes of float vertices (index * 2 * Float.BYTES), no
+     *                 matter the format of the model.
+     */
+    public void subVertices(FloatBuffer vertices, int offset) {
+        int firstVertex = offset / (DIMENSIONS * Float.BYTES);
+        this.subAttribute(this.vbo, vertices, firstVertex, this.format.getPositionType(), DIMENSIONS, 0);
+    }
+
+    /**
+     * @return How the vertices of the model are stored on the GPU.
+     */
+    public VertexFormat getFormat() {
+        return this.format;
+    }
+
     public static int getDrawCallCount() {
         return drawCallCounter;
     }
@@ -107,7 +338,7 @@ public class Model implements AutoCloseable, Bindable {
             return;
         }
 
-        glDeleteVertexArrays(this.vao);
+        GLState.deleteVertexArray(this.vao);
         glDeleteBuffers(this.getBuffers());
     }
 }
@@ -1,5 +1,13 @@
 package jangl.graphics.models;
 
+import jangl.graphics.GLState;
+import jangl.graphics.models.enums.AttribType;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 import static org.lwjgl.opengl.GL41.*;
 
 
@@ -7,8 +15,21 @@ import static org.lwjgl.opengl.GL41.*;
  * A Model class that allows textures to be drawn to it.
  */
 public class TexturedModel extends IndicesModel {
+    /**
+     * The buffer of the texture coords, or 0 if they are interleaved in the vertex buffer.
+     */
     protected final int tbo;
 
+    /**
+     * The buffer of the colors, or 0 if the model has no colors or they are interleaved in the vertex buffer.
+     */
+    protected final int cbo;
+
+    /**
+     * The key of the model in TexturedModelCache, or null if it isn't shared.
+     */
+    TexturedModelCache.Key cacheKey;
+
     /**
      * @param vertices  The vertices.
      * @param texCoords Which corner of the texture should be mapped to what corner of the model.
@@ -16,27 +37,167 @@ public class TexturedModel extends IndicesModel {
     public TexturedModel(float[] vertices, int[] indices, float[] texCoords) {
         super(vertices, indices);
 
-        glBindVertexArray(this.vao);
-
-        this.tbo = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, this.tbo);
+        this.tbo = this.bindNewTexCoordBuffer();
         glBufferData(GL_ARRAY_BUFFER, texCoords, GL_STATIC_DRAW);
+        attribPointer(VertexFormat.TEX_COORDS_LOCATION, 2, AttribType.FLOAT, 0, 0);
+        this.cbo = 0;
+    }
+
+    /**
+     * Uploads the data between the position and limit of each buffer, without copying them into arrays first.
+     *
+     * @param vertices  The vertices. The position of the buffer is not changed.
+     * @param indices   The indices. The position of the buffer is not changed.
+     * @param texCoords Which corner of the texture should be mapped to what corner of the model. The position of the
+     *                  buffer is not changed.
+     */
+    public TexturedModel(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords) {
+        this(vertices, indices, texCoords, null, VertexFormat.SEPARATE);
+    }
+
+    /**
+     * @param vertices  The vertices. The position of the buffer is not changed.
+     * @param indices   The indices. The position of the buffer is not changed.
+     * @param texCoords The texture coords. The position of the buffer is not changed.
+     * @param usage     The usage hint of the buffers, such as GL_STATIC_DRAW, or GL_DYNAMIC_DRAW if they are modified
+     *                  often with the sub* methods.
+     */
+    public TexturedModel(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords, int usage) {
+        this(vertices, indices, texCoords, null, VertexFormat.SEPARATE, usage);
+    }
+
+    /**
+     * @param vertices  The vertices.
+     * @param indices   The indices.
+     * @param texCoords Which corner of the texture should be mapped to what corner of the model.
+     * @param format    How the vertices are stored on the GPU.
+     */
+    public TexturedModel(float[] vertices, int[] indices, float[] texCoords, VertexFormat format) {
+        this(FloatBuffer.wrap(vertices), IntBuffer.wrap(indices), FloatBuffer.wrap(texCoords), null, format);
+    }
+
+    /**
+     * @param vertices  The vertices. The position of the buffer is not changed.
+     * @param indices   The indices. The position of the buffer is not changed.
+     * @param texCoords Which corner of the texture should be mapped to what corner of the model. The position of the
+     *                  buffer is not changed.
+     * @param format    How the vertices are stored on the GPU.
+     */
+    public TexturedModel(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords, VertexFormat format) {
+        this(vertices, indices, texCoords, null, format);
+    }
 
-        // Set up the attribute pointer for the texture coordinates
-        glVertexAttribPointer(1, 2, GL_FLOAT, false, 0, 0);
-        glEnableVertexAttribArray(1);
+    /**
+     * @param vertices  The vertices. The position of the buffer is not changed.
+     * @param indices   The indices. The position of the buffer is not changed.
+     * @param texCoords Which corner of the texture should be mapped to what corner of the model. The position of the
+     *                  buffer is not changed.
+     * @param format    How the vertices are stored on the GPU.
+     * @param usage     The usage hint of the buffers, such as GL_STATIC_DRAW, or GL_DYNAMIC_DRAW if they are modified
+     *                  often with subVertices(), subIndices(), and subTexCoords().
+     */
+    public TexturedModel(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords, VertexFormat format, int usage) {
+        this(vertices, indices, texCoords, null, format, usage);
+    }
 
-        glBindVertexArray(0);
+    /**
+     * @param vertices  The vertices. The position of the buffer is not changed.
+     * @param indices   The indices. The position of the buffer is not changed.
+     * @param texCoords Which corner of the texture should be mapped to what corner of the model. The position of the
+     *                  buffer is not changed.
+     * @param colors    The color of each vertex as 0xRRGGBBAA, or null. Only used if the format has colors. The
+     *                  position of the buffer is not changed.
+     * @param format    How the vertices are stored on the GPU.
+     */
+    public TexturedModel(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords, IntBuffer colors, VertexFormat format) {
+        this(vertices, indices, texCoords, colors, format, GL_STATIC_DRAW);
+    }
+
+    /**
+     * @param vertices  The vertices. The position of the buffer is not changed.
+     * @param indices   The indices. The position of the buffer is not changed.
+     * @param texCoords Which corner of the texture should be mapped to what corner of the model. The position of the
+     *                  buffer is not changed.
+     * @param colors    The color of each vertex as 0xRRGGBBAA, or null. Only used if the format has colors. The
+     *                  position of the buffer is not changed.
+     * @param format    How the vertices are stored on the GPU.
+     * @param usage     The usage hint of the buffers, such as GL_STATIC_DRAW or GL_DYNAMIC_DRAW.
+     */
+    public TexturedModel(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords, IntBuffer colors, VertexFormat format, int usage) {
+        super(vertices, indices, texCoords, colors, format, usage);
+
+        if (format.isInterleaved()) {
+            this.tbo = 0;
+            this.cbo = 0;
+            return;
+        }
+
+        this.tbo = this.bindNewTexCoordBuffer();
+        bufferAttribute(texCoords, format.getTexCoordType(), 2, usage);
+        attribPointer(VertexFormat.TEX_COORDS_LOCATION, 2, format.getTexCoordType(), 0, 0);
+
+        if (colors == null || !format.hasColors()) {
+            this.cbo = 0;
+            return;
+        }
+
+        this.cbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, this.cbo);
+
+        ByteBuffer packedColors = MemoryUtil.memAlloc(colors.remaining() * 4);
+
+        try {
+            VertexFormat.putColors(packedColors, 0, 4, colors);
+            glBufferData(GL_ARRAY_BUFFER, packedColors, usage);
+        } finally {
+            MemoryUtil.memFree(packedColors);
+        }
+
+        attribPointer(VertexFormat.COLOR_LOCATION, 4, AttribType.NORMALIZED_BYTE, 0, 0);
+    }
+
+    private int bindNewTexCoordBuffer() {
+        GLState.bindVertexArray(this.vao);
+
+        int tbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, tbo);
+
+        return tbo;
     }
 
     @Override
     protected int[] getBuffers() {
-        return new int[]{ this.vbo, this.ebo, this.tbo};
+        return new int[]{ this.vbo, this.ebo, this.tbo, this.cbo};
     }
 
+    /**
+     * @param texCoords The texture coords.
+     * @param offset    The offset of the first vertex's texture coords, in bytes of float texture coords
+     *                  (index * 2 * Float.BYTES), no matter the format of the model.
+     */
     public void subTexCoords(float[] texCoords, int offset) {
+        if (!this.format.hasFloatTexCoords()) {
+            this.subTexCoords(FloatBuffer.wrap(texCoords), offset);
+            return;
+        }
+
         glBindBuffer(GL_TEXTURE_BUFFER, this.tbo);
         glBufferSubData(GL_TEXTURE_BUFFER, offset, texCoords);
         glBindBuffer(GL_TEXTURE_BUFFER, 0);
     }
+
+    /**
+     * @param texCoords The texture coords between the position and limit of the buffer. The position is not changed.
+     * @param offset    The offset of the first vertex's texture coords, in bytes of float texture coords
+     *                  (index * 2 * Float.BYTES), no matter the format of the model.
+     */
+    public void subTexCoords(FloatBuffer texCoords, int offset) {
+        int firstVertex = offset / (2 * Float.BYTES);
+
+        if (this.format.isInterleaved()) {
+            this.subAttribute(this.vbo, texCoords, firstVertex, this.format.getTexCoordType(), 2, this.format.getTexCoordOffset());
+        } else {
+            this.subAttribute(this.tbo, texCoords, firstVertex, this.format.getTexCoordType(), 2, 0);
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package jangl.graphics.models;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares one TexturedModel between every user that needs the same vertices, indices, and texture coords. Shapes with
+ * the same local geometry, such as rects with the same width, height, and texture repeat, are only uploaded to
+ * OpenGL once, so creating many of them doesn't allocate a VAO and buffers for each one.
+ * <br>
+ * Each model is reference counted: acquire() increases the count and release() decreases it, and the model is closed
+ * when the count reaches 0. Since the model is shared, it must not be modified with subVertices(), subIndices(), or
+ * subTexCoords(). Acquire a model with the new data instead.
+ * <br>
+ * The cache only keeps weak references to the models, so a model whose users are garbage collected without being
+ * closed is still freed by the ResourceManager. Like the rest of OpenGL, this class must only be used on the main
+ * thread.
+ */
+public class TexturedModelCache {
+    private static final Map<Key, Entry> entries = new HashMap<>();
+
+    /**
+     * Receives the weak references of models that were garbage collected, so their entries can be removed.
+     */
+    private static final ReferenceQueue<TexturedModel> collected = new ReferenceQueue<>();
+
+    private TexturedModelCache() {
+
+    }
+
+    /**
+     * Gets the shared model with the given data, creating it if it doesn't exist yet. The arrays are kept as the key
+     * of the model, so they must not be modified afterwards.
+     *
+     * @param vertices  The vertices.
+     * @param indices   The indices.
+     * @param texCoords The texture coords.
+     * @return The shared model. Pass it to release() instead of closing it.
+     */
+    public static TexturedModel acquire(float[] vertices, int[] indices, float[] texCoords) {
+        removeCollected();
+
+        Key key = new Key(vertices, indices, texCoords);
+        Entry entry = entries.get(key);
+        TexturedModel model = entry == null ? null : entry.model.get();
+
+        if (model == null) {
+            // Either the model doesn't exist, or every user of it was garbage collected without releasing it
+            model = new TexturedModel(vertices, indices, texCoords);
+            model.cacheKey = key;
+
+            entry = new Entry(model, key);
+            entries.put(key, entry);
+        }
+
+        entry.references++;
+        return model;
+    }
+
+    /**
+     * Gives up a reference to a model from acquire(). The model is closed once every reference is released.
+     *
+     * @param model The model to release.
+     */
+    public static void release(TexturedModel model) {
+        Entry entry = entries.get(model.cacheKey);
+
+        // The entry may belong to a newer model if this one was replaced after being garbage collected
+        if (entry == null || entry.model.get() != model) {
+            model.close();
+            return;
+        }
+
+        entry.references--;
+
+        if (entry.references <= 0) {
+            entries.remove(model.cacheKey);
+            model.close();
+        }
+    }
+
+    /**
+     * @return The number of distinct models in the cache.
+     */
+    public static int size() {
+        removeCollected();
+        return entries.size();
+    }
+
+    /**
+     * Removes the entries of models whose users were garbage collected without releasing them. Without this, the
+     * entries and their key arrays would stay in the map forever for geometry that is never acquired again.
+     */
+    private static void removeCollected() {
+        Entry.Ref ref;
+
+        while ((ref = (Entry.Ref) collected.poll()) != null) {
+            // The key may have been given to a newer model since this one was collected
+            Entry entry = entries.get(ref.key);
+
+            if (entry != null && entry.model == ref) {
+                entries.remove(ref.key);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Ref model;
+        private int references;
+
+        private Entry(TexturedModel model, Key key) {
+            this.model = new Ref(model, key);
+        }
+
+        private static class Ref extends WeakReference<TexturedModel> {
+            private final Key key;
+
+            private Ref(TexturedModel model, Key key) {
+                super(model, collected);
+                this.key = key;
+            }
+        }
+    }
+
+    static final class Key {
+        private final float[] vertices;
+        private final int[] indices;
+        private final float[] texCoords;
+        private final int hash;
+
+        private Key(float[] vertices, int[] indices, float[] texCoords) {
+            this.vertices = vertices;
+            this.indices = indices;
+            this.texCoords = texCoords;
+
+            int hash = Arrays.hashCode(vertices);
+            hash = 31 * hash + Arrays.hashCode(indices);
+            hash = 31 * hash + Arrays.hashCode(texCoords);
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof Key key)) {
+                return false;
+            }
+
+            return this.hash == key.hash
+                    && Arrays.equals(this.vertices, key.vertices)
+                    && Arrays.equals(this.indices, key.indices)
+                    && Arrays.equals(this.texCoords, key.texCoords);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
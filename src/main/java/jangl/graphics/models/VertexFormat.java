@@ -0,0 +1,256 @@
+package jangl.graphics.models;
+
+import jangl.graphics.models.enums.AttribType;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Describes how the vertices of a model are stored on the GPU: the type of the positions and texture coords, whether
+ * the vertices have colors, and whether the attributes are interleaved in one buffer or kept in a buffer each.
+ * <br>
+ * Smaller types use less video memory and bandwidth, at the cost of precision. For a batch of quads, COMPACT uses 12
+ * bytes per vertex and HALF uses 8, compared to 16 for SEPARATE. The indices of models with at most 65536 vertices are
+ * stored as 16-bit integers no matter the format.
+ * <br>
+ * The attributes use the same locations in every format: the position is attribute 0, the texture coords are attribute
+ * 1, and the color is attribute 2, read by the shader as a vec4 from 0 to 1.
+ */
+public class VertexFormat {
+    public static final int POSITION_LOCATION = 0;
+    public static final int TEX_COORDS_LOCATION = 1;
+    public static final int COLOR_LOCATION = 2;
+
+    /**
+     * Float positions and texture coords, each in their own buffer. This is the format models use unless they are
+     * given another one.
+     */
+    public static final VertexFormat SEPARATE = new VertexFormat(false, AttribType.FLOAT, AttribType.FLOAT, false);
+
+    /**
+     * Float positions and texture coords, interleaved in one buffer.
+     */
+    public static final VertexFormat INTERLEAVED = new VertexFormat(true, AttribType.FLOAT, AttribType.FLOAT, false);
+
+    /**
+     * Float positions and half float texture coords, interleaved. Texture coords keep about 1/1000 of precision
+     * between 0 and 1, which is enough for textures up to 1024 pixels wide.
+     */
+    public static final VertexFormat COMPACT = new VertexFormat(true, AttribType.FLOAT, AttribType.HALF_FLOAT, false);
+
+    /**
+     * Half float positions and texture coords, interleaved. Positions lose precision the further they are from 0, so
+     * this is meant for models whose vertices are close to their center, like the local vertices of a batch that spans
+     * a few screens.
+     */
+    public static final VertexFormat HALF = new VertexFormat(true, AttribType.HALF_FLOAT, AttribType.HALF_FLOAT, false);
+
+    private final boolean interleaved;
+    private final AttribType positionType;
+    private final AttribType texCoordType;
+    private final boolean colors;
+
+    private final int texCoordOffset;
+    private final int colorOffset;
+    private final int vertexSize;
+
+    /**
+     * @param interleaved  True to store every attribute of a vertex next to each other in one buffer. False to store
+     *                     each attribute in its own buffer.
+     * @param positionType The type of the positions. Must be FLOAT or HALF_FLOAT.
+     * @param texCoordType The type of the texture coords. NORMALIZED_SHORT only stores texture coords from 0 to 1.
+     *                     Must not be NORMALIZED_BYTE.
+     * @param colors       True if each vertex has a packed RGBA8 color.
+     * @throws IllegalArgumentException Throws if the position type is normalized, or the texture coord type is
+     *                                  NORMALIZED_BYTE.
+     */
+    public VertexFormat(boolean interleaved, AttribType positionType, AttribType texCoordType, boolean colors) throws IllegalArgumentException {
+        if (positionType.isNormalized()) {
+            throw new IllegalArgumentException("Positions must be stored as FLOAT or HALF_FLOAT, not " + positionType);
+        }
+
+        // Two bytes would leave the colors unaligned, and steps of 1/255 are too coarse for texture coords anyway
+        if (texCoordType == AttribType.NORMALIZED_BYTE) {
+            throw new IllegalArgumentException("Texture coords can't be stored as " + texCoordType);
+        }
+
+        this.interleaved = interleaved;
+        this.positionType = positionType;
+        this.texCoordType = texCoordType;
+        this.colors = colors;
+
+        // Every attribute is either two components of 2 or 4 bytes or a 4 byte color, so each one stays aligned
+        this.texCoordOffset = 2 * positionType.getSize();
+        this.colorOffset = this.texCoordOffset + 2 * texCoordType.getSize();
+        this.vertexSize = this.colorOffset + (colors ? 4 : 0);
+    }
+
+    public boolean isInterleaved() {
+        return this.interleaved;
+    }
+
+    public AttribType getPositionType() {
+        return this.positionType;
+    }
+
+    public AttribType getTexCoordType() {
+        return this.texCoordType;
+    }
+
+    public boolean hasColors() {
+        return this.colors;
+    }
+
+    /**
+     * @return The number of bytes between the positions of two vertices in an interleaved buffer.
+     */
+    public int getStride() {
+        return this.vertexSize;
+    }
+
+    /**
+     * @return The offset of the texture coords in an interleaved vertex, in bytes.
+     */
+    public int getTexCoordOffset() {
+        return this.texCoordOffset;
+    }
+
+    /**
+     * @return The offset of the color in an interleaved vertex, in bytes.
+     */
+    public int getColorOffset() {
+        return this.colorOffset;
+    }
+
+    /**
+     * @return The number of bytes each vertex takes, including the texture coords and color.
+     */
+    public int getVertexSize() {
+        return this.vertexSize;
+    }
+
+    /**
+     * @return True if the positions are uploaded as they are, with no conversion.
+     */
+    boolean hasFloatPositions() {
+        return !this.interleaved && this.positionType == AttribType.FLOAT;
+    }
+
+    /**
+     * @return True if the texture coords are uploaded as they are, with no conversion.
+     */
+    boolean hasFloatTexCoords() {
+        return !this.interleaved && this.texCoordType == AttribType.FLOAT;
+    }
+
+    /**
+     * Converts the components between the position and limit of src and writes them to dest.
+     *
+     * @param dest       The buffer to write to.
+     * @param offset     The offset of the first vertex's attribute in dest, in bytes.
+     * @param stride     The number of bytes between the attribute of two vertices in dest.
+     * @param type       The type to convert the components to.
+     * @param src        The components. The position of the buffer is not changed.
+     * @param components The number of components of each vertex.
+     */
+    static void putAttribute(ByteBuffer dest, int offset, int stride, AttribType type, FloatBuffer src, int components) {
+        int vertexCount = src.remaining() / components;
+        int start = src.position();
+        int size = type.getSize();
+
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            int position = offset + vertex * stride;
+
+            for (int component = 0; component < components; component++) {
+                float value = src.get(start + vertex * components + component);
+                int index = position + component * size;
+
+                switch (type) {
+                    case FLOAT -> dest.putFloat(index, value);
+                    case HALF_FLOAT -> dest.putShort(index, toHalfFloat(value));
+                    case NORMALIZED_SHORT -> dest.putShort(index, (short) Math.round(clamp(value) * 0xFFFF));
+                    case NORMALIZED_BYTE -> dest.put(index, (byte) Math.round(clamp(value) * 0xFF));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the packed colors between the position and limit of src to dest.
+     *
+     * @param dest   The buffer to write to.
+     * @param offset The offset of the first vertex's color in dest, in bytes.
+     * @param stride The number of bytes between the colors of two vertices in dest.
+     * @param src    The colors, one 0xRRGGBBAA int per vertex. The position of the buffer is not changed.
+     */
+    static void putColors(ByteBuffer dest, int offset, int stride, IntBuffer src) {
+        int start = src.position();
+
+        for (int vertex = 0; vertex < src.remaining(); vertex++) {
+            int color = src.get(start + vertex);
+            int index = offset + vertex * stride;
+
+            dest.put(index, (byte) (color >>> 24));
+            dest.put(index + 1, (byte) (color >>> 16));
+            dest.put(index + 2, (byte) (color >>> 8));
+            dest.put(index + 3, (byte) color);
+        }
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0, Math.min(1, value));
+    }
+
+    /**
+     * Converts a float to the bits of the nearest half float.
+     *
+     * @param value The float to convert.
+     * @return The half float, in IEEE 754 binary16 format.
+     */
+    public static short toHalfFloat(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int floatExponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        // Infinity and NaN
+        if (floatExponent == 0xFF) {
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+
+        int exponent = floatExponent - 127 + 15;
+
+        // Too large, so it becomes infinity
+        if (exponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+
+        // Too small for a normal half float, so it becomes a subnormal one or 0
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+
+            // Round to the nearest half float
+            if ((mantissa >> (shift - 1) & 1) != 0) {
+                half++;
+            }
+
+            return (short) (sign | half);
+        }
+
+        int half = sign | exponent << 10 | mantissa >> 13;
+
+        // Rounding up can carry into the exponent, which is still the nearest half float
+        if ((mantissa & 0x1000) != 0) {
+            half++;
+        }
+
+        return (short) half;
+    }
+}
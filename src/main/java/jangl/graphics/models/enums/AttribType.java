@@ -0,0 +1,59 @@
+package jangl.graphics.models.enums;
+
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * How each component of a vertex attribute is stored in a vertex buffer.
+ */
+public enum AttribType {
+    /**
+     * A 32-bit float. Exact, but the largest type.
+     */
+    FLOAT,
+    /**
+     * A 16-bit float. Keeps about 3 significant digits, so values far from 0 lose precision. Values up to 65504 can be
+     * stored.
+     */
+    HALF_FLOAT,
+    /**
+     * A 16-bit unsigned integer that the shader reads as a float from 0 to 1. Only values from 0 to 1 can be stored,
+     * in steps of 1/65535.
+     */
+    NORMALIZED_SHORT,
+    /**
+     * An 8-bit unsigned integer that the shader reads as a float from 0 to 1, in steps of 1/255. Used for colors.
+     */
+    NORMALIZED_BYTE;
+
+    public int toInteger() {
+        if (this == FLOAT) {
+            return GL_FLOAT;
+        } else if (this == HALF_FLOAT) {
+            return GL_HALF_FLOAT;
+        } else if (this == NORMALIZED_SHORT) {
+            return GL_UNSIGNED_SHORT;
+        }
+
+        return GL_UNSIGNED_BYTE;
+    }
+
+    /**
+     * @return The number of bytes each component takes.
+     */
+    public int getSize() {
+        if (this == FLOAT) {
+            return Float.BYTES;
+        } else if (this == NORMALIZED_BYTE) {
+            return Byte.BYTES;
+        }
+
+        return Short.BYTES;
+    }
+
+    /**
+     * @return True if OpenGL should map the integer range of the type to 0 to 1.
+     */
+    public boolean isNormalized() {
+        return this == NORMALIZED_SHORT || this == NORMALIZED_BYTE;
+    }
+}
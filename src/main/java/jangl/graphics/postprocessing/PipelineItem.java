@@ -2,6 +2,7 @@ package jangl.graphics.postprocessing;
 
 import jangl.coords.WorldCoords;
 import jangl.graphics.Bindable;
+import jangl.graphics.GLState;
 import jangl.graphics.shaders.ShaderProgram;
 import jangl.io.Window;
 import jangl.resourcemanager.Resource;
@@ -61,7 +62,7 @@ public class PipelineItem implements Bindable, AutoCloseable {
     private static int genFramebufferTexture() {
         int framebufferTexture = glGenTextures();
 
-        glBindTexture(GL_TEXTURE_2D, framebufferTexture);
+        GLState.bindTexture(0, framebufferTexture);
 
         glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, Window.getScreenWidth(), Window.getScreenHeight(), 0, GL_RGB, GL_UNSIGNED_BYTE, (ByteBuffer) null);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
@@ -95,20 +96,19 @@ public class PipelineItem implements Bindable, AutoCloseable {
 
     @Override
     public void bind() {
-        glBindFramebuffer(GL_FRAMEBUFFER, this.framebuffer);
+        GLState.bindFramebuffer(this.framebuffer);
     }
 
     @Override
     public void unbind() {
-        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        GLState.bindFramebuffer(0);
     }
 
     public void draw() {
-        glBindTexture(GL_TEXTURE_2D, getFramebufferTextureID());
+        GLState.bindTexture(0, getFramebufferTextureID());
         shaderProgram.bind();
         SCREEN_RECT.draw();
         shaderProgram.unbind();
-        glBindTexture(GL_TEXTURE_2D, 0);
     }
 
     /**
@@ -121,7 +121,7 @@ public class PipelineItem implements Bindable, AutoCloseable {
             return;
         }
 
-        glDeleteFramebuffers(this.framebuffer);
-        glDeleteTextures(this.framebufferTexture);
+        GLState.deleteFramebuffer(this.framebuffer);
+        GLState.deleteTexture(this.framebufferTexture);
     }
 }
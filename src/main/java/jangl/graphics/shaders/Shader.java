@@ -5,6 +5,12 @@ import jangl.graphics.shaders.exceptions.ShaderPrecompileException;
 import java.io.*;
 
 public class Shader {
+    /**
+     * Defined at the top of every shader in an instanced shader program, so a shader can use #ifdef JANGL_INSTANCED
+     * to read the per-instance data of an InstancedModel. See VertexShader.
+     */
+    public static final String INSTANCED_DEFINE = "JANGL_INSTANCED";
+
     public final String sourceCode;
 
     /**
@@ -68,6 +74,19 @@ public class Shader {
         return shaderSource.toString();
     }
 
+    /**
+     * @return The source code with INSTANCED_DEFINE defined after the #version line. Used by ShaderProgram to compile
+     * instanced shader programs.
+     */
+    public String getInstancedSourceCode() {
+        int versionIndex = this.sourceCode.indexOf("#version");
+        int insertIndex = versionIndex == -1 ? 0 : this.sourceCode.indexOf('\n', versionIndex) + 1;
+
+        return this.sourceCode.substring(0, insertIndex)
+                + "#define " + INSTANCED_DEFINE + "\n"
+                + this.sourceCode.substring(insertIndex);
+    }
+
     /**
      * Override this method to pass uniforms to the shader or do any calculation before the shader runs.
      * To pass a uniform, use:<br>
@@ -80,6 +99,20 @@ public class Shader {
 
     }
 
+    /**
+     * Called every time the shader program is bound. Override this method instead of setUniforms(int) to set
+     * uniforms with the typed setters of the program, which don't look up the uniform in OpenGL and skip values
+     * that haven't changed:<br>
+     * program.setUniform(program.getUniformLocation("uniform name"), data);
+     * <br>
+     * By default, this calls setUniforms(program.getProgramID()).
+     *
+     * @param program The shader program that is being bound.
+     */
+    public void setUniforms(ShaderProgram program) {
+        this.setUniforms(program.getProgramID());
+    }
+
     /**
      * Precompile the shader. Right now, it just adds #includes.
      *
@@ -1,8 +1,10 @@
 package jangl.graphics.shaders;
 
+import jangl.color.Color;
 import jangl.color.ColorFactory;
 import jangl.graphics.Bindable;
 import jangl.graphics.Camera;
+import jangl.graphics.GLState;
 import jangl.graphics.models.Model;
 import jangl.graphics.shaders.exceptions.ShaderCompileException;
 import jangl.graphics.shaders.premade.ColorShader;
@@ -11,10 +13,15 @@ import jangl.resourcemanager.Resource;
 import jangl.resourcemanager.ResourceManager;
 import jangl.resourcemanager.ResourceQueuer;
 import jangl.resourcemanager.ResourceType;
+import org.joml.Matrix3x2fc;
+import org.lwjgl.system.MemoryStack;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.lwjgl.opengl.GL41.*;
@@ -34,8 +41,31 @@ public class ShaderProgram implements AutoCloseable, Bindable {
     private final int programID;
     private final List<Integer> shaderIDs;
     private final List<Shader> shaders;
+    private final VertexShader vertexShader;
+    private final FragmentShader fragmentShader;
     private final AtomicBoolean closed;
     private final HashSet<Integer> bindingPoints;
+    private final boolean instanced;
+
+    /**
+     * The location of every active uniform, found once after the program is linked. Uniform arrays can be found by
+     * their name with or without "[0]".
+     */
+    private final Map<String, Integer> uniformLocations;
+
+    /**
+     * The last value passed to each uniform location by the typed setters, so setting a uniform to the value it
+     * already has doesn't call OpenGL. Each location has UNIFORM_CACHE_SIZE ints, holding the raw bits of the value.
+     */
+    private int[] uniformValues;
+    private boolean[] uniformValuesSet;
+    private static final int UNIFORM_CACHE_SIZE = 6;
+
+    /**
+     * The locations of the uniforms that the VertexShader precompiler adds, used by every draw call.
+     */
+    private int modelMatrixLocation;
+    private int obeyCameraLocation;
 
     /**
      * WARNING: not including a fragment shader may result in the object being black and appearing to be invisible.
@@ -85,9 +115,25 @@ public class ShaderProgram implements AutoCloseable, Bindable {
      * @throws ShaderCompileException Throws if the shaders cannot compile, link, or validate.
      */
     public ShaderProgram(VertexShader vs, FragmentShader fs, List<AttribLocation> attribLocations) throws ShaderCompileException {
+        this(vs, fs, attribLocations, false);
+    }
+
+    /**
+     * @param vs              The vertex shader to add to the program.
+     * @param fs              The fragment shader to add to the program.
+     * @param attribLocations A list of attribute locations for the shader.
+     * @param instanced       True to compile the shaders with Shader.INSTANCED_DEFINE, so the vertex shader reads the
+     *                        model matrix, UV rect, and tint of each instance from the per-instance attributes of an
+     *                        InstancedModel.
+     * @throws ShaderCompileException Throws if the shaders cannot compile, link, or validate.
+     */
+    public ShaderProgram(VertexShader vs, FragmentShader fs, List<AttribLocation> attribLocations, boolean instanced) throws ShaderCompileException {
+        this.instanced = instanced;
         this.bindingPoints = new HashSet<>();
         this.shaderIDs = new ArrayList<>();
         this.shaders = new ArrayList<>();
+        this.vertexShader = vs;
+        this.fragmentShader = fs;
 
         if (vs != null) {
             this.shaders.add(vs);
@@ -99,7 +145,9 @@ public class ShaderProgram implements AutoCloseable, Bindable {
         // Compile the shaders
         for (Shader shader : this.shaders) {
             int shaderType = shader instanceof VertexShader ? GL_VERTEX_SHADER : GL_FRAGMENT_SHADER;
-            this.shaderIDs.add(compileShader(shader.sourceCode, shaderType));
+            String sourceCode = instanced ? shader.getInstancedSourceCode() : shader.sourceCode;
+
+            this.shaderIDs.add(compileShader(sourceCode, shaderType));
         }
 
         this.programID = glCreateProgram();
@@ -139,6 +187,9 @@ public class ShaderProgram implements AutoCloseable, Bindable {
             );
         }
 
+        this.uniformLocations = new HashMap<>();
+        this.findUniforms();
+
         this.addUBO(Camera.getUbo(), "Matrices");
 
         // Add the shader program to the resource manager
@@ -167,6 +218,43 @@ public class ShaderProgram implements AutoCloseable, Bindable {
         return shaderID;
     }
 
+    /**
+     * Finds the location of every active uniform, so no uniform has to be looked up by name while drawing.
+     */
+    private void findUniforms() {
+        int uniformCount = glGetProgrami(this.programID, GL_ACTIVE_UNIFORMS);
+        int maxLocation = -1;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+
+            for (int i = 0; i < uniformCount; i++) {
+                String name = glGetActiveUniform(this.programID, i, size, type);
+                int location = glGetUniformLocation(this.programID, name);
+
+                // Uniforms in uniform blocks don't have a location
+                if (location == -1) {
+                    continue;
+                }
+
+                this.uniformLocations.put(name, location);
+
+                if (name.endsWith("[0]")) {
+                    this.uniformLocations.put(name.substring(0, name.length() - 3), location);
+                }
+
+                maxLocation = Math.max(maxLocation, location + size.get(0) - 1);
+            }
+        }
+
+        this.uniformValues = new int[(maxLocation + 1) * UNIFORM_CACHE_SIZE];
+        this.uniformValuesSet = new boolean[maxLocation + 1];
+
+        this.modelMatrixLocation = this.getUniformLocation("modelMatrix");
+        this.obeyCameraLocation = this.getUniformLocation("obeyCamera");
+    }
+
     public static void init() {
         if (initialized) {
             return;
@@ -202,10 +290,10 @@ public class ShaderProgram implements AutoCloseable, Bindable {
 
     /**
      * Unbind the shader. Run this when you do not want the shader to apply to any more objects that you draw.
+     * The program stays in use in OpenGL until another program is bound, see GLState.
      */
     @Override
     public void unbind() {
-        glUseProgram(0);
         boundProgram = null;
     }
 
@@ -214,11 +302,11 @@ public class ShaderProgram implements AutoCloseable, Bindable {
      */
     @Override
     public void bind() {
-        glUseProgram(this.programID);
+        GLState.useProgram(this.programID);
         boundProgram = this;
 
-        for (Shader shader : this.shaders) {
-            shader.setUniforms(this.programID);
+        for (int i = 0; i < this.shaders.size(); i++) {
+            this.shaders.get(i).setUniforms(this);
         }
     }
 
@@ -226,26 +314,149 @@ public class ShaderProgram implements AutoCloseable, Bindable {
      * @return The shader program's vertex shader if one exists. Otherwise, it returns null.
      */
     public VertexShader getVertexShader() {
-        for (Shader shader : this.shaders) {
-            if (VertexShader.class.isAssignableFrom(shader.getClass())) {
-                return (VertexShader) shader;
-            }
-        }
-
-        return null;
+        return this.vertexShader;
     }
 
     /**
      * @return The shader program's fragment shader if one exists. Otherwise, it returns null.
      */
     public FragmentShader getFragmentShader() {
-        for (Shader shader : this.shaders) {
-            if (FragmentShader.class.isAssignableFrom(shader.getClass())) {
-                return (FragmentShader) shader;
-            }
+        return this.fragmentShader;
+    }
+
+    /**
+     * @param name The name of the uniform.
+     * @return The location of the uniform, or -1 if the program has no active uniform with that name. Unlike
+     * glGetUniformLocation(), this doesn't call OpenGL.
+     */
+    public int getUniformLocation(String name) {
+        return this.uniformLocations.getOrDefault(name, -1);
+    }
+
+    int getModelMatrixLocation() {
+        return this.modelMatrixLocation;
+    }
+
+    int getObeyCameraLocation() {
+        return this.obeyCameraLocation;
+    }
+
+    /*
+     * The typed uniform setters below skip the call to OpenGL if the uniform already has the value, and do nothing if
+     * the location is -1. They use glProgramUniform, so the program doesn't have to be bound. The skipped calls are
+     * only correct if the uniform isn't also set with glUniform directly.
+     */
+
+    public void setUniform(int location, int value) {
+        if (this.isCached(location, value, 0, 0, 0, 0, 0)) {
+            return;
         }
 
-        return null;
+        glProgramUniform1i(this.programID, location, value);
+    }
+
+    public void setUniform(int location, boolean value) {
+        this.setUniform(location, value ? 1 : 0);
+    }
+
+    public void setUniform(int location, float value) {
+        if (this.isCached(location, Float.floatToRawIntBits(value), 0, 0, 0, 0, 0)) {
+            return;
+        }
+
+        glProgramUniform1f(this.programID, location, value);
+    }
+
+    public void setUniform(int location, float x, float y) {
+        if (this.isCached(location, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), 0, 0, 0, 0)) {
+            return;
+        }
+
+        glProgramUniform2f(this.programID, location, x, y);
+    }
+
+    public void setUniform(int location, float x, float y, float z, float w) {
+        boolean cached = this.isCached(
+                location,
+                Float.floatToRawIntBits(x), Float.floatToRawIntBits(y),
+                Float.floatToRawIntBits(z), Float.floatToRawIntBits(w),
+                0, 0
+        );
+
+        if (cached) {
+            return;
+        }
+
+        glProgramUniform4f(this.programID, location, x, y, z, w);
+    }
+
+    /**
+     * Sets a vec4 uniform to the normalized red, green, blue, and alpha of the color.
+     */
+    public void setUniform(int location, Color color) {
+        this.setUniform(location, color.getNormRed(), color.getNormGreen(), color.getNormBlue(), color.getNormAlpha());
+    }
+
+    /**
+     * Sets a mat3x2 uniform.
+     */
+    public void setUniform(int location, Matrix3x2fc matrix) {
+        boolean cached = this.isCached(
+                location,
+                Float.floatToRawIntBits(matrix.m00()), Float.floatToRawIntBits(matrix.m01()),
+                Float.floatToRawIntBits(matrix.m10()), Float.floatToRawIntBits(matrix.m11()),
+                Float.floatToRawIntBits(matrix.m20()), Float.floatToRawIntBits(matrix.m21())
+        );
+
+        if (cached) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            glProgramUniformMatrix3x2fv(this.programID, location, false, matrix.get(stack.mallocFloat(6)));
+        }
+    }
+
+    /**
+     * @return True if the location is -1 or the uniform already has the value. Otherwise, the value is stored as
+     * the uniform's value and false is returned.
+     */
+    private boolean isCached(int location, int value0, int value1, int value2, int value3, int value4, int value5) {
+        if (location == -1) {
+            return true;
+        }
+
+        // Locations past the ones found after linking are never cached
+        if (location >= this.uniformValuesSet.length) {
+            return false;
+        }
+
+        int[] values = this.uniformValues;
+        int offset = location * UNIFORM_CACHE_SIZE;
+
+        if (this.uniformValuesSet[location]
+                && values[offset] == value0 && values[offset + 1] == value1
+                && values[offset + 2] == value2 && values[offset + 3] == value3
+                && values[offset + 4] == value4 && values[offset + 5] == value5) {
+            return true;
+        }
+
+        values[offset] = value0;
+        values[offset + 1] = value1;
+        values[offset + 2] = value2;
+        values[offset + 3] = value3;
+        values[offset + 4] = value4;
+        values[offset + 5] = value5;
+        this.uniformValuesSet[location] = true;
+
+        return false;
+    }
+
+    /**
+     * @return True if the program reads the model matrix of each instance from an InstancedModel.
+     */
+    public boolean isInstanced() {
+        return this.instanced;
     }
 
     public int getProgramID() {
@@ -268,6 +479,6 @@ public class ShaderProgram implements AutoCloseable, Bindable {
             glDeleteShader(shaderID);
         }
 
-        glDeleteProgram(this.programID);
+        GLState.deleteProgram(this.programID);
     }
 }
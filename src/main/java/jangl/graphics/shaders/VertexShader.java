@@ -2,7 +2,9 @@ package jangl.graphics.shaders;
 
 import jangl.graphics.Camera;
 import jangl.graphics.shaders.exceptions.ShaderPrecompileException;
-import org.joml.Matrix4f;
+import org.joml.Matrix3x2f;
+import org.joml.Matrix3x2fc;
+import org.joml.Matrix4fc;
 
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -12,11 +14,51 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL21.glUniformMatrix3x2fv;
 
 /**
  * Use this class to create a VertexShader.
  */
 public class VertexShader extends Shader {
+    /**
+     * Declares the per-instance attributes of an InstancedModel, and passes the tint of each instance to the fragment
+     * shader as jangl_tint. It is guarded by Shader.INSTANCED_DEFINE, so it is only compiled in an instanced shader
+     * program and every other vertex shader compiles exactly as it did before. A shader can read the UV rect of each instance from
+     * jangl_instanceUVRect. The names start with jangl_ so they don't collide with the shader's own names.
+     * <br>
+     * The per-instance attributes have fixed locations at the top of the range OpenGL guarantees, so they never move
+     * the attributes of the shader itself. See InstancedModel.
+     */
+    private static final String INSTANCING_CODE = """
+            #ifdef JANGL_INSTANCED
+            layout(location = 12) in vec4 jangl_instanceLinear;
+            layout(location = 13) in vec2 jangl_instanceTranslation;
+            layout(location = 14) in vec4 jangl_instanceUVRect;
+            layout(location = 15) in vec4 jangl_instanceTint;
+            out vec4 jangl_tint;
+            #endif
+            """;
+
+    /**
+     * Added before the model matrix is applied. In an instanced shader program, it applies the model matrix of the
+     * instance first. The directives must start on their own lines, so it starts with a line break.
+     */
+    private static final String INSTANCE_TRANSFORM_CODE = """
+
+            #ifdef JANGL_INSTANCED
+            gl_Position.xy = mat3x2(jangl_instanceLinear.xy, jangl_instanceLinear.zw, jangl_instanceTranslation) * gl_Position.xyw; jangl_tint = jangl_instanceTint;
+            #endif
+            """;
+
+    /**
+     * Reused for every upload of the model matrix. Only used on the OpenGL thread.
+     */
+    private final float[] modelMatrixArr = new float[6];
+
+    /**
+     * Holds the 2D part of a matrix passed to setMatrixUniforms() as a Matrix4fc.
+     */
+    private final Matrix3x2f convertedMatrix = new Matrix3x2f();
     private boolean obeyCamera;
 
     public VertexShader(String filepath) throws UncheckedIOException {
@@ -40,6 +82,11 @@ public class VertexShader extends Shader {
          * 4. Find the end of the main function in the shader code
          * 5. Add a return statement at the end of the main function where it would otherwise be implicit
          * 6. Before every return statement, add the matrix multiplications
+         *
+         * The model matrix is a 2D affine matrix (mat3x2), so only 6 floats are uploaded per draw. It transforms the
+         * x and y of gl_Position, with w as the homogeneous coordinate so the translation is scaled the same way a
+         * mat4 would scale it. In instanced shader programs, the model matrix of each instance is applied first (see
+         * INSTANCE_TRANSFORM_CODE).
          */
 
         // STEP 1: Remove multi-line comments
@@ -56,7 +103,8 @@ public class VertexShader extends Shader {
 
             if (lineAfterVersion) {
                 builder.append(Camera.UBO_CODE);
-                builder.append("uniform mat4 modelMatrix;uniform bool obeyCamera;\n");
+                builder.append("uniform mat3x2 modelMatrix;uniform bool obeyCamera;\n");
+                builder.append(INSTANCING_CODE);
                 lineAfterVersion = false;
             }
 
@@ -141,7 +189,7 @@ public class VertexShader extends Shader {
         }
 
         for (int i = returnLocations.size() - 1; i >= 0; i--) {
-            builder.insert(returnLocations.get(i), "if (obeyCamera) { gl_Position = projectionMatrix * cameraMatrix * modelMatrix * gl_Position; } else { gl_Position = projectionMatrix * modelMatrix * gl_Position; }\n");
+            builder.insert(returnLocations.get(i), INSTANCE_TRANSFORM_CODE + "gl_Position = vec4(modelMatrix * vec3(gl_Position.xy, gl_Position.w), gl_Position.zw); if (obeyCamera) { gl_Position = projectionMatrix * cameraMatrix * gl_Position; } else { gl_Position = projectionMatrix * gl_Position; }\n");
         }
     }
 
@@ -218,11 +266,57 @@ public class VertexShader extends Shader {
     }
 
     /**
-     * Sets the model matrix and obey camera uniform of the shader program.
+     * Sets the model matrix and obey camera uniform of the shader program. The uniform locations are cached by the
+     * program, and uniforms that already have the value aren't set again, so this is the fastest way to set them
+     * before each draw call.
      *
+     * @param program The program to pass the uniforms to.
+     * @param modelMatrix The 2D affine model matrix, usually from Transform.getAffineMatrix().
+     */
+    public void setMatrixUniforms(ShaderProgram program, Matrix3x2fc modelMatrix) {
+        // If there's no model matrix uniform, leave silently
+        if (program.getModelMatrixLocation() == -1) {
+            return;
+        }
+
+        program.setUniform(program.getModelMatrixLocation(), modelMatrix);
+        program.setUniform(program.getObeyCameraLocation(), this.obeyCamera);
+    }
+
+    /**
+     * Sets the model matrix and obey camera uniform of the shader program. Only the 2D part of the matrix is used:
+     * the x and y scale, rotation, and translation.
+     *
+     * @param program The program to pass the uniforms to.
+     * @param modelMatrix The model matrix.
+     */
+    public void setMatrixUniforms(ShaderProgram program, Matrix4fc modelMatrix) {
+        this.setMatrixUniforms(program, this.toAffineMatrix(modelMatrix));
+    }
+
+    /**
+     * Sets the model matrix and obey camera uniform of the shader program. Only the 2D part of the matrix is used:
+     * the x and y scale, rotation, and translation. This sets the uniforms with glUniform directly, so the uniform
+     * values cached by the ShaderProgram become stale, and a later draw may skip setting the model matrix.
+     *
+     * @deprecated Use {@link #setMatrixUniforms(ShaderProgram, Matrix4fc)} instead.
      * @param programID The program ID to the pass the uniform to
+     * @param modelMatrix The model matrix.
      */
-    public void setMatrixUniforms(int programID, Matrix4f modelMatrix) {
+    @Deprecated
+    public void setMatrixUniforms(int programID, Matrix4fc modelMatrix) {
+        this.uploadMatrixUniforms(programID, this.toAffineMatrix(modelMatrix));
+    }
+
+    private Matrix3x2fc toAffineMatrix(Matrix4fc modelMatrix) {
+        return this.convertedMatrix.set(
+                modelMatrix.m00(), modelMatrix.m01(),
+                modelMatrix.m10(), modelMatrix.m11(),
+                modelMatrix.m30(), modelMatrix.m31()
+        );
+    }
+
+    private void uploadMatrixUniforms(int programID, Matrix3x2fc modelMatrix) {
         // Add the model matrix
         int uniformLocation = glGetUniformLocation(programID, "modelMatrix");
 
@@ -231,10 +325,8 @@ public class VertexShader extends Shader {
             return;
         }
 
-        float[] matrixArr = new float[16];
-        modelMatrix.get(matrixArr);
-
-        glUniformMatrix4fv(uniformLocation, false, matrixArr);
+        modelMatrix.get(this.modelMatrixArr);
+        glUniformMatrix3x2fv(uniformLocation, false, this.modelMatrixArr);
 
         // Add the obey camera uniform
         int obeyCameraUniformLocation = glGetUniformLocation(programID, "obeyCamera");
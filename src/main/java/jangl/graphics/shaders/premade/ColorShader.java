@@ -2,33 +2,43 @@ package jangl.graphics.shaders.premade;
 
 import jangl.color.Color;
 import jangl.graphics.shaders.FragmentShader;
+import jangl.graphics.shaders.ShaderProgram;
 
 import java.io.UncheckedIOException;
 
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
-import static org.lwjgl.opengl.GL20.glUniform4fv;
-
 /**
  * Use this shader color an object a specific color.
  */
 public class ColorShader extends FragmentShader {
     private Color color;
 
+    /**
+     * The program that the uniform locations below were found in. The same shader can be linked into more than one
+     * program, so the locations are found again when the shader is bound in a different program.
+     */
+    private ShaderProgram locationsProgram;
+    private int colorLocation;
+
     public ColorShader(Color color) throws UncheckedIOException {
         super(ColorShader.class.getResourceAsStream("/shaders/colorShader/colorShader.frag"));
         this.color = color;
     }
 
     @Override
-    public void setUniforms(int programID) {
-        int colorUniformLocation = glGetUniformLocation(programID, "color");
+    public void setUniforms(ShaderProgram program) {
+        if (program != this.locationsProgram) {
+            int colorUniformLocation = program.getUniformLocation("color");
+
+            // This shouldn't happen but if it does
+            if (colorUniformLocation == -1) {
+                throw new RuntimeException("Could not find variable \"color\" in color shader");
+            }
 
-        // This shouldn't happen but if it does
-        if (colorUniformLocation == -1) {
-            throw new RuntimeException("Could not find variable \"color\" in color shader");
+            this.colorLocation = colorUniformLocation;
+            this.locationsProgram = program;
         }
 
-        glUniform4fv(colorUniformLocation, this.color.getNormRGBA());
+        program.setUniform(this.colorLocation, this.color);
     }
 
     public Color getColor() {
@@ -2,11 +2,10 @@ package jangl.graphics.shaders.premade;
 
 import jangl.color.Color;
 import jangl.graphics.shaders.FragmentShader;
+import jangl.graphics.shaders.ShaderProgram;
 
 import java.io.UncheckedIOException;
 
-import static org.lwjgl.opengl.GL20.*;
-
 /**
  * The shader used to set fonts to any color.
  */
@@ -14,6 +13,12 @@ public class FontShader extends FragmentShader {
     private Color color;
     private boolean keepDefaultColors;
 
+    /**
+     * The locations are looked up once for each program this shader is bound in. See ColorShader.
+     */
+    private ShaderProgram locationsProgram;
+    private int colorLocation, texSamplerLocation, keepDefaultColorsLocation;
+
     public FontShader(Color color) throws UncheckedIOException {
         super(FontShader.class.getResourceAsStream("/shaders/fontShader/fontShader.frag"));
 
@@ -38,14 +43,16 @@ public class FontShader extends FragmentShader {
     }
 
     @Override
-    public void setUniforms(int programID) {
-        int colorLocation = glGetUniformLocation(programID, "color");
-        glUniform4fv(colorLocation, this.color.getNormRGBA());
-
-        int samplerLocation = glGetUniformLocation(programID, "texSampler");
-        glUniform1i(samplerLocation, 0);
-
-        int defaultColorLocation = glGetUniformLocation(programID, "keepDefaultColors");
-        glUniform1i(defaultColorLocation, this.keepDefaultColors ? 1 : 0);
+    public void setUniforms(ShaderProgram program) {
+        if (program != this.locationsProgram) {
+            this.colorLocation = program.getUniformLocation("color");
+            this.texSamplerLocation = program.getUniformLocation("texSampler");
+            this.keepDefaultColorsLocation = program.getUniformLocation("keepDefaultColors");
+            this.locationsProgram = program;
+        }
+
+        program.setUniform(this.colorLocation, this.color);
+        program.setUniform(this.texSamplerLocation, 0);
+        program.setUniform(this.keepDefaultColorsLocation, this.keepDefaultColors);
     }
 }
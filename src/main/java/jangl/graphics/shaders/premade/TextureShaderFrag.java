@@ -2,23 +2,31 @@ package jangl.graphics.shaders.premade;
 
 import jangl.graphics.shaders.FragmentShader;
 import jangl.graphics.shaders.Shader;
+import jangl.graphics.shaders.ShaderProgram;
 
 import java.io.UncheckedIOException;
 
-import static org.lwjgl.opengl.GL41.glGetUniformLocation;
-import static org.lwjgl.opengl.GL41.glUniform1i;
-
 /**
  * A fragment shader to apply textures to objects
  */
 public class TextureShaderFrag extends FragmentShader {
+    /**
+     * The program that texSamplerLocation belongs to.
+     */
+    private ShaderProgram locationsProgram;
+    private int texSamplerLocation;
+
     public TextureShaderFrag() throws UncheckedIOException {
         super(Shader.class.getResourceAsStream("/shaders/textureShader/textureShader.frag"));
     }
 
     @Override
-    public void setUniforms(int programID) {
-        int location = glGetUniformLocation(programID, "texSampler");
-        glUniform1i(location, 0);
+    public void setUniforms(ShaderProgram program) {
+        if (program != this.locationsProgram) {
+            this.texSamplerLocation = program.getUniformLocation("texSampler");
+            this.locationsProgram = program;
+        }
+
+        program.setUniform(this.texSamplerLocation, 0);
     }
 }
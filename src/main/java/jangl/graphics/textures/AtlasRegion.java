@@ -0,0 +1,142 @@
+package jangl.graphics.textures;
+
+import jangl.shapes.Shape;
+
+/**
+ * The place of one image in a texture atlas. Regions are returned by TextureAtlasBuilder.add() and are filled in when
+ * the atlas is packed, so they can be kept and used after TextureAtlasBuilder.build() is called.
+ * <br>
+ * The texture coords of a region use the same orientation as Shape.getTexCoords(): v1 is the top of the image and v2
+ * is the bottom.
+ */
+public class AtlasRegion {
+    private final int width;
+    private final int height;
+    private int page;
+    private int x;
+    private int y;
+    private float u1;
+    private float v1;
+    private float u2;
+    private float v2;
+    private boolean packed;
+
+    /**
+     * @param width  The width of the image, in pixels.
+     * @param height The height of the image, in pixels.
+     */
+    AtlasRegion(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Called by TextureAtlasBuilder once the region has a place on a page.
+     *
+     * @param page The index of the page.
+     * @param x    The x of the top left pixel of the image on the page.
+     * @param y    The y of the top left pixel of the image on the page, from the top.
+     */
+    void place(int page, int x, int y) {
+        this.page = page;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Called by TextureAtlasBuilder once the size of the region's page is known.
+     */
+    void setPageSize(int pageWidth, int pageHeight) {
+        this.u1 = (float) this.x / pageWidth;
+        this.v1 = (float) this.y / pageHeight;
+        this.u2 = (float) (this.x + this.getWidth()) / pageWidth;
+        this.v2 = (float) (this.y + this.getHeight()) / pageHeight;
+        this.packed = true;
+    }
+
+    /**
+     * Maps texture coords from 0 to 1, like the ones returned by Shape.getTexCoords(), into this region.
+     *
+     * @param texCoords The texture coords from 0 to 1. Values outside 0 to 1 sample the neighbouring images of the
+     *                  atlas, so shapes with a texture repeat other than 1 will not repeat the image.
+     * @return A new array of texture coords on the region's page.
+     * @throws IllegalStateException Throws if the atlas has not been packed yet.
+     */
+    public float[] getTexCoords(float[] texCoords) throws IllegalStateException {
+        if (!this.packed) {
+            throw new IllegalStateException("The region has not been packed yet. Call TextureAtlasBuilder.build() first");
+        }
+
+        float[] regionTexCoords = new float[texCoords.length];
+
+        for (int i = 0; i < texCoords.length; i += 2) {
+            regionTexCoords[i] = this.u1 + texCoords[i] * (this.u2 - this.u1);
+            regionTexCoords[i + 1] = this.v1 + texCoords[i + 1] * (this.v2 - this.v1);
+        }
+
+        return regionTexCoords;
+    }
+
+    /**
+     * A shortcut for getTexCoords(shape.getTexCoords()), meant to be passed to BatchBuilder.addObject(Shape, float[]).
+     *
+     * @param shape The shape to map the region onto.
+     * @return A new array of texture coords on the region's page.
+     * @throws IllegalStateException Throws if the atlas has not been packed yet.
+     */
+    public float[] getTexCoords(Shape shape) throws IllegalStateException {
+        return this.getTexCoords(shape.getTexCoords());
+    }
+
+    /**
+     * @return The index of the page the region is on, see TextureAtlas.getPage().
+     */
+    public int getPage() {
+        return this.page;
+    }
+
+    /**
+     * @return The x of the left edge of the image on its page, in pixels.
+     */
+    public int getX() {
+        return this.x;
+    }
+
+    /**
+     * @return The y of the top edge of the image on its page, in pixels from the top.
+     */
+    public int getY() {
+        return this.y;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public float getU1() {
+        return this.u1;
+    }
+
+    public float getV1() {
+        return this.v1;
+    }
+
+    public float getU2() {
+        return this.u2;
+    }
+
+    public float getV2() {
+        return this.v2;
+    }
+
+    /**
+     * @return True if the region has a place in the atlas.
+     */
+    public boolean isPacked() {
+        return this.packed;
+    }
+}
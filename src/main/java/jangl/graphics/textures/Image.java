@@ -1,12 +1,13 @@
 package jangl.graphics.textures;
 
 import jangl.graphics.Bindable;
+import jangl.graphics.Drawable;
 import jangl.shapes.Shape;
 
 /**
  * A convenient wrapper to allow for multiple bindables on a single object. Bindables can include textures, shaders, etc
  */
-public class Image {
+public class Image implements Drawable {
     private final Shape shape;
     private final Bindable bindable1;
     private final Bindable bindable2;
@@ -21,6 +22,7 @@ public class Image {
         this.bindable2 = bindable2;
     }
 
+    @Override
     public void draw() {
         if (this.bindable1 != null) {
             this.bindable1.bind();
@@ -1,6 +1,7 @@
 package jangl.graphics.textures;
 
 import jangl.graphics.Bindable;
+import jangl.graphics.GLState;
 import jangl.graphics.shaders.ShaderProgram;
 import jangl.graphics.shaders.premade.TextureShaderFrag;
 import jangl.graphics.shaders.premade.TextureShaderVert;
@@ -66,7 +67,7 @@ public class Texture implements AutoCloseable, Bindable {
     private int createImage(ByteBuffer imageData, int width, int height) {
         int imageID = glGenTextures();
 
-        glBindTexture(GL_TEXTURE_2D, imageID);
+        GLState.bindTexture(0, imageID);
         glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, imageData);
 
         this.unbind();
@@ -126,17 +127,15 @@ public class Texture implements AutoCloseable, Bindable {
             this.shaderProgram.bind();
         }
 
-        glActiveTexture(GL_TEXTURE0);
-        glBindTexture(GL_TEXTURE_2D, this.id);
+        GLState.bindTexture(0, this.id);
     }
 
     /**
-     * Unbinds any existing bound texture
+     * Unbinds the texture's shader if it is used. The texture stays bound in OpenGL until another texture is bound,
+     * see GLState.
      */
     @Override
     public void unbind() {
-        glBindTexture(GL_TEXTURE_2D, 0);
-
         if (this.useDefaultShader) {
             this.shaderProgram.unbind();
         }
@@ -153,6 +152,13 @@ public class Texture implements AutoCloseable, Bindable {
         this.useDefaultShader = useDefaultShader;
     }
 
+    /**
+     * @return True if the default shader is bound with the texture.
+     */
+    public boolean isUsingDefaultShader() {
+        return this.useDefaultShader;
+    }
+
     /**
      * @return the ShaderProgram that the Texture uses by default.
      */
@@ -166,7 +172,7 @@ public class Texture implements AutoCloseable, Bindable {
             return;
         }
 
-        glDeleteTextures(this.id);
+        GLState.deleteTexture(this.id);
         this.shaderProgram.close();
     }
 }
@@ -0,0 +1,47 @@
+package jangl.graphics.textures;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The pages of a texture atlas, created by TextureAtlasBuilder.build(). Every shape that uses a region on the same
+ * page can be drawn with the page's texture, so they can share a Batch or a SpriteBatch flush.
+ */
+public class TextureAtlas implements AutoCloseable {
+    private final List<Texture> pages;
+
+    TextureAtlas(List<Texture> pages) {
+        this.pages = Collections.unmodifiableList(pages);
+    }
+
+    /**
+     * @param index The index of the page.
+     * @return The texture of the page.
+     */
+    public Texture getPage(int index) {
+        return this.pages.get(index);
+    }
+
+    /**
+     * @param region A region of this atlas.
+     * @return The texture of the page the region is on.
+     */
+    public Texture getPage(AtlasRegion region) {
+        return this.pages.get(region.getPage());
+    }
+
+    public int getPageCount() {
+        return this.pages.size();
+    }
+
+    public List<Texture> getPages() {
+        return this.pages;
+    }
+
+    @Override
+    public void close() {
+        for (Texture page : this.pages) {
+            page.close();
+        }
+    }
+}
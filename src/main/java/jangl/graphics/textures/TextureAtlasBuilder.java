@@ -0,0 +1,474 @@
+package jangl.graphics.textures;
+
+import jangl.graphics.textures.enums.FilterMode;
+import jangl.graphics.textures.enums.WrapMode;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Packs many images into a few large textures, called pages. Each Texture is its own OpenGL texture, so shapes with
+ * different textures can never be drawn in one draw call. Shapes whose images are on the same page can, by mapping
+ * their texture coords into the image's region:
+ * <pre>
+ * AtlasRegion region = atlasBuilder.add(new TextureBuilder("player.png"));
+ * TextureAtlas atlas = atlasBuilder.build();
+ *
+ * batchBuilder.addObject(rect, region.getTexCoords(rect));
+ * batch.draw(atlas.getPage(region));
+ * </pre>
+ * The images are packed with a skyline packer, tallest first. Each image is surrounded by a copy of its edge pixels,
+ * the extrusion, so that smooth scaling does not blend it with its neighbours, and by empty padding after that.
+ * Pages are trimmed to the space their images use, so a single small atlas does not take a whole page of memory.
+ */
+public class TextureAtlasBuilder {
+    private final List<AtlasRegion> regions;
+    /**
+     * The image of each region, at the same index.
+     */
+    private final List<TextureBuilder> images;
+    private final List<Skyline> skylines;
+    private int pageSize;
+    private int padding;
+    private int extrusion;
+    private FilterMode filterMode;
+    private boolean obeyCamera;
+
+    public TextureAtlasBuilder() {
+        this.regions = new ArrayList<>();
+        this.images = new ArrayList<>();
+        this.skylines = new ArrayList<>();
+        this.pageSize = 2048;
+        this.padding = 2;
+        this.extrusion = 1;
+        this.obeyCamera = true;
+
+        this.setSmoothScaling();
+    }
+
+    /**
+     * Adds an image to the atlas. The region it returns is filled in when the atlas is packed.
+     *
+     * @param image The image. Only its image data, width and height are used; the filter mode and camera settings of
+     *              the atlas apply to every image in it. The width and height are read now, so they must not be
+     *              changed before the atlas is built.
+     * @return The region of the image in the atlas.
+     * @throws IllegalArgumentException Throws if the TextureBuilder does not have any image data or a size.
+     */
+    public AtlasRegion add(TextureBuilder image) throws IllegalArgumentException {
+        if (image.getImageData() == null) {
+            throw new IllegalArgumentException("The TextureBuilder does not have any image data");
+        }
+
+        if (image.getWidth() <= 0 || image.getHeight() <= 0) {
+            throw new IllegalArgumentException("The TextureBuilder does not have a width and height");
+        }
+
+        AtlasRegion region = new AtlasRegion(image.getWidth(), image.getHeight());
+        this.regions.add(region);
+        this.images.add(image);
+
+        return region;
+    }
+
+    /**
+     * Sets the largest width and height of each page. Pages are trimmed to the space their images use, so this is an
+     * upper bound. The default is 2048, which every OpenGL 4.1 driver supports.
+     *
+     * @param pageSize The largest width and height of a page, in pixels.
+     * @return This object, to allow for method chaining.
+     * @throws IllegalArgumentException Throws if the page size is less than or equal to 0.
+     */
+    public TextureAtlasBuilder setPageSize(int pageSize) throws IllegalArgumentException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be greater than 0");
+        }
+
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Sets the number of empty pixels between the extruded edges of two images. The default is 2.
+     *
+     * @param padding The padding, in pixels.
+     * @return This object, to allow for method chaining.
+     * @throws IllegalArgumentException Throws if the padding is negative.
+     */
+    public TextureAtlasBuilder setPadding(int padding) throws IllegalArgumentException {
+        if (padding < 0) {
+            throw new IllegalArgumentException("The padding must not be negative");
+        }
+
+        this.padding = padding;
+        return this;
+    }
+
+    public int getPadding() {
+        return this.padding;
+    }
+
+    /**
+     * Sets the number of times the edge pixels of each image are repeated around it. Smooth scaling samples the pixels
+     * next to the edge of a region, so without extrusion the edges of an image blend with the padding. The default is
+     * 1, which is enough unless the pages are mipmapped.
+     *
+     * @param extrusion The extrusion, in pixels.
+     * @return This object, to allow for method chaining.
+     * @throws IllegalArgumentException Throws if the extrusion is negative.
+     */
+    public TextureAtlasBuilder setExtrusion(int extrusion) throws IllegalArgumentException {
+        if (extrusion < 0) {
+            throw new IllegalArgumentException("The extrusion must not be negative");
+        }
+
+        this.extrusion = extrusion;
+        return this;
+    }
+
+    public int getExtrusion() {
+        return this.extrusion;
+    }
+
+    /**
+     * Sets the OpenGL filter mode of the pages.
+     *
+     * @param filterMode The OpenGL filter mode.
+     * @return This object, to allow for method chaining.
+     */
+    public TextureAtlasBuilder setFilterMode(FilterMode filterMode) {
+        this.filterMode = filterMode;
+        return this;
+    }
+
+    public FilterMode getFilterMode() {
+        return this.filterMode;
+    }
+
+    /**
+     * See TextureBuilder.setSmoothScaling(). This is the default.
+     *
+     * @return This object, to allow for method chaining.
+     */
+    public TextureAtlasBuilder setSmoothScaling() {
+        return this.setFilterMode(FilterMode.LINEAR);
+    }
+
+    /**
+     * See TextureBuilder.setPixelatedScaling().
+     *
+     * @return This object, to allow for method chaining.
+     */
+    public TextureAtlasBuilder setPixelatedScaling() {
+        return this.setFilterMode(FilterMode.NEAREST);
+    }
+
+    public TextureAtlasBuilder setObeyCamera(boolean obeyCamera) {
+        this.obeyCamera = obeyCamera;
+        return this;
+    }
+
+    public boolean isObeyingCamera() {
+        return this.obeyCamera;
+    }
+
+    /**
+     * @return The number of images added to the atlas.
+     */
+    public int getRegionCount() {
+        return this.regions.size();
+    }
+
+    /**
+     * Finds a place for every image and fills in their regions, without creating any textures. build() calls this, so
+     * it only needs to be called to know the regions before the pages are uploaded.
+     *
+     * @return The number of pages.
+     * @throws IllegalStateException Throws if an image with its extrusion is larger than a page.
+     */
+    public int pack() throws IllegalStateException {
+        this.skylines.clear();
+
+        int border = this.extrusion * 2;
+
+        // The padding is only needed between images, so the last image in a row or column may overhang the page by it
+        int skylineSize = this.pageSize + this.padding;
+
+        List<AtlasRegion> sorted = new ArrayList<>(this.regions);
+        sorted.sort(
+                Comparator.comparingInt(AtlasRegion::getHeight)
+                        .thenComparingInt(AtlasRegion::getWidth)
+                        .reversed()
+        );
+
+        for (AtlasRegion region : sorted) {
+            int width = region.getWidth() + border;
+            int height = region.getHeight() + border;
+
+            if (width > this.pageSize || height > this.pageSize) {
+                throw new IllegalStateException(
+                        "A " + region.getWidth() + "x" + region.getHeight() + " image with an extrusion of " +
+                                this.extrusion + " does not fit on a " + this.pageSize + "x" + this.pageSize + " page"
+                );
+            }
+
+            width += this.padding;
+            height += this.padding;
+
+            int page = 0;
+
+            while (page < this.skylines.size() && !this.skylines.get(page).insert(width, height)) {
+                page++;
+            }
+
+            if (page == this.skylines.size()) {
+                Skyline skyline = new Skyline(skylineSize, skylineSize);
+                skyline.insert(width, height);
+
+                this.skylines.add(skyline);
+            }
+
+            Skyline skyline = this.skylines.get(page);
+            region.place(page, skyline.lastX + this.extrusion, skyline.lastY + this.extrusion);
+        }
+
+        for (AtlasRegion region : this.regions) {
+            Skyline skyline = this.skylines.get(region.getPage());
+            region.setPageSize(skyline.usedWidth - this.padding, skyline.usedHeight - this.padding);
+        }
+
+        return this.skylines.size();
+    }
+
+    /**
+     * Packs the images and uploads each page to a texture. The pixels of the images are copied, so the TextureBuilders
+     * can be changed or freed afterwards.
+     *
+     * @return The atlas.
+     * @throws IllegalStateException Throws if an image with its extrusion is larger than a page.
+     */
+    public TextureAtlas build() throws IllegalStateException {
+        int pageCount = this.pack();
+
+        List<Texture> pages = new ArrayList<>(pageCount);
+
+        for (int page = 0; page < pageCount; page++) {
+            Skyline skyline = this.skylines.get(page);
+            int width = skyline.usedWidth - this.padding;
+            int height = skyline.usedHeight - this.padding;
+
+            ByteBuffer pixels = MemoryUtil.memCalloc(width * height * 4);
+
+            try {
+                for (int i = 0; i < this.regions.size(); i++) {
+                    AtlasRegion region = this.regions.get(i);
+
+                    if (region.getPage() == page) {
+                        this.copyRegion(pixels, width, region, this.images.get(i).getImageData());
+                    }
+                }
+
+                TextureBuilder builder = new TextureBuilder()
+                        .setImageData(pixels)
+                        .setWidth(width)
+                        .setHeight(height)
+                        .setFilterMode(this.filterMode)
+                        .setWrapMode(WrapMode.CLAMP_TO_EDGE)
+                        .setObeyCamera(this.obeyCamera);
+
+                pages.add(new Texture(builder));
+            } finally {
+                MemoryUtil.memFree(pixels);
+            }
+        }
+
+        return new TextureAtlas(pages);
+    }
+
+    /**
+     * Copies the image of a region onto its page, and repeats its edge pixels outwards by the extrusion.
+     */
+    private void copyRegion(ByteBuffer page, int pageWidth, AtlasRegion region, ByteBuffer image) {
+        int start = image.position();
+        int width = region.getWidth();
+        int height = region.getHeight();
+        int x = region.getX();
+        int y = region.getY();
+
+        for (int row = 0; row < height; row++) {
+            int rowStart = ((y + row) * pageWidth + x) * 4;
+            int imageRowStart = start + row * width * 4;
+
+            page.put(rowStart, image, imageRowStart, width * 4);
+
+            int left = image.getInt(imageRowStart);
+            int right = image.getInt(imageRowStart + (width - 1) * 4);
+
+            for (int i = 1; i <= this.extrusion; i++) {
+                page.putInt(rowStart - i * 4, left);
+                page.putInt(rowStart + (width - 1 + i) * 4, right);
+            }
+        }
+
+        // Copy the first and last rows with their extruded pixels, which fills the corners too
+        int rowLength = (width + this.extrusion * 2) * 4;
+        int topRow = (y * pageWidth + x - this.extrusion) * 4;
+        int bottomRow = ((y + height - 1) * pageWidth + x - this.extrusion) * 4;
+
+        for (int i = 1; i <= this.extrusion; i++) {
+            page.put(topRow - i * pageWidth * 4, page, topRow, rowLength);
+            page.put(bottomRow + i * pageWidth * 4, page, bottomRow, rowLength);
+        }
+    }
+
+    /**
+     * The top edge of the free space of a page, stored as horizontal segments from left to right. Rects are placed on
+     * top of the segments where their bottom edge would be the highest, so the page fills up from the top.
+     */
+    private static class Skyline {
+        private final int width;
+        private final int height;
+
+        private int[] segmentX;
+        private int[] segmentY;
+        private int[] segmentWidth;
+        private int segmentCount;
+
+        /**
+         * The top left of the last inserted rect.
+         */
+        private int lastX;
+        private int lastY;
+
+        /**
+         * The size of the bounding box of every inserted rect.
+         */
+        private int usedWidth;
+        private int usedHeight;
+
+        private Skyline(int width, int height) {
+            this.width = width;
+            this.height = height;
+
+            this.segmentX = new int[16];
+            this.segmentY = new int[16];
+            this.segmentWidth = new int[16];
+            this.segmentWidth[0] = width;
+            this.segmentCount = 1;
+        }
+
+        /**
+         * @return True if the rect was inserted, false if it does not fit.
+         */
+        private boolean insert(int rectWidth, int rectHeight) {
+            int bestSegment = -1;
+            int bestY = Integer.MAX_VALUE;
+            int bestWidth = Integer.MAX_VALUE;
+
+            for (int i = 0; i < this.segmentCount && this.segmentX[i] + rectWidth <= this.width; i++) {
+                int y = this.fit(i, rectWidth, rectHeight);
+
+                // Prefer the lowest bottom edge, then the narrowest segment to leave wide ones for wide rects
+                if (y >= 0 && (y < bestY || y == bestY && this.segmentWidth[i] < bestWidth)) {
+                    bestSegment = i;
+                    bestY = y;
+                    bestWidth = this.segmentWidth[i];
+                }
+            }
+
+            if (bestSegment == -1) {
+                return false;
+            }
+
+            this.lastX = this.segmentX[bestSegment];
+            this.lastY = bestY;
+            this.usedWidth = Math.max(this.usedWidth, this.lastX + rectWidth);
+            this.usedHeight = Math.max(this.usedHeight, this.lastY + rectHeight);
+
+            this.addSegment(bestSegment, this.lastX, this.lastY + rectHeight, rectWidth);
+
+            return true;
+        }
+
+        /**
+         * @return The y the rect would be placed at if its left edge is at the given segment, or -1 if it does not fit.
+         */
+        private int fit(int segment, int rectWidth, int rectHeight) {
+            int y = 0;
+            int widthLeft = rectWidth;
+
+            for (int i = segment; widthLeft > 0; i++) {
+                y = Math.max(y, this.segmentY[i]);
+
+                if (y + rectHeight > this.height) {
+                    return -1;
+                }
+
+                widthLeft -= this.segmentWidth[i];
+            }
+
+            return y;
+        }
+
+        private void addSegment(int index, int x, int y, int width) {
+            if (this.segmentCount == this.segmentX.length) {
+                int capacity = this.segmentCount * 2;
+
+                this.segmentX = Arrays.copyOf(this.segmentX, capacity);
+                this.segmentY = Arrays.copyOf(this.segmentY, capacity);
+                this.segmentWidth = Arrays.copyOf(this.segmentWidth, capacity);
+            }
+
+            this.shift(index, index + 1, this.segmentCount - index);
+            this.segmentX[index] = x;
+            this.segmentY[index] = y;
+            this.segmentWidth[index] = width;
+            this.segmentCount++;
+
+            // Cut the segments that the new one covers
+            int right = x + width;
+            int next = index + 1;
+
+            while (next < this.segmentCount && this.segmentX[next] < right) {
+                int covered = right - this.segmentX[next];
+
+                if (covered < this.segmentWidth[next]) {
+                    this.segmentX[next] += covered;
+                    this.segmentWidth[next] -= covered;
+                    break;
+                }
+
+                this.removeSegment(next);
+            }
+
+            // Merge neighbouring segments at the same height
+            for (int i = Math.max(index - 1, 0); i < this.segmentCount - 1 && i <= index + 1; ) {
+                if (this.segmentY[i] == this.segmentY[i + 1]) {
+                    this.segmentWidth[i] += this.segmentWidth[i + 1];
+                    this.removeSegment(i + 1);
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        private void removeSegment(int index) {
+            this.shift(index + 1, index, this.segmentCount - index - 1);
+            this.segmentCount--;
+        }
+
+        private void shift(int from, int to, int length) {
+            System.arraycopy(this.segmentX, from, this.segmentX, to, length);
+            System.arraycopy(this.segmentY, from, this.segmentY, to, length);
+            System.arraycopy(this.segmentWidth, from, this.segmentWidth, to, length);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package jangl.io;
 
 import jangl.color.Color;
+import jangl.graphics.GLState;
 import jangl.graphics.textures.TextureBuilder;
 import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.glfw.GLFWWindowSizeCallbackI;
@@ -75,8 +76,8 @@ public class Window {
         GL.createCapabilities();
 
         // This must be enabled to make transparency work properly
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        GLState.setBlendEnabled(true);
+        GLState.setBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
 
         // Define window width and height
         int[] width = new int[1];
@@ -1,5 +1,7 @@
 package jangl.resourcemanager;
 
+import jangl.graphics.GLState;
+
 import static org.lwjgl.opengl.GL41.*;
 import static org.lwjgl.openal.AL11.*;
 
@@ -29,6 +31,13 @@ public class ResourceManager {
     public static void freeResources() {
         Resource resource;
 
+        if (resourceQueue.isEmpty()) {
+            return;
+        }
+
+        // Deleting bound objects resets their bindings, so GLState can no longer trust what it remembers
+        GLState.invalidate();
+
         while ((resource = resourceQueue.poll()) != null) {
             if (resource.getType() == ResourceType.BUFFER) {
                 glDeleteBuffers(resource.getResource());
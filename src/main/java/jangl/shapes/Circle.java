@@ -1,8 +1,8 @@
 package jangl.shapes;
 
 import jangl.coords.WorldCoords;
-import jangl.graphics.models.Model;
 import jangl.graphics.models.TexturedModel;
+import jangl.graphics.models.TexturedModelCache;
 
 import java.util.Arrays;
 
@@ -10,6 +10,11 @@ public class Circle extends Shape {
     private final int sides;
     private float radius;
 
+    /**
+     * The unit circle shared with every other circle that has the same number of sides.
+     */
+    private final UnitCircleTable table;
+
     /**
      * Since one ScreenCoord on the x-axis is not the same as one ScreenCoord on the y-axis if the aspect ratio
      * is not 1:1, the radius will be in the units of X-axis WorldCoords.
@@ -26,7 +31,7 @@ public class Circle extends Shape {
 
         this.sides = sides;
         this.radius = radius;
-        this.model = this.toTexturedModel();
+        this.table = UnitCircleTable.get(sides);
         this.transform.shift(center);
     }
 
@@ -41,8 +46,15 @@ public class Circle extends Shape {
         return this.radius;
     }
 
-    private Model toTexturedModel() {
-        return new TexturedModel(this.calculateVertices(), this.getIndices(), this.getTexCoords());
+    @Override
+    protected TexturedModel toTexturedModel() {
+        return this.acquireModel();
+    }
+
+    @Override
+    protected TexturedModel acquireModel() {
+        // The indices are never modified, so the shared array can be used as part of the key of the model
+        return TexturedModelCache.acquire(this.getLocalVertices(), this.table.indices, this.getTexCoords());
     }
 
     @Override
@@ -50,20 +62,17 @@ public class Circle extends Shape {
         super.bindShader();
         if (super.shouldDraw()) {
             super.draw();
-            this.model.render();
+            this.getModel().render();
         }
     }
 
     @Override
     public float[] calculateVertices() {
-        float[] vertices = new float[2 * (this.sides + 2)];
-
-        vertices[0] = 0;
-        vertices[1] = 0;
+        float[] unitVertices = this.table.vertices;
+        float[] vertices = new float[unitVertices.length];
 
-        for (int i = 1; i < vertices.length / 2; i++) {
-            vertices[i * 2] = (float) (this.radius * Math.cos(i * 2 * Math.PI / this.sides));
-            vertices[i * 2 + 1] = (float) (this.radius * Math.sin(i * 2 * Math.PI / this.sides));
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = unitVertices[i] * this.radius;
         }
 
         return vertices;
@@ -71,24 +80,42 @@ public class Circle extends Shape {
 
     @Override
     public int[] getIndices() {
-        int[] indices = new int[this.sides * 3 + 3];  // 3 indices per triangle
+        return this.table.indices.clone();
+    }
+
+    /**
+     * The texture coordinates of a circle do not depend on its radius, so they are scaled from the shared table
+     * instead of being calculated from the vertices.
+     */
+    @Override
+    public float[] getTexCoords() {
+        float[] unitTexCoords = this.table.texCoords;
+        float[] texCoords = new float[unitTexCoords.length];
+
+        float texRepeatX = this.getTexRepeatX();
+        float texRepeatY = this.getTexRepeatY();
+
+        for (int i = 0; i < texCoords.length; i += 2) {
+            texCoords[i] = unitTexCoords[i] * texRepeatX;
 
-        // Follow the pattern of: 0, 1, 2, 0, 2, 3, 0, 3, 4, etc...
-        // 0 is the center point of the circle
-        int indexNotIncludingZero = 1;
+            // Since the y-axis is flipped for some reason
+            texCoords[i + 1] = 1 - unitTexCoords[i + 1] * texRepeatY;
+        }
 
-        for (int i = 0; i < indices.length; i++) {
-            if (i % 3 == 0) {
-                indices[i] = 0;
-                indexNotIncludingZero--;
-                continue;
-            }
+        return texCoords;
+    }
 
-            indices[i] = indexNotIncludingZero;
-            indexNotIncludingZero++;
+    @Override
+    protected float[] calculateExteriorVertices() {
+        // Skip the center and the repeated first point
+        float[] unitVertices = this.table.vertices;
+        float[] vertices = new float[unitVertices.length - 4];
+
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = unitVertices[i + 2] * this.radius;
         }
 
-        return indices;
+        return vertices;
     }
 
     @Override
@@ -99,6 +126,6 @@ public class Circle extends Shape {
 
     @Override
     public void close() {
-        this.model.close();
+        this.releaseModel();
     }
 }
@@ -0,0 +1,1128 @@
+package jangl.shapes;
+
+import jangl.util.Range;
+
+/**
+ * The separating axis theorem implementation behind Shape.collides(). The kernel works on the world-space vertices and
+ * edge normals each shape caches, so shapes that haven't moved since their last check are not transformed again, and
+ * no collision check allocates.
+ * <br>
+ * The caches are updated lazily the first time a shape is checked after it moves. To check shapes from several threads
+ * at once, call prepare() on every shape first so the checks only read the caches.
+ * <br>
+ * Each kernel also remembers the axis that last separated each pair it checked in collides(Shape, Shape), and tests
+ * that axis before anything else the next time. See SeparatingAxisCache.
+ */
+public class CollisionKernel {
+    private static final ThreadLocal<CollisionKernel> threadKernels = ThreadLocal.withInitial(CollisionKernel::new);
+
+    /*
+     * The rows and columns of the pair test table. Shapes that are not a Rect, Circle, or Triangle are tested as
+     * generic polygons.
+     */
+    private static final int RECT = 0;
+    private static final int CIRCLE = 1;
+    private static final int TRIANGLE = 2;
+    private static final int POLYGON = 3;
+
+    /*
+     * The tests that can be picked for a pair of shapes.
+     */
+    private static final byte POLYGONS_TEST = 0;
+    private static final byte RECTS_TEST = 1;
+    private static final byte TRIANGLES_TEST = 2;
+    private static final byte CIRCLES_TEST = 3;
+    private static final byte SHAPE_CIRCLE_TEST = 4;
+    private static final byte CIRCLE_SHAPE_TEST = 5;
+
+    /**
+     * The test for each pair of shape types, indexed by [type of shape 1][type of shape 2]. The tests are stored as
+     * constants and picked with a switch instead of storing lambdas, since a call through a lambda that could be any
+     * of the tests costs more than the cheaper tests themselves.
+     */
+    private static final byte[][] PAIR_TESTS = createPairTests();
+
+    private final SeparatingAxisCache axisCache;
+
+    /**
+     * The axis that separated the pair being checked, set by the tests when they find one.
+     */
+    private boolean foundSeparatingAxis;
+    private float separatingAxisX;
+    private float separatingAxisY;
+
+    /**
+     * The segment being clipped by findContacts(), as x, y pairs.
+     */
+    private final float[] clipPoints;
+
+    /**
+     * The result of project().
+     */
+    private float projectedMin;
+    private float projectedMax;
+
+    public CollisionKernel() {
+        this.axisCache = new SeparatingAxisCache();
+        this.clipPoints = new float[4];
+    }
+
+    private static byte[][] createPairTests() {
+        byte[][] tests = new byte[4][4];
+
+        for (int type = 0; type < 4; type++) {
+            tests[type][CIRCLE] = SHAPE_CIRCLE_TEST;
+            tests[CIRCLE][type] = CIRCLE_SHAPE_TEST;
+        }
+
+        tests[CIRCLE][CIRCLE] = CIRCLES_TEST;
+        tests[RECT][RECT] = RECTS_TEST;
+        tests[TRIANGLE][TRIANGLE] = TRIANGLES_TEST;
+
+        // Every other pair is left as POLYGONS_TEST
+        return tests;
+    }
+
+    private static int typeOf(Shape shape) {
+        if (shape instanceof Rect) {
+            return RECT;
+        } else if (shape instanceof Circle) {
+            return CIRCLE;
+        } else if (shape instanceof Triangle) {
+            return TRIANGLE;
+        }
+
+        return POLYGON;
+    }
+
+    /**
+     * @return The kernel owned by the current thread.
+     */
+    public static CollisionKernel get() {
+        return threadKernels.get();
+    }
+
+    /**
+     * @return The cache of separating axes used by collides(Shape, Shape), for reading its hit rate.
+     */
+    public SeparatingAxisCache getAxisCache() {
+        return this.axisCache;
+    }
+
+    /**
+     * Brings the cached world-space data of a shape up to date with its transform. Collision checks on prepared
+     * shapes only read the shapes, so they can run on several threads at once as long as no shape is modified.
+     *
+     * @param shape The shape to prepare.
+     */
+    public static void prepare(Shape shape) {
+        shape.updatedNormals();
+        shape.updatedExteriorVertices();
+        shape.updatedBoundingRadii();
+    }
+
+    /**
+     * Checks if two shapes collide. Returns the same result as Shape.collides(Shape, Shape).
+     * <br>
+     * The test is picked from a table by the types of the two shapes. Rects only test their 2 unique axes each,
+     * triangles use an unrolled test, and uniformly scaled circles are tested as true circles instead of as their
+     * polygons. Every other pair, and circles that are scaled into ellipses, use collidesAsPolygons().
+     * <br>
+     * Before the test runs, the axis that separated the pair the last time it was checked is tried. If it still
+     * separates them, the test is skipped. Any axis that separates two convex shapes proves they don't collide, so
+     * this never changes the result for convex shapes.
+     *
+     * @param shape1 The first shape.
+     * @param shape2 The second shape.
+     * @return If they collide.
+     */
+    public boolean collides(Shape shape1, Shape shape2) {
+        byte test = PAIR_TESTS[typeOf(shape1)][typeOf(shape2)];
+
+        // Two circles are cheaper to test than to look up
+        if (test == CIRCLES_TEST && isUniformlyScaled(shape1) && isUniformlyScaled(shape2)) {
+            return this.collides((Circle) shape1, (Circle) shape2);
+        }
+
+        // Pairs that are far apart are cheaper to reject by their bounding circles than to look up
+        if (!farBoundingCirclesCollide(shape1, shape2)) {
+            return false;
+        }
+
+        long key = SeparatingAxisCache.pairKey(shape1, shape2);
+        int slot = this.axisCache.find(key);
+
+        if (this.separatedOnCachedAxis(shape1, shape2, slot)) {
+            return false;
+        }
+
+        boolean collides = switch (test) {
+            case RECTS_TEST -> this.collidesRects(shape1, shape2);
+            case TRIANGLES_TEST -> this.collidesTriangles(shape1, shape2);
+            case CIRCLES_TEST -> this.collidesCircles(shape1, shape2);
+            case SHAPE_CIRCLE_TEST -> this.collidesShapeCircle(shape1, shape2);
+            case CIRCLE_SHAPE_TEST -> this.collidesCircleShape(shape1, shape2);
+            default -> this.collidesAsPolygons(shape1, shape2);
+        };
+
+        this.updateAxisCache(key, slot);
+        return collides;
+    }
+
+    /**
+     * Checks if two shapes collide, and if they do, finds the minimum translation vector and the contact points.
+     * Returns the same result as collides(Shape, Shape) and picks the test the same way, so the contact is found in
+     * the same pass as the collision check.
+     *
+     * @param shape1 The first shape.
+     * @param shape2 The second shape.
+     * @param out    The result to write to. It is cleared first.
+     * @return If they collide.
+     */
+    public boolean intersect(Shape shape1, Shape shape2, ContactResult out) {
+        out.clear();
+
+        byte test = PAIR_TESTS[typeOf(shape1)][typeOf(shape2)];
+
+        if (test == CIRCLES_TEST && isUniformlyScaled(shape1) && isUniformlyScaled(shape2)) {
+            return intersectCircles((Circle) shape1, (Circle) shape2, out);
+        }
+
+        if (!farBoundingCirclesCollide(shape1, shape2)) {
+            return false;
+        }
+
+        long key = SeparatingAxisCache.pairKey(shape1, shape2);
+        int slot = this.axisCache.find(key);
+
+        if (this.separatedOnCachedAxis(shape1, shape2, slot)) {
+            return false;
+        }
+
+        boolean intersects;
+
+        if (test == SHAPE_CIRCLE_TEST && isUniformlyScaled(shape2)) {
+            intersects = this.intersectShapeCircle(shape1, (Circle) shape2, false, out);
+        } else if (test == CIRCLE_SHAPE_TEST && isUniformlyScaled(shape1)) {
+            intersects = this.intersectShapeCircle(shape2, (Circle) shape1, true, out);
+        } else {
+            intersects = this.intersectPolygons(shape1, shape2, out);
+        }
+
+        this.updateAxisCache(key, slot);
+        return intersects;
+    }
+
+    /**
+     * Tests the cached separating axis of a pair, and records the hit or miss.
+     *
+     * @param slot The pair's slot in the cache, or -1 if it has none.
+     * @return True if the cached axis separates the shapes.
+     */
+    private boolean separatedOnCachedAxis(Shape shape1, Shape shape2, int slot) {
+        if (slot != -1 && this.separatedOnAxis(shape1, shape2, this.axisCache.getAxisX(slot), this.axisCache.getAxisY(slot))) {
+            this.axisCache.recordHit();
+            return true;
+        }
+
+        this.axisCache.recordMiss();
+        this.foundSeparatingAxis = false;
+
+        return false;
+    }
+
+    /**
+     * Caches the axis found by the test that just ran, or removes the pair's entry if no axis separated it.
+     */
+    private void updateAxisCache(long key, int slot) {
+        if (this.foundSeparatingAxis) {
+            this.axisCache.put(key, this.separatingAxisX, this.separatingAxisY);
+        } else if (slot != -1) {
+            this.axisCache.remove(key);
+        }
+    }
+
+    private static boolean intersectCircles(Circle circle1, Circle circle2, ContactResult out) {
+        Transform t1 = circle1.getTransform();
+        Transform t2 = circle2.getTransform();
+
+        float x1 = t1.getCenterX();
+        float y1 = t1.getCenterY();
+        float x2 = t2.getCenterX();
+        float y2 = t2.getCenterY();
+        float radius1 = circle1.getRadius() * t1.getScaleX();
+        float radius2 = circle2.getRadius() * t2.getScaleX();
+
+        if (!circlesCollide(x1, y1, radius1, x2, y2, radius2)) {
+            return false;
+        }
+
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+
+        // Circles with the same center can be separated in any direction
+        float normalX = distance == 0 ? 0 : dx / distance;
+        float normalY = distance == 0 ? 1 : dy / distance;
+
+        out.set(radius1 + radius2 - distance, normalX, normalY);
+        out.addContact(x2 - normalX * radius2, y2 - normalY * radius2);
+
+        return true;
+    }
+
+    /**
+     * The same test as collides(Shape, Circle), keeping the axis with the least overlap.
+     *
+     * @param circleFirst If the circle is the first shape of the pair, so the normal must point towards the shape.
+     */
+    private boolean intersectShapeCircle(Shape shape, Circle circle, boolean circleFirst, ContactResult out) {
+        Transform circleTransform = circle.getTransform();
+
+        float circleX = circleTransform.getCenterX();
+        float circleY = circleTransform.getCenterY();
+        float circleRadius = circle.getRadius() * circleTransform.getScaleX();
+
+        WorldGeometry geometry = shape.updatedExteriorVertices();
+
+        float[] vertices = geometry.exteriorVertices;
+        float[] normals = geometry.exteriorNormals;
+        int count = geometry.exteriorCount;
+
+        float depth = Float.POSITIVE_INFINITY;
+        float normalX = 0;
+        float normalY = 0;
+
+        for (int i = 0; i <= count; i++) {
+            float axisX;
+            float axisY;
+
+            if (i < count) {
+                axisX = normals[i * 2];
+                axisY = normals[i * 2 + 1];
+            } else {
+                int closest = closestVertex(vertices, count, circleX, circleY);
+
+                float toCenterX = circleX - vertices[closest * 2];
+                float toCenterY = circleY - vertices[closest * 2 + 1];
+                float lengthSquared = toCenterX * toCenterX + toCenterY * toCenterY;
+
+                // The circle's center is on a vertex, so the edge normals already found the least overlap
+                if (lengthSquared == 0) {
+                    break;
+                }
+
+                float invLength = 1.0f / (float) Math.sqrt(lengthSquared);
+
+                axisX = toCenterX * invLength;
+                axisY = toCenterY * invLength;
+            }
+
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < count; j++) {
+                float dot = vertices[j * 2] * axisX + vertices[j * 2 + 1] * axisY;
+                min = Math.min(min, dot);
+                max = Math.max(max, dot);
+            }
+
+            float projectedCenter = circleX * axisX + circleY * axisY;
+            float circleMin = projectedCenter - circleRadius;
+            float circleMax = projectedCenter + circleRadius;
+
+            if (!Range.intersects(min, max, circleMin, circleMax)) {
+                this.setSeparatingAxis(axisX, axisY);
+                return false;
+            }
+
+            // Push the circle out of whichever side of the shape it overlaps less
+            float overlapAbove = max - circleMin;
+            float overlapBelow = circleMax - min;
+
+            if (overlapAbove < depth) {
+                depth = overlapAbove;
+                normalX = axisX;
+                normalY = axisY;
+            }
+
+            if (overlapBelow < depth) {
+                depth = overlapBelow;
+                normalX = -axisX;
+                normalY = -axisY;
+            }
+        }
+
+        // The normal points from the shape to the circle, so the deepest point of the circle is behind its center
+        float contactX = circleX - normalX * circleRadius;
+        float contactY = circleY - normalY * circleRadius;
+
+        if (circleFirst) {
+            out.set(depth, -normalX, -normalY);
+        } else {
+            out.set(depth, normalX, normalY);
+        }
+
+        out.addContact(contactX, contactY);
+
+        return true;
+    }
+
+    /**
+     * The same test as collidesAsPolygons(), keeping the axis with the least overlap, then clipping the edges of the
+     * two shapes that face each other to find the contact points.
+     */
+    private boolean intersectPolygons(Shape shape1, Shape shape2, ContactResult out) {
+        if (!this.boundingCirclesCollide(shape1, shape2)) {
+            return false;
+        }
+
+        WorldGeometry geometry1 = shape1.updatedNormals();
+        WorldGeometry geometry2 = shape2.updatedNormals();
+
+        float[] vertices1 = geometry1.vertices;
+        float[] vertices2 = geometry2.vertices;
+        int count1 = geometry1.vertexCount;
+        int count2 = geometry2.vertexCount;
+
+        // A rect's edges are only in 2 directions
+        int axisCount1 = shape1 instanceof Rect ? 2 : count1;
+        int axisCount2 = shape2 instanceof Rect ? 2 : count2;
+
+        float depth = Float.POSITIVE_INFINITY;
+        float normalX = 0;
+        float normalY = 0;
+
+        for (int i = 0; i < axisCount1 + axisCount2; i++) {
+            float[] normals = i < axisCount1 ? geometry1.normals : geometry2.normals;
+            int axis = i < axisCount1 ? i : i - axisCount1;
+
+            float axisX = normals[axis * 2];
+            float axisY = normals[axis * 2 + 1];
+
+            float min1 = Float.POSITIVE_INFINITY;
+            float max1 = Float.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < count1; j++) {
+                float dot = vertices1[j * 2] * axisX + vertices1[j * 2 + 1] * axisY;
+                min1 = Math.min(min1, dot);
+                max1 = Math.max(max1, dot);
+            }
+
+            float min2 = Float.POSITIVE_INFINITY;
+            float max2 = Float.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < count2; j++) {
+                float dot = vertices2[j * 2] * axisX + vertices2[j * 2 + 1] * axisY;
+                min2 = Math.min(min2, dot);
+                max2 = Math.max(max2, dot);
+            }
+
+            if (!Range.intersects(min1, max1, min2, max2)) {
+                this.setSeparatingAxis(axisX, axisY);
+                return false;
+            }
+
+            float overlapAbove = max1 - min2;
+            float overlapBelow = max2 - min1;
+
+            if (overlapAbove < depth) {
+                depth = overlapAbove;
+                normalX = axisX;
+                normalY = axisY;
+            }
+
+            if (overlapBelow < depth) {
+                depth = overlapBelow;
+                normalX = -axisX;
+                normalY = -axisY;
+            }
+        }
+
+        out.set(depth, normalX, normalY);
+
+        // The vertices of a circle include its center, which is not on its outline, so use the exterior vertices
+        if (shape1 instanceof Circle) {
+            vertices1 = shape1.updatedExteriorVertices().exteriorVertices;
+            count1 = geometry1.exteriorCount;
+        }
+
+        if (shape2 instanceof Circle) {
+            vertices2 = shape2.updatedExteriorVertices().exteriorVertices;
+            count2 = geometry2.exteriorCount;
+        }
+
+        this.findContacts(vertices1, count1, vertices2, count2, normalX, normalY, out);
+
+        return true;
+    }
+
+    /**
+     * Finds the contact points of two overlapping polygons. The edge of each polygon that faces the other is found,
+     * and the one closer to perpendicular to the normal becomes the reference edge. The other, incident, edge is
+     * clipped to the sides of the reference edge, and the points of it that are behind the reference edge are the
+     * contacts.
+     *
+     * @param normalX The x of the normal, pointing from the first polygon to the second.
+     * @param normalY The y of the normal.
+     */
+    private void findContacts(float[] vertices1, int count1, float[] vertices2, int count2,
+                              float normalX, float normalY, ContactResult out) {
+        int edge1 = facingEdge(vertices1, count1, normalX, normalY);
+        int edge2 = facingEdge(vertices2, count2, -normalX, -normalY);
+
+        float[] referenceVertices = vertices1;
+        int referenceEdge = edge1;
+        int referenceCount = count1;
+        float[] incidentVertices = vertices2;
+        int incidentEdge = edge2;
+        int incidentCount = count2;
+
+        // The direction from the reference polygon to the incident polygon
+        float towardsX = normalX;
+        float towardsY = normalY;
+
+        if (edgeAlignment(vertices2, count2, edge2, normalX, normalY)
+                < edgeAlignment(vertices1, count1, edge1, normalX, normalY)) {
+            referenceVertices = vertices2;
+            referenceEdge = edge2;
+            referenceCount = count2;
+            incidentVertices = vertices1;
+            incidentEdge = edge1;
+            incidentCount = count1;
+
+            towardsX = -normalX;
+            towardsY = -normalY;
+        }
+
+        int referenceNext = (referenceEdge + 1) % referenceCount;
+        int incidentNext = (incidentEdge + 1) % incidentCount;
+
+        float refX1 = referenceVertices[referenceEdge * 2];
+        float refY1 = referenceVertices[referenceEdge * 2 + 1];
+        float refX2 = referenceVertices[referenceNext * 2];
+        float refY2 = referenceVertices[referenceNext * 2 + 1];
+
+        float[] clip = this.clipPoints;
+        clip[0] = incidentVertices[incidentEdge * 2];
+        clip[1] = incidentVertices[incidentEdge * 2 + 1];
+        clip[2] = incidentVertices[incidentNext * 2];
+        clip[3] = incidentVertices[incidentNext * 2 + 1];
+
+        float edgeX = refX2 - refX1;
+        float edgeY = refY2 - refY1;
+        float invLength = 1.0f / (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+        edgeX *= invLength;
+        edgeY *= invLength;
+
+        // Clip the incident edge to the start and end of the reference edge
+        int clipCount = this.clip(edgeX, edgeY, edgeX * refX1 + edgeY * refY1);
+
+        if (clipCount == 2) {
+            clipCount = this.clip(-edgeX, -edgeY, -(edgeX * refX2 + edgeY * refY2));
+        }
+
+        // The normal of the reference edge, facing the incident polygon
+        float faceX = edgeY;
+        float faceY = -edgeX;
+
+        if (faceX * towardsX + faceY * towardsY < 0) {
+            faceX = -faceX;
+            faceY = -faceY;
+        }
+
+        float faceOffset = faceX * refX1 + faceY * refY1;
+
+        if (clipCount == 2) {
+            for (int i = 0; i < 4; i += 2) {
+                if (faceX * clip[i] + faceY * clip[i + 1] <= faceOffset) {
+                    out.addContact(clip[i], clip[i + 1]);
+                }
+            }
+        }
+
+        // Rounding can clip away every point when the polygons barely overlap, so fall back to the deepest vertex
+        if (out.contactCount == 0) {
+            int deepest = 0;
+            float deepestDot = Float.POSITIVE_INFINITY;
+
+            for (int i = 0; i < incidentCount; i++) {
+                float dot = faceX * incidentVertices[i * 2] + faceY * incidentVertices[i * 2 + 1];
+
+                if (dot < deepestDot) {
+                    deepest = i;
+                    deepestDot = dot;
+                }
+            }
+
+            out.addContact(incidentVertices[deepest * 2], incidentVertices[deepest * 2 + 1]);
+        }
+    }
+
+    /**
+     * Finds the edge of a polygon that faces a direction: of the two edges that meet at the vertex farthest in the
+     * direction, the one closer to perpendicular to it.
+     *
+     * @return The index of the first vertex of the edge. The edge goes to the vertex after it.
+     */
+    private static int facingEdge(float[] vertices, int count, float directionX, float directionY) {
+        int farthest = 0;
+        float farthestDot = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            float dot = vertices[i * 2] * directionX + vertices[i * 2 + 1] * directionY;
+
+            if (dot > farthestDot) {
+                farthest = i;
+                farthestDot = dot;
+            }
+        }
+
+        int previous = farthest == 0 ? count - 1 : farthest - 1;
+
+        return edgeAlignment(vertices, count, farthest, directionX, directionY)
+                <= edgeAlignment(vertices, count, previous, directionX, directionY) ? farthest : previous;
+    }
+
+    /**
+     * @return How close to parallel an edge is to a direction, from 0 for perpendicular to 1 for parallel.
+     */
+    private static float edgeAlignment(float[] vertices, int count, int edge, float directionX, float directionY) {
+        int next = (edge + 1) % count;
+
+        float edgeX = vertices[next * 2] - vertices[edge * 2];
+        float edgeY = vertices[next * 2 + 1] - vertices[edge * 2 + 1];
+        float length = (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+
+        if (length == 0) {
+            return 1;
+        }
+
+        return Math.abs(edgeX * directionX + edgeY * directionY) / length;
+    }
+
+    /**
+     * Clips the segment in clipPoints to the side of a line where the projection onto the direction is at least the
+     * offset.
+     *
+     * @return 2 if part of the segment is left, or 0 if all of it was clipped.
+     */
+    private int clip(float directionX, float directionY, float offset) {
+        float[] clip = this.clipPoints;
+
+        float distance1 = directionX * clip[0] + directionY * clip[1] - offset;
+        float distance2 = directionX * clip[2] + directionY * clip[3] - offset;
+
+        if (distance1 >= 0 && distance2 >= 0) {
+            return 2;
+        } else if (distance1 < 0 && distance2 < 0) {
+            return 0;
+        }
+
+        // Move the point that is behind the line onto it
+        float t = distance1 / (distance1 - distance2);
+        float x = clip[0] + (clip[2] - clip[0]) * t;
+        float y = clip[1] + (clip[3] - clip[1]) * t;
+
+        if (distance1 < 0) {
+            clip[0] = x;
+            clip[1] = y;
+        } else {
+            clip[2] = x;
+            clip[3] = y;
+        }
+
+        return 2;
+    }
+
+    /**
+     * Checks if two shapes collide by running the separating axis theorem on the edges of both shapes' vertices. Any
+     * circle is tested as the polygon it is drawn as, so this is the method to use for ellipses.
+     *
+     * @param shape1 The first shape.
+     * @param shape2 The second shape.
+     * @return If they collide.
+     */
+    public boolean collidesAsPolygons(Shape shape1, Shape shape2) {
+        if (!this.boundingCirclesCollide(shape1, shape2)) {
+            return false;
+        }
+
+        WorldGeometry geometry1 = shape1.updatedNormals();
+        WorldGeometry geometry2 = shape2.updatedNormals();
+
+        float[] vertices1 = geometry1.vertices;
+        float[] vertices2 = geometry2.vertices;
+        int count1 = geometry1.vertexCount;
+        int count2 = geometry2.vertexCount;
+
+        return !this.separatedByAxes(geometry1.normals, count1, vertices1, count1, vertices2, count2)
+                && !this.separatedByAxes(geometry2.normals, count2, vertices1, count1, vertices2, count2);
+    }
+
+    /**
+     * The same as collidesAsPolygons(), but a rect's edges are only in 2 directions, so only the first 2 edge normals
+     * of each rect need to be tested.
+     */
+    private boolean collidesRects(Shape rect1, Shape rect2) {
+        if (!this.boundingCirclesCollide(rect1, rect2)) {
+            return false;
+        }
+
+        WorldGeometry geometry1 = rect1.updatedNormals();
+        WorldGeometry geometry2 = rect2.updatedNormals();
+
+        float[] vertices1 = geometry1.vertices;
+        float[] vertices2 = geometry2.vertices;
+
+        return !this.separatedByAxes(geometry1.normals, 2, vertices1, 4, vertices2, 4)
+                && !this.separatedByAxes(geometry2.normals, 2, vertices1, 4, vertices2, 4);
+    }
+
+    /**
+     * The same as collidesAsPolygons(), with the projections of the 3 vertices of each triangle unrolled.
+     */
+    private boolean collidesTriangles(Shape triangle1, Shape triangle2) {
+        if (!this.boundingCirclesCollide(triangle1, triangle2)) {
+            return false;
+        }
+
+        WorldGeometry geometry1 = triangle1.updatedNormals();
+        WorldGeometry geometry2 = triangle2.updatedNormals();
+
+        return !this.separatedTriangles(geometry1.normals, geometry1.vertices, geometry2.vertices)
+                && !this.separatedTriangles(geometry2.normals, geometry1.vertices, geometry2.vertices);
+    }
+
+    private boolean collidesCircles(Shape circle1, Shape circle2) {
+        if (!isUniformlyScaled(circle1) || !isUniformlyScaled(circle2)) {
+            return this.collidesAsPolygons(circle1, circle2);
+        }
+
+        return this.collides((Circle) circle1, (Circle) circle2);
+    }
+
+    private boolean collidesShapeCircle(Shape shape, Shape circle) {
+        if (!isUniformlyScaled(circle)) {
+            return this.collidesAsPolygons(shape, circle);
+        }
+
+        return this.collides(shape, (Circle) circle);
+    }
+
+    private boolean collidesCircleShape(Shape circle, Shape shape) {
+        if (!isUniformlyScaled(circle)) {
+            return this.collidesAsPolygons(circle, shape);
+        }
+
+        return this.collides(shape, (Circle) circle);
+    }
+
+    /**
+     * The bounding circle check that runs before the more expensive SAT tests. If the circles don't collide, the axis
+     * between the centers is recorded as the separating axis.
+     */
+    private boolean boundingCirclesCollide(Shape shape1, Shape shape2) {
+        Transform t1 = shape1.getTransform();
+        Transform t2 = shape2.getTransform();
+
+        float s1Radius = shape1.updatedBoundingRadii().scaledBoundingRadius;
+        float s2Radius = shape2.updatedBoundingRadii().boundingRadius;
+
+        if (circlesCollide(t1.getCenterX(), t1.getCenterY(), s1Radius, t2.getCenterX(), t2.getCenterY(), s2Radius)) {
+            return true;
+        }
+
+        this.recordSeparatingAxis(t2.getCenterX() - t1.getCenterX(), t2.getCenterY() - t1.getCenterY());
+        return false;
+    }
+
+    /**
+     * A bounding circle check that never rejects shapes that collide, since every radius is measured from the
+     * farthest unscaled vertex and multiplied by the larger scale. Unlike boundingCirclesCollide(), this can run
+     * before any test without changing its result.
+     */
+    private static boolean farBoundingCirclesCollide(Shape shape1, Shape shape2) {
+        Transform t1 = shape1.getTransform();
+        Transform t2 = shape2.getTransform();
+
+        float s1Radius = shape1.updatedBoundingRadii().boundingRadius;
+        float s2Radius = shape2.updatedBoundingRadii().boundingRadius;
+
+        return circlesCollide(t1.getCenterX(), t1.getCenterY(), s1Radius, t2.getCenterX(), t2.getCenterY(), s2Radius);
+    }
+
+    /**
+     * Records an axis that separated the pair being checked, normalizing it first.
+     */
+    private void recordSeparatingAxis(float axisX, float axisY) {
+        float lengthSquared = axisX * axisX + axisY * axisY;
+
+        if (lengthSquared != 0) {
+            float invLength = 1.0f / (float) Math.sqrt(lengthSquared);
+            this.setSeparatingAxis(axisX * invLength, axisY * invLength);
+        }
+    }
+
+    private void setSeparatingAxis(float axisX, float axisY) {
+        this.separatingAxisX = axisX;
+        this.separatingAxisY = axisY;
+        this.foundSeparatingAxis = true;
+    }
+
+    /**
+     * Checks if an axis from the separating axis cache separates two shapes.
+     */
+    private boolean separatedOnAxis(Shape shape1, Shape shape2, float axisX, float axisY) {
+        this.project(shape1, axisX, axisY);
+        float min1 = this.projectedMin;
+        float max1 = this.projectedMax;
+
+        this.project(shape2, axisX, axisY);
+
+        return !Range.intersects(min1, max1, this.projectedMin, this.projectedMax);
+    }
+
+    /**
+     * Projects a shape onto an axis, into projectedMin and projectedMax. Uniformly scaled circles are projected as
+     * true circles, which cover their polygons, and every other shape is projected by its vertices.
+     */
+    private void project(Shape shape, float axisX, float axisY) {
+        if (shape instanceof Circle circle && isUniformlyScaled(circle)) {
+            Transform transform = circle.getTransform();
+            float projectedCenter = transform.getCenterX() * axisX + transform.getCenterY() * axisY;
+            float radius = circle.getRadius() * transform.getScaleX();
+
+            this.projectedMin = projectedCenter - radius;
+            this.projectedMax = projectedCenter + radius;
+            return;
+        }
+
+        WorldGeometry geometry = shape.updatedVertices();
+        float[] vertices = geometry.vertices;
+
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < geometry.vertexCount * 2; i += 2) {
+            float dot = vertices[i] * axisX + vertices[i + 1] * axisY;
+            min = Math.min(min, dot);
+            max = Math.max(max, dot);
+        }
+
+        this.projectedMin = min;
+        this.projectedMax = max;
+    }
+
+    private static boolean isUniformlyScaled(Shape shape) {
+        Transform transform = shape.getTransform();
+        return transform.getScaleX() == transform.getScaleY();
+    }
+
+    /**
+     * Checks if a point is inside a shape. Returns the same result as Shape.collides(Shape, WorldCoords).
+     *
+     * @param shape The shape.
+     * @param x     The x coordinate of the point, in WorldCoords.
+     * @param y     The y coordinate of the point, in WorldCoords.
+     * @return If they collide.
+     */
+    public boolean collides(Shape shape, float x, float y) {
+        WorldGeometry geometry = shape.updatedExteriorVertices();
+
+        float[] vertices = geometry.exteriorVertices;
+        float[] normals = geometry.exteriorNormals;
+        int count = geometry.exteriorCount;
+
+        for (int i = 0; i < count; i++) {
+            float axisX = normals[i * 2];
+            float axisY = normals[i * 2 + 1];
+
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < count; j++) {
+                float dot = vertices[j * 2] * axisX + vertices[j * 2 + 1] * axisY;
+                min = Math.min(min, dot);
+                max = Math.max(max, dot);
+            }
+
+            if (!Range.intersects(min, max, x * axisX + y * axisY)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks for collision between a shape and a circle. Returns the same result as Shape.collides(Shape, Circle).
+     *
+     * @param shape  The shape object.
+     * @param circle The circle object.
+     * @return If they collide.
+     */
+    public boolean collides(Shape shape, Circle circle) {
+        Transform shapeTransform = shape.getTransform();
+        Transform circleTransform = circle.getTransform();
+
+        float circleX = circleTransform.getCenterX();
+        float circleY = circleTransform.getCenterY();
+        float circleRadius = circle.getRadius() * circleTransform.getScaleX();
+
+        WorldGeometry geometry = shape.updatedExteriorVertices();
+
+        float[] vertices = geometry.exteriorVertices;
+        float[] normals = geometry.exteriorNormals;
+        int count = geometry.exteriorCount;
+
+        // The exterior edges of the shape, then the axis between the circle's center and the closest vertex. Together
+        // these are every axis that can separate a convex polygon and a circle.
+        for (int i = 0; i <= count; i++) {
+            float axisX;
+            float axisY;
+
+            if (i < count) {
+                axisX = normals[i * 2];
+                axisY = normals[i * 2 + 1];
+            } else {
+                int closest = closestVertex(vertices, count, circleX, circleY);
+
+                float toCenterX = circleX - vertices[closest * 2];
+                float toCenterY = circleY - vertices[closest * 2 + 1];
+                float lengthSquared = toCenterX * toCenterX + toCenterY * toCenterY;
+
+                // The circle's center is on a vertex
+                if (lengthSquared == 0) {
+                    return true;
+                }
+
+                float invLength = 1.0f / (float) Math.sqrt(lengthSquared);
+
+                axisX = toCenterX * invLength;
+                axisY = toCenterY * invLength;
+            }
+
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < count; j++) {
+                float dot = vertices[j * 2] * axisX + vertices[j * 2 + 1] * axisY;
+                min = Math.min(min, dot);
+                max = Math.max(max, dot);
+            }
+
+            float projectedCenter = circleX * axisX + circleY * axisY;
+
+            if (!Range.intersects(min, max, projectedCenter - circleRadius, projectedCenter + circleRadius)) {
+                this.setSeparatingAxis(axisX, axisY);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks for collision between two circles. Returns the same result as Shape.collides(Circle, Circle).
+     *
+     * @param circle1 The first circle.
+     * @param circle2 The second circle.
+     * @return If they collide.
+     */
+    public boolean collides(Circle circle1, Circle circle2) {
+        Transform t1 = circle1.getTransform();
+        Transform t2 = circle2.getTransform();
+
+        return circlesCollide(
+                t1.getCenterX(), t1.getCenterY(), circle1.getRadius() * t1.getScaleX(),
+                t2.getCenterX(), t2.getCenterY(), circle2.getRadius() * t2.getScaleX()
+        );
+    }
+
+    /**
+     * Checks for collision between a circle and a point. Returns the same result as
+     * Shape.collides(Circle, WorldCoords).
+     *
+     * @param circle The circle.
+     * @param x      The x coordinate of the point, in WorldCoords.
+     * @param y      The y coordinate of the point, in WorldCoords.
+     * @return If they collide.
+     */
+    public boolean collides(Circle circle, float x, float y) {
+        Transform transform = circle.getTransform();
+
+        double radiusSquared = Math.pow(circle.getRadius() * transform.getScaleX(), 2);
+        double distSquared = Math.pow(transform.getCenterX() - x, 2) + Math.pow(transform.getCenterY() - y, 2);
+
+        return distSquared <= radiusSquared;
+    }
+
+    /**
+     * The same calculation as Shape.collides(WorldCoords, float, WorldCoords, float) without the WorldCoords objects.
+     */
+    static boolean circlesCollide(float x1, float y1, float radius1, float x2, float y2, float radius2) {
+        double distSquared = Math.pow(x1 - x2, 2) + Math.pow(y1 - y2, 2);
+        double combinedRadiiSquared = Math.pow(radius1 + radius2, 2);
+
+        return distSquared <= combinedRadiiSquared;
+    }
+
+    /**
+     * Finds the bounding radius used to skip the SAT test for shapes that are far apart.
+     *
+     * @param localVertices   The vertices of the shape before the transform is applied.
+     * @param scaleX          The x scale of the transform.
+     * @param scaleY          The y scale of the transform.
+     * @param scaleFarthest   If the farthest vertex should be scaled before its distance is measured. This matches
+     *                        how the radius of the first shape was calculated in the original implementation.
+     * @return The bounding radius.
+     */
+    static float boundingRadius(float[] localVertices, float scaleX, float scaleY, boolean scaleFarthest) {
+        float farthestX = localVertices[0];
+        float farthestY = localVertices[1];
+        float farthestDistanceSquared = -1;  // this is valid since distance cannot be negative
+
+        for (int i = 0; i < localVertices.length; i += 2) {
+            float x = localVertices[i];
+            float y = localVertices[i + 1];
+            float distSquared = x * x + y * y;
+
+            if (distSquared > farthestDistanceSquared) {
+                farthestX = x;
+                farthestY = y;
+                farthestDistanceSquared = distSquared;
+            }
+        }
+
+        if (scaleFarthest) {
+            farthestX *= scaleX;
+            farthestY *= scaleY;
+        }
+
+        float distance = (float) Math.sqrt(farthestX * farthestX + farthestY * farthestY);
+        return distance * Math.max(scaleX, scaleY);
+    }
+
+    /**
+     * @return The index of the vertex closest to the point.
+     */
+    private static int closestVertex(float[] vertices, int count, float x, float y) {
+        int closest = 0;
+        float closestDistanceSquared = Float.POSITIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            float dx = vertices[i * 2] - x;
+            float dy = vertices[i * 2 + 1] - y;
+            float distanceSquared = dx * dx + dy * dy;
+
+            if (distanceSquared < closestDistanceSquared) {
+                closest = i;
+                closestDistanceSquared = distanceSquared;
+            }
+        }
+
+        return closest;
+    }
+
+    /**
+     * The same as separatedByAxes() for two triangles, unrolled.
+     */
+    private boolean separatedTriangles(float[] normals, float[] vertices1, float[] vertices2) {
+        for (int i = 0; i < 6; i += 2) {
+            float axisX = normals[i];
+            float axisY = normals[i + 1];
+
+            float a0 = vertices1[0] * axisX + vertices1[1] * axisY;
+            float a1 = vertices1[2] * axisX + vertices1[3] * axisY;
+            float a2 = vertices1[4] * axisX + vertices1[5] * axisY;
+
+            float b0 = vertices2[0] * axisX + vertices2[1] * axisY;
+            float b1 = vertices2[2] * axisX + vertices2[3] * axisY;
+            float b2 = vertices2[4] * axisX + vertices2[5] * axisY;
+
+            if (!Range.intersects(
+                    Math.min(a0, Math.min(a1, a2)), Math.max(a0, Math.max(a1, a2)),
+                    Math.min(b0, Math.min(b1, b2)), Math.max(b0, Math.max(b1, b2))
+            )) {
+                this.setSeparatingAxis(axisX, axisY);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks the edge normals of one polygon as separating axes between two polygons.
+     *
+     * @param normals    The normals of the edges to use as axes.
+     * @param axisCount  The number of normals.
+     * @param vertices1  The world-space vertices of the first polygon.
+     * @param count1     The number of vertices in the first polygon.
+     * @param vertices2  The world-space vertices of the second polygon.
+     * @param count2     The number of vertices in the second polygon.
+     * @return True if any of the axes separates the polygons.
+     */
+    private boolean separatedByAxes(float[] normals, int axisCount, float[] vertices1, int count1,
+                                           float[] vertices2, int count2) {
+        for (int i = 0; i < axisCount; i++) {
+            float axisX = normals[i * 2];
+            float axisY = normals[i * 2 + 1];
+
+            float min1 = Float.POSITIVE_INFINITY;
+            float max1 = Float.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < count1; j++) {
+                float dot = vertices1[j * 2] * axisX + vertices1[j * 2 + 1] * axisY;
+                min1 = Math.min(min1, dot);
+                max1 = Math.max(max1, dot);
+            }
+
+            float min2 = Float.POSITIVE_INFINITY;
+            float max2 = Float.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < count2; j++) {
+                float dot = vertices2[j * 2] * axisX + vertices2[j * 2 + 1] * axisY;
+                min2 = Math.min(min2, dot);
+                max2 = Math.max(max2, dot);
+            }
+
+            if (!Range.intersects(min1, max1, min2, max2)) {
+                this.setSeparatingAxis(axisX, axisY);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Applies the scale, rotation, and translation of a transform to local vertices. The transform is only read, so
+     * this is safe to call while other threads are reading the same transform.
+     *
+     * @param transform The transform to apply.
+     * @param local     The local x, y pairs.
+     * @param out       The array to write the world-space x, y pairs to. Must be at least as long as local.
+     * @return The number of vertices written.
+     */
+    static int toWorld(Transform transform, float[] local, float[] out) {
+        float cos = transform.getRotationCos();
+        float sin = transform.getRotationSin();
+
+        float scaleX = transform.getScaleX();
+        float scaleY = transform.getScaleY();
+        float centerX = transform.getCenterX();
+        float centerY = transform.getCenterY();
+
+        for (int i = 0; i < local.length; i += 2) {
+            float x = local[i] * scaleX;
+            float y = local[i + 1] * scaleY;
+
+            out[i] = cos * x - sin * y + centerX;
+            out[i + 1] = sin * x + cos * y + centerY;
+        }
+
+        return local.length / 2;
+    }
+}
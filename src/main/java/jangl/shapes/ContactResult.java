@@ -0,0 +1,88 @@
+package jangl.shapes;
+
+/**
+ * The result of Shape.intersect(): if two shapes collide, how far they overlap, and where they touch. The fields are
+ * public and Shape.intersect() writes to this object, so the same result can be reused every frame without
+ * allocating.
+ * <br>
+ * All values are in WorldCoords.
+ */
+public class ContactResult {
+    public boolean colliding;
+
+    /**
+     * How far the shapes overlap along the normal. Moving the second shape by the normal times the depth, or the
+     * first shape by the opposite, separates them.
+     */
+    public float depth;
+
+    /**
+     * The unit length direction of the minimum translation vector, pointing from the first shape towards the second.
+     */
+    public float normalX;
+    public float normalY;
+
+    /**
+     * The number of contact points, from 0 to 2. Polygons that overlap along an edge have 2, and every other contact
+     * has 1. The contact points are the deepest points of one shape inside the other.
+     */
+    public int contactCount;
+    public float contactX1;
+    public float contactY1;
+    public float contactX2;
+    public float contactY2;
+
+    public ContactResult() {
+
+    }
+
+    /**
+     * Resets the result to no collision.
+     */
+    public void clear() {
+        this.colliding = false;
+        this.depth = 0;
+        this.normalX = 0;
+        this.normalY = 0;
+        this.contactCount = 0;
+    }
+
+    void set(float depth, float normalX, float normalY) {
+        this.colliding = true;
+        this.depth = depth;
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.contactCount = 0;
+    }
+
+    void addContact(float x, float y) {
+        if (this.contactCount == 0) {
+            this.contactX1 = x;
+            this.contactY1 = y;
+        } else {
+            this.contactX2 = x;
+            this.contactY2 = y;
+        }
+
+        this.contactCount++;
+    }
+
+    @Override
+    public String toString() {
+        if (!this.colliding) {
+            return "Not colliding";
+        }
+
+        String string = "Depth: " + this.depth + " Normal: " + this.normalX + ", " + this.normalY;
+
+        if (this.contactCount > 0) {
+            string += " Contact 1: " + this.contactX1 + ", " + this.contactY1;
+        }
+
+        if (this.contactCount > 1) {
+            string += " Contact 2: " + this.contactX2 + ", " + this.contactY2;
+        }
+
+        return string;
+    }
+}
@@ -24,7 +24,6 @@ public class Rect extends Shape {
         this.x2 = this.width / 2;
         this.y2 = -this.height / 2;
 
-        this.model = this.toTexturedModel();
 
         WorldCoords realTopLeft = new WorldCoords(topLeft.x, topLeft.y);
         realTopLeft.x += this.x2;
@@ -82,24 +81,27 @@ public class Rect extends Shape {
 
         if (super.shouldDraw()) {
             super.draw();
-            this.model.render();
+            this.getModel().render();
         }
     }
 
     /**
-     * Converts the vertices of the rect into a textured model.
+     * Converts the vertices of the rect into a textured model. Rects with the same width, height, and texture coords
+     * share the same model.
      *
      * @return A textured model.
      */
+    @Override
     protected TexturedModel toTexturedModel() {
-        return new TexturedModel(this.calculateVertices(), this.getIndices(), this.getTexCoords());
+        return this.acquireModel();
     }
 
     /**
-     * The close model needs to be closed at the end of a Rect's usage to prevent a memory leak
+     * The close model needs to be closed at the end of a Rect's usage to prevent a memory leak. The model is only
+     * freed once every rect that shares it is closed.
      */
     @Override
     public void close() {
-        this.model.close();
+        this.releaseModel();
     }
 }
@@ -0,0 +1,264 @@
+package jangl.shapes;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the axis that separated each pair of shapes the last time they were tested. Shapes that didn't collide
+ * last time usually still don't, and are usually still separated on the same axis, so testing that axis first lets
+ * most repeated checks skip the rest of the separating axis test.
+ * <br>
+ * Pairs are keyed by the identities of the two shapes, so the same pair tested in either order shares an entry.
+ * An entry is removed when its pair collides, and entries that haven't been looked up recently are evicted, so pairs
+ * that stop being tested don't take up room.
+ * <br>
+ * Every CollisionKernel has its own cache, which makes it as thread-safe as the kernel: not at all.
+ */
+public class SeparatingAxisCache {
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Each slot is stored as 3 longs next to each other, so a lookup only touches one part of memory: the key, the
+     * axis x and y as float bits, and the tick it was last used.
+     */
+    private static final int SLOT_SIZE = 3;
+
+    /**
+     * No pair can have this key since shape IDs start at 1.
+     */
+    private static final long EMPTY = 0;
+
+    private long[] table;
+    private int capacity;
+    private int size;
+
+    /**
+     * Counts lookups. Used as the clock for deciding which entries are stale.
+     */
+    private long tick;
+    private long nextEviction;
+
+    private long hits;
+    private long misses;
+
+    SeparatingAxisCache() {
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return The number of checks that were resolved by the cached axis.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of checks that had to run the full test, either because the pair had no cached axis or
+     * because the cached axis no longer separated the pair.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return The fraction of checks resolved by the cached axis, or 0 if there were no checks.
+     */
+    public double getHitRate() {
+        long lookups = this.hits + this.misses;
+        return lookups == 0 ? 0 : (double) this.hits / lookups;
+    }
+
+    public void resetCounters() {
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * @return The number of pairs with a cached axis.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes every cached axis.
+     */
+    public void clear() {
+        Arrays.fill(this.table, EMPTY);
+        this.size = 0;
+    }
+
+    static long pairKey(Shape shape1, Shape shape2) {
+        int id1 = shape1.getId();
+        int id2 = shape2.getId();
+
+        return id1 < id2 ? ((long) id1 << 32) | id2 : ((long) id2 << 32) | id1;
+    }
+
+    /**
+     * @return The index of the pair's slot, or -1 if it has no cached axis.
+     */
+    int find(long key) {
+        // Every entry is looked at once every capacity lookups, so eviction costs a constant amount per lookup
+        if (++this.tick >= this.nextEviction) {
+            this.evictStale();
+        }
+
+        long[] table = this.table;
+        int mask = this.capacity - 1;
+
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int index = slot * SLOT_SIZE;
+            long slotKey = table[index];
+
+            if (slotKey == key) {
+                table[index + 2] = this.tick;
+                return index;
+            } else if (slotKey == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    float getAxisX(int index) {
+        return Float.intBitsToFloat((int) (this.table[index + 1] >>> 32));
+    }
+
+    float getAxisY(int index) {
+        return Float.intBitsToFloat((int) this.table[index + 1]);
+    }
+
+    void recordHit() {
+        this.hits++;
+    }
+
+    void recordMiss() {
+        this.misses++;
+    }
+
+    /**
+     * Caches the axis that separated the pair, replacing any axis already cached for it.
+     */
+    void put(long key, float axisX, float axisY) {
+        if ((this.size + 1) * 4 > this.capacity * 3) {
+            this.evictStale();
+        }
+
+        long[] table = this.table;
+        int mask = this.capacity - 1;
+        int slot = hash(key) & mask;
+
+        while (table[slot * SLOT_SIZE] != EMPTY && table[slot * SLOT_SIZE] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        int index = slot * SLOT_SIZE;
+
+        if (table[index] == EMPTY) {
+            table[index] = key;
+            this.size++;
+        }
+
+        table[index + 1] = ((long) Float.floatToRawIntBits(axisX) << 32)
+                | (Float.floatToRawIntBits(axisY) & 0xffffffffL);
+        table[index + 2] = this.tick;
+    }
+
+    /**
+     * Removes the pair's cached axis, if it has one.
+     */
+    void remove(long key) {
+        long[] table = this.table;
+        int mask = this.capacity - 1;
+        int slot = hash(key) & mask;
+
+        while (table[slot * SLOT_SIZE] != key) {
+            if (table[slot * SLOT_SIZE] == EMPTY) {
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        // Shift the following entries back so lookups don't stop early at the hole
+        int hole = slot;
+
+        for (int next = (hole + 1) & mask; table[next * SLOT_SIZE] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(table[next * SLOT_SIZE]) & mask;
+
+            // Only move the entry if its home slot is not between the hole and its current slot
+            boolean canMove = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+
+            if (canMove) {
+                System.arraycopy(table, next * SLOT_SIZE, table, hole * SLOT_SIZE, SLOT_SIZE);
+                hole = next;
+            }
+        }
+
+        table[hole * SLOT_SIZE] = EMPTY;
+        this.size--;
+    }
+
+    /**
+     * Drops every entry that wasn't used within the last 2 * capacity lookups, then resizes the table so it is at
+     * most half full. The table is only rebuilt if something changes.
+     */
+    private void evictStale() {
+        long[] oldTable = this.table;
+        long cutoff = this.tick - 2L * this.capacity;
+
+        int survivors = 0;
+
+        for (int index = 0; index < oldTable.length; index += SLOT_SIZE) {
+            if (oldTable[index] != EMPTY && oldTable[index + 2] >= cutoff) {
+                survivors++;
+            }
+        }
+
+        int capacity = INITIAL_CAPACITY;
+
+        while (survivors * 2 > capacity) {
+            capacity *= 2;
+        }
+
+        if (survivors == this.size && capacity == this.capacity) {
+            this.nextEviction = this.tick + capacity;
+            return;
+        }
+
+        this.allocate(capacity);
+
+        long[] table = this.table;
+        int mask = capacity - 1;
+
+        for (int oldIndex = 0; oldIndex < oldTable.length; oldIndex += SLOT_SIZE) {
+            if (oldTable[oldIndex] == EMPTY || oldTable[oldIndex + 2] < cutoff) {
+                continue;
+            }
+
+            int slot = hash(oldTable[oldIndex]) & mask;
+
+            while (table[slot * SLOT_SIZE] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+
+            System.arraycopy(oldTable, oldIndex, table, slot * SLOT_SIZE, SLOT_SIZE);
+        }
+
+        this.size = survivors;
+    }
+
+    private void allocate(int capacity) {
+        this.table = new long[capacity * SLOT_SIZE];
+        this.capacity = capacity;
+        this.nextEviction = this.tick + capacity;
+    }
+
+    private static int hash(long key) {
+        // The finalizer of MurmurHash3, so pairs of nearby IDs spread across the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+}
@@ -3,106 +3,97 @@ package jangl.shapes;
 import jangl.coords.WorldCoords;
 import jangl.graphics.Bindable;
 import jangl.graphics.Camera;
+import jangl.graphics.Drawable;
 import jangl.graphics.models.Model;
 import jangl.graphics.models.TexturedModel;
+import jangl.graphics.models.TexturedModelCache;
 import jangl.graphics.shaders.ShaderProgram;
 import jangl.graphics.shaders.VertexShader;
 import jangl.graphics.shaders.premade.DefaultVertShader;
 import jangl.io.mouse.Mouse;
+import jangl.util.AABB;
 import jangl.util.ArrayUtils;
-import jangl.util.Range;
-import org.joml.Matrix4f;
 import org.joml.Vector2f;
-import org.joml.Vector4f;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public abstract class Shape implements AutoCloseable {
-    private static final ShaderProgram defaultShader = new ShaderProgram(new DefaultVertShader());
+public abstract class Shape implements AutoCloseable, Drawable {
+    /**
+     * Compiled the first time a shape is drawn, so shapes can be made and tested for collision without an OpenGL
+     * context.
+     */
+    private static ShaderProgram defaultShader;
+
+    /**
+     * Starts at 1 so that no pair of IDs makes a key of 0. See SeparatingAxisCache.
+     */
+    private static final AtomicInteger nextId = new AtomicInteger(1);
     protected final Transform transform;
     protected Model model;
 
+    /**
+     * Set once the shape gives up its shared model, so closing the shape more than once only releases it once.
+     */
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
     private float texRepeatX, texRepeatY;
 
+    /**
+     * The local geometry of the shape, cached the first time it is needed for collision. These are volatile so
+     * the arrays are safely published when collision checks run on multiple threads.
+     */
+    private volatile float[] localVertices;
+    private volatile float[] localExteriorVertices;
+
+    /**
+     * The world-space vertices, normals, bounds, and bounding radius, recalculated only after the transform changes.
+     */
+    private final WorldGeometry worldGeometry;
+
+    /**
+     * Identifies the shape in caches that are keyed by pairs of shapes.
+     */
+    private final int id;
+
     public Shape() {
+        this.id = nextId.getAndIncrement();
         this.transform = new Transform();
+        this.worldGeometry = new WorldGeometry();
 
         this.setTexRepeatX(1);
         this.setTexRepeatY(1);
     }
 
     /**
-     * Checks if two shapes collide.
+     * Checks if two shapes collide. Circles that are scaled the same on both axes are tested as true circles, and
+     * circles that are scaled into ellipses are tested as the polygon they are drawn as.
      *
      * @param shape1 The first shape.
      * @param shape2 The second shape.
      * @return If they collide.
      */
     public static boolean collides(Shape shape1, Shape shape2) {
-        // Optimization that can have huge performance improvements when the two objects are not near each other:
-        // Act like the two objects are perfect spheres, where their radii are the farthest point from the center of
-        // the object. If the two spheres are not colliding, there's no way that the two objects can be colliding
-        // using more sophisticated collision detection methods.
-        Vector2f[] s1VerticesNoMatrix = ArrayUtils.toVector2fArray(shape1.calculateVertices());
-        Vector2f[] s2VerticesNoMatrix = ArrayUtils.toVector2fArray(shape2.calculateVertices());
-
-        Vector2f s1FarthestPoint = ArrayUtils.getFarthestPointFrom(s1VerticesNoMatrix, new Vector2f().zero()).mul(shape1.getTransform().getScale());
-        Vector2f s2FarthestPoint = ArrayUtils.getFarthestPointFrom(s2VerticesNoMatrix, new Vector2f().zero());
-
-        float s1Radius = s1FarthestPoint.distance(new Vector2f().zero()) * Math.max(shape1.getTransform().getScaleX(), shape1.getTransform().getScaleY());
-        float s2Radius = s2FarthestPoint.distance(new Vector2f().zero()) * Math.max(shape2.getTransform().getScaleX(), shape2.getTransform().getScaleY());
-
-        if (!collides(shape1.getTransform().getCenter(), s1Radius, shape2.getTransform().getCenter(), s2Radius)) {
-            return false;
-        }
-
-        // Proceed with normal collision detection
-        Vector2f[] s1Vertices = ArrayUtils.toVector2fArray(shape1.calculateVerticesMatrix());
-        Vector2f[] s2Vertices = ArrayUtils.toVector2fArray(shape2.calculateVerticesMatrix());
-
-        Vector2f[] s1Axes = Shape.getOutsideVectors(s1Vertices);
-        Vector2f[] s2Axes = Shape.getOutsideVectors(s2Vertices);
-
-        List<Vector2f> combined = new ArrayList<>(s1Axes.length + s2Axes.length);
-        Collections.addAll(combined, s1Axes);
-        Collections.addAll(combined, s2Axes);
-
-        for (Vector2f axis : combined) {
-            axis.perpendicular();
-
-            Range s1Range = Shape.projectShapeOntoAxis(s1Vertices, axis);
-            Range s2Range = Shape.projectShapeOntoAxis(s2Vertices, axis);
-
-            // If the ranges do not intersect, the shapes are not colliding
-            if (!s1Range.intersects(s2Range)) {
-                return false;
-            }
-        }
+        return CollisionKernel.get().collides(shape1, shape2);
+    }
 
-        return true;
+    /**
+     * Checks if two shapes collide, and if they do, finds how to separate them and where they touch. The result is the
+     * same as Shape.collides(Shape, Shape), and the contact is found in the same pass.
+     *
+     * @param shape1 The first shape.
+     * @param shape2 The second shape.
+     * @param out    The result to write the depth, normal, and contact points to. The normal points from shape1 to
+     *               shape2.
+     * @return If they collide.
+     */
+    public static boolean intersect(Shape shape1, Shape shape2, ContactResult out) {
+        return CollisionKernel.get().intersect(shape1, shape2, out);
     }
 
     public static boolean collides(Shape shape, WorldCoords point) {
-        Vector2f pointVector = point.toVector2f();
-        Vector2f[] s1Axes = shape.getOutsideVectors();
-        Vector2f[] s1Vertices = ArrayUtils.toVector2fArray(shape.getExteriorVertices());
-
-        for (Vector2f axis : s1Axes) {
-            axis.perpendicular();
-
-            Range s1Range = projectShapeOntoAxis(s1Vertices, axis);
-            float projectedPoint = pointVector.dot(axis);
-
-            // If the ranges do not intersect, the shapes are not colliding
-            if (!s1Range.intersects(projectedPoint)) {
-                return false;
-            }
-        }
-
-        return true;
+        return CollisionKernel.get().collides(shape, point.x, point.y);
     }
 
     /**
@@ -116,31 +107,7 @@ public abstract class Shape implements AutoCloseable {
      * @return If they collide.
      */
     public static boolean collides(Shape shape, Circle circle) {
-        Vector2f circleCenterVector = circle.getTransform().getCenter().toVector2f();
-        Vector2f[] s1Axes = shape.getOutsideVectors();
-
-        List<Vector2f> combined = new ArrayList<>(Arrays.stream(s1Axes).toList());
-        // The perpendicular axis between the shape's center and the circle's center
-        combined.add(shape.getTransform().getCenter().toVector2f().sub(circleCenterVector).normalize().perpendicular());
-
-        Vector2f[] s1Vertices = ArrayUtils.toVector2fArray(shape.getExteriorVertices());
-
-        float circleRadius = circle.getRadius() * circle.getTransform().getScaleX();
-
-        for (Vector2f axis : combined) {
-            axis.perpendicular();
-
-            Range s1Range = projectShapeOntoAxis(s1Vertices, axis);
-            float projectedCenter = circleCenterVector.dot(axis);
-            Range circleRange = new Range(projectedCenter - circleRadius, projectedCenter + circleRadius);
-
-            // If the ranges do not intersect, the shapes are not colliding
-            if (!s1Range.intersects(circleRange)) {
-                return false;
-            }
-        }
-
-        return true;
+        return CollisionKernel.get().collides(shape, circle);
     }
 
     /**
@@ -157,16 +124,6 @@ public abstract class Shape implements AutoCloseable {
         return collides(shape, circle);
     }
 
-    private static Range projectShapeOntoAxis(Vector2f[] vertices, Vector2f axis) {
-        float[] dotProducts = new float[vertices.length];
-
-        for (int i = 0; i < vertices.length; i++) {
-            dotProducts[i] = vertices[i].dot(axis);
-        }
-
-        return new Range(ArrayUtils.getMin(dotProducts), ArrayUtils.getMax(dotProducts));
-    }
-
     /**
      * Checks if collision between two circles. Note that if one or two of the two circles are transformed into ellipses,
      * this method will not work. Instead, cast the ellipses to shapes and use the Shape.collides(Shape, Shape) or
@@ -177,10 +134,7 @@ public abstract class Shape implements AutoCloseable {
      * @return If they collide.
      */
     public static boolean collides(Circle circle1, Circle circle2) {
-        return collides(
-                circle1.getTransform().getCenter(), circle1.getRadius() * circle1.getTransform().getScaleX(),
-                circle2.getTransform().getCenter(), circle2.getRadius() * circle2.getTransform().getScaleX()
-        );
+        return CollisionKernel.get().collides(circle1, circle2);
     }
 
     /**
@@ -195,12 +149,7 @@ public abstract class Shape implements AutoCloseable {
      * @return If they collide.
      */
     public static boolean collides(WorldCoords point1, float radius1, WorldCoords point2, float radius2) {
-        double distSquared = Math.pow(point1.x - point2.x, 2) +
-                Math.pow(point1.y - point2.y, 2);
-
-        double combinedRadiiSquared = Math.pow(radius1 + radius2, 2);
-
-        return distSquared <= combinedRadiiSquared;
+        return CollisionKernel.circlesCollide(point1.x, point1.y, radius1, point2.x, point2.y, radius2);
     }
 
     /**
@@ -213,12 +162,7 @@ public abstract class Shape implements AutoCloseable {
      * @return If they collide.
      */
     public static boolean collides(Circle circle, WorldCoords point) {
-        WorldCoords circleCenter = circle.getTransform().getCenter();
-
-        double radiusSquared = Math.pow(circle.getRadius() * circle.getTransform().getScaleX(), 2);
-        double distSquared = Math.pow(circleCenter.x - point.x, 2) + Math.pow(circleCenter.y - point.y, 2);
-
-        return distSquared <= radiusSquared;
+        return CollisionKernel.get().collides(circle, point.x, point.y);
     }
 
     /**
@@ -234,40 +178,21 @@ public abstract class Shape implements AutoCloseable {
     }
 
     /**
-     * Check if the shape is off-screen. If it is, then it's best not to waste a draw call on it
+     * Check if the shape is off-screen. If it is, then it's best not to waste a draw call on it. The world bounds of
+     * the shape are cached until its transform changes, and the visible part of the world is cached by the Camera, so
+     * this is only a box test.
      *
-     * @return If this object should be culled
+     * @return If this object should be drawn
      */
     protected boolean shouldDraw() {
-        // Adjust for the edge case if the shape doesn't obey the camera
-        WorldCoords center;
-
-        boolean obeysCamera = ShaderProgram.getBoundProgram().getVertexShader().isObeyingCamera();
-        if (obeysCamera) {
-            center = Camera.getCenter();
-        } else {
-            center = WorldCoords.getMiddle();
-        }
-
-        // The farthest coordinate of the shape
-        Vector2f farthestCoordinate = ArrayUtils.getFarthestPointFrom(
-                ArrayUtils.toVector2fArray(this.getExteriorVertices()),
-                this.getTransform().getCenter().toVector2f()
-        );
+        WorldGeometry geometry = this.updatedVertices();
 
-        float radius = farthestCoordinate.distance(this.getTransform().getCenter().toVector2f());
-
-
-        WorldCoords cameraTopRight = WorldCoords.getTopRight();
-        WorldCoords cameraBottomLeft = new WorldCoords(0,0);
-
-        if (obeysCamera) {
-             cameraTopRight = Camera.adjustForCamera(cameraTopRight);
-             cameraBottomLeft = Camera.adjustForCamera(cameraBottomLeft);
+        // Adjust for the edge case if the shape doesn't obey the camera
+        if (ShaderProgram.getBoundProgram().getVertexShader().isObeyingCamera()) {
+            return Camera.isVisible(geometry.minX, geometry.minY, geometry.maxX, geometry.maxY);
         }
 
-        float windowRadius = cameraTopRight.toVector2f().distance(cameraBottomLeft.toVector2f());
-        return collides(center, windowRadius, this.getTransform().getCenter(), radius);
+        return Camera.isOnScreen(geometry.minX, geometry.minY, geometry.maxX, geometry.maxY);
     }
 
     /**
@@ -275,18 +200,20 @@ public abstract class Shape implements AutoCloseable {
      */
     protected void bindShader() {
         if (ShaderProgram.getBoundProgram() == null) {
+            if (defaultShader == null) {
+                defaultShader = new ShaderProgram(new DefaultVertShader());
+            }
+
             defaultShader.bind();
         }
     }
 
+    @Override
     public void draw() {
         ShaderProgram boundProgram = ShaderProgram.getBoundProgram();
         VertexShader vertexShader = boundProgram.getVertexShader();
 
-        vertexShader.setMatrixUniforms(
-                boundProgram.getProgramID(),
-                this.transform.getMatrix()
-        );
+        vertexShader.setMatrixUniforms(boundProgram, this.transform.getAffineMatrix());
     }
 
     public void draw(Bindable bindable) {
@@ -343,25 +270,113 @@ public abstract class Shape implements AutoCloseable {
     }
 
     /**
-     * Calculates the vertices with the matrix applied. This method is not recommended to be called much since matrix
-     * multiplication on the CPU is slow.
+     * Calculates the smallest axis-aligned box that contains the shape with its transform applied.
      *
-     * @return The vertices in normalize device coords. Odd indices are x coords and even indices are y coords.
+     * @param out The box to write the bounds to. Passing the same box every frame avoids allocating.
+     * @return The out parameter, to allow for method chaining.
      */
-    public float[] calculateVerticesMatrix() {
-        float[] verticesNoMatrix = this.calculateVertices();
-        float[] verticesMatrix = new float[verticesNoMatrix.length];
+    public AABB getWorldBounds(AABB out) {
+        WorldGeometry geometry = this.updatedVertices();
+        return out.set(geometry.minX, geometry.minY, geometry.maxX, geometry.maxY);
+    }
+
+    /**
+     * @return The vertices on the exterior of the shape before the transform is applied, in the same order as
+     * getExteriorVertices(). By default, this is every vertex returned by calculateVertices().
+     */
+    protected float[] calculateExteriorVertices() {
+        return this.calculateVertices();
+    }
+
+    /**
+     * @return The cached result of calculateVertices(). The returned array must not be modified.
+     */
+    float[] getLocalVertices() {
+        float[] vertices = this.localVertices;
 
-        Matrix4f matrix = this.transform.getMatrix();
+        if (vertices == null) {
+            vertices = this.calculateVertices();
+            this.localVertices = vertices;
+        }
+
+        return vertices;
+    }
+
+    /**
+     * @return The cached result of calculateExteriorVertices(). The returned array must not be modified.
+     */
+    float[] getLocalExteriorVertices() {
+        float[] vertices = this.localExteriorVertices;
+
+        if (vertices == null) {
+            vertices = this.calculateExteriorVertices();
+            this.localExteriorVertices = vertices;
+        }
+
+        return vertices;
+    }
+
+    int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return The cached world-space geometry, with the vertices and bounds brought up to date with the transform.
+     */
+    WorldGeometry updatedVertices() {
+        if (!this.worldGeometry.isVerticesCurrent(this.transform)) {
+            this.worldGeometry.updateVertices(this.transform, this.getLocalVertices());
+        }
+
+        return this.worldGeometry;
+    }
+
+    /**
+     * @return The cached world-space geometry, with the vertices, bounds, and edge normals brought up to date with
+     * the transform.
+     */
+    WorldGeometry updatedNormals() {
+        WorldGeometry geometry = this.updatedVertices();
+
+        if (!geometry.isNormalsCurrent(this.transform)) {
+            geometry.updateNormals(this.transform);
+        }
+
+        return geometry;
+    }
+
+    /**
+     * @return The cached world-space geometry, with the exterior vertices and normals brought up to date with the
+     * transform.
+     */
+    WorldGeometry updatedExteriorVertices() {
+        if (!this.worldGeometry.isExteriorCurrent(this.transform)) {
+            this.worldGeometry.updateExterior(this.transform, this.getLocalExteriorVertices());
+        }
+
+        return this.worldGeometry;
+    }
 
-        for (int i = 0; i < verticesNoMatrix.length; i += 2) {
-            Vector4f vertex = new Vector4f(verticesNoMatrix[i], verticesNoMatrix[i + 1], 0, 1);
-            vertex.mul(matrix);
-            verticesMatrix[i] = vertex.x;
-            verticesMatrix[i + 1] = vertex.y;
+    /**
+     * @return The cached world-space geometry, with the bounding radii brought up to date with the transform.
+     */
+    WorldGeometry updatedBoundingRadii() {
+        if (!this.worldGeometry.isRadiusCurrent(this.transform)) {
+            this.worldGeometry.updateRadius(this.transform, this.getLocalVertices());
         }
 
-        return verticesMatrix;
+        return this.worldGeometry;
+    }
+
+    /**
+     * Calculates the vertices with the transform applied. The transformed vertices are cached until the transform
+     * changes, so calling this repeatedly on a shape that isn't moving only costs a copy.
+     *
+     * @return The vertices in WorldCoords. Even indices are x coords and odd indices are y coords.
+     */
+    public float[] calculateVerticesMatrix() {
+        WorldGeometry geometry = this.updatedVertices();
+        return Arrays.copyOf(geometry.vertices, geometry.vertexCount * 2);
     }
 
     /**
@@ -397,6 +412,10 @@ public abstract class Shape implements AutoCloseable {
      * @param repeatTimes The amount of times for the texture to repeat over the y-axis.
      */
     public void setTexRepeatX(float repeatTimes) {
+        if (repeatTimes == this.texRepeatX) {
+            return;
+        }
+
         this.texRepeatX = repeatTimes;
 
         // This case happens when the shape isn't fully initialized yet
@@ -404,14 +423,17 @@ public abstract class Shape implements AutoCloseable {
             return;
         }
 
-        TexturedModel texturedModel = (TexturedModel) this.model;
-        texturedModel.subTexCoords(this.getTexCoords(), 0);
+        this.updateModel();
     }
 
     /**
      * @param repeatTimes The amount of times for the texture to repeat over the x-axis.
      */
     public void setTexRepeatY(float repeatTimes) {
+        if (repeatTimes == this.texRepeatY) {
+            return;
+        }
+
         this.texRepeatY = repeatTimes;
 
         // This case happens when the shape isn't fully initialized yet
@@ -419,10 +441,72 @@ public abstract class Shape implements AutoCloseable {
             return;
         }
 
-        TexturedModel texturedModel = (TexturedModel) this.model;
-        texturedModel.subTexCoords(this.getTexCoords(), 0);
+        this.updateModel();
+    }
+
+    /**
+     * @return The shared model with the current vertices, indices, and texture coords of the shape. Every shape with
+     * the same local geometry and texture coords draws the same model. Release it with releaseModel().
+     */
+    protected TexturedModel acquireModel() {
+        // The cached local vertices are never modified, so they can be used as part of the key of the model
+        return TexturedModelCache.acquire(this.getLocalVertices(), this.getIndices(), this.getTexCoords());
+    }
+
+    /**
+     * Switches to the shared model for the current vertices, indices, and texture coords. Since the model is shared
+     * with other shapes, call this instead of modifying it after the texture coords change.
+     */
+    protected void updateModel() {
+        // A closed shape no longer holds a reference, so it must not acquire a new one
+        if (this.released.get()) {
+            return;
+        }
+
+        // The model is acquired with the current data the first time the shape is drawn
+        if (this.model == null) {
+            return;
+        }
+
+        TexturedModel oldModel = (TexturedModel) this.model;
+
+        // Acquire the new model first so a model that is still needed isn't closed and created again
+        this.model = this.acquireModel();
+        TexturedModelCache.release(oldModel);
+    }
+
+    /**
+     * Gives up the shape's reference to its shared model. The model is closed once no shape uses it. Only the first
+     * call releases the model, so closing a shape twice doesn't close a model that other shapes still draw.
+     */
+    protected void releaseModel() {
+        if (this.released.getAndSet(true)) {
+            return;
+        }
+
+        if (this.model != null) {
+            TexturedModelCache.release((TexturedModel) this.model);
+        }
+    }
+
+    /**
+     * @return The model of the shape, which is created the first time the shape is drawn.
+     */
+    protected Model getModel() {
+        if (this.model == null) {
+            this.model = this.toTexturedModel();
+        }
+
+        return this.model;
     }
 
+    /**
+     * Converts the vertices of the shape into a textured model.
+     *
+     * @return A textured model.
+     */
+    protected abstract TexturedModel toTexturedModel();
+
     public float getTexRepeatX() {
         return this.texRepeatX;
     }
@@ -3,7 +3,6 @@ package jangl.shapes;
 import jangl.coords.WorldCoords;
 import jangl.graphics.models.TexturedModel;
 
-
 public class TileSheetRect extends Rect {
     private final int tilesWidth, tilesHeight;
     private int tileX, tileY;
@@ -41,10 +40,25 @@ public class TileSheetRect extends Rect {
         this.tileX = newX;
         this.tileY = newY;
 
+        // The model is created with the current texture coords the first time it is drawn
+        if (this.model == null) {
+            return;
+        }
+
         TexturedModel texturedModel = (TexturedModel) this.model;
         texturedModel.subTexCoords(this.getTexCoords(), 0);
     }
 
+    /**
+     * The texture coords change every time the tile changes, such as on every frame of an animation, so a tile sheet
+     * rect keeps its own model and updates its texture coords in place instead of sharing one. Releasing a model that
+     * isn't in the TexturedModelCache closes it.
+     */
+    @Override
+    protected TexturedModel acquireModel() {
+        return new TexturedModel(this.getLocalVertices(), this.getIndices(), this.getTexCoords());
+    }
+
     @Override
     public float[] getTexCoords() {
         float leftX = (float) this.tileX / this.tilesWidth;
@@ -1,19 +1,45 @@
 package jangl.shapes;
 
 import jangl.coords.WorldCoords;
-import org.joml.*;
+import org.joml.Matrix3x2f;
+import org.joml.Matrix3x2fc;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector2f;
 
 public class Transform {
    private final WorldCoords transform;
    private float rotation;
    private final Vector2f scale;
    private final Matrix4f modelMatrix;
+   private final Matrix3x2f affineMatrix;
+
+    /**
+     * The cosine and sine of the rotation, recalculated only when the rotation changes.
+     */
+   private float cos, sin;
+
+    /**
+     * Incremented every time the position, rotation, or scale changes.
+     */
+   private int version;
+
+    /**
+     * The versions the model matrix and affine matrix were last built for.
+     */
+   private int matrixVersion;
+   private int affineVersion;
 
     public Transform() {
         this.transform = new WorldCoords(0, 0);
         this.modelMatrix = new Matrix4f().identity();
+        this.affineMatrix = new Matrix3x2f();
         this.rotation = 0;
+        this.cos = 1;
+        this.sin = 0;
         this.scale = new Vector2f(1, 1);
+        this.matrixVersion = -1;
+        this.affineVersion = -1;
     }
 
     /**
@@ -22,6 +48,7 @@ public class Transform {
      */
     public void setScale(float factor) {
         this.scale.set(factor, factor);
+        this.version++;
     }
 
     /**
@@ -30,6 +57,7 @@ public class Transform {
      */
     public void setScaleX(float scaleX) {
         this.scale.x = scaleX;
+        this.version++;
     }
 
     /**
@@ -60,6 +88,7 @@ public class Transform {
      */
     public void setScaleY(float scaleY) {
         this.scale.y = scaleY;
+        this.version++;
     }
 
     public float getScaleX() {
@@ -100,6 +129,7 @@ public class Transform {
      */
     public void shift(float x, float y) {
         this.transform.add(x, y);
+        this.version++;
     }
 
     /**
@@ -117,7 +147,7 @@ public class Transform {
      * @param radians The amount, in radians, to rotate the object by.
      */
     public void rotate(float radians) {
-        this.rotation += radians;
+        this.setRotation(this.rotation + radians);
     }
 
     /**
@@ -127,6 +157,9 @@ public class Transform {
      */
     public void setRotation(float radians) {
         this.rotation = radians;
+        this.cos = (float) Math.cos(radians);
+        this.sin = (float) Math.sin(radians);
+        this.version++;
     }
 
     /**
@@ -136,13 +169,40 @@ public class Transform {
         return this.rotation;
     }
 
+    /**
+     * @return The cosine of the rotation.
+     */
+    public float getRotationCos() {
+        return this.cos;
+    }
+
+    /**
+     * @return The sine of the rotation.
+     */
+    public float getRotationSin() {
+        return this.sin;
+    }
+
     /**
      * @return The center of the object in WorldCoords.
      */
     public WorldCoords getCenter() {
-        Vector3f center = new Vector3f();
-        this.getMatrix().transformPosition(center);
-        return new WorldCoords(center.x, center.y);
+        // The rotation and scale are applied around the center, so the center is the translation of the matrix
+        return new WorldCoords(this.transform.x, this.transform.y);
+    }
+
+    /**
+     * @return The x coordinate of the center of the object in WorldCoords. Unlike getCenter(), this does not allocate.
+     */
+    public float getCenterX() {
+        return this.transform.x;
+    }
+
+    /**
+     * @return The y coordinate of the center of the object in WorldCoords. Unlike getCenter(), this does not allocate.
+     */
+    public float getCenterY() {
+        return this.transform.y;
     }
 
     /**
@@ -153,13 +213,78 @@ public class Transform {
     }
 
     /**
-     * @return The multiplied rotation and transformation matrix. Due to matrix multiplications on the CPU potentially
-     * being slow, it is not recommended to call this method often.
+     * The version changes every time the position, rotation, or scale of the transform changes. Compare it against a
+     * previously stored version to cheaply check if anything that depends on the transform needs to be recalculated.
+     *
+     * @return The current version of the transform.
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return A read-only view of the scale, rotation, and translation as a 2D affine matrix. This is all the engine
+     * needs to transform 2D vertices, so prefer it over getMatrix(). The matrix is cached and only rebuilt after the
+     * position, rotation, or scale changes. Since the cache is updated in place, this method must not be called from
+     * multiple threads at once. Use getAffineMatrix(Matrix3x2f) for a copy instead.
+     */
+    public Matrix3x2fc getAffineMatrix() {
+        if (this.affineVersion != this.version) {
+            this.getAffineMatrix(this.affineMatrix);
+            this.affineVersion = this.version;
+        }
+
+        return this.affineMatrix;
+    }
+
+    /**
+     * Writes the scale, rotation, and translation as a 2D affine matrix into dest. This only reads the transform, so
+     * it can be called from multiple threads at once as long as no thread is modifying the transform.
+     *
+     * @param dest The matrix to write to.
+     * @return dest, to allow for method chaining.
+     */
+    public Matrix3x2f getAffineMatrix(Matrix3x2f dest) {
+        return dest.set(
+                this.cos * this.scale.x, this.sin * this.scale.x,
+                -this.sin * this.scale.y, this.cos * this.scale.y,
+                this.transform.x, this.transform.y
+        );
+    }
+
+    /**
+     * @return A read-only view of the multiplied rotation and transformation matrix. The matrix is cached and only
+     * rebuilt after the position, rotation, or scale changes, so the view changes along with the transform. Since the
+     * cache is updated in place, this method must not be called from multiple threads at once. Use
+     * getMatrix(Matrix4f) for a copy instead.
+     */
+    public Matrix4fc getMatrix() {
+        if (this.matrixVersion != this.version) {
+            this.getMatrix(this.modelMatrix);
+            this.matrixVersion = this.version;
+        }
+
+        return this.modelMatrix;
+    }
+
+    /**
+     * Writes the multiplied rotation and transformation matrix into dest. This only reads the transform, so it can
+     * be called from multiple threads at once as long as no thread is modifying the transform.
+     *
+     * @param dest The matrix to write to.
+     * @return dest, to allow for method chaining.
      */
-    public Matrix4f getMatrix() {
-        return this.modelMatrix.identity()
-                .translate(this.transform.x, this.transform.y, 0)
-                .rotateAround(new Quaternionf().rotateZ(this.rotation), 0, 0, 0)
-                .scale(this.scale.x, this.scale.y, 1);
+    public Matrix4f getMatrix(Matrix4f dest) {
+        float m00 = this.cos * this.scale.x;
+        float m01 = this.sin * this.scale.x;
+        float m10 = -this.sin * this.scale.y;
+        float m11 = this.cos * this.scale.y;
+
+        return dest.set(
+                m00, m01, 0, 0,
+                m10, m11, 0, 0,
+                0, 0, 1, 0,
+                this.transform.x, this.transform.y, 0, 1
+        );
     }
-}
\ No newline at end of file
+}
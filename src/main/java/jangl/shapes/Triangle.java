@@ -1,7 +1,6 @@
 package jangl.shapes;
 
 import jangl.coords.WorldCoords;
-import jangl.graphics.models.Model;
 import jangl.graphics.models.TexturedModel;
 
 public class Triangle extends Shape {
@@ -22,8 +21,6 @@ public class Triangle extends Shape {
         this.point3.x -= center.x;
         this.point3.y -= center.y;
         this.transform.shift(center);
-
-        this.model = this.toTexturedModel();
     }
 
     private WorldCoords getCenter() {
@@ -51,7 +48,7 @@ public class Triangle extends Shape {
         super.bindShader();
         if (super.shouldDraw()) {
             super.draw();
-            this.model.render();
+            this.getModel().render();
         }
     }
 
@@ -62,10 +59,11 @@ public class Triangle extends Shape {
 
     @Override
     public void close() {
-        this.model.close();
+        this.releaseModel();
     }
 
-    private Model toTexturedModel() {
-        return new TexturedModel(this.calculateVertices(), this.getIndices(), this.getTexCoords());
+    @Override
+    protected TexturedModel toTexturedModel() {
+        return this.acquireModel();
     }
 }
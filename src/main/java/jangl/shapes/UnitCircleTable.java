@@ -0,0 +1,77 @@
+package jangl.shapes;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The vertices, indices, and texture coordinates of a circle with a radius of 1, shared by every Circle with the same
+ * number of sides. A circle only has to scale the vertices by its radius, so the trigonometry is done once per side
+ * count instead of once per circle. The arrays are never modified after the table is created.
+ */
+final class UnitCircleTable {
+    private static final Map<Integer, UnitCircleTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * The center, followed by the points on the circle. The first point on the circle is repeated at the end to close
+     * the fan.
+     */
+    final float[] vertices;
+    final int[] indices;
+
+    /**
+     * The texture coordinates with a texture repeat of 1, before the y-axis is flipped.
+     */
+    final float[] texCoords;
+
+    private UnitCircleTable(int sides) {
+        this.vertices = new float[2 * (sides + 2)];
+
+        for (int i = 1; i < this.vertices.length / 2; i++) {
+            this.vertices[i * 2] = (float) Math.cos(i * 2 * Math.PI / sides);
+            this.vertices[i * 2 + 1] = (float) Math.sin(i * 2 * Math.PI / sides);
+        }
+
+        // Follow the pattern of: 0, 1, 2, 0, 2, 3, 0, 3, 4, etc...
+        // 0 is the center point of the circle
+        this.indices = new int[sides * 3 + 3];  // 3 indices per triangle
+        int indexNotIncludingZero = 1;
+
+        for (int i = 0; i < this.indices.length; i++) {
+            if (i % 3 == 0) {
+                this.indices[i] = 0;
+                indexNotIncludingZero--;
+                continue;
+            }
+
+            this.indices[i] = indexNotIncludingZero;
+            indexNotIncludingZero++;
+        }
+
+        float xMin = Float.POSITIVE_INFINITY;
+        float xMax = Float.NEGATIVE_INFINITY;
+        float yMin = Float.POSITIVE_INFINITY;
+        float yMax = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < this.vertices.length; i += 2) {
+            xMin = Math.min(xMin, this.vertices[i]);
+            xMax = Math.max(xMax, this.vertices[i]);
+            yMin = Math.min(yMin, this.vertices[i + 1]);
+            yMax = Math.max(yMax, this.vertices[i + 1]);
+        }
+
+        this.texCoords = new float[this.vertices.length];
+
+        for (int i = 0; i < this.vertices.length; i += 2) {
+            this.texCoords[i] = (this.vertices[i] - xMin) / (xMax - xMin);
+            this.texCoords[i + 1] = (this.vertices[i + 1] - yMin) / (yMax - yMin);
+        }
+    }
+
+    /**
+     * @param sides The number of sides of the circle.
+     * @return The shared table for circles with that many sides.
+     */
+    static UnitCircleTable get(int sides) {
+        return tables.computeIfAbsent(sides, UnitCircleTable::new);
+    }
+}
@@ -0,0 +1,147 @@
+package jangl.shapes;
+
+/**
+ * The world-space data of a shape that collision, culling, and batching need: the transformed vertices, the normals
+ * of their edges, the bounds, and the bounding radius. Each part is recalculated the first time it is needed after
+ * the shape's transform changes, and the arrays are reused, so a shape that doesn't move never recalculates anything.
+ * <br>
+ * Updating is not thread-safe. Call CollisionKernel.prepare() on every shape before reading them from several
+ * threads at once.
+ */
+final class WorldGeometry {
+    private static final int STALE = -1;
+
+    /**
+     * The world-space x, y pairs of every vertex from Shape.calculateVertices().
+     */
+    float[] vertices;
+
+    /**
+     * The normalized perpendicular of each edge of vertices, where edge i goes from vertex i - 1 to vertex i.
+     */
+    float[] normals;
+    int vertexCount;
+
+    /**
+     * The same as vertices and normals, for the exterior vertices of the shape.
+     */
+    float[] exteriorVertices;
+    float[] exteriorNormals;
+    int exteriorCount;
+
+    float minX, minY, maxX, maxY;
+
+    /**
+     * The bounding radius with the farthest vertex scaled, and without. See CollisionKernel for why there are two.
+     */
+    float scaledBoundingRadius;
+    float boundingRadius;
+
+    /**
+     * The radii only depend on the scale, so they are kept when the shape is only moved or rotated.
+     */
+    private float radiusScaleX = Float.NaN;
+    private float radiusScaleY = Float.NaN;
+
+    private int verticesVersion = STALE;
+    private int normalsVersion = STALE;
+    private int exteriorVersion = STALE;
+    private int radiusVersion = STALE;
+
+    boolean isVerticesCurrent(Transform transform) {
+        return this.verticesVersion == transform.getVersion();
+    }
+
+    boolean isNormalsCurrent(Transform transform) {
+        return this.normalsVersion == transform.getVersion();
+    }
+
+    boolean isExteriorCurrent(Transform transform) {
+        return this.exteriorVersion == transform.getVersion();
+    }
+
+    boolean isRadiusCurrent(Transform transform) {
+        return this.radiusVersion == transform.getVersion();
+    }
+
+    /**
+     * Recalculates the vertices and the bounds. The normals are left alone since culling and broad phases only need
+     * the bounds.
+     */
+    void updateVertices(Transform transform, float[] local) {
+        if (this.vertices == null || this.vertices.length != local.length) {
+            this.vertices = new float[local.length];
+            this.normals = new float[local.length];
+        }
+
+        this.vertexCount = CollisionKernel.toWorld(transform, local, this.vertices);
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < this.vertexCount * 2; i += 2) {
+            minX = Math.min(minX, this.vertices[i]);
+            minY = Math.min(minY, this.vertices[i + 1]);
+            maxX = Math.max(maxX, this.vertices[i]);
+            maxY = Math.max(maxY, this.vertices[i + 1]);
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        this.verticesVersion = transform.getVersion();
+    }
+
+    /**
+     * Recalculates the normals of the vertices. The vertices must be current.
+     */
+    void updateNormals(Transform transform) {
+        calculateNormals(this.vertices, this.vertexCount, this.normals);
+        this.normalsVersion = transform.getVersion();
+    }
+
+    void updateExterior(Transform transform, float[] local) {
+        if (this.exteriorVertices == null || this.exteriorVertices.length != local.length) {
+            this.exteriorVertices = new float[local.length];
+            this.exteriorNormals = new float[local.length];
+        }
+
+        this.exteriorCount = CollisionKernel.toWorld(transform, local, this.exteriorVertices);
+        calculateNormals(this.exteriorVertices, this.exteriorCount, this.exteriorNormals);
+
+        this.exteriorVersion = transform.getVersion();
+    }
+
+    void updateRadius(Transform transform, float[] local) {
+        float scaleX = transform.getScaleX();
+        float scaleY = transform.getScaleY();
+
+        if (scaleX != this.radiusScaleX || scaleY != this.radiusScaleY) {
+            this.scaledBoundingRadius = CollisionKernel.boundingRadius(local, scaleX, scaleY, true);
+            this.boundingRadius = CollisionKernel.boundingRadius(local, scaleX, scaleY, false);
+
+            this.radiusScaleX = scaleX;
+            this.radiusScaleY = scaleY;
+        }
+
+        this.radiusVersion = transform.getVersion();
+    }
+
+    private static void calculateNormals(float[] vertices, int count, float[] out) {
+        for (int i = 0; i < count; i++) {
+            int last = i == 0 ? count - 1 : i - 1;
+
+            float edgeX = vertices[i * 2] - vertices[last * 2];
+            float edgeY = vertices[i * 2 + 1] - vertices[last * 2 + 1];
+            float invLength = 1.0f / (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+
+            // The perpendicular of the normalized edge
+            out[i * 2] = edgeY * invLength;
+            out[i * 2 + 1] = -edgeX * invLength;
+        }
+    }
+}
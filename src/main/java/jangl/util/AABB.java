@@ -0,0 +1,129 @@
+package jangl.util;
+
+import org.joml.Matrix3x2fc;
+
+/**
+ * A mutable axis-aligned bounding box. The fields are public and the methods write to this object, so the same box
+ * can be reused every frame without allocating.
+ */
+public class AABB {
+    public float minX;
+    public float minY;
+    public float maxX;
+    public float maxY;
+
+    public AABB() {
+
+    }
+
+    /**
+     * @param minX The left edge of the box.
+     * @param minY The bottom edge of the box.
+     * @param maxX The right edge of the box.
+     * @param maxY The top edge of the box.
+     */
+    public AABB(float minX, float minY, float maxX, float maxY) {
+        this.set(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * AABB copy constructor.
+     * @param other The AABB to copy.
+     */
+    public AABB(AABB other) {
+        this.set(other);
+    }
+
+    /**
+     * @return This object, to allow for method chaining.
+     */
+    public AABB set(float minX, float minY, float maxX, float maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        return this;
+    }
+
+    /**
+     * @param other The AABB to copy the values from.
+     * @return This object, to allow for method chaining.
+     */
+    public AABB set(AABB other) {
+        return this.set(other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    /**
+     * Sets this box to the smallest box around another box after it is transformed, e.g. to find the world bounds of
+     * a model from its local bounds and its transform.
+     *
+     * @param matrix The transform to apply to the corners of the box.
+     * @return This object, to allow for method chaining.
+     */
+    public AABB setTransformed(float minX, float minY, float maxX, float maxY, Matrix3x2fc matrix) {
+        // The x and y of a transformed point are sums of the matrix times each coordinate, so the smallest and largest
+        // sums come from picking the smaller or larger product of each term
+        float minXX = Math.min(matrix.m00() * minX, matrix.m00() * maxX);
+        float maxXX = Math.max(matrix.m00() * minX, matrix.m00() * maxX);
+        float minYX = Math.min(matrix.m10() * minY, matrix.m10() * maxY);
+        float maxYX = Math.max(matrix.m10() * minY, matrix.m10() * maxY);
+        float minXY = Math.min(matrix.m01() * minX, matrix.m01() * maxX);
+        float maxXY = Math.max(matrix.m01() * minX, matrix.m01() * maxX);
+        float minYY = Math.min(matrix.m11() * minY, matrix.m11() * maxY);
+        float maxYY = Math.max(matrix.m11() * minY, matrix.m11() * maxY);
+
+        return this.set(
+                minXX + minYX + matrix.m20(),
+                minXY + minYY + matrix.m21(),
+                maxXX + maxYX + matrix.m20(),
+                maxXY + maxYY + matrix.m21()
+        );
+    }
+
+    /**
+     * @param other The other box.
+     * @return If the two boxes overlap, inclusive of the edges.
+     */
+    public boolean intersects(AABB other) {
+        return intersects(this.minX, this.minY, this.maxX, this.maxY, other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    /**
+     * @return If the two boxes overlap, inclusive of the edges.
+     */
+    public static boolean intersects(float minX1, float minY1, float maxX1, float maxY1,
+                                     float minX2, float minY2, float maxX2, float maxY2) {
+        return minX1 <= maxX2 && maxX1 >= minX2 && minY1 <= maxY2 && maxY1 >= minY2;
+    }
+
+    /**
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @return If the point is inside the box, inclusive of the edges.
+     */
+    public boolean contains(float x, float y) {
+        return x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY;
+    }
+
+    /**
+     * @param other The other box.
+     * @return If the other box is fully inside this box.
+     */
+    public boolean contains(AABB other) {
+        return other.minX >= this.minX && other.maxX <= this.maxX && other.minY >= this.minY && other.maxY <= this.maxY;
+    }
+
+    public float getWidth() {
+        return this.maxX - this.minX;
+    }
+
+    public float getHeight() {
+        return this.maxY - this.minY;
+    }
+
+    @Override
+    public String toString() {
+        return "Min X: " + this.minX + " Min Y: " + this.minY + " Max X: " + this.maxX + " Max Y: " + this.maxY;
+    }
+}
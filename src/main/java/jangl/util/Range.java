@@ -2,14 +2,52 @@ package jangl.util;
 
 public record Range(float min, float max) {
 
+    /**
+     * The allocation-free equivalent of Range.contains(Range).
+     *
+     * @param min      The minimum of this range
+     * @param max      The maximum of this range
+     * @param otherMin The minimum of the other range
+     * @param otherMax The maximum of the other range
+     * @return Whether the other range is partially or fully inside this range, exclusive of the edges.
+     */
+    public static boolean contains(float min, float max, float otherMin, float otherMax) {
+        return otherMax < max && otherMax > min ||
+                otherMin < max && otherMin > min;
+    }
+
+    /**
+     * The allocation-free equivalent of Range.intersects(Range).
+     *
+     * @param min1 The minimum of the first range
+     * @param max1 The maximum of the first range
+     * @param min2 The minimum of the second range
+     * @param max2 The maximum of the second range
+     * @return Whether the two ranges intersect
+     */
+    public static boolean intersects(float min1, float max1, float min2, float max2) {
+        return contains(min1, max1, min2, max2) || contains(min2, max2, min1, max1);
+    }
+
+    /**
+     * The allocation-free equivalent of Range.intersects(float).
+     *
+     * @param min   The minimum of the range
+     * @param max   The maximum of the range
+     * @param point The point the range intersects with
+     * @return If the range intersects with the point.
+     */
+    public static boolean intersects(float min, float max, float point) {
+        return max > point && min < point;
+    }
+
     /**
      * @param other The other range to check
      * @return Whether the other range is partially or fully inside this range, exclusive of the edges. Does not
      * return true if this is fully inside the other range. For that, use the Range.intersects() method.
      */
     public boolean contains(Range other) {
-        return other.max < this.max && other.max > this.min ||
-                other.min < this.max && other.min > this.min;
+        return contains(this.min, this.max, other.min, other.max);
     }
 
     /**
@@ -17,7 +55,7 @@ public record Range(float min, float max) {
      * @return Whether this and other intersect
      */
     public boolean intersects(Range other) {
-        return this.contains(other) || other.contains(this);
+        return intersects(this.min, this.max, other.min, other.max);
     }
 
     /**
@@ -25,6 +63,6 @@ public record Range(float min, float max) {
      * @return If the range intersects with the point.
      */
     public boolean intersects(float other) {
-        return this.max > other && this.min < other;
+        return intersects(this.min, this.max, other);
     }
 }
@@ -2,8 +2,14 @@
 
 uniform sampler2D texSampler;
 in vec2 texCoords;
+#ifdef JANGL_INSTANCED
+in vec4 jangl_tint;
+#endif
 out vec4 fragColor;
 
 void main() {
     fragColor = texture(texSampler, texCoords);
+#ifdef JANGL_INSTANCED
+    fragColor *= jangl_tint;
+#endif
 }
@@ -6,7 +6,12 @@ in vec2 textures;
 out vec2 texCoords;
 
 void main() {
+#ifdef JANGL_INSTANCED
+    // Map the texture coords of the shared mesh to the part of the texture this instance uses
+    texCoords = mix(jangl_instanceUVRect.xy, jangl_instanceUVRect.zw, textures);
+#else
     texCoords = textures;
+#endif
 
     gl_Position = vec4(vertices, 1.0);
 }
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import jangl.Jangl;
+import jangl.io.Window;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntPredicate;
+
+import static org.lwjgl.opengl.GL41.glFinish;
+
+/**
+ * A small harness for the benchmarks in this package. Each benchmark is warmed up before it is measured, and the
+ * time and the number of bytes allocated by the current thread are reported per operation.
+ * <br>
+ * Shapes only create their models when they are drawn, so the collision benchmarks run without a window. Benchmarks
+ * that use OpenGL run inside runInWindow() and measure with runFrames(), which waits for the GPU to finish at the end
+ * of every operation so the time includes the GPU's work. This runs without a GPU under Mesa's software rasterizer,
+ * e.g. LIBGL_ALWAYS_SOFTWARE=1 inside xvfb-run.
+ */
+public class BenchmarkRunner {
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Stops the JIT from removing the benchmarked code since the results are never used.
+     */
+    private static int blackhole;
+
+    private BenchmarkRunner() {
+
+    }
+
+    /**
+     * Runs and reports a benchmark.
+     *
+     * @param name       The name to print next to the results.
+     * @param operations The number of operations to measure.
+     * @param operation  The operation to benchmark. It is given the index of the operation.
+     */
+    public static void run(String name, int operations, IntPredicate operation) {
+        // Warm up so the measured code is JIT compiled
+        for (int i = 0; i < operations; i++) {
+            blackhole += operation.test(i) ? 1 : 0;
+        }
+
+        long bytesBefore = threadBean.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < operations; i++) {
+            blackhole += operation.test(i) ? 1 : 0;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long bytes = threadBean.getCurrentThreadAllocatedBytes() - bytesBefore;
+
+        System.out.printf(
+                "%-40s %12.1f ns/op %12.1f B/op %10.1f MB/s allocated%n",
+                name,
+                (double) elapsed / operations,
+                (double) bytes / operations,
+                bytes / 1e6 / (elapsed / 1e9)
+        );
+    }
+
+    /**
+     * Runs and reports a benchmark that draws, calling glFinish() after every operation.
+     *
+     * @param name   The name to print next to the results.
+     * @param frames The number of frames to measure.
+     * @param frame  The frame to benchmark. It is given the index of the frame.
+     */
+    public static void runFrames(String name, int frames, IntPredicate frame) {
+        run(name, frames, i -> {
+            boolean result = frame.test(i);
+            glFinish();
+
+            return result;
+        });
+    }
+
+    /**
+     * Opens a 1600x900 window with vsync off, runs the benchmarks, and closes the window.
+     *
+     * @param benchmarks The benchmarks to run.
+     */
+    public static void runInWindow(Runnable benchmarks) {
+        Jangl.init(1600, 900);
+        Window.setVsync(false);
+
+        try {
+            benchmarks.run();
+        } finally {
+            Window.close();
+        }
+    }
+}
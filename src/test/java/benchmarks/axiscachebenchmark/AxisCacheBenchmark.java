@@ -0,0 +1,116 @@
+package benchmarks.axiscachebenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.coords.WorldCoords;
+import jangl.shapes.Circle;
+import jangl.shapes.CollisionKernel;
+import jangl.shapes.Rect;
+import jangl.shapes.SeparatingAxisCache;
+import jangl.shapes.Shape;
+import jangl.shapes.Triangle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks enemies that stand close to a wall without touching it, the case the separating axis cache is for. Each
+ * operation checks every enemy against its wall once, like one frame of a game. The warm run keeps the axes cached
+ * between frames, and the cold run clears the cache before every frame so every pair runs the full test.
+ */
+public class AxisCacheBenchmark implements AutoCloseable {
+    private static final int ENEMIES = 500;
+    private static final int FRAMES = 2000;
+
+    private final List<Rect> walls;
+    private final List<Rect> rects;
+    private final List<Circle> circles;
+    private final List<Triangle> triangles;
+    private final List<Shape> enemies;
+
+    public AxisCacheBenchmark() {
+        this.walls = new ArrayList<>();
+        this.rects = new ArrayList<>();
+        this.circles = new ArrayList<>();
+        this.triangles = new ArrayList<>();
+        this.enemies = new ArrayList<>();
+
+        for (int i = 0; i < ENEMIES; i++) {
+            float x = i * 3;
+
+            this.walls.add(new Rect(new WorldCoords(x, 1), 1, 0.1f));
+
+            // Just above the wall, close enough to get past the bounding circle check
+            switch (i % 3) {
+                case 0 -> {
+                    Rect rect = new Rect(new WorldCoords(x + 0.2f, 1.15f), 0.1f, 0.1f);
+                    rect.getTransform().rotate(0.3f);
+                    this.rects.add(rect);
+                    this.enemies.add(rect);
+                }
+                case 1 -> {
+                    Circle circle = new Circle(new WorldCoords(x + 0.5f, 1.2f), 0.08f, 32);
+                    this.circles.add(circle);
+                    this.enemies.add(circle);
+                }
+                default -> {
+                    Triangle triangle = new Triangle(
+                            new WorldCoords(x + 0.4f, 1.05f), new WorldCoords(x + 0.6f, 1.05f), new WorldCoords(x + 0.5f, 1.2f)
+                    );
+                    this.triangles.add(triangle);
+                    this.enemies.add(triangle);
+                }
+            }
+        }
+    }
+
+    public void run() {
+        CollisionKernel kernel = CollisionKernel.get();
+        SeparatingAxisCache cache = kernel.getAxisCache();
+
+        BenchmarkRunner.run("enemies vs walls, warm cache", FRAMES, i -> this.checkFrame(kernel));
+        System.out.printf("hit rate: %.3f%n", cache.getHitRate());
+
+        cache.resetCounters();
+
+        BenchmarkRunner.run("enemies vs walls, cold cache", FRAMES, i -> {
+            cache.clear();
+            return this.checkFrame(kernel);
+        });
+        System.out.printf("hit rate: %.3f%n", cache.getHitRate());
+    }
+
+    private boolean checkFrame(CollisionKernel kernel) {
+        boolean anyCollision = false;
+
+        for (int i = 0; i < ENEMIES; i++) {
+            anyCollision |= kernel.collides(this.enemies.get(i), this.walls.get(i));
+        }
+
+        return anyCollision;
+    }
+
+    @Override
+    public void close() {
+        for (Rect wall : this.walls) {
+            wall.close();
+        }
+
+        for (Rect rect : this.rects) {
+            rect.close();
+        }
+
+        for (Circle circle : this.circles) {
+            circle.close();
+        }
+
+        for (Triangle triangle : this.triangles) {
+            triangle.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        try (AxisCacheBenchmark benchmark = new AxisCacheBenchmark()) {
+            benchmark.run();
+        }
+    }
+}
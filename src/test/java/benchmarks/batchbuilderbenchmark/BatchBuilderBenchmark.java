@@ -0,0 +1,254 @@
+package benchmarks.batchbuilderbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.coords.WorldCoords;
+import jangl.graphics.batching.Batch;
+import jangl.graphics.batching.BatchBuilder;
+
+import java.util.Random;
+
+/**
+ * Builds a batch for a 100k tile map, one quad per tile, then combines two builders and uploads the result. Each
+ * operation builds the whole map.
+ * <br>
+ * Then prints how many vertices and triangles BatchBuilder.addTiles() saves on a few 256x256 sample maps of 4 kinds of
+ * tiles, and how long it takes to mesh them, and the vertex count, ACMR, and ATVR of a few batches before and after
+ * BatchBuilder.optimize(). The cache metrics are simulated on the CPU, so they don't need a GPU.
+ */
+public class BatchBuilderBenchmark {
+    private static final int TILES = 100_000;
+    private static final int COLUMNS = 316;
+    private static final int OPERATIONS = 20;
+
+    private static final int[] QUAD_INDICES = {0, 1, 2, 2, 3, 0};
+    private static final float[] QUAD_TEX_COORDS = {0, 0, 1, 0, 1, 1, 0, 1};
+
+    private static final int MAP_SIZE = 256;
+    private static final int KINDS = 4;
+    private static final float MAP_TILE_SIZE = 1f / MAP_SIZE;
+    private static final WorldCoords MAP_TOP_LEFT = new WorldCoords(0, 1);
+    private static final int CACHE_SIZE = 16;
+
+    private final float[] quadVertices = new float[8];
+
+    public void run() {
+        BenchmarkRunner.run("build 100k quads", OPERATIONS, i -> this.buildTileMap().getVertexCount() > 0);
+
+        BenchmarkRunner.run("combine two 100k quad builders", OPERATIONS, i -> {
+            BatchBuilder builder = this.buildTileMap();
+            return builder.addObject(this.buildTileMap()).getVertexCount() > 0;
+        });
+
+        BenchmarkRunner.run("build and upload 100k quads", OPERATIONS, i -> {
+            try (Batch batch = this.buildTileMap().toBatch()) {
+                return batch.getTransform() != null;
+            }
+        });
+
+        this.runGreedyMesh();
+        this.runOptimize();
+    }
+
+    private void runGreedyMesh() {
+        String[] names = {"uniform", "terrain", "stripes", "noise"};
+        int[][] maps = {new int[MAP_SIZE * MAP_SIZE], terrainMap(), stripesMap(), noiseMap()};
+
+        for (int m = 0; m < maps.length; m++) {
+            int[] map = maps[m];
+            BatchBuilder[] builders = greedyMesh(map);
+
+            int vertices = 0;
+            int triangles = 0;
+
+            for (BatchBuilder builder : builders) {
+                vertices += builder.getVertexCount();
+                triangles += builder.getIndexBuffer().remaining() / 3;
+            }
+
+            System.out.printf(
+                    "%s: %d vertices and %d triangles per tile, %d and %d merged, %.1f%% fewer%n",
+                    names[m], map.length * 4, map.length * 2, vertices, triangles,
+                    100 - 100.0 * vertices / (map.length * 4)
+            );
+
+            BenchmarkRunner.run("mesh 256x256 " + names[m], OPERATIONS, i -> greedyMesh(map).length > 0);
+        }
+    }
+
+    private BatchBuilder buildTileMap() {
+        BatchBuilder builder = new BatchBuilder();
+
+        for (int i = 0; i < TILES; i++) {
+            float tileSize = 0.01f;
+            float x = (i % COLUMNS) * tileSize;
+            float y = (float) (i / COLUMNS) * tileSize;
+
+            this.quadVertices[0] = x;
+            this.quadVertices[1] = y;
+            this.quadVertices[2] = x + tileSize;
+            this.quadVertices[3] = y;
+            this.quadVertices[4] = x + tileSize;
+            this.quadVertices[5] = y + tileSize;
+            this.quadVertices[6] = x;
+            this.quadVertices[7] = y + tileSize;
+
+            builder.addObject(this.quadVertices, QUAD_INDICES, QUAD_TEX_COORDS);
+        }
+
+        return builder;
+    }
+
+    private void runOptimize() {
+        // The texture coords of the grid continue from one tile to the next, so neighbouring quads share their corners
+        // once they are welded. The quads of the tile map each have their own 0 to 1 texture coords, so none are.
+        reportOptimize("256x256 grid", grid(false));
+        reportOptimize("256x256 shuffled grid", grid(true));
+        reportOptimize("100k quads", this.buildTileMap());
+
+        BenchmarkRunner.run(
+                "optimize 256x256 shuffled grid", OPERATIONS, i -> grid(true).optimize().getVertexCount() > 0
+        );
+    }
+
+    private static void reportOptimize(String name, BatchBuilder builder) {
+        int vertexCount = builder.getVertexCount();
+        float acmr = builder.calculateAcmr(CACHE_SIZE);
+        float atvr = builder.calculateAtvr(CACHE_SIZE);
+
+        builder.optimize();
+
+        int triangleCount = builder.getIndexBuffer().remaining() / 3;
+        float optimizedAcmr = builder.calculateAcmr(CACHE_SIZE);
+
+        // ATVR can go up when welding removes vertices, so also print how many vertices are shaded per draw
+        System.out.printf(
+                "%s: %d -> %d vertices, ACMR %.3f -> %.3f, ATVR %.3f -> %.3f, %d -> %d vertices shaded%n",
+                name, vertexCount, builder.getVertexCount(), acmr, optimizedAcmr, atvr,
+                builder.calculateAtvr(CACHE_SIZE), Math.round(acmr * triangleCount),
+                Math.round(optimizedAcmr * triangleCount)
+        );
+    }
+
+    /**
+     * @param shuffled True to add the quads in a random order.
+     */
+    private static BatchBuilder grid(boolean shuffled) {
+        int[] order = new int[MAP_SIZE * MAP_SIZE];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        if (shuffled) {
+            Random random = new Random(1);
+
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+        }
+
+        BatchBuilder builder = new BatchBuilder();
+        float[] quadVertices = new float[8];
+        float[] quadTexCoords = new float[8];
+
+        for (int tile : order) {
+            int column = tile % MAP_SIZE;
+            int row = tile / MAP_SIZE;
+            float x = column * MAP_TILE_SIZE;
+            float y = 1 - row * MAP_TILE_SIZE;
+
+            quadVertices[0] = x;
+            quadVertices[1] = y;
+            quadVertices[2] = x + MAP_TILE_SIZE;
+            quadVertices[3] = y;
+            quadVertices[4] = x + MAP_TILE_SIZE;
+            quadVertices[5] = y - MAP_TILE_SIZE;
+            quadVertices[6] = x;
+            quadVertices[7] = y - MAP_TILE_SIZE;
+
+            // The texture repeats once per tile, so the texture coords of a corner are its column and row
+            quadTexCoords[0] = column;
+            quadTexCoords[1] = row;
+            quadTexCoords[2] = column + 1;
+            quadTexCoords[3] = row;
+            quadTexCoords[4] = column + 1;
+            quadTexCoords[5] = row + 1;
+            quadTexCoords[6] = column;
+            quadTexCoords[7] = row + 1;
+
+            builder.addObject(quadVertices, QUAD_INDICES, quadTexCoords);
+        }
+
+        return builder;
+    }
+
+    private static BatchBuilder[] greedyMesh(int[] map) {
+        BatchBuilder[] builders = new BatchBuilder[KINDS];
+
+        for (int kind = 0; kind < KINDS; kind++) {
+            builders[kind] = new BatchBuilder().addTiles(MAP_TOP_LEFT, MAP_TILE_SIZE, MAP_TILE_SIZE, map, MAP_SIZE, kind);
+        }
+
+        return builders;
+    }
+
+    /**
+     * Blobs of each kind, like grass, sand, and water regions.
+     */
+    private static int[] terrainMap() {
+        Random random = new Random(1);
+        int[] map = new int[MAP_SIZE * MAP_SIZE];
+
+        for (int blob = 0; blob < 60; blob++) {
+            int kind = random.nextInt(KINDS);
+            int centerX = random.nextInt(MAP_SIZE);
+            int centerY = random.nextInt(MAP_SIZE);
+            int radius = 8 + random.nextInt(32);
+
+            for (int y = Math.max(centerY - radius, 0); y < Math.min(centerY + radius, MAP_SIZE); y++) {
+                for (int x = Math.max(centerX - radius, 0); x < Math.min(centerX + radius, MAP_SIZE); x++) {
+                    int dx = x - centerX;
+                    int dy = y - centerY;
+
+                    if (dx * dx + dy * dy < radius * radius) {
+                        map[y * MAP_SIZE + x] = kind;
+                    }
+                }
+            }
+        }
+
+        return map;
+    }
+
+    private static int[] stripesMap() {
+        int[] map = new int[MAP_SIZE * MAP_SIZE];
+
+        for (int i = 0; i < map.length; i++) {
+            map[i] = (i % MAP_SIZE / 3) % KINDS;
+        }
+
+        return map;
+    }
+
+    /**
+     * The worst case, where almost no two neighbouring tiles are the same.
+     */
+    private static int[] noiseMap() {
+        Random random = new Random(1);
+        int[] map = new int[MAP_SIZE * MAP_SIZE];
+
+        for (int i = 0; i < map.length; i++) {
+            map[i] = random.nextInt(KINDS);
+        }
+
+        return map;
+    }
+
+    public static void main(String[] args) {
+        // The upload needs a context
+        BenchmarkRunner.runInWindow(() -> new BatchBuilderBenchmark().run());
+    }
+}
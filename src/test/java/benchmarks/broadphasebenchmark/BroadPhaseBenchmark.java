@@ -0,0 +1,167 @@
+package benchmarks.broadphasebenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.collision.AABBTree;
+import jangl.collision.CollisionWorld;
+import jangl.collision.PairBuffer;
+import jangl.coords.WorldCoords;
+import jangl.shapes.Circle;
+import jangl.shapes.Rect;
+import jangl.shapes.Shape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times a frame of moving the shapes, updating the broad phase, and finding every collision. A frame must take less
+ * than 16.7 ms (16,700,000 ns/op) to run at 60 FPS.
+ * <br>
+ * The first scene is 10k similar shapes moving around, which suits the CollisionWorld grid. The second scene is a
+ * huge floor with many tiny bullets above it, which is the worst case for a grid, at 1k, 10k, and 50k shapes.
+ * Brute force is O(n^2), so it only tests a sample of the shapes against every other shape and the time for a full
+ * frame is estimated from that.
+ */
+public class BroadPhaseBenchmark implements AutoCloseable {
+    private static final int FRAMES = 50;
+    private static final int BRUTE_FORCE_ROWS = 200;
+
+    private final List<Shape> shapes;
+    private final List<Shape> moving;
+    private final float[] velocities;
+    private final PairBuffer collisions;
+    private final float worldSize;
+
+    private BroadPhaseBenchmark(int shapeCount, boolean withFloor) {
+        Random random = new Random(0);
+
+        this.shapes = new ArrayList<>(shapeCount);
+        this.moving = new ArrayList<>(shapeCount);
+        this.velocities = new float[shapeCount * 2];
+        this.collisions = new PairBuffer();
+
+        // Keeps the density of the shapes the same no matter how many there are
+        this.worldSize = (float) Math.sqrt(shapeCount) * 0.03f;
+
+        if (withFloor) {
+            this.shapes.add(new Rect(new WorldCoords(0, 0.02f), this.worldSize, 0.02f));
+        }
+
+        while (this.shapes.size() < shapeCount) {
+            WorldCoords position = new WorldCoords(random.nextFloat() * this.worldSize, random.nextFloat() * this.worldSize);
+            float size = 0.005f + random.nextFloat() * 0.01f;
+
+            Shape shape = withFloor ? new Circle(position, size / 2, 8) : new Rect(position, size, size);
+
+            this.velocities[this.moving.size() * 2] = (random.nextFloat() - 0.5f) * 0.002f;
+            this.velocities[this.moving.size() * 2 + 1] = (random.nextFloat() - 0.5f) * 0.002f;
+
+            this.shapes.add(shape);
+            this.moving.add(shape);
+        }
+    }
+
+    private void runCollisionWorld() {
+        CollisionWorld world = new CollisionWorld(0.02f);
+
+        for (Shape shape : this.shapes) {
+            world.add(shape);
+        }
+
+        BenchmarkRunner.run("CollisionWorld " + this.shapes.size() + " shapes (frame)", FRAMES, i -> {
+            this.moveShapes();
+            world.update();
+
+            this.collisions.clear();
+            world.findCollisions(this.collisions);
+
+            return this.collisions.isEmpty();
+        });
+    }
+
+    private void runAABBTree() {
+        AABBTree tree = new AABBTree(0.01f);
+
+        for (Shape shape : this.shapes) {
+            tree.add(shape);
+        }
+
+        BenchmarkRunner.run("AABBTree " + this.shapes.size() + " shapes (frame)", FRAMES, i -> {
+            this.moveShapes();
+            tree.update();
+
+            this.collisions.clear();
+            tree.findCollisions(this.collisions);
+
+            return this.collisions.isEmpty();
+        });
+    }
+
+    private void runBruteForce() {
+        int shapeCount = this.shapes.size();
+        int rows = Math.min(BRUTE_FORCE_ROWS, shapeCount);
+        long start = System.nanoTime();
+        int found = 0;
+
+        for (int i = 0; i < rows; i++) {
+            Shape shape = this.shapes.get(i);
+
+            for (Shape other : this.shapes) {
+                if (shape != other && Shape.collides(shape, other)) {
+                    found++;
+                }
+            }
+        }
+
+        double nanosPerRow = (double) (System.nanoTime() - start) / rows;
+
+        // Every row tests each pair twice, so a full frame is half of the rows
+        System.out.printf(
+                "%-40s %12.1f ms/frame (estimated from %d rows, %d collisions)%n",
+                "Brute force " + shapeCount + " shapes",
+                nanosPerRow * shapeCount / 2 / 1e6,
+                rows,
+                found
+        );
+    }
+
+    private void moveShapes() {
+        for (int i = 0; i < this.moving.size(); i++) {
+            Shape shape = this.moving.get(i);
+            float x = shape.getTransform().getCenterX();
+            float y = shape.getTransform().getCenterY();
+
+            // Bounce off the edges of the world
+            if (x < 0 || x > this.worldSize) {
+                this.velocities[i * 2] = -this.velocities[i * 2];
+            }
+
+            if (y < 0 || y > this.worldSize) {
+                this.velocities[i * 2 + 1] = -this.velocities[i * 2 + 1];
+            }
+
+            shape.getTransform().shift(this.velocities[i * 2], this.velocities[i * 2 + 1]);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Shape shape : this.shapes) {
+            shape.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (BroadPhaseBenchmark benchmark = new BroadPhaseBenchmark(10_000, false)) {
+            benchmark.runCollisionWorld();
+            benchmark.runAABBTree();
+        }
+
+        for (int shapeCount : new int[]{1_000, 10_000, 50_000}) {
+            try (BroadPhaseBenchmark benchmark = new BroadPhaseBenchmark(shapeCount, true)) {
+                benchmark.runAABBTree();
+                benchmark.runBruteForce();
+            }
+        }
+    }
+}
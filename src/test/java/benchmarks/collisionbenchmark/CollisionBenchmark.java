@@ -0,0 +1,101 @@
+package benchmarks.collisionbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.coords.WorldCoords;
+import jangl.shapes.Circle;
+import jangl.shapes.CollisionKernel;
+import jangl.shapes.ContactResult;
+import jangl.shapes.Rect;
+import jangl.shapes.Shape;
+import jangl.shapes.Triangle;
+
+/**
+ * Reports the time and allocation rate of each Shape.collides() overload. After warmup, every overload should
+ * report 0 B/op.
+ * <br>
+ * Then compares each specialized pair test used by Shape.collides(Shape, Shape) against the generic polygon test,
+ * CollisionKernel.collidesAsPolygons(). Each pair is benchmarked while overlapping, when the full SAT test runs, and
+ * while apart, when the bounding circle check rejects the pair and the cost is mostly picking the test. Overlapping
+ * pairs are also run through CollisionKernel.intersect(), which finds the contact in the same pass.
+ */
+public class CollisionBenchmark implements AutoCloseable {
+    private static final int OPERATIONS = 1_000_000;
+
+    private final Rect rect;
+    private final Rect otherRect;
+    private final Circle circle;
+    private final Circle otherCircle;
+    private final Triangle triangle;
+    private final Triangle otherTriangle;
+    private final WorldCoords point;
+    private final ContactResult contact;
+
+    public CollisionBenchmark() {
+        this.rect = new Rect(new WorldCoords(0.5f, 0.6f), 0.3f, 0.2f);
+        this.rect.getTransform().rotate(0.3f);
+        this.otherRect = new Rect(new WorldCoords(0.7f, 0.6f), 0.3f, 0.2f);
+        this.otherRect.getTransform().rotate(-0.2f);
+
+        this.circle = new Circle(new WorldCoords(0.7f, 0.5f), 0.1f, 70);
+        this.otherCircle = new Circle(new WorldCoords(0.8f, 0.5f), 0.1f, 70);
+        this.triangle = new Triangle(new WorldCoords(0.5f, 0.3f), new WorldCoords(0.8f, 0.3f), new WorldCoords(0.5f, 0.6f));
+        this.otherTriangle = new Triangle(new WorldCoords(0.7f, 0.5f), new WorldCoords(0.9f, 0.5f), new WorldCoords(0.7f, 0.7f));
+        this.point = new WorldCoords(0.6f, 0.5f);
+        this.contact = new ContactResult();
+    }
+
+    public void run() {
+        Shape rectShape = this.rect;
+        Shape circleShape = this.circle;
+        Shape triangleShape = this.triangle;
+
+        BenchmarkRunner.run("collides(Shape, Shape) rect/triangle", OPERATIONS, i -> Shape.collides(rectShape, triangleShape));
+        BenchmarkRunner.run("collides(Shape, Shape) rect/circle", OPERATIONS, i -> Shape.collides(rectShape, circleShape));
+        BenchmarkRunner.run("collides(Shape, WorldCoords)", OPERATIONS, i -> Shape.collides(rectShape, this.point));
+        BenchmarkRunner.run("collides(Shape, Circle)", OPERATIONS, i -> Shape.collides(rectShape, this.circle));
+        BenchmarkRunner.run("collides(Circle, Shape)", OPERATIONS, i -> Shape.collides(this.circle, triangleShape));
+        BenchmarkRunner.run("collides(Circle, Circle)", OPERATIONS, i -> Shape.collides(this.circle, this.otherCircle));
+        BenchmarkRunner.run("collides(Circle, WorldCoords)", OPERATIONS, i -> Shape.collides(this.circle, this.point));
+        BenchmarkRunner.run("collides(WorldCoords, float, WorldCoords, float)", OPERATIONS, i -> Shape.collides(this.point, 0.1f, this.point, 0.1f));
+    }
+
+    public void runDispatch() {
+        this.runPair("rect/rect", this.rect, this.otherRect);
+        this.runPair("circle/rect", this.circle, this.rect);
+        this.runPair("circle/circle", this.circle, this.otherCircle);
+        this.runPair("triangle/triangle", this.triangle, this.otherTriangle);
+    }
+
+    private void runPair(String name, Shape shape1, Shape shape2) {
+        CollisionKernel kernel = CollisionKernel.get();
+
+        BenchmarkRunner.run(name + " overlapping fast", OPERATIONS, i -> kernel.collides(shape1, shape2));
+        BenchmarkRunner.run(name + " overlapping generic", OPERATIONS, i -> kernel.collidesAsPolygons(shape1, shape2));
+        BenchmarkRunner.run(name + " overlapping intersect", OPERATIONS, i -> kernel.intersect(shape1, shape2, this.contact));
+
+        // Move the second shape away so the pair is rejected early
+        shape2.getTransform().shift(0.25f, 0.25f);
+
+        BenchmarkRunner.run(name + " apart fast", OPERATIONS, i -> kernel.collides(shape1, shape2));
+        BenchmarkRunner.run(name + " apart generic", OPERATIONS, i -> kernel.collidesAsPolygons(shape1, shape2));
+
+        shape2.getTransform().shift(-0.25f, -0.25f);
+    }
+
+    @Override
+    public void close() {
+        this.rect.close();
+        this.otherRect.close();
+        this.circle.close();
+        this.otherCircle.close();
+        this.triangle.close();
+        this.otherTriangle.close();
+    }
+
+    public static void main(String[] args) {
+        try (CollisionBenchmark benchmark = new CollisionBenchmark()) {
+            benchmark.run();
+            benchmark.runDispatch();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks.instancedbatchbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.coords.WorldCoords;
+import jangl.graphics.batching.InstancedBatch;
+import jangl.graphics.textures.Texture;
+import jangl.graphics.textures.TextureBuilder;
+import jangl.io.Window;
+import jangl.shapes.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Draws 10k identical textured rects each frame, once with a Rect.draw() call per rect and once with an
+ * InstancedBatch. 1% of the rects move every frame, so the batch only uploads those instances again. Each operation
+ * is one frame.
+ */
+public class InstancedBatchBenchmark implements AutoCloseable {
+    private static final int RECTS = 10_000;
+    private static final int MOVING_RECTS = RECTS / 100;
+    private static final int FRAMES = 60;
+
+    private final List<Rect> rects;
+    private final Texture texture;
+    private final InstancedBatch instancedBatch;
+
+    public InstancedBatchBenchmark() {
+        Random random = new Random(1);
+
+        this.rects = new ArrayList<>(RECTS);
+
+        for (int i = 0; i < RECTS; i++) {
+            WorldCoords topLeft = new WorldCoords(random.nextFloat() * 1.7f, random.nextFloat() * 0.95f + 0.05f);
+            this.rects.add(new Rect(topLeft, 0.02f, 0.02f));
+        }
+
+        this.texture = new Texture(
+                new TextureBuilder().setImagePath("src/test/resources/demo/textureDemo/image.png")
+        );
+
+        this.instancedBatch = new InstancedBatch(this.rects.get(0));
+        this.instancedBatch.addAll(this.rects);
+    }
+
+    public void run() {
+        BenchmarkRunner.runFrames("10k Rect.draw() calls", FRAMES, i -> {
+            this.move(i);
+            Window.clear();
+
+            for (Rect rect : this.rects) {
+                rect.draw(this.texture);
+            }
+
+            return true;
+        });
+
+        BenchmarkRunner.runFrames("10k instances in an InstancedBatch", FRAMES, i -> {
+            this.move(i);
+            Window.clear();
+
+            this.instancedBatch.draw(this.texture);
+
+            return true;
+        });
+    }
+
+    private void move(int frame) {
+        float direction = frame % 2 == 0 ? 0.001f : -0.001f;
+
+        for (int i = 0; i < MOVING_RECTS; i++) {
+            this.rects.get(i).getTransform().shift(direction, 0);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Rect rect : this.rects) {
+            rect.close();
+        }
+
+        this.texture.close();
+        this.instancedBatch.close();
+    }
+
+    public static void main(String[] args) {
+        BenchmarkRunner.runInWindow(() -> {
+            try (InstancedBatchBenchmark benchmark = new InstancedBatchBenchmark()) {
+                benchmark.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,125 @@
+package benchmarks.parallelcolliderbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.collision.PairBuffer;
+import jangl.collision.ParallelCollider;
+import jangl.coords.WorldCoords;
+import jangl.shapes.Circle;
+import jangl.shapes.Rect;
+import jangl.shapes.Shape;
+import jangl.shapes.Triangle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests 30k candidate pairs with a single thread and with ParallelCollider on pools of 1, 2, 4, and 8 threads.
+ * The shapes are packed close together so most pairs need the full SAT test, like the candidates from a broad phase.
+ */
+public class ParallelColliderBenchmark implements AutoCloseable {
+    private static final int SHAPE_COUNT = 2_000;
+    private static final int PAIR_COUNT = 30_000;
+    private static final int FRAMES = 50;
+
+    private final List<Rect> rects;
+    private final List<Circle> circles;
+    private final List<Triangle> triangles;
+    private final List<Shape> shapes;
+    private final PairBuffer candidates;
+    private final PairBuffer collisions;
+
+    public ParallelColliderBenchmark() {
+        this.rects = new ArrayList<>();
+        this.circles = new ArrayList<>();
+        this.triangles = new ArrayList<>();
+        this.shapes = new ArrayList<>(SHAPE_COUNT);
+        this.candidates = new PairBuffer(PAIR_COUNT);
+        this.collisions = new PairBuffer(PAIR_COUNT);
+
+        Random random = new Random(0);
+
+        for (int i = 0; i < SHAPE_COUNT; i++) {
+            float x = random.nextFloat() * 0.5f;
+            float y = random.nextFloat() * 0.5f;
+
+            Shape shape;
+
+            if (i % 3 == 0) {
+                Rect rect = new Rect(new WorldCoords(x, y), 0.1f, 0.05f);
+                this.rects.add(rect);
+                shape = rect;
+            } else if (i % 3 == 1) {
+                Circle circle = new Circle(new WorldCoords(x, y), 0.05f, 16);
+                this.circles.add(circle);
+                shape = circle;
+            } else {
+                Triangle triangle = new Triangle(new WorldCoords(x, y), new WorldCoords(x + 0.1f, y), new WorldCoords(x, y + 0.1f));
+                this.triangles.add(triangle);
+                shape = triangle;
+            }
+
+            shape.getTransform().rotate(random.nextFloat() * 6.28f);
+            this.shapes.add(shape);
+        }
+
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            this.candidates.add(
+                    this.shapes.get(random.nextInt(SHAPE_COUNT)),
+                    this.shapes.get(random.nextInt(SHAPE_COUNT))
+            );
+        }
+    }
+
+    public void run() {
+        BenchmarkRunner.run("Single thread " + PAIR_COUNT + " pairs", FRAMES, i -> {
+            int found = 0;
+
+            for (int pair = 0; pair < this.candidates.size(); pair++) {
+                if (Shape.collides(this.candidates.getFirst(pair), this.candidates.getSecond(pair))) {
+                    found++;
+                }
+            }
+
+            return found > 0;
+        });
+
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelCollider collider = new ParallelCollider(pool);
+
+            BenchmarkRunner.run("ParallelCollider " + threads + " threads", FRAMES, i -> {
+                this.collisions.clear();
+                collider.findCollisions(this.candidates, this.collisions);
+
+                return this.collisions.isEmpty();
+            });
+
+            pool.shutdown();
+        }
+
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void close() {
+        for (Rect rect : this.rects) {
+            rect.close();
+        }
+
+        for (Circle circle : this.circles) {
+            circle.close();
+        }
+
+        for (Triangle triangle : this.triangles) {
+            triangle.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        try (ParallelColliderBenchmark benchmark = new ParallelColliderBenchmark()) {
+            benchmark.run();
+        }
+    }
+}
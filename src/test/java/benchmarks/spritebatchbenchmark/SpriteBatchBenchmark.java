@@ -0,0 +1,102 @@
+package benchmarks.spritebatchbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.coords.WorldCoords;
+import jangl.graphics.batching.SpriteBatch;
+import jangl.graphics.textures.Texture;
+import jangl.graphics.textures.TextureBuilder;
+import jangl.io.Window;
+import jangl.shapes.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Moves and draws 50k textured rects each frame, once with a Rect.draw() call per rect and once with a SpriteBatch.
+ * Each operation is one frame.
+ */
+public class SpriteBatchBenchmark implements AutoCloseable {
+    private static final int SPRITES = 50_000;
+    private static final int FRAMES = 30;
+
+    private final List<Rect> rects;
+    private final float[] velocities;
+    private final Texture texture;
+    private final SpriteBatch spriteBatch;
+
+    public SpriteBatchBenchmark() {
+        Random random = new Random(1);
+
+        this.rects = new ArrayList<>(SPRITES);
+        this.velocities = new float[SPRITES * 2];
+
+        for (int i = 0; i < SPRITES; i++) {
+            WorldCoords topLeft = new WorldCoords(random.nextFloat() * 1.7f, random.nextFloat() * 0.95f + 0.05f);
+            this.rects.add(new Rect(topLeft, 0.02f, 0.02f));
+
+            this.velocities[i * 2] = (random.nextFloat() - 0.5f) * 0.01f;
+            this.velocities[i * 2 + 1] = (random.nextFloat() - 0.5f) * 0.01f;
+        }
+
+        this.texture = new Texture(
+                new TextureBuilder().setImagePath("src/test/resources/demo/textureDemo/image.png")
+        );
+
+        this.spriteBatch = new SpriteBatch();
+    }
+
+    public void run() {
+        BenchmarkRunner.runFrames("50k Rect.draw() calls", FRAMES, i -> {
+            this.move();
+            Window.clear();
+
+            for (Rect rect : this.rects) {
+                rect.draw(this.texture);
+            }
+
+            return true;
+        });
+
+        BenchmarkRunner.runFrames("50k sprites in a SpriteBatch", FRAMES, i -> {
+            this.move();
+            Window.clear();
+
+            this.spriteBatch.begin();
+
+            for (Rect rect : this.rects) {
+                this.spriteBatch.draw(this.texture, rect);
+            }
+
+            this.spriteBatch.end();
+
+            return this.spriteBatch.getDrawCallCount() > 0;
+        });
+
+        System.out.println("SpriteBatch draw calls per frame: " + this.spriteBatch.getDrawCallCount());
+    }
+
+    private void move() {
+        for (int i = 0; i < SPRITES; i++) {
+            this.rects.get(i).getTransform().shift(this.velocities[i * 2], this.velocities[i * 2 + 1]);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Rect rect : this.rects) {
+            rect.close();
+        }
+
+        this.texture.close();
+        this.spriteBatch.close();
+    }
+
+    public static void main(String[] args) {
+        BenchmarkRunner.runInWindow(() -> {
+            try (SpriteBatchBenchmark benchmark = new SpriteBatchBenchmark()) {
+                benchmark.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,145 @@
+package benchmarks.textureatlasbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.color.ColorFactory;
+import jangl.coords.WorldCoords;
+import jangl.graphics.batching.Batch;
+import jangl.graphics.batching.BatchBuilder;
+import jangl.graphics.models.Model;
+import jangl.graphics.textures.AtlasRegion;
+import jangl.graphics.textures.Texture;
+import jangl.graphics.textures.TextureAtlas;
+import jangl.graphics.textures.TextureAtlasBuilder;
+import jangl.graphics.textures.TextureBuilder;
+import jangl.io.Window;
+import jangl.shapes.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Packs 2k sprites of different sizes into a texture atlas, then draws them once with a texture each and once with a
+ * batch per atlas page, and prints the number of draw calls each takes per frame.
+ */
+public class TextureAtlasBenchmark implements AutoCloseable {
+    private static final int SPRITES = 2_000;
+    private static final int PACKS = 20;
+    private static final int FRAMES = 30;
+
+    private final List<Rect> rects;
+    private final List<Texture> textures;
+    private final TextureAtlasBuilder atlasBuilder;
+    private final List<AtlasRegion> regions;
+
+    private TextureAtlas atlas;
+    private List<Batch> batches;
+
+    public TextureAtlasBenchmark() {
+        Random random = new Random(1);
+
+        this.rects = new ArrayList<>(SPRITES);
+        this.textures = new ArrayList<>(SPRITES);
+        this.atlasBuilder = new TextureAtlasBuilder();
+        this.regions = new ArrayList<>(SPRITES);
+
+        for (int i = 0; i < SPRITES; i++) {
+            WorldCoords topLeft = new WorldCoords(random.nextFloat() * 1.7f, random.nextFloat() * 0.95f + 0.05f);
+            this.rects.add(new Rect(topLeft, 0.03f, 0.03f));
+
+            TextureBuilder image = new TextureBuilder().fill(
+                    ColorFactory.from255(random.nextInt(256), random.nextInt(256), random.nextInt(256), 255),
+                    8 + random.nextInt(57),
+                    8 + random.nextInt(57)
+            );
+
+            this.textures.add(new Texture(image));
+            this.regions.add(this.atlasBuilder.add(image));
+        }
+    }
+
+    public void run() {
+        BenchmarkRunner.run("pack 2k sprites", PACKS, i -> this.atlasBuilder.pack() > 0);
+
+        BenchmarkRunner.run("pack and upload 2k sprites", PACKS, i -> {
+            try (TextureAtlas atlas = this.atlasBuilder.build()) {
+                return atlas.getPageCount() > 0;
+            }
+        });
+
+        this.atlas = this.atlasBuilder.build();
+        this.batches = this.buildBatches();
+
+        BenchmarkRunner.runFrames("2k sprites, a texture each", FRAMES, i -> {
+            Window.clear();
+
+            for (int sprite = 0; sprite < SPRITES; sprite++) {
+                this.rects.get(sprite).draw(this.textures.get(sprite));
+            }
+
+            return true;
+        });
+
+        int drawCallsBefore = Model.getDrawCallCount();
+        this.drawAtlasBatches();
+        System.out.println("Draw calls per frame, a texture each: " + SPRITES);
+        System.out.println("Draw calls per frame, atlas batches: " + (Model.getDrawCallCount() - drawCallsBefore));
+
+        BenchmarkRunner.runFrames("2k sprites, a batch per atlas page", FRAMES, i -> {
+            Window.clear();
+            this.drawAtlasBatches();
+
+            return true;
+        });
+    }
+
+    private List<Batch> buildBatches() {
+        List<BatchBuilder> builders = new ArrayList<>();
+
+        for (int page = 0; page < this.atlas.getPageCount(); page++) {
+            builders.add(new BatchBuilder());
+        }
+
+        for (int sprite = 0; sprite < SPRITES; sprite++) {
+            Rect rect = this.rects.get(sprite);
+            AtlasRegion region = this.regions.get(sprite);
+
+            builders.get(region.getPage()).addObject(rect, region.getTexCoords(rect));
+        }
+
+        List<Batch> batches = new ArrayList<>(builders.size());
+
+        for (BatchBuilder builder : builders) {
+            batches.add(builder.toBatch());
+        }
+
+        return batches;
+    }
+
+    private void drawAtlasBatches() {
+        for (int page = 0; page < this.batches.size(); page++) {
+            this.batches.get(page).draw(this.atlas.getPage(page));
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Texture texture : this.textures) {
+            texture.close();
+        }
+
+        for (Batch batch : this.batches) {
+            batch.close();
+        }
+
+        this.atlas.close();
+    }
+
+    public static void main(String[] args) {
+        BenchmarkRunner.runInWindow(() -> {
+            try (TextureAtlasBenchmark benchmark = new TextureAtlasBenchmark()) {
+                benchmark.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package benchmarks.tilemapbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.coords.WorldCoords;
+import jangl.graphics.batching.Batch;
+import jangl.graphics.batching.BatchBuilder;
+import jangl.graphics.batching.TileMap;
+import jangl.graphics.models.Model;
+import jangl.graphics.textures.Texture;
+import jangl.graphics.textures.TextureBuilder;
+import jangl.io.Window;
+import jangl.shapes.TileSheetRect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Draws a screen of 0.02x0.02 tiles from a 4x4 tile sheet, once with a TileSheetRect per tile and once with TileMaps
+ * of 100x100 and 1000x1000 tiles. Each frame changes one visible tile, so one chunk is rebuilt per frame. The time per
+ * frame of the TileMap should be the same for both map sizes.
+ * <br>
+ * Then draws the 1000x1000 map as one Batch added row by row, which only draws the chunks of the batch that are on
+ * the screen, but cannot change a tile without rebuilding the whole batch.
+ */
+public class TileMapBenchmark implements AutoCloseable {
+    private static final float TILE_SIZE = 0.02f;
+    private static final int SHEET_SIZE = 4;
+    private static final int FRAMES = 30;
+    private static final int[] QUAD_INDICES = {0, 1, 2, 2, 3, 0};
+
+    private final Texture tileSheet;
+    private final Random random;
+
+    public TileMapBenchmark() {
+        this.tileSheet = new Texture(
+                new TextureBuilder().setImagePath("src/test/resources/demo/textureDemo/image.png").setPixelatedScaling()
+        );
+
+        this.random = new Random(1);
+    }
+
+    public void run() {
+        this.runTileSheetRects(100);
+        this.runTileMap(100);
+        this.runTileMap(1000);
+        this.runBatch(1000);
+    }
+
+    private void runTileSheetRects(int size) {
+        List<TileSheetRect> rects = new ArrayList<>(size * size);
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                TileSheetRect rect = new TileSheetRect(
+                        new WorldCoords(x * TILE_SIZE, 1 - y * TILE_SIZE), TILE_SIZE, TILE_SIZE, SHEET_SIZE, SHEET_SIZE
+                );
+
+                rect.setTilePos(this.random.nextInt(SHEET_SIZE), this.random.nextInt(SHEET_SIZE));
+                rects.add(rect);
+            }
+        }
+
+        BenchmarkRunner.runFrames(size + "x" + size + " TileSheetRects", FRAMES, i -> {
+            rects.get(this.random.nextInt(rects.size())).setTilePos(i % SHEET_SIZE, 0);
+
+            Window.clear();
+
+            for (TileSheetRect rect : rects) {
+                rect.draw(this.tileSheet);
+            }
+
+            return true;
+        });
+
+        for (TileSheetRect rect : rects) {
+            rect.close();
+        }
+    }
+
+    private void runTileMap(int size) {
+        try (TileMap map = new TileMap(new WorldCoords(0, 1), TILE_SIZE, TILE_SIZE, size, size, SHEET_SIZE, SHEET_SIZE)) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    map.setTile(x, y, this.random.nextInt(SHEET_SIZE), this.random.nextInt(SHEET_SIZE));
+                }
+            }
+
+            BenchmarkRunner.runFrames(size + "x" + size + " TileMap", FRAMES, i -> {
+                // Tiles in the top left 50x50 are always on the screen
+                map.setTile(this.random.nextInt(50), this.random.nextInt(50), i % SHEET_SIZE, 0);
+
+                Window.clear();
+                map.draw(this.tileSheet);
+
+                return map.getDrawnChunkCount() > 0;
+            });
+
+            System.out.println(
+                    size + "x" + size + " TileMap chunks drawn per frame: " + map.getDrawnChunkCount() + " of " +
+                            map.getChunkCount()
+            );
+        }
+    }
+
+    private void runBatch(int size) {
+        BatchBuilder builder = new BatchBuilder();
+        float[] quadVertices = new float[8];
+        float tileU = 1f / SHEET_SIZE;
+        float tileV = 1f / SHEET_SIZE;
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float left = x * TILE_SIZE;
+                float top = 1 - y * TILE_SIZE;
+
+                quadVertices[0] = left;
+                quadVertices[1] = top;
+                quadVertices[2] = left + TILE_SIZE;
+                quadVertices[3] = top;
+                quadVertices[4] = left + TILE_SIZE;
+                quadVertices[5] = top - TILE_SIZE;
+                quadVertices[6] = left;
+                quadVertices[7] = top - TILE_SIZE;
+
+                float u = this.random.nextInt(SHEET_SIZE) * tileU;
+                float v = this.random.nextInt(SHEET_SIZE) * tileV;
+
+                builder.addObject(
+                        quadVertices, QUAD_INDICES, new float[]{u, v, u + tileU, v, u + tileU, v + tileV, u, v + tileV}
+                );
+            }
+        }
+
+        try (Batch batch = builder.toBatch()) {
+            BenchmarkRunner.runFrames(size + "x" + size + " Batch", FRAMES, i -> {
+                Window.clear();
+                batch.draw(this.tileSheet);
+
+                return true;
+            });
+
+            int drawCallsBefore = Model.getDrawCallCount();
+            batch.draw(this.tileSheet);
+
+            System.out.println(
+                    size + "x" + size + " Batch: " + batch.getChunkCount() + " chunks, " +
+                            (Model.getDrawCallCount() - drawCallsBefore) + " draw calls per frame"
+            );
+        }
+    }
+
+    @Override
+    public void close() {
+        this.tileSheet.close();
+    }
+
+    public static void main(String[] args) {
+        BenchmarkRunner.runInWindow(() -> {
+            try (TileMapBenchmark benchmark = new TileMapBenchmark()) {
+                benchmark.run();
+            }
+        });
+    }
+}
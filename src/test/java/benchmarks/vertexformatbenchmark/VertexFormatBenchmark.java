@@ -0,0 +1,86 @@
+package benchmarks.vertexformatbenchmark;
+
+import benchmarks.BenchmarkRunner;
+import jangl.graphics.batching.Batch;
+import jangl.graphics.batching.BatchBuilder;
+import jangl.graphics.models.VertexFormat;
+import jangl.io.Window;
+
+/**
+ * Uploads and draws a tile map batch in each vertex format, and prints how much video memory its vertices and indices
+ * take. The small map has fewer than 65536 vertices, so it uses 16-bit indices.
+ */
+public class VertexFormatBenchmark {
+    private static final int SMALL_TILES = 16_000;
+    private static final int LARGE_TILES = 100_000;
+    private static final int COLUMNS = 316;
+    private static final int OPERATIONS = 20;
+
+    private static final int[] QUAD_INDICES = {0, 1, 2, 2, 3, 0};
+    private static final float[] QUAD_TEX_COORDS = {0, 0, 1, 0, 1, 1, 0, 1};
+
+    private final float[] quadVertices = new float[8];
+
+    public void run() {
+        this.run("16k", this.buildTileMap(SMALL_TILES));
+        this.run("100k", this.buildTileMap(LARGE_TILES));
+    }
+
+    private void run(String tiles, BatchBuilder builder) {
+        String[] names = {"SEPARATE", "INTERLEAVED", "COMPACT", "HALF"};
+        VertexFormat[] formats = {VertexFormat.SEPARATE, VertexFormat.INTERLEAVED, VertexFormat.COMPACT, VertexFormat.HALF};
+
+        // The size of the batch before it had vertex formats, with float vertices and 32-bit indices
+        long baselineBytes = (long) builder.getVertexCount() * 16 + (long) builder.getIndexBuffer().remaining() * Integer.BYTES;
+
+        for (int f = 0; f < formats.length; f++) {
+            VertexFormat format = formats[f];
+
+            BenchmarkRunner.runFrames("upload and draw " + tiles + " quads, " + names[f], OPERATIONS, i -> {
+                try (Batch batch = builder.toBatch(format)) {
+                    Window.clear();
+                    batch.draw();
+
+                    return batch.getTransform() != null;
+                }
+            });
+
+            try (Batch batch = builder.toBatch(format)) {
+                long bytes = (long) builder.getVertexCount() * format.getVertexSize()
+                        + (long) builder.getIndexBuffer().remaining() * batch.getModel().getIndexSize();
+
+                System.out.printf(
+                        "%s: %.2f MB, %.0f%% smaller than float vertices with 32-bit indices%n",
+                        names[f], bytes / 1e6, 100 - 100.0 * bytes / baselineBytes
+                );
+            }
+        }
+    }
+
+    private BatchBuilder buildTileMap(int tileCount) {
+        BatchBuilder builder = new BatchBuilder();
+
+        for (int i = 0; i < tileCount; i++) {
+            float tileSize = 0.01f;
+            float x = (i % COLUMNS) * tileSize;
+            float y = (float) (i / COLUMNS) * tileSize;
+
+            this.quadVertices[0] = x;
+            this.quadVertices[1] = y;
+            this.quadVertices[2] = x + tileSize;
+            this.quadVertices[3] = y;
+            this.quadVertices[4] = x + tileSize;
+            this.quadVertices[5] = y + tileSize;
+            this.quadVertices[6] = x;
+            this.quadVertices[7] = y + tileSize;
+
+            builder.addObject(this.quadVertices, QUAD_INDICES, QUAD_TEX_COORDS);
+        }
+
+        return builder;
+    }
+
+    public static void main(String[] args) {
+        BenchmarkRunner.runInWindow(() -> new VertexFormatBenchmark().run());
+    }
+}
@@ -24,8 +24,8 @@ public class ShaderDemo implements AutoCloseable {
         // WARNING: this line of code *must* be run in order to pass the projection matrices to the shader.
         // If this method is not called, whatever you are trying to draw will not appear.
         this.shaderProgram.getVertexShader().setMatrixUniforms(
-                this.shaderProgram.getProgramID(),
-                this.rect.getTransform().getMatrix()
+                this.shaderProgram,
+                this.rect.getTransform().getAffineMatrix()
         );
     }
 
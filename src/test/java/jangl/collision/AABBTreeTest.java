@@ -0,0 +1,170 @@
+package jangl.collision;
+
+import jangl.shapes.Shape;
+import jangl.util.AABB;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AABBTreeTest {
+    private static final int SHAPES = 300;
+
+    private final BruteForce bruteForce = new BruteForce(7);
+    private final AABBTree tree = new AABBTree(0.02f);
+
+    @Test
+    void testPairsMatchBruteForce() {
+        this.fill();
+        this.assertPairsMatch();
+
+        for (int frame = 0; frame < 10; frame++) {
+            // Small moves stay inside the fat AABBs and large ones reinsert the leaves
+            this.bruteForce.moveSome(frame % 2 == 0 ? 0.01f : 0.5f);
+            this.tree.update();
+            this.assertPairsMatch();
+        }
+    }
+
+    @Test
+    void testRemoveAndLayerChangesMatchBruteForce() {
+        this.fill();
+
+        for (int i = 0; i < SHAPES / 3; i++) {
+            Shape shape = this.bruteForce.removeRandomShape();
+            assertTrue(this.tree.remove(shape));
+            assertFalse(this.tree.remove(shape));
+        }
+
+        for (Shape shape : this.bruteForce.getShapes()) {
+            if (this.bruteForce.getRandom().nextBoolean()) {
+                int layer = this.bruteForce.randomBits();
+                int mask = this.bruteForce.randomBits();
+
+                this.tree.setLayer(shape, layer);
+                this.tree.setMask(shape, mask);
+                this.bruteForce.setLayerAndMask(shape, layer, mask);
+            }
+        }
+
+        assertEquals(this.bruteForce.getShapes().size(), this.tree.size());
+        this.assertPairsMatch();
+
+        // Reuses the freed nodes
+        for (int i = 0; i < SHAPES / 3; i++) {
+            this.addRandomShape();
+        }
+
+        this.bruteForce.moveSome(0.5f);
+        this.tree.update();
+        this.assertPairsMatch();
+    }
+
+    @Test
+    void testTreeStaysBalanced() {
+        // Shapes added in order along a line would make a list out of an unbalanced tree
+        for (int i = 0; i < 1024; i++) {
+            Shape shape = this.bruteForce.addRandomShape();
+            shape.getTransform().setPos(i, 0);
+            this.tree.add(shape);
+        }
+
+        assertTrue(this.tree.getHeight() <= 20, "Height: " + this.tree.getHeight());
+    }
+
+    @Test
+    void testQueriesMatchBruteForce() {
+        this.fill();
+        this.bruteForce.moveSome(0.5f);
+        this.tree.update();
+
+        Random random = this.bruteForce.getRandom();
+        List<Shape> found = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 2 - 0.5f;
+            float y = random.nextFloat() * 2 - 0.5f;
+            AABB region = new AABB(x, y, x + random.nextFloat() * 0.5f, y + random.nextFloat() * 0.5f);
+
+            found.clear();
+            this.tree.queryRegion(region, found);
+            assertTrue(BruteForce.sameShapes(this.bruteForce.region(region), found));
+
+            found.clear();
+            this.tree.queryPoint(x, y, found);
+            assertTrue(BruteForce.sameShapes(this.bruteForce.region(new AABB(x, y, x, y)), found));
+
+            float endX = random.nextFloat() * 2 - 0.5f;
+            float endY = random.nextFloat() * 2 - 0.5f;
+
+            found.clear();
+            this.tree.raycast(x, y, endX, endY, found);
+            assertTrue(BruteForce.sameShapes(this.segmentBruteForce(x, y, endX, endY), found));
+        }
+    }
+
+    @Test
+    void testAddTwiceThrows() {
+        Shape shape = this.addRandomShape();
+
+        assertThrows(IllegalArgumentException.class, () -> this.tree.add(shape));
+    }
+
+    /**
+     * @return Every shape whose bounds are crossed by the segment, found by clipping the segment to each box.
+     */
+    private Set<Shape> segmentBruteForce(float x1, float y1, float x2, float y2) {
+        Set<Shape> found = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (Shape shape : this.bruteForce.getShapes()) {
+            AABB bounds = BruteForce.bounds(shape);
+
+            double[] range = {0, 1};
+
+            if (clip(x1, x2 - x1, bounds.minX, bounds.maxX, range) && clip(y1, y2 - y1, bounds.minY, bounds.maxY, range)) {
+                found.add(shape);
+            }
+        }
+
+        return found;
+    }
+
+    private static boolean clip(double start, double length, double min, double max, double[] range) {
+        if (length == 0) {
+            return start >= min && start <= max;
+        }
+
+        double t1 = (min - start) / length;
+        double t2 = (max - start) / length;
+
+        range[0] = Math.max(range[0], Math.min(t1, t2));
+        range[1] = Math.min(range[1], Math.max(t1, t2));
+
+        return range[0] <= range[1];
+    }
+
+    private void fill() {
+        for (int i = 0; i < SHAPES; i++) {
+            this.addRandomShape();
+        }
+    }
+
+    private Shape addRandomShape() {
+        Shape shape = this.bruteForce.addRandomShape();
+        this.tree.add(shape, this.bruteForce.getLayer(shape), this.bruteForce.getMask(shape));
+
+        return shape;
+    }
+
+    private void assertPairsMatch() {
+        PairBuffer pairs = new PairBuffer();
+
+        this.tree.findCandidatePairs(pairs);
+        assertEquals(this.bruteForce.candidatePairs(), this.bruteForce.toKeys(pairs));
+
+        pairs.clear();
+        this.tree.findCollisions(pairs);
+        assertEquals(this.bruteForce.collisions(), this.bruteForce.toKeys(pairs));
+    }
+}
@@ -0,0 +1,192 @@
+package jangl.collision;
+
+import jangl.coords.WorldCoords;
+import jangl.shapes.Circle;
+import jangl.shapes.Rect;
+import jangl.shapes.Shape;
+import jangl.shapes.Triangle;
+import jangl.util.AABB;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keeps the same shapes, layers, and masks as a broad phase under test and answers its queries by checking every
+ * shape or pair of shapes.
+ */
+class BruteForce {
+    private final Random random;
+    private final List<Shape> shapes;
+    private final Map<Shape, Integer> indices;
+    private final Map<Shape, Integer> layers;
+    private final Map<Shape, Integer> masks;
+    private int nextIndex;
+
+    BruteForce(long seed) {
+        this.random = new Random(seed);
+        this.shapes = new ArrayList<>();
+        this.indices = new IdentityHashMap<>();
+        this.layers = new IdentityHashMap<>();
+        this.masks = new IdentityHashMap<>();
+    }
+
+    Random getRandom() {
+        return this.random;
+    }
+
+    List<Shape> getShapes() {
+        return this.shapes;
+    }
+
+    /**
+     * @return A new random shape on random layers, which is tracked until it is removed.
+     */
+    Shape addRandomShape() {
+        WorldCoords position = new WorldCoords(this.random.nextFloat(), this.random.nextFloat());
+
+        // A few large shapes cover many cells
+        float size = this.random.nextInt(20) == 0 ? 0.4f : 0.02f + this.random.nextFloat() * 0.08f;
+
+        Shape shape = switch (this.random.nextInt(3)) {
+            case 0 -> new Rect(position, size, size * (0.5f + this.random.nextFloat()));
+            case 1 -> new Triangle(position, new WorldCoords(position.x + size, position.y), new WorldCoords(position.x, position.y + size));
+            default -> new Circle(position, size / 2, 12);
+        };
+
+        this.shapes.add(shape);
+        this.indices.put(shape, this.nextIndex++);
+        this.setLayerAndMask(shape, this.randomBits(), this.randomBits());
+
+        return shape;
+    }
+
+    Shape removeRandomShape() {
+        Shape shape = this.shapes.remove(this.random.nextInt(this.shapes.size()));
+        this.layers.remove(shape);
+        this.masks.remove(shape);
+
+        return shape;
+    }
+
+    void setLayerAndMask(Shape shape, int layer, int mask) {
+        this.layers.put(shape, layer);
+        this.masks.put(shape, mask);
+    }
+
+    int getLayer(Shape shape) {
+        return this.layers.get(shape);
+    }
+
+    int getMask(Shape shape) {
+        return this.masks.get(shape);
+    }
+
+    int randomBits() {
+        return 1 + this.random.nextInt(7);
+    }
+
+    /**
+     * Shifts and rotates about two thirds of the shapes.
+     *
+     * @param distance The farthest a shape moves on each axis.
+     */
+    void moveSome(float distance) {
+        for (Shape shape : this.shapes) {
+            if (this.random.nextInt(3) == 0) {
+                continue;
+            }
+
+            shape.getTransform().shift((this.random.nextFloat() - 0.5f) * distance, (this.random.nextFloat() - 0.5f) * distance);
+            shape.getTransform().rotate(this.random.nextFloat());
+        }
+    }
+
+    /**
+     * @return The keys of every pair with overlapping bounds and compatible layers.
+     */
+    Set<Long> candidatePairs() {
+        return this.pairs(false);
+    }
+
+    /**
+     * @return The keys of every pair with compatible layers that collides according to Shape.collides().
+     */
+    Set<Long> collisions() {
+        return this.pairs(true);
+    }
+
+    private Set<Long> pairs(boolean exact) {
+        Set<Long> keys = new HashSet<>();
+
+        for (int i = 0; i < this.shapes.size(); i++) {
+            for (int j = i + 1; j < this.shapes.size(); j++) {
+                Shape shape1 = this.shapes.get(i);
+                Shape shape2 = this.shapes.get(j);
+
+                if ((this.getLayer(shape1) & this.getMask(shape2)) == 0 || (this.getLayer(shape2) & this.getMask(shape1)) == 0) {
+                    continue;
+                }
+
+                if (!bounds(shape1).intersects(bounds(shape2))) {
+                    continue;
+                }
+
+                if (!exact || Shape.collides(shape1, shape2)) {
+                    keys.add(this.pairKey(shape1, shape2));
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * @return Every shape whose bounds overlap the region.
+     */
+    Set<Shape> region(AABB region) {
+        Set<Shape> found = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (Shape shape : this.shapes) {
+            if (bounds(shape).intersects(region)) {
+                found.add(shape);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @return The pairs as keys that don't depend on the order of the shapes. Fails if a pair is reported twice.
+     */
+    Set<Long> toKeys(PairBuffer pairs) {
+        Set<Long> keys = new HashSet<>();
+
+        for (int i = 0; i < pairs.size(); i++) {
+            assertTrue(keys.add(this.pairKey(pairs.getFirst(i), pairs.getSecond(i))), "A pair was reported twice");
+        }
+
+        return keys;
+    }
+
+    /**
+     * @return If every shape in the list is in the expected set, and no shape is in the list twice.
+     */
+    static boolean sameShapes(Set<Shape> expected, List<Shape> found) {
+        Set<Shape> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+        unique.addAll(found);
+
+        return unique.size() == found.size() && unique.equals(expected);
+    }
+
+    static AABB bounds(Shape shape) {
+        return shape.getWorldBounds(new AABB());
+    }
+
+    private long pairKey(Shape shape1, Shape shape2) {
+        long index1 = this.indices.get(shape1);
+        long index2 = this.indices.get(shape2);
+
+        return Math.min(index1, index2) << 32 | Math.max(index1, index2);
+    }
+}
@@ -0,0 +1,128 @@
+package jangl.collision;
+
+import jangl.shapes.Shape;
+import jangl.util.AABB;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollisionWorldTest {
+    private static final int SHAPES = 300;
+
+    private final BruteForce bruteForce = new BruteForce(42);
+    private final CollisionWorld world = new CollisionWorld(0.1f);
+
+    @Test
+    void testPairsMatchBruteForce() {
+        this.fill();
+        this.assertPairsMatch();
+
+        for (int frame = 0; frame < 10; frame++) {
+            this.bruteForce.moveSome(0.05f);
+            this.world.update();
+            this.assertPairsMatch();
+        }
+    }
+
+    @Test
+    void testFarMovesMatchBruteForce() {
+        this.fill();
+
+        // Moves far enough that most cells become empty and the table is rebuilt
+        for (int frame = 0; frame < 5; frame++) {
+            this.bruteForce.moveSome(20);
+            this.world.update();
+            this.assertPairsMatch();
+        }
+    }
+
+    @Test
+    void testRemoveAndLayerChangesMatchBruteForce() {
+        this.fill();
+
+        for (int i = 0; i < SHAPES / 3; i++) {
+            Shape shape = this.bruteForce.removeRandomShape();
+            assertTrue(this.world.remove(shape));
+            assertFalse(this.world.remove(shape));
+        }
+
+        for (Shape shape : this.bruteForce.getShapes()) {
+            if (this.bruteForce.getRandom().nextBoolean()) {
+                int layer = this.bruteForce.randomBits();
+                int mask = this.bruteForce.randomBits();
+
+                this.world.setLayer(shape, layer);
+                this.world.setMask(shape, mask);
+                this.bruteForce.setLayerAndMask(shape, layer, mask);
+            }
+        }
+
+        assertEquals(this.bruteForce.getShapes().size(), this.world.size());
+        this.assertPairsMatch();
+
+        // Reuses the freed proxies
+        for (int i = 0; i < SHAPES / 3; i++) {
+            this.addRandomShape();
+        }
+
+        this.bruteForce.moveSome(0.05f);
+        this.world.update();
+        this.assertPairsMatch();
+    }
+
+    @Test
+    void testRegionQueriesMatchBruteForce() {
+        this.fill();
+        this.bruteForce.moveSome(0.05f);
+        this.world.update();
+
+        Random random = this.bruteForce.getRandom();
+        List<Shape> found = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 2 - 0.5f;
+            float y = random.nextFloat() * 2 - 0.5f;
+            AABB region = new AABB(x, y, x + random.nextFloat() * 0.5f, y + random.nextFloat() * 0.5f);
+
+            found.clear();
+            this.world.queryRegion(region, found);
+
+            assertTrue(BruteForce.sameShapes(this.bruteForce.region(region), found));
+        }
+    }
+
+    @Test
+    void testAddTwiceThrows() {
+        Shape shape = this.addRandomShape();
+
+        assertThrows(IllegalArgumentException.class, () -> this.world.add(shape));
+    }
+
+    private void fill() {
+        for (int i = 0; i < SHAPES; i++) {
+            this.addRandomShape();
+        }
+    }
+
+    private Shape addRandomShape() {
+        Shape shape = this.bruteForce.addRandomShape();
+        this.world.add(shape, this.bruteForce.getLayer(shape), this.bruteForce.getMask(shape));
+
+        return shape;
+    }
+
+    private void assertPairsMatch() {
+        PairBuffer pairs = new PairBuffer();
+
+        this.world.findCandidatePairs(pairs);
+        assertEquals(this.bruteForce.candidatePairs(), this.bruteForce.toKeys(pairs));
+
+        pairs.clear();
+        this.world.findCollisions(pairs);
+        assertEquals(this.bruteForce.collisions(), this.bruteForce.toKeys(pairs));
+    }
+}
@@ -0,0 +1,163 @@
+package jangl.collision;
+
+import jangl.shapes.CollisionKernel;
+import jangl.shapes.Shape;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelColliderTest {
+    private static final int SHAPES = 2000;
+
+    private final BruteForce bruteForce = new BruteForce(99);
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutDownPool() {
+        this.pool.shutdown();
+    }
+
+    @Test
+    void testSameCollisionsAsSerial() {
+        PairBuffer candidates = this.findCandidates();
+
+        // One partition runs every pair in one task, and more partitions than workers are balanced by the pool
+        for (ParallelCollider collider : new ParallelCollider[]{
+                new ParallelCollider(this.pool, 1),
+                new ParallelCollider(this.pool, 7),
+                new ParallelCollider(this.pool)
+        }) {
+            // Runs twice since the buffers are reused and the second run uses the cached axes
+            for (int run = 0; run < 2; run++) {
+                PairBuffer parallel = new PairBuffer();
+                collider.findCollisions(candidates, parallel);
+
+                assertSamePairs(serialCollisions(candidates), parallel);
+            }
+        }
+    }
+
+    @Test
+    void testFewPairsRunOnCaller() {
+        PairBuffer candidates = this.findCandidates();
+        PairBuffer few = new PairBuffer();
+
+        for (int i = 0; i < ParallelCollider.MIN_PARALLEL_PAIRS - 1; i++) {
+            few.add(candidates.getFirst(i), candidates.getSecond(i));
+        }
+
+        PairBuffer out = new PairBuffer();
+        new ParallelCollider(this.pool).findCollisions(few, out);
+
+        assertSamePairs(serialCollisions(few), out);
+    }
+
+    @Test
+    void testCachedAxesFoundAgainNextFrame() {
+        PairBuffer candidates = separatedPairs(this.findCandidates());
+        ParallelCollider collider = new ParallelCollider(this.pool);
+
+        // A single kernel sees every pair, so it finds every axis it cached on the first run
+        CollisionKernel serial = new CollisionKernel();
+
+        for (int run = 0; run < 2; run++) {
+            serial.getAxisCache().resetCounters();
+
+            for (int i = 0; i < candidates.size(); i++) {
+                serial.collides(candidates.getFirst(i), candidates.getSecond(i));
+            }
+
+            for (int partition = 0; partition < collider.getPartitionCount(); partition++) {
+                collider.getAxisCache(partition).resetCounters();
+            }
+
+            collider.findCollisions(candidates, new PairBuffer());
+        }
+
+        long hits = 0;
+
+        for (int partition = 0; partition < collider.getPartitionCount(); partition++) {
+            hits += collider.getAxisCache(partition).getHits();
+        }
+
+        // The pairs go to the same partitions every run no matter which worker tests them
+        assertTrue(serial.getAxisCache().getHits() > 0);
+        assertTrue(hits >= serial.getAxisCache().getHits(), hits + " < " + serial.getAxisCache().getHits());
+    }
+
+    @Test
+    void testAppendsToOutput() {
+        PairBuffer candidates = this.findCandidates();
+        PairBuffer out = new PairBuffer();
+        Shape first = candidates.getFirst(0);
+        out.add(first, first);
+
+        new ParallelCollider(this.pool, 16).findCollisions(candidates, out);
+
+        assertSame(first, out.getFirst(0));
+        assertEquals(serialCollisions(candidates).size() + 1, out.size());
+    }
+
+    @Test
+    void testInvalidPartitionCountThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelCollider(this.pool, 0));
+    }
+
+    private PairBuffer findCandidates() {
+        CollisionWorld world = new CollisionWorld(0.1f);
+
+        for (int i = 0; i < SHAPES; i++) {
+            Shape shape = this.bruteForce.addRandomShape();
+            world.add(shape);
+        }
+
+        PairBuffer candidates = new PairBuffer();
+        world.findCandidatePairs(candidates);
+
+        assertTrue(candidates.size() > 1000, "Too few candidates: " + candidates.size());
+        return candidates;
+    }
+
+    /**
+     * @return The candidates that don't collide, which are the pairs that get a cached axis.
+     */
+    private static PairBuffer separatedPairs(PairBuffer candidates) {
+        PairBuffer separated = new PairBuffer();
+
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!Shape.collides(candidates.getFirst(i), candidates.getSecond(i))) {
+                separated.add(candidates.getFirst(i), candidates.getSecond(i));
+            }
+        }
+
+        assertTrue(separated.size() >= ParallelCollider.MIN_PARALLEL_PAIRS);
+        return separated;
+    }
+
+    private static PairBuffer serialCollisions(PairBuffer candidates) {
+        PairBuffer collisions = new PairBuffer();
+
+        for (int i = 0; i < candidates.size(); i++) {
+            if (Shape.collides(candidates.getFirst(i), candidates.getSecond(i))) {
+                collisions.add(candidates.getFirst(i), candidates.getSecond(i));
+            }
+        }
+
+        return collisions;
+    }
+
+    /**
+     * Checks that both buffers hold the same pairs in the same order.
+     */
+    private static void assertSamePairs(PairBuffer expected, PairBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.getFirst(i), actual.getFirst(i));
+            assertSame(expected.getSecond(i), actual.getSecond(i));
+        }
+    }
+}
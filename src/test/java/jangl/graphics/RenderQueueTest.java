@@ -0,0 +1,143 @@
+package jangl.graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderQueueTest {
+    private final RenderQueue queue = new RenderQueue();
+
+    /**
+     * Every draw and bind in the order they happened.
+     */
+    private final List<String> events = new ArrayList<>();
+
+    @Test
+    void testLayersDrawnInOrder() {
+        Random random = new Random(3);
+        List<FakeDraw> draws = new ArrayList<>();
+
+        // More than the initial capacity, so the queue grows
+        for (int i = 0; i < 1000; i++) {
+            FakeDraw draw = new FakeDraw(String.valueOf(i), random.nextInt(256), random.nextFloat() * 10 - 5);
+            draws.add(draw);
+            this.queue.submit(draw, null, null, draw.layer, draw.depth, random.nextBoolean());
+        }
+
+        this.queue.flush();
+
+        List<FakeDraw> drawn = this.drawnOrder(draws);
+        assertEquals(draws.size(), drawn.size());
+
+        for (int i = 1; i < drawn.size(); i++) {
+            assertTrue(drawn.get(i - 1).layer <= drawn.get(i).layer);
+        }
+
+        assertEquals(0, this.queue.size());
+    }
+
+    @Test
+    void testOpaqueGroupedByBindableInSubmissionOrder() {
+        FakeBindable texture1 = new FakeBindable("texture1");
+        FakeBindable texture2 = new FakeBindable("texture2");
+
+        for (int i = 0; i < 4; i++) {
+            this.queue.submit(new FakeDraw("draw" + i), i % 2 == 0 ? texture1 : texture2, 0, 0);
+        }
+
+        this.queue.flush();
+
+        assertEquals(List.of(
+                "bind texture1", "draw0", "draw2", "unbind texture1",
+                "bind texture2", "draw1", "draw3", "unbind texture2"
+        ), this.events);
+
+        assertEquals(4, this.queue.getStateChangesBeforeSort());
+        assertEquals(2, this.queue.getStateChangesAfterSort());
+    }
+
+    @Test
+    void testTransparentAfterOpaqueFurthestFirst() {
+        FakeBindable texture = new FakeBindable("texture");
+
+        this.queue.submit(new FakeDraw("near"), null, texture, 0, -2, true);
+        this.queue.submit(new FakeDraw("far"), null, texture, 0, 3.5f, true);
+        this.queue.submit(new FakeDraw("opaque"), null, null, 0, 100, false);
+        this.queue.submit(new FakeDraw("middle"), null, texture, 0, 0, true);
+        this.queue.submit(new FakeDraw("top"), 1);
+
+        this.queue.flush();
+
+        assertEquals(List.of(
+                "opaque", "bind texture", "far", "middle", "near", "unbind texture", "top"
+        ), this.events);
+    }
+
+    @Test
+    void testClearDropsDraws() {
+        this.queue.submit(new FakeDraw("draw"), 0);
+        this.queue.clear();
+        this.queue.flush();
+
+        assertTrue(this.events.isEmpty());
+    }
+
+    @Test
+    void testInvalidLayerThrows() {
+        assertThrows(IllegalArgumentException.class, () -> this.queue.submit(new FakeDraw("draw"), -1));
+        assertThrows(IllegalArgumentException.class, () -> this.queue.submit(new FakeDraw("draw"), 256));
+    }
+
+    private List<FakeDraw> drawnOrder(List<FakeDraw> draws) {
+        List<FakeDraw> drawn = new ArrayList<>();
+
+        for (String event : this.events) {
+            drawn.add(draws.get(Integer.parseInt(event)));
+        }
+
+        return drawn;
+    }
+
+    private class FakeDraw implements Drawable {
+        private final String name;
+        private final int layer;
+        private final float depth;
+
+        private FakeDraw(String name) {
+            this(name, 0, 0);
+        }
+
+        private FakeDraw(String name, int layer, float depth) {
+            this.name = name;
+            this.layer = layer;
+            this.depth = depth;
+        }
+
+        @Override
+        public void draw() {
+            RenderQueueTest.this.events.add(this.name);
+        }
+    }
+
+    private class FakeBindable implements Bindable {
+        private final String name;
+
+        private FakeBindable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void bind() {
+            RenderQueueTest.this.events.add("bind " + this.name);
+        }
+
+        @Override
+        public void unbind() {
+            RenderQueueTest.this.events.add("unbind " + this.name);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package jangl.graphics.batching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FreeListTest {
+    private final DynamicBatch.FreeList freeList = new DynamicBatch.FreeList();
+
+    @Test
+    void testNeighborsMerge() {
+        // The last 4 slots stay in use, so the freed ranges never touch the end
+        int end = 20;
+
+        end = this.freeList.free(4, 4, end);
+        end = this.freeList.free(12, 4, end);
+
+        // Merges with the range before and the range after it
+        end = this.freeList.free(8, 4, end);
+        assertEquals(20, end);
+
+        assertEquals(4, this.freeList.allocate(12));
+        assertTrue(this.freeList.isEmpty());
+    }
+
+    @Test
+    void testFirstFitSplitsRange() {
+        int end = this.freeList.free(2, 6, 10);
+
+        assertEquals(2, this.freeList.allocate(2));
+        assertEquals(-1, this.freeList.allocate(5));
+        assertEquals(4, this.freeList.allocate(4));
+        assertTrue(this.freeList.isEmpty());
+        assertEquals(10, end);
+    }
+
+    @Test
+    void testFreeingEndShrinksUsedSpace() {
+        int end = 12;
+
+        end = this.freeList.free(4, 4, end);
+        assertEquals(12, end);
+
+        // Touches the end and merges with the range before it, so both are given back
+        end = this.freeList.free(8, 4, end);
+        assertEquals(4, end);
+        assertTrue(this.freeList.isEmpty());
+
+        assertEquals(4, this.freeList.free(4, 0, end));
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(11);
+        BruteForceSpace space = new BruteForceSpace();
+        List<int[]> allocated = new ArrayList<>();
+        int end = 0;
+
+        for (int step = 0; step < 5000; step++) {
+            if (allocated.isEmpty() || random.nextInt(5) < 3) {
+                int count = 1 + random.nextInt(8);
+                int start = this.freeList.allocate(count);
+
+                assertEquals(space.firstFit(count), start);
+
+                // Nothing is free that is big enough, so the space is taken from the end
+                if (start == -1) {
+                    start = end;
+                    end += count;
+                }
+
+                space.take(start, count);
+                allocated.add(new int[]{start, count});
+            } else {
+                int[] range = allocated.remove(random.nextInt(allocated.size()));
+
+                space.give(range[0], range[1]);
+                end = this.freeList.free(range[0], range[1], end);
+
+                assertEquals(space.end(), end);
+            }
+        }
+    }
+
+    /**
+     * Tracks which slots are used one at a time, and finds free space by scanning every slot.
+     */
+    private static class BruteForceSpace {
+        private final boolean[] used = new boolean[100_000];
+        private int end;
+
+        void take(int start, int count) {
+            for (int i = start; i < start + count; i++) {
+                assertFalse(this.used[i], "Slot " + i + " was given out twice");
+                this.used[i] = true;
+            }
+
+            this.end = Math.max(this.end, start + count);
+        }
+
+        void give(int start, int count) {
+            for (int i = start; i < start + count; i++) {
+                this.used[i] = false;
+            }
+
+            while (this.end > 0 && !this.used[this.end - 1]) {
+                this.end--;
+            }
+        }
+
+        int end() {
+            return this.end;
+        }
+
+        /**
+         * @return The start of the first run of free slots before the end that has room for the count, or -1.
+         */
+        int firstFit(int count) {
+            int runStart = 0;
+
+            for (int i = 0; i < this.end; i++) {
+                if (this.used[i]) {
+                    runStart = i + 1;
+                } else if (i - runStart + 1 >= count) {
+                    return runStart;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
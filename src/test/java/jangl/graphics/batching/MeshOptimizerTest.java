@@ -0,0 +1,153 @@
+package jangl.graphics.batching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshOptimizerTest {
+    private static final int SIZE = 32;
+    private static final int[] QUAD_INDICES = {0, 1, 2, 2, 3, 0};
+    private static final float[] QUAD_TEX_COORDS = {0, 0, 1, 0, 1, 1, 0, 1};
+
+    @Test
+    void testTrianglesPreserved() {
+        for (BatchBuilder builder : new BatchBuilder[]{grid(false), grid(true), separateQuads()}) {
+            List<String> before = triangles(builder);
+            builder.optimize();
+
+            assertEquals(before, triangles(builder));
+        }
+    }
+
+    @Test
+    void testAcmrNotWorse() {
+        for (BatchBuilder builder : new BatchBuilder[]{grid(false), grid(true), separateQuads()}) {
+            float acmr16 = builder.calculateAcmr(16);
+            float acmr32 = builder.calculateAcmr(32);
+
+            builder.optimize();
+
+            assertTrue(builder.calculateAcmr(16) <= acmr16);
+            assertTrue(builder.calculateAcmr(32) <= acmr32);
+        }
+
+        // Welding lets the quads of a grid share corners, so the optimized grid shades far fewer vertices
+        BatchBuilder shuffled = grid(true);
+        assertTrue(shuffled.optimize().calculateAcmr(16) < 1, () -> "ACMR " + shuffled.calculateAcmr(16));
+    }
+
+    @Test
+    void testWeldsSharedCorners() {
+        BatchBuilder builder = grid(true).optimize();
+
+        assertEquals((SIZE + 1) * (SIZE + 1), builder.getVertexCount());
+
+        // Separate quads have different texture coords at each shared corner, so nothing is welded
+        assertEquals(SIZE * SIZE * 4, separateQuads().optimize().getVertexCount());
+    }
+
+    @Test
+    void testVerticesInOrderOfFirstUse() {
+        int[] indices = grid(true).optimize().getIndices();
+        int nextVertex = 0;
+
+        for (int index : indices) {
+            assertTrue(index <= nextVertex);
+
+            if (index == nextVertex) {
+                nextVertex++;
+            }
+        }
+    }
+
+    @Test
+    void testCountCacheMisses() {
+        int[] indices = {0, 1, 2, 2, 1, 3};
+
+        assertEquals(4, MeshOptimizer.countCacheMisses(indices, 3));
+
+        // 0 and 1 leave a cache of 2 before they are used again
+        assertEquals(6, MeshOptimizer.countCacheMisses(new int[]{0, 1, 2, 0, 1, 2}, 2));
+        assertEquals(0, new BatchBuilder().calculateAcmr(16));
+    }
+
+    /**
+     * @return The corners of every triangle as text, each triangle starting from its smallest corner so the winding is
+     * kept, and sorted.
+     */
+    private static List<String> triangles(BatchBuilder builder) {
+        float[] vertices = builder.getVertices();
+        float[] texCoords = builder.getTexCoords();
+        int[] indices = builder.getIndices();
+        List<String> triangles = new ArrayList<>(indices.length / 3);
+
+        for (int i = 0; i < indices.length; i += 3) {
+            String[] corners = new String[3];
+
+            for (int corner = 0; corner < 3; corner++) {
+                int vertex = indices[i + corner];
+
+                corners[corner] = vertices[vertex * 2] + "," + vertices[vertex * 2 + 1] + ","
+                        + texCoords[vertex * 2] + "," + texCoords[vertex * 2 + 1];
+            }
+
+            int first = 0;
+
+            for (int corner = 1; corner < 3; corner++) {
+                if (corners[corner].compareTo(corners[first]) < 0) {
+                    first = corner;
+                }
+            }
+
+            triangles.add(corners[first] + " " + corners[(first + 1) % 3] + " " + corners[(first + 2) % 3]);
+        }
+
+        triangles.sort(null);
+        return triangles;
+    }
+
+    /**
+     * @param shuffled True to add the quads in a random order.
+     * @return A grid of quads whose texture coords continue from one quad to the next.
+     */
+    private static BatchBuilder grid(boolean shuffled) {
+        Integer[] order = new Integer[SIZE * SIZE];
+        Arrays.setAll(order, i -> i);
+
+        if (shuffled) {
+            Collections.shuffle(Arrays.asList(order), new Random(2));
+        }
+
+        BatchBuilder builder = new BatchBuilder();
+
+        for (int tile : order) {
+            int column = tile % SIZE;
+            int row = tile / SIZE;
+
+            float[] texCoords = {column, row, column + 1, row, column + 1, row + 1, column, row + 1};
+            builder.addObject(quad(column, row), QUAD_INDICES, texCoords);
+        }
+
+        return builder;
+    }
+
+    private static BatchBuilder separateQuads() {
+        BatchBuilder builder = new BatchBuilder();
+
+        for (int tile = 0; tile < SIZE * SIZE; tile++) {
+            builder.addObject(quad(tile % SIZE, tile / SIZE), QUAD_INDICES, QUAD_TEX_COORDS);
+        }
+
+        return builder;
+    }
+
+    private static float[] quad(int column, int row) {
+        return new float[]{column, -row, column + 1, -row, column + 1, -row - 1, column, -row - 1};
+    }
+}
@@ -0,0 +1,121 @@
+package jangl.graphics.models;
+
+import jangl.graphics.models.enums.AttribType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexFormatTest {
+    private static final short POSITIVE_INFINITY = 0x7C00;
+    private static final short NEGATIVE_INFINITY = (short) 0xFC00;
+
+    @Test
+    void testEveryHalfFloatRoundTrips() {
+        for (int bits = 0; bits <= 0xFFFF; bits++) {
+            short half = (short) bits;
+
+            // NaN has many bit patterns, so only check that it stays NaN
+            if (isNaN(half)) {
+                assertTrue(isNaN(VertexFormat.toHalfFloat(toFloat(half))));
+                continue;
+            }
+
+            assertEquals(half, VertexFormat.toHalfFloat(toFloat(half)), "Bits: " + Integer.toHexString(bits));
+        }
+    }
+
+    @Test
+    void testRoundsToNearest() {
+        Random random = new Random(5);
+
+        for (int i = 0; i < 100_000; i++) {
+            // Covers the subnormal half floats and the largest ones
+            float value = (float) (Math.pow(2, random.nextDouble() * 40 - 24) * (random.nextBoolean() ? 1 : -1));
+
+            if (Math.abs(value) >= 65504) {
+                continue;
+            }
+
+            short half = VertexFormat.toHalfFloat(value);
+            double error = Math.abs(toFloat(half) - (double) value);
+
+            // The half floats on either side have the same sign, so they are next to it in bits
+            for (int neighbor : new int[]{half - 1, half + 1}) {
+                short other = (short) neighbor;
+
+                if (!isNaN(other) && (other & 0x8000) == (half & 0x8000)) {
+                    double otherError = Math.abs(toFloat(other) - (double) value);
+                    assertTrue(error <= otherError, () -> value + " became " + toFloat(half) + ", not " + toFloat(other));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSpecialValues() {
+        assertEquals(0, VertexFormat.toHalfFloat(0));
+        assertEquals((short) 0x8000, VertexFormat.toHalfFloat(-0f));
+        assertEquals(0x3C00, VertexFormat.toHalfFloat(1));
+        assertEquals(0x7BFF, VertexFormat.toHalfFloat(65504));
+
+        assertEquals(POSITIVE_INFINITY, VertexFormat.toHalfFloat(Float.POSITIVE_INFINITY));
+        assertEquals(NEGATIVE_INFINITY, VertexFormat.toHalfFloat(Float.NEGATIVE_INFINITY));
+        assertEquals(POSITIVE_INFINITY, VertexFormat.toHalfFloat(1e6f));
+        assertEquals(NEGATIVE_INFINITY, VertexFormat.toHalfFloat(-1e6f));
+        assertTrue(isNaN(VertexFormat.toHalfFloat(Float.NaN)));
+
+        // Smaller than half of the smallest subnormal half float
+        assertEquals(0, VertexFormat.toHalfFloat(1e-9f));
+    }
+
+    @Test
+    void testNormalizedByteTexCoordsThrow() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new VertexFormat(true, AttribType.FLOAT, AttribType.NORMALIZED_BYTE, false)
+        );
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new VertexFormat(true, AttribType.NORMALIZED_SHORT, AttribType.FLOAT, false)
+        );
+    }
+
+    @Test
+    void testInterleavedLayout() {
+        VertexFormat format = new VertexFormat(true, AttribType.HALF_FLOAT, AttribType.NORMALIZED_SHORT, true);
+
+        assertEquals(4, format.getTexCoordOffset());
+        assertEquals(8, format.getColorOffset());
+        assertEquals(12, format.getStride());
+        assertEquals(16, VertexFormat.SEPARATE.getVertexSize());
+        assertEquals(12, VertexFormat.COMPACT.getVertexSize());
+        assertEquals(8, VertexFormat.HALF.getVertexSize());
+    }
+
+    private static boolean isNaN(short half) {
+        return (half & 0x7C00) == 0x7C00 && (half & 0x3FF) != 0;
+    }
+
+    /**
+     * Converts the bits of a half float to the float it stands for, which is always exact.
+     */
+    private static float toFloat(short half) {
+        int exponent = (half >>> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+        float magnitude;
+
+        if (exponent == 0x1F) {
+            magnitude = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        } else if (exponent == 0) {
+            magnitude = mantissa * 0x1p-24f;
+        } else {
+            magnitude = (1 + mantissa / 1024f) * (float) Math.pow(2, exponent - 15);
+        }
+
+        // Negating keeps the sign of -0
+        return (half & 0x8000) != 0 ? -magnitude : magnitude;
+    }
+}
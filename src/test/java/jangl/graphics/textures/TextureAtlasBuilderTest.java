@@ -0,0 +1,118 @@
+package jangl.graphics.textures;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextureAtlasBuilderTest {
+    private final TextureAtlasBuilder atlasBuilder = new TextureAtlasBuilder();
+
+    @Test
+    void testRegionsDoNotOverlap() {
+        this.atlasBuilder.setPageSize(512).setPadding(2).setExtrusion(1);
+        List<AtlasRegion> regions = this.addRandomImages(800);
+
+        int pageCount = this.atlasBuilder.pack();
+        assertTrue(pageCount > 1, "Expected the images to need more than one page");
+
+        int border = this.atlasBuilder.getExtrusion();
+        int gap = this.atlasBuilder.getPadding();
+
+        for (int i = 0; i < regions.size(); i++) {
+            AtlasRegion region = regions.get(i);
+
+            assertTrue(region.isPacked());
+            assertTrue(region.getPage() < pageCount);
+            assertTrue(region.getX() - border >= 0 && region.getY() - border >= 0);
+            assertTrue(region.getU2() <= 1 && region.getV2() <= 1);
+
+            for (int j = i + 1; j < regions.size(); j++) {
+                AtlasRegion other = regions.get(j);
+
+                if (region.getPage() != other.getPage()) {
+                    continue;
+                }
+
+                // The extruded edges of two images must be at least the padding apart
+                boolean separated = region.getX() + region.getWidth() + border + gap <= other.getX() - border
+                        || other.getX() + other.getWidth() + border + gap <= region.getX() - border
+                        || region.getY() + region.getHeight() + border + gap <= other.getY() - border
+                        || other.getY() + other.getHeight() + border + gap <= region.getY() - border;
+
+                assertTrue(separated, "Regions " + i + " and " + j + " overlap");
+            }
+        }
+    }
+
+    @Test
+    void testSmallAtlasTrimsPage() {
+        AtlasRegion region = this.atlasBuilder.add(image(30, 20));
+
+        assertEquals(1, this.atlasBuilder.pack());
+
+        // The only image and its extrusion fill the whole trimmed page
+        assertEquals(1, region.getX());
+        assertEquals(1, region.getY());
+        assertEquals(1 / 32f, region.getU1());
+        assertEquals(31 / 32f, region.getU2());
+        assertEquals(1 / 22f, region.getV1());
+        assertEquals(21 / 22f, region.getV2());
+    }
+
+    @Test
+    void testRegionKeepsSizeFromAdd() {
+        TextureBuilder image = image(16, 16);
+        AtlasRegion region = this.atlasBuilder.add(image);
+
+        image.setWidth(64).setHeight(8);
+
+        assertEquals(16, region.getWidth());
+        assertEquals(16, region.getHeight());
+    }
+
+    @Test
+    void testImageLargerThanPageThrows() {
+        this.atlasBuilder.setPageSize(64).add(image(63, 10));
+
+        // The extrusion on both sides makes it 65 pixels wide
+        assertThrows(IllegalStateException.class, this.atlasBuilder::pack);
+    }
+
+    @Test
+    void testTexCoordsBeforePackThrow() {
+        AtlasRegion region = this.atlasBuilder.add(image(8, 8));
+
+        assertThrows(IllegalStateException.class, () -> region.getTexCoords(new float[]{0, 0}));
+    }
+
+    @Test
+    void testImageWithoutDataThrows() {
+        assertThrows(IllegalArgumentException.class, () -> this.atlasBuilder.add(new TextureBuilder()));
+    }
+
+    private List<AtlasRegion> addRandomImages(int count) {
+        Random random = new Random(7);
+        List<AtlasRegion> regions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            regions.add(this.atlasBuilder.add(image(1 + random.nextInt(48), 1 + random.nextInt(48))));
+        }
+
+        return regions;
+    }
+
+    /**
+     * Packing only reads the size of an image, so the pixels are left empty.
+     */
+    private static TextureBuilder image(int width, int height) {
+        return new TextureBuilder()
+                .setImageData(ByteBuffer.allocate(width * height * 4))
+                .setWidth(width)
+                .setHeight(height);
+    }
+}
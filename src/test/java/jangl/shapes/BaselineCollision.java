@@ -0,0 +1,207 @@
+package jangl.shapes;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+
+import java.util.Arrays;
+
+/**
+ * The collision checks as they were written before the collision kernel, kept as a reference for the tests. Every
+ * check can shift the second shape or point by an offset, which the tests use to skip cases that are so close to
+ * touching that float rounding decides the result.
+ */
+final class BaselineCollision {
+    private BaselineCollision() {
+
+    }
+
+    static boolean collides(Shape shape1, Shape shape2, float dx, float dy) {
+        float s1Radius = farthestDistance(shape1.calculateVertices(), shape1.getTransform().getScaleX(), shape1.getTransform().getScaleY())
+                * Math.max(shape1.getTransform().getScaleX(), shape1.getTransform().getScaleY());
+        float s2Radius = farthestDistance(shape2.calculateVertices(), 1, 1)
+                * Math.max(shape2.getTransform().getScaleX(), shape2.getTransform().getScaleY());
+
+        if (!circlesCollide(centerX(shape1), centerY(shape1), s1Radius, centerX(shape2) + dx, centerY(shape2) + dy, s2Radius)) {
+            return false;
+        }
+
+        float[] s1Vertices = worldVertices(shape1, 0, 0);
+        float[] s2Vertices = worldVertices(shape2, dx, dy);
+
+        return !separatedByEdges(s1Vertices, s1Vertices, s2Vertices) && !separatedByEdges(s2Vertices, s1Vertices, s2Vertices);
+    }
+
+    static boolean collides(Shape shape, float x, float y) {
+        float[] vertices = exteriorVertices(shape);
+
+        for (Vector2f axis : edgeAxes(vertices)) {
+            float[] range = project(vertices, axis);
+            float projectedPoint = x * axis.x + y * axis.y;
+
+            if (!(range[1] > projectedPoint && range[0] < projectedPoint)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static boolean collides(Shape shape, Circle circle, float dx, float dy) {
+        float circleX = centerX(circle) + dx;
+        float circleY = centerY(circle) + dy;
+
+        float[] vertices = exteriorVertices(shape);
+        Vector2f[] edgeAxes = edgeAxes(vertices);
+        Vector2f[] axes = Arrays.copyOf(edgeAxes, edgeAxes.length + 1);
+        axes[edgeAxes.length] = new Vector2f(centerX(shape), centerY(shape)).sub(circleX, circleY).normalize().perpendicular().perpendicular();
+
+        float circleRadius = circle.getRadius() * circle.getTransform().getScaleX();
+
+        for (Vector2f axis : axes) {
+            float[] range = project(vertices, axis);
+            float projectedCenter = circleX * axis.x + circleY * axis.y;
+
+            if (!intersects(range[0], range[1], projectedCenter - circleRadius, projectedCenter + circleRadius)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static boolean collides(Circle circle1, Circle circle2, float dx, float dy) {
+        return circlesCollide(
+                centerX(circle1), centerY(circle1), circle1.getRadius() * circle1.getTransform().getScaleX(),
+                centerX(circle2) + dx, centerY(circle2) + dy, circle2.getRadius() * circle2.getTransform().getScaleX()
+        );
+    }
+
+    static boolean collides(Circle circle, float x, float y) {
+        double radiusSquared = Math.pow(circle.getRadius() * circle.getTransform().getScaleX(), 2);
+        double distSquared = Math.pow(centerX(circle) - x, 2) + Math.pow(centerY(circle) - y, 2);
+
+        return distSquared <= radiusSquared;
+    }
+
+    private static boolean circlesCollide(float x1, float y1, float radius1, float x2, float y2, float radius2) {
+        double distSquared = Math.pow(x1 - x2, 2) + Math.pow(y1 - y2, 2);
+        return distSquared <= Math.pow(radius1 + radius2, 2);
+    }
+
+    private static float farthestDistance(float[] vertices, float scaleX, float scaleY) {
+        float farthestX = 0;
+        float farthestY = 0;
+        float farthestDist = -1;
+
+        for (int i = 0; i < vertices.length; i += 2) {
+            float dist = new Vector2f(vertices[i], vertices[i + 1]).distance(0, 0);
+
+            if (dist > farthestDist) {
+                farthestDist = dist;
+                farthestX = vertices[i];
+                farthestY = vertices[i + 1];
+            }
+        }
+
+        return new Vector2f(farthestX * scaleX, farthestY * scaleY).distance(0, 0);
+    }
+
+    private static boolean separatedByEdges(float[] edgeVertices, float[] vertices1, float[] vertices2) {
+        for (Vector2f axis : edgeAxes(edgeVertices)) {
+            float[] range1 = project(vertices1, axis);
+            float[] range2 = project(vertices2, axis);
+
+            if (!intersects(range1[0], range1[1], range2[0], range2[1])) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The normalized edges of the polygon, turned a quarter turn like the original perpendicular() call.
+     */
+    private static Vector2f[] edgeAxes(float[] vertices) {
+        int count = vertices.length / 2;
+        Vector2f[] axes = new Vector2f[count];
+
+        for (int i = 0; i < count; i++) {
+            int last = i == 0 ? count - 1 : i - 1;
+
+            axes[i] = new Vector2f(vertices[i * 2], vertices[i * 2 + 1])
+                    .sub(vertices[last * 2], vertices[last * 2 + 1])
+                    .normalize()
+                    .perpendicular();
+        }
+
+        return axes;
+    }
+
+    private static float[] project(float[] vertices, Vector2f axis) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < vertices.length; i += 2) {
+            float dot = vertices[i] * axis.x + vertices[i + 1] * axis.y;
+            min = Math.min(min, dot);
+            max = Math.max(max, dot);
+        }
+
+        return new float[]{min, max};
+    }
+
+    /**
+     * The exclusive overlap test of the original Range class.
+     */
+    private static boolean intersects(float min1, float max1, float min2, float max2) {
+        return contains(min1, max1, min2, max2) || contains(min2, max2, min1, max1);
+    }
+
+    private static boolean contains(float min, float max, float otherMin, float otherMax) {
+        return otherMax < max && otherMax > min || otherMin < max && otherMin > min;
+    }
+
+    static float[] exteriorVertices(Shape shape) {
+        return exteriorVertices(shape, 0, 0);
+    }
+
+    static float[] exteriorVertices(Shape shape, float dx, float dy) {
+        float[] vertices = worldVertices(shape, dx, dy);
+
+        if (shape instanceof Circle) {
+            return Arrays.copyOfRange(vertices, 2, vertices.length - 2);
+        }
+
+        return vertices;
+    }
+
+    private static float[] worldVertices(Shape shape, float dx, float dy) {
+        Transform transform = shape.getTransform();
+        Matrix4f matrix = new Matrix4f().identity()
+                .translate(transform.getCenterX() + dx, transform.getCenterY() + dy, 0)
+                .rotateAround(new Quaternionf().rotateZ(transform.getRotation()), 0, 0, 0)
+                .scale(transform.getScaleX(), transform.getScaleY(), 1);
+
+        float[] local = shape.calculateVertices();
+        float[] world = new float[local.length];
+
+        for (int i = 0; i < local.length; i += 2) {
+            Vector4f vertex = new Vector4f(local[i], local[i + 1], 0, 1).mul(matrix);
+            world[i] = vertex.x;
+            world[i + 1] = vertex.y;
+        }
+
+        return world;
+    }
+
+    private static float centerX(Shape shape) {
+        return shape.getTransform().getCenterX();
+    }
+
+    private static float centerY(Shape shape) {
+        return shape.getTransform().getCenterY();
+    }
+}
@@ -0,0 +1,65 @@
+package jangl.shapes;
+
+/**
+ * Exact geometry for the tests that treat circles as true circles instead of as the polygons they are drawn as.
+ */
+final class ExactCollision {
+    private ExactCollision() {
+
+    }
+
+    /**
+     * @param vertices The vertices of a convex polygon, in order.
+     * @return If the circle overlaps the polygon or is inside it.
+     */
+    static boolean polygonCollidesCircle(float[] vertices, float circleX, float circleY, float radius) {
+        if (contains(vertices, circleX, circleY)) {
+            return true;
+        }
+
+        int count = vertices.length / 2;
+        double closest = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            int next = (i + 1) % count;
+            closest = Math.min(closest, distanceToSegment(
+                    circleX, circleY,
+                    vertices[i * 2], vertices[i * 2 + 1], vertices[next * 2], vertices[next * 2 + 1]
+            ));
+        }
+
+        return closest <= radius;
+    }
+
+    /**
+     * @return If the point is on the same side of every edge of the convex polygon, whichever way it winds.
+     */
+    private static boolean contains(float[] vertices, double x, double y) {
+        int count = vertices.length / 2;
+        boolean anyPositive = false;
+        boolean anyNegative = false;
+
+        for (int i = 0; i < count; i++) {
+            int next = (i + 1) % count;
+            double edgeX = vertices[next * 2] - vertices[i * 2];
+            double edgeY = vertices[next * 2 + 1] - vertices[i * 2 + 1];
+            double cross = edgeX * (y - vertices[i * 2 + 1]) - edgeY * (x - vertices[i * 2]);
+
+            anyPositive |= cross > 0;
+            anyNegative |= cross < 0;
+        }
+
+        return !(anyPositive && anyNegative);
+    }
+
+    private static double distanceToSegment(double x, double y, double x1, double y1, double x2, double y2) {
+        double lengthX = x2 - x1;
+        double lengthY = y2 - y1;
+        double lengthSquared = lengthX * lengthX + lengthY * lengthY;
+
+        double t = lengthSquared == 0 ? 0 : ((x - x1) * lengthX + (y - y1) * lengthY) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+
+        return Math.hypot(x - (x1 + t * lengthX), y - (y1 + t * lengthY));
+    }
+}
@@ -0,0 +1,368 @@
+package jangl.shapes;
+
+import jangl.coords.WorldCoords;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShapeCollisionTest {
+    private static final int PAIRS = 2000;
+
+    /**
+     * How far the second shape is nudged to check that a random case isn't decided by float rounding.
+     */
+    private static final float NUDGE = 1e-4f;
+
+    private final Random random = new Random(1234);
+
+    @Test
+    void testRandomShapePairs() {
+        int checked = 0;
+
+        for (int i = 0; i < PAIRS; i++) {
+            Shape shape1 = this.randomShape();
+            Shape shape2 = this.randomShape();
+
+            boolean expected = expectedCollides(shape1, shape2, 0, 0);
+
+            if (isRobust(expected, (dx, dy) -> expectedCollides(shape1, shape2, dx, dy))) {
+                assertEquals(expected, Shape.collides(shape1, shape2), () -> describe(shape1, shape2));
+                checked++;
+            }
+        }
+
+        assertTrue(checked > PAIRS * 0.9, "Too few robust cases: " + checked);
+    }
+
+    @Test
+    void testRandomShapeCirclePairs() {
+        int checked = 0;
+
+        for (int i = 0; i < PAIRS; i++) {
+            Shape shape = this.randomShape();
+            Circle circle = this.randomCircle();
+
+            boolean expected = exactCollides(shape, circle, 0, 0);
+
+            if (isRobust(expected, (dx, dy) -> exactCollides(shape, circle, dx, dy))) {
+                assertEquals(expected, Shape.collides(shape, circle), () -> describe(shape, circle));
+                assertEquals(expected, Shape.collides(circle, shape), () -> describe(circle, shape));
+                checked++;
+            }
+        }
+
+        assertTrue(checked > PAIRS * 0.9, "Too few robust cases: " + checked);
+    }
+
+    @Test
+    void testRandomCirclePairsMatchBaseline() {
+        for (int i = 0; i < PAIRS; i++) {
+            Circle circle1 = this.randomCircle();
+            Circle circle2 = this.randomCircle();
+
+            boolean expected = BaselineCollision.collides(circle1, circle2, 0, 0);
+
+            if (isRobust(expected, (dx, dy) -> BaselineCollision.collides(circle1, circle2, dx, dy))) {
+                assertEquals(expected, Shape.collides(circle1, circle2), () -> describe(circle1, circle2));
+            }
+        }
+    }
+
+    @Test
+    void testRandomPointsMatchBaseline() {
+        for (int i = 0; i < PAIRS; i++) {
+            Shape shape = this.randomShape();
+            Circle circle = this.randomCircle();
+            WorldCoords point = new WorldCoords(this.random.nextFloat(), this.random.nextFloat());
+
+            if (isRobust(BaselineCollision.collides(shape, point.x, point.y), (dx, dy) -> BaselineCollision.collides(shape, point.x + dx, point.y + dy))) {
+                assertEquals(BaselineCollision.collides(shape, point.x, point.y), Shape.collides(shape, point), () -> describe(shape, point));
+            }
+
+            if (isRobust(BaselineCollision.collides(circle, point.x, point.y), (dx, dy) -> BaselineCollision.collides(circle, point.x + dx, point.y + dy))) {
+                assertEquals(BaselineCollision.collides(circle, point.x, point.y), Shape.collides(circle, point), () -> describe(circle, point));
+            }
+        }
+    }
+
+    @Test
+    void testTouchingShapes() {
+        // The edges are shared exactly, and the original overlap test excludes the edges
+        Rect rect1 = new Rect(new WorldCoords(0, 1), 1, 1);
+        Rect rect2 = new Rect(new WorldCoords(1, 1), 1, 1);
+        Triangle triangle = new Triangle(new WorldCoords(1, 0.5f), new WorldCoords(2, 0), new WorldCoords(2, 1));
+
+        assertEquals(BaselineCollision.collides(rect1, rect2, 0, 0), Shape.collides(rect1, rect2));
+        assertEquals(BaselineCollision.collides(rect1, triangle, 0, 0), Shape.collides(rect1, triangle));
+        assertFalse(Shape.collides(rect1, rect2));
+        assertFalse(Shape.collides(rect1, triangle));
+
+        // Circles count as colliding when they touch
+        Circle circle1 = new Circle(new WorldCoords(0, 0), 0.5f, 16);
+        Circle circle2 = new Circle(new WorldCoords(1, 0), 0.5f, 16);
+
+        assertEquals(BaselineCollision.collides(circle1, circle2, 0, 0), Shape.collides(circle1, circle2));
+        assertTrue(Shape.collides(circle1, circle2));
+
+        // A point on the edge of a rect is outside of it
+        WorldCoords corner = new WorldCoords(1, 0.5f);
+        assertEquals(BaselineCollision.collides(rect1, corner.x, corner.y), Shape.collides(rect1, corner));
+        assertFalse(Shape.collides(rect1, corner));
+    }
+
+    @Test
+    void testContainedShapes() {
+        Rect outer = new Rect(new WorldCoords(0, 1), 1, 1);
+        Rect inner = new Rect(new WorldCoords(0.25f, 0.75f), 0.5f, 0.5f);
+        Triangle triangle = new Triangle(new WorldCoords(0.4f, 0.4f), new WorldCoords(0.6f, 0.4f), new WorldCoords(0.5f, 0.6f));
+        Circle circle = new Circle(new WorldCoords(0.45f, 0.55f), 0.1f, 32);
+        Circle bigCircle = new Circle(new WorldCoords(0.55f, 0.45f), 2, 32);
+
+        assertEquals(BaselineCollision.collides(outer, inner, 0, 0), Shape.collides(outer, inner));
+        assertEquals(BaselineCollision.collides(inner, outer, 0, 0), Shape.collides(inner, outer));
+        assertEquals(BaselineCollision.collides(outer, triangle, 0, 0), Shape.collides(outer, triangle));
+        assertEquals(exactCollides(outer, circle, 0, 0), Shape.collides(outer, circle));
+        assertEquals(exactCollides(outer, bigCircle, 0, 0), Shape.collides(outer, bigCircle));
+        assertEquals(BaselineCollision.collides(bigCircle, circle, 0, 0), Shape.collides(bigCircle, circle));
+
+        assertTrue(Shape.collides(outer, inner));
+        assertTrue(Shape.collides(inner, outer));
+        assertTrue(Shape.collides(outer, triangle));
+        assertTrue(Shape.collides(outer, circle));
+        assertTrue(Shape.collides(outer, bigCircle));
+        assertTrue(Shape.collides(bigCircle, circle));
+    }
+
+    @Test
+    void testCircleNearCorner() {
+        // The circle is just past the corner of a long rect. The axis between the centers used to miss the gap.
+        Rect rect = new Rect(new WorldCoords(0, 1), 10, 1);
+        Circle circle = new Circle(new WorldCoords(10.3f, 1.3f), 0.4f, 32);
+
+        assertTrue(BaselineCollision.collides(rect, circle, 0, 0));
+        assertFalse(Shape.collides(rect, circle));
+        assertFalse(Shape.collides((Shape) rect, (Shape) circle));
+        assertFalse(Shape.collides((Shape) circle, (Shape) rect));
+    }
+
+    @Test
+    void testRandomIntersectionsMatchCollides() {
+        ContactResult contact = new ContactResult();
+        int colliding = 0;
+
+        for (int i = 0; i < PAIRS; i++) {
+            Shape shape1 = this.randomShape();
+            Shape shape2 = this.random.nextBoolean() ? this.randomShape() : this.randomCircle();
+
+            boolean expected = expectedCollides(shape1, shape2, 0, 0);
+
+            if (!isRobust(expected, (dx, dy) -> expectedCollides(shape1, shape2, dx, dy))) {
+                continue;
+            }
+
+            assertEquals(expected, Shape.intersect(shape1, shape2, contact), () -> describe(shape1, shape2));
+            assertEquals(expected, contact.colliding);
+
+            if (expected) {
+                assertContactSeparates(shape1, shape2, contact);
+                colliding++;
+            }
+        }
+
+        assertTrue(colliding > PAIRS / 10, "Too few collisions: " + colliding);
+    }
+
+    @Test
+    void testTouchingAndContainedIntersections() {
+        ContactResult contact = new ContactResult();
+
+        Rect rect1 = new Rect(new WorldCoords(0, 1), 1, 1);
+        Rect rect2 = new Rect(new WorldCoords(1, 1), 1, 1);
+        assertFalse(Shape.intersect(rect1, rect2, contact));
+        assertFalse(contact.colliding);
+
+        // The circle is on the right of the rect, so it is pushed out to the right
+        Circle circle = new Circle(new WorldCoords(0.9f, 0.5f), 0.2f, 32);
+        assertTrue(Shape.intersect(rect1, circle, contact));
+        assertEquals(1, contact.normalX, 1e-5f);
+        assertEquals(0, contact.normalY, 1e-5f);
+        assertEquals(0.3f, contact.depth, 1e-5f);
+        assertContactSeparates(rect1, circle, contact);
+
+        // A contained shape is pushed out through the nearest edge of the outer one
+        Rect inner = new Rect(new WorldCoords(0.1f, 0.7f), 0.3f, 0.3f);
+        assertTrue(Shape.intersect(rect1, inner, contact));
+        assertEquals(-1, contact.normalX, 1e-5f);
+        assertEquals(0.4f, contact.depth, 1e-5f);
+        assertContactSeparates(rect1, inner, contact);
+
+        Circle innerCircle = new Circle(new WorldCoords(0.45f, 0.55f), 0.1f, 32);
+        assertTrue(Shape.intersect(rect1, innerCircle, contact));
+        assertContactSeparates(rect1, innerCircle, contact);
+        assertTrue(Shape.intersect(innerCircle, rect1, contact));
+        assertContactSeparates(innerCircle, rect1, contact);
+    }
+
+    /**
+     * Checks that moving the second shape along the normal by a bit more than the depth separates the shapes. Also
+     * checks that every contact point is in the bounds of both shapes, give or take the depth, since a clipped point
+     * can stick out of the sides of the reference shape by up to the depth.
+     */
+    private static void assertContactSeparates(Shape shape1, Shape shape2, ContactResult contact) {
+        float epsilon = 1e-3f;
+
+        assertTrue(Math.abs(Math.hypot(contact.normalX, contact.normalY) - 1) < 1e-4, () -> describe(shape1, shape2));
+        assertTrue(contact.depth >= 0, () -> describe(shape1, shape2));
+        assertTrue(contact.contactCount == 1 || contact.contactCount == 2, () -> describe(shape1, shape2));
+
+        float past = contact.depth + epsilon;
+        assertFalse(expectedCollides(shape1, shape2, contact.normalX * past, contact.normalY * past), () -> describe(shape1, shape2));
+
+        assertInBounds(shape1, shape2, contact.contactX1, contact.contactY1, contact.depth + epsilon);
+
+        if (contact.contactCount == 2) {
+            assertInBounds(shape1, shape2, contact.contactX2, contact.contactY2, contact.depth + epsilon);
+        }
+    }
+
+    private static void assertInBounds(Shape shape1, Shape shape2, float x, float y, float tolerance) {
+        for (Shape shape : new Shape[]{shape1, shape2}) {
+            float[] vertices = BaselineCollision.exteriorVertices(shape);
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < vertices.length; i += 2) {
+                minX = Math.min(minX, vertices[i]);
+                maxX = Math.max(maxX, vertices[i]);
+                minY = Math.min(minY, vertices[i + 1]);
+                maxY = Math.max(maxY, vertices[i + 1]);
+            }
+
+            if (isTrueCircle(shape)) {
+                Transform transform = shape.getTransform();
+                float radius = ((Circle) shape).getRadius() * transform.getScaleX();
+
+                minX = Math.min(minX, transform.getCenterX() - radius);
+                maxX = Math.max(maxX, transform.getCenterX() + radius);
+                minY = Math.min(minY, transform.getCenterY() - radius);
+                maxY = Math.max(maxY, transform.getCenterY() + radius);
+            }
+
+            assertTrue(x >= minX - tolerance && x <= maxX + tolerance && y >= minY - tolerance && y <= maxY + tolerance,
+                    () -> "Contact (" + x + ", " + y + ") outside of " + describe(shape));
+        }
+    }
+
+    /**
+     * @return The result Shape.collides(Shape, Shape) should give. Uniformly scaled circles are true circles, and
+     * every other pair is tested as polygons like before.
+     */
+    private static boolean expectedCollides(Shape shape1, Shape shape2, float dx, float dy) {
+        boolean circle1 = isTrueCircle(shape1);
+        boolean circle2 = isTrueCircle(shape2);
+
+        if (shape1 instanceof Circle && shape2 instanceof Circle) {
+            return circle1 && circle2
+                    ? BaselineCollision.collides((Circle) shape1, (Circle) shape2, dx, dy)
+                    : BaselineCollision.collides(shape1, shape2, dx, dy);
+        }
+
+        if (circle2) {
+            return exactCollides(shape1, (Circle) shape2, dx, dy);
+        }
+
+        if (circle1) {
+            Circle circle = (Circle) shape1;
+            Transform transform = circle.getTransform();
+
+            return ExactCollision.polygonCollidesCircle(
+                    BaselineCollision.exteriorVertices(shape2, dx, dy),
+                    transform.getCenterX(), transform.getCenterY(), circle.getRadius() * transform.getScaleX()
+            );
+        }
+
+        return BaselineCollision.collides(shape1, shape2, dx, dy);
+    }
+
+    /**
+     * @return The result Shape.collides(Shape, Circle) should give, with the circle shifted by (dx, dy).
+     */
+    private static boolean exactCollides(Shape shape, Circle circle, float dx, float dy) {
+        Transform transform = circle.getTransform();
+
+        return ExactCollision.polygonCollidesCircle(
+                BaselineCollision.exteriorVertices(shape),
+                transform.getCenterX() + dx, transform.getCenterY() + dy, circle.getRadius() * transform.getScaleX()
+        );
+    }
+
+    private static boolean isTrueCircle(Shape shape) {
+        return shape instanceof Circle && shape.getTransform().getScaleX() == shape.getTransform().getScaleY();
+    }
+
+    private interface OffsetCheck {
+        boolean collides(float dx, float dy);
+    }
+
+    /**
+     * @return If nudging the second shape in every direction doesn't change the result.
+     */
+    private static boolean isRobust(boolean expected, OffsetCheck check) {
+        return check.collides(NUDGE, 0) == expected && check.collides(-NUDGE, 0) == expected &&
+                check.collides(0, NUDGE) == expected && check.collides(0, -NUDGE) == expected;
+    }
+
+    private Shape randomShape() {
+        Shape shape = switch (this.random.nextInt(3)) {
+            case 0 -> new Rect(this.randomCoords(), 0.05f + this.random.nextFloat() * 0.3f, 0.05f + this.random.nextFloat() * 0.3f);
+            case 1 -> new Triangle(this.randomCoords(), this.randomCoords(), this.randomCoords());
+            default -> this.randomCircle();
+        };
+
+        this.randomizeTransform(shape);
+        return shape;
+    }
+
+    private Circle randomCircle() {
+        Circle circle = new Circle(this.randomCoords(), 0.02f + this.random.nextFloat() * 0.2f, 3 + this.random.nextInt(30));
+        this.randomizeTransform(circle);
+
+        return circle;
+    }
+
+    private void randomizeTransform(Shape shape) {
+        shape.getTransform().setRotation((float) (this.random.nextFloat() * Math.PI * 2));
+        shape.getTransform().setScaleX(0.5f + this.random.nextFloat());
+
+        // Half of the shapes are scaled the same on both axes, so half of the circles are true circles
+        if (this.random.nextBoolean()) {
+            shape.getTransform().setScaleY(shape.getTransform().getScaleX());
+        } else {
+            shape.getTransform().setScaleY(0.5f + this.random.nextFloat());
+        }
+    }
+
+    private WorldCoords randomCoords() {
+        return new WorldCoords(this.random.nextFloat(), this.random.nextFloat());
+    }
+
+    private static String describe(Object first, Object second) {
+        return describe(first) + " and " + describe(second);
+    }
+
+    private static String describe(Object object) {
+        if (object instanceof Shape shape) {
+            Transform transform = shape.getTransform();
+            return shape.getClass().getSimpleName() + " at (" + transform.getCenterX() + ", " + transform.getCenterY() +
+                    ") rotated " + transform.getRotation() + " scaled (" + transform.getScaleX() + ", " + transform.getScaleY() + ")";
+        }
+
+        if (object instanceof WorldCoords coords) {
+            return "point (" + coords.x + ", " + coords.y + ")";
+        }
+
+        return String.valueOf(object);
+    }
+}